@@ -5,11 +5,14 @@ import java.util.List;
 import java.util.Map;
 
 import org.apache.http.NameValuePair;
+import org.apache.http.concurrent.FutureCallback;
+import org.apache.http.nio.client.HttpAsyncClient;
 
 import jetbrains.buildServer.serverSide.SFinishedBuild;
 import webhook.teamcity.BuildState;
 import webhook.teamcity.BuildStateEnum;
 import webhook.teamcity.auth.WebHookAuthenticator;
+import webhook.teamcity.payload.WebHookRenderCache;
 import webhook.teamcity.payload.variableresolver.VariableResolverFactory;
 import webhook.teamcity.payload.variableresolver.VariableResolver;
 import webhook.teamcity.settings.WebHookFilterConfig;
@@ -24,6 +27,16 @@ public interface WebHook {
 	public abstract void setProxyUserAndPass(String username, String password);
 
 	public abstract void post() throws IOException;
+	
+	/**
+	 * Posts the webhook using a non-blocking client. No thread is held 
+	 * while waiting for the response. The callback is invoked on one of 
+	 * the client's I/O threads once the response has been received, 
+	 * or immediately if the webhook is not enabled.
+	 * @param asyncClient A started non-blocking client
+	 * @param callback Notified when the request completes or fails.
+	 */
+	public abstract void postAsync(HttpAsyncClient asyncClient, FutureCallback<WebHook> callback);
 
 	public abstract Integer getStatus();
 
@@ -77,8 +90,12 @@ public interface WebHook {
 
 	public abstract void setPayload(String payloadContent);
 
+	public abstract String getContentType();
+
 	public abstract void setContentType(String contentType);
 
+	public abstract String getCharset();
+
 	public abstract void setCharset(String charset);
 
 	public abstract void setAuthentication(WebHookAuthenticator authenticator);
@@ -103,6 +120,19 @@ public interface WebHook {
 	 * @param variableResolver
 	 */
 	public abstract void resolveHeaders(VariableResolver variableResolver);
+	
+	/**
+	 * The headers as they will be sent, after being resolved with WebHook content.
+	 * @return Map of header name to header value
+	 */
+	public abstract Map<String, String> getResolvedHeaders();
+	
+	/**
+	 * Replaces the resolved headers. Used when a webhook has already been rendered, 
+	 * eg, when it is replayed from the delivery journal.
+	 * @param resolvedHeaders
+	 */
+	public abstract void setResolvedHeaders(Map<String, String> resolvedHeaders);
 
 	public abstract String getDisabledReason();
 
@@ -116,10 +146,23 @@ public interface WebHook {
 
 	public abstract void setResponseTimeOut(int httpResponseTimeout);
 
+	public abstract void setConnectionRequestTimeOut(int httpConnectionRequestTimeout);
+
 	public abstract void setEnabledForBuildState(BuildStateEnum buildState, boolean enabled);
 	
 	public abstract VariableResolverFactory getVariableResolverFactory();
 	
 	public abstract void setVariableResolverFactory(VariableResolverFactory variableResolverFactory);
+	
+	/**
+	 * @return The cache of payloads rendered for the event this webhook is being sent for, or null.
+	 */
+	public abstract WebHookRenderCache getRenderCache();
+	
+	/**
+	 * Shares a cache of rendered payloads with the other webhooks being sent for the same event.
+	 * @param renderCache
+	 */
+	public abstract void setRenderCache(WebHookRenderCache renderCache);
 
 }
\ No newline at end of file
@@ -89,7 +89,22 @@ public class WebHookExecutionStats {
 	}
 
 	public void setResponseHeaders(Header[] allHeaders) {
-		// TODO Auto-generated method stub
-		
+		this.responseHeaders = allHeaders;
+	}
+	
+	/**
+	 * @param name The header name (case insensitive).
+	 * @return The value of the first response header with that name, or null.
+	 */
+	public String getResponseHeader(String name) {
+		if (this.responseHeaders == null) {
+			return null;
+		}
+		for (Header header : this.responseHeaders) {
+			if (header.getName().equalsIgnoreCase(name)) {
+				return header.getValue();
+			}
+		}
+		return null;
 	}
 }
@@ -25,10 +25,10 @@ import org.apache.http.client.entity.UrlEncodedFormEntity;
 import org.apache.http.client.methods.CloseableHttpResponse;
 import org.apache.http.client.methods.HttpPost;
 import org.apache.http.client.protocol.HttpClientContext;
-import org.apache.http.entity.StringEntity;
+import org.apache.http.concurrent.FutureCallback;
 import org.apache.http.impl.client.BasicCredentialsProvider;
-import org.apache.http.impl.client.CloseableHttpClient;
 import org.apache.http.message.BasicNameValuePair;
+import org.apache.http.nio.client.HttpAsyncClient;
 import org.apache.http.util.EntityUtils;
 
 import jetbrains.buildServer.serverSide.SFinishedBuild;
@@ -39,6 +39,7 @@ import webhook.teamcity.Loggers;
 import webhook.teamcity.WebHookExecutionException;
 import webhook.teamcity.auth.WebHookAuthenticator;
 import webhook.teamcity.payload.variableresolver.VariableResolver;
+import webhook.teamcity.payload.WebHookRenderCache;
 import webhook.teamcity.payload.variableresolver.VariableResolverFactory;
 import webhook.teamcity.settings.WebHookFilterConfig;
 import webhook.teamcity.settings.WebHookHeaderConfig;
@@ -70,6 +71,7 @@ public class WebHookImpl implements WebHook {
 	@Getter
 	private UUID requestId = UUID.randomUUID();
 	private VariableResolverFactory variableResolverFactory;
+	private WebHookRenderCache renderCache;
 	
 	
 	public WebHookImpl (String url, WebHookProxyConfig proxyConfig, HttpClient client){
@@ -124,75 +126,136 @@ public class WebHookImpl implements WebHook {
 	@Override
 	public void post() throws IOException {
 		if ((this.enabled) && (!this.getExecutionStats().isErrored())){
-			HttpPost httppost = new HttpPost(this.url);
 			HttpClientContext context = HttpClientContext.create();
-			httppost.addHeader("X-tcwebhooks-request-id", this.getExecutionStats().getTrackingIdAsString());
-			if (   this.payload != null && this.payload.length() > 0 
-				&& this.contentType != null && this.contentType.length() > 0){
-				httppost.setEntity(new StringEntity(this.payload, this.contentType, this.charset));
-			} else if ( ! this.params.isEmpty()){
-				UrlEncodedFormEntity entity = new UrlEncodedFormEntity(this.params, Consts.UTF_8);
-				httppost.setEntity(entity);
-			}
-			if(authenticator != null){
-				authenticator.addAuthentication(getCredentialsProvider(), context, url);
-				requestConfig = RequestConfig.copy(requestConfig).setTargetPreferredAuthSchemes(Arrays.asList(authenticator.getWwwAuthenticateChallengePrefix())).build();
-			}
-			
-			for (Map.Entry<String, String> header : this.resolvedHeaders.entrySet()) {
-				httppost.addHeader(header.getKey(), header.getValue());
-			}
-			
-			if (this.credentialsProvider != null) {
-				context.setCredentialsProvider(getCredentialsProvider());
-			}
-
-			context.setRequestConfig(requestConfig);
-			
-			this.webhookStats.setUrl(this.url);
+			HttpPost httppost = buildHttpPost(context);
 			HttpResponse httpResponse = null;
 		    try {
 		    	this.webhookStats.setRequestStarting();
 		    	Loggers.SERVER.debug("WebHookImpl::  Connect timeout(millis): " + this.requestConfig.getConnectTimeout());
 		    	Loggers.SERVER.debug("WebHookImpl:: Response timeout(millis): " + this.requestConfig.getSocketTimeout());
 		    	httpResponse = client.execute(httppost, context);
-		        this.webhookStats.setRequestCompleted(httpResponse.getStatusLine().getStatusCode(), httpResponse.getStatusLine().getReasonPhrase());
-		        this.webhookStats.setResponseHeaders(httpResponse.getAllHeaders());
-		        
-		        if (Loggers.SERVER.isDebugEnabled()) {
-		        	// Log headers
-		        	Loggers.SERVER.debug("WebHookImpl::  --- Begin Server Response Headers ---");
-		        	for (Header header : httpResponse.getAllHeaders()) {
-		        		Loggers.SERVER.debug( header.getName() + " : " + header.getValue() );
+		    	processResponse(httpResponse);
+		    } finally {
+		    	/* The client is shared and pooled, so don't close it. 
+		    	 * Instead, consume the response so that the connection 
+		    	 * is returned to the pool and can be re-used. */
+		        if (httpResponse != null) {
+		        	EntityUtils.consumeQuietly(httpResponse.getEntity());
+		        	if (httpResponse instanceof CloseableHttpResponse) {
+		        		((CloseableHttpResponse)httpResponse).close();
 		        	}
-		        	Loggers.SERVER.debug("WebHookImpl::  --- End Server Response Headers ---");
-		        	
-		        	// Log body
-		        	Loggers.SERVER.debug("WebHookImpl::  --- Begin Server Response Body ---");
-			        try {
-			        	HttpEntity responseEntity = httpResponse.getEntity();
-				        if(responseEntity != null) {
-				        	Loggers.SERVER.debug( EntityUtils.toString(responseEntity) );
-			        	} else {
-			        		Loggers.SERVER.debug("Unable to parse response body. responseEntity is null");
-			        	}
-			        } catch (IOException ex) {
-			        	Loggers.SERVER.debug("Unable to parse response body:" + ex.getMessage());
-			        }
-			        Loggers.SERVER.debug("WebHookImpl::  --- End Server Response Body ---");
 		        }
-		    } finally {
 		        httppost.releaseConnection();
 		        this.webhookStats.setTeardownCompleted();
-		        if (this.client instanceof CloseableHttpClient) {
-		        	((CloseableHttpClient)this.client).close();
-		        }
-		        if (httpResponse != null && httpResponse instanceof CloseableHttpResponse) {
-		        	((CloseableHttpResponse)httpResponse).close();
-		        }
 		    }   
 		}
 	}
+	
+	@Override
+	public void postAsync(HttpAsyncClient asyncClient, final FutureCallback<WebHook> callback) {
+		if ((this.enabled) && (!this.getExecutionStats().isErrored())){
+			HttpClientContext context = HttpClientContext.create();
+			HttpPost httppost = buildHttpPost(context);
+			this.webhookStats.setRequestStarting();
+			Loggers.SERVER.debug("WebHookImpl::  Connect timeout(millis): " + this.requestConfig.getConnectTimeout());
+			Loggers.SERVER.debug("WebHookImpl:: Response timeout(millis): " + this.requestConfig.getSocketTimeout());
+			asyncClient.execute(httppost, context, new FutureCallback<HttpResponse>() {
+				
+				@Override
+				public void completed(HttpResponse httpResponse) {
+					RuntimeException processingException = null;
+					try {
+						processResponse(httpResponse);
+					} catch (RuntimeException ex) {
+						processingException = ex;
+					}
+					EntityUtils.consumeQuietly(httpResponse.getEntity());
+					webhookStats.setTeardownCompleted();
+					if (processingException != null) {
+						callback.failed(processingException);
+					} else {
+						callback.completed(WebHookImpl.this);
+					}
+				}
+				
+				@Override
+				public void failed(Exception ex) {
+					webhookStats.setTeardownCompleted();
+					callback.failed(ex);
+				}
+				
+				@Override
+				public void cancelled() {
+					webhookStats.setTeardownCompleted();
+					callback.cancelled();
+				}
+			});
+		} else {
+			callback.completed(this);
+		}
+	}
+	
+	/**
+	 * Assembles the {@link HttpPost} and populates the {@link HttpClientContext} 
+	 * with the auth, proxy and timeout settings for this webhook. Used by 
+	 * both the blocking and non-blocking post methods.
+	 */
+	private HttpPost buildHttpPost(HttpClientContext context) {
+		HttpPost httppost = new HttpPost(this.url);
+		httppost.addHeader("X-tcwebhooks-request-id", this.getExecutionStats().getTrackingIdAsString());
+		if (   this.payload != null && this.payload.length() > 0 
+			&& this.contentType != null && this.contentType.length() > 0){
+			httppost.setEntity(new WebHookPayloadEntity(this.payload, this.contentType, this.charset));
+		} else if ( ! this.params.isEmpty()){
+			UrlEncodedFormEntity entity = new UrlEncodedFormEntity(this.params, Consts.UTF_8);
+			httppost.setEntity(entity);
+		}
+		if(authenticator != null){
+			authenticator.addAuthentication(getCredentialsProvider(), context, url);
+			requestConfig = RequestConfig.copy(requestConfig).setTargetPreferredAuthSchemes(Arrays.asList(authenticator.getWwwAuthenticateChallengePrefix())).build();
+		}
+		
+		for (Map.Entry<String, String> header : this.resolvedHeaders.entrySet()) {
+			httppost.addHeader(header.getKey(), header.getValue());
+		}
+		
+		if (this.credentialsProvider != null) {
+			context.setCredentialsProvider(getCredentialsProvider());
+		}
+
+		context.setRequestConfig(requestConfig);
+		
+		this.webhookStats.setUrl(this.url);
+		return httppost;
+	}
+	
+	private void processResponse(HttpResponse httpResponse) {
+        this.webhookStats.setRequestCompleted(httpResponse.getStatusLine().getStatusCode(), httpResponse.getStatusLine().getReasonPhrase());
+        this.webhookStats.setResponseHeaders(httpResponse.getAllHeaders());
+        
+        if (Loggers.SERVER.isDebugEnabled()) {
+        	// Log headers
+        	Loggers.SERVER.debug("WebHookImpl::  --- Begin Server Response Headers ---");
+        	for (Header header : httpResponse.getAllHeaders()) {
+        		Loggers.SERVER.debug( header.getName() + " : " + header.getValue() );
+        	}
+        	Loggers.SERVER.debug("WebHookImpl::  --- End Server Response Headers ---");
+        	
+        	// Log body
+        	Loggers.SERVER.debug("WebHookImpl::  --- Begin Server Response Body ---");
+	        try {
+	        	HttpEntity responseEntity = httpResponse.getEntity();
+		        if(responseEntity != null) {
+		        	Loggers.SERVER.debug( EntityUtils.toString(responseEntity) );
+	        	} else {
+	        		Loggers.SERVER.debug("Unable to parse response body. responseEntity is null");
+	        	}
+	        } catch (IOException ex) {
+	        	Loggers.SERVER.debug("Unable to parse response body:" + ex.getMessage());
+	        }
+	        Loggers.SERVER.debug("WebHookImpl::  --- End Server Response Body ---");
+        }
+	}
 
 	@Override
 	public Integer getStatus(){
@@ -348,12 +411,22 @@ public class WebHookImpl implements WebHook {
 		this.payload = payloadContent;
 	}
 
+	@Override
+	public String getContentType() {
+		return contentType;
+	}
+
 	@Override
 	public void setContentType(String contentType) {
 		this.contentType = contentType;
 
 	}
 
+	@Override
+	public String getCharset() {
+		return charset;
+	}
+
 	@Override
 	public void setCharset(String charset) {
 		this.charset = charset;
@@ -428,6 +501,16 @@ public class WebHookImpl implements WebHook {
 		}
 	}
 	
+	@Override
+	public Map<String, String> getResolvedHeaders() {
+		return resolvedHeaders;
+	}
+	
+	@Override
+	public void setResolvedHeaders(Map<String, String> resolvedHeaders) {
+		this.resolvedHeaders = new LinkedHashMap<>(resolvedHeaders);
+	}
+	
 	@Override
 	public String getDisabledReason() {
 		return disabledReason;
@@ -459,6 +542,15 @@ public class WebHookImpl implements WebHook {
 		this.requestConfig = RequestConfig.copy(this.requestConfig).setSocketTimeout(httpResponseTimeout * 1000).build();
 	}
 
+	/**
+	 * Limits how long the request waits for a pooled connection, 
+	 * so that a saturated host can't hold up the sending thread forever.
+	 */
+	@Override
+	public void setConnectionRequestTimeOut(int httpConnectionRequestTimeout) {
+		this.requestConfig = RequestConfig.copy(this.requestConfig).setConnectionRequestTimeout(httpConnectionRequestTimeout * 1000).build();
+	}
+
 	@Override
 	public VariableResolverFactory getVariableResolverFactory() {
 		return this.variableResolverFactory;
@@ -468,5 +560,15 @@ public class WebHookImpl implements WebHook {
 	public void setVariableResolverFactory(VariableResolverFactory variableResolverFactory) {
 		this.variableResolverFactory = variableResolverFactory;		
 	}
+
+	@Override
+	public WebHookRenderCache getRenderCache() {
+		return this.renderCache;
+	}
+
+	@Override
+	public void setRenderCache(WebHookRenderCache renderCache) {
+		this.renderCache = renderCache;
+	}
 	
 }
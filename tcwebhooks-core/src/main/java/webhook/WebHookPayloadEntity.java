@@ -0,0 +1,163 @@
+package webhook;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+
+import org.apache.http.entity.AbstractHttpEntity;
+import org.apache.http.entity.StringEntity;
+import org.apache.http.protocol.HTTP;
+import org.apache.http.util.Args;
+
+import com.google.common.base.Utf8;
+
+/**
+ * An entity for a rendered payload, which encodes the payload as it is written to the
+ * connection. {@link StringEntity} encodes the whole payload into a byte array when it
+ * is created, which is another full copy of payloads that can be megabytes long.
+ * <p>
+ * The bytes sent, and the Content-Type header, are the same as {@link StringEntity} would send.
+ * The Content-Length is counted without encoding the payload for UTF-8, and by encoding
+ * it a buffer at a time for other charsets.
+ * <p>
+ * The payload string itself is kept by the webhook for retries and history, so the
+ * entity is repeatable.
+ */
+public class WebHookPayloadEntity extends AbstractHttpEntity {
+
+	private static final int BUFFER_SIZE = 8192;
+
+	private final String payload;
+	private final Charset charset;
+	private long contentLength = -1;
+
+	public WebHookPayloadEntity(final String payload, final String mimeType, final String charset) {
+		Args.notNull(payload, "Source string");
+		final String cs = charset != null ? charset : HTTP.DEFAULT_CONTENT_CHARSET;
+		this.payload = payload;
+		this.charset = Charset.forName(cs);
+		setContentType((mimeType != null ? mimeType : HTTP.PLAIN_TEXT_TYPE) + HTTP.CHARSET_PARAM + cs);
+	}
+
+	@Override
+	public boolean isRepeatable() {
+		return true;
+	}
+
+	@Override
+	public long getContentLength() {
+		if (this.contentLength < 0) {
+			this.contentLength = countEncodedLength();
+		}
+		return this.contentLength;
+	}
+
+	@Override
+	public InputStream getContent() {
+		return new EncodingInputStream(this.payload, this.charset);
+	}
+
+	@Override
+	public void writeTo(final OutputStream outstream) throws IOException {
+		Args.notNull(outstream, "Output stream");
+		final InputStream instream = getContent();
+		final byte[] buffer = new byte[BUFFER_SIZE];
+		int read;
+		while ((read = instream.read(buffer)) != -1) {
+			outstream.write(buffer, 0, read);
+		}
+		outstream.flush();
+	}
+
+	@Override
+	public boolean isStreaming() {
+		return false;
+	}
+
+	private long countEncodedLength() {
+		if (StandardCharsets.UTF_8.equals(this.charset)) {
+			try {
+				return Utf8.encodedLength(this.payload);
+			} catch (IllegalArgumentException ex) {
+				// Unpaired surrogates are replaced when encoded, so count them the slow way.
+			}
+		}
+		final InputStream instream = getContent();
+		final byte[] buffer = new byte[BUFFER_SIZE];
+		long length = 0;
+		int read;
+		while ((read = instream.read(buffer, 0, buffer.length)) != -1) {
+			length += read;
+		}
+		return length;
+	}
+
+	/**
+	 * Encodes the payload a buffer at a time, replacing malformed and unmappable
+	 * characters in the same way as {@link String#getBytes(Charset)}.
+	 */
+	private static class EncodingInputStream extends InputStream {
+
+		private final CharBuffer chars;
+		private final CharsetEncoder encoder;
+		private final ByteBuffer bytes = ByteBuffer.allocate(BUFFER_SIZE);
+		private boolean encoded = false;
+		private boolean flushed = false;
+
+		EncodingInputStream(String payload, Charset charset) {
+			this.chars = CharBuffer.wrap(payload);
+			this.encoder = charset.newEncoder()
+					.onMalformedInput(CodingErrorAction.REPLACE)
+					.onUnmappableCharacter(CodingErrorAction.REPLACE);
+			this.bytes.flip();
+		}
+
+		@Override
+		public int read() {
+			final byte[] single = new byte[1];
+			return read(single, 0, 1) == -1 ? -1 : single[0] & 0xFF;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) {
+			if (len == 0) {
+				return 0;
+			}
+			while (!this.bytes.hasRemaining()) {
+				if (this.flushed) {
+					return -1;
+				}
+				fill();
+			}
+			final int count = Math.min(len, this.bytes.remaining());
+			this.bytes.get(b, off, count);
+			return count;
+		}
+
+		@Override
+		public int available() {
+			return this.bytes.remaining();
+		}
+
+		private void fill() {
+			this.bytes.clear();
+			if (!this.encoded) {
+				CoderResult result = this.encoder.encode(this.chars, this.bytes, true);
+				this.encoded = result.isUnderflow();
+			}
+			if (this.encoded) {
+				CoderResult result = this.encoder.flush(this.bytes);
+				this.flushed = result.isUnderflow();
+			}
+			this.bytes.flip();
+		}
+	}
+
+}
@@ -0,0 +1,21 @@
+package webhook.teamcity;
+
+import lombok.Getter;
+
+/**
+ * Thrown instead of sending a webhook when the circuit breaker for its endpoint is open.
+ */
+@Getter
+public class WebHookCircuitOpenException extends WebHookExecutionException {
+	
+	private static final long serialVersionUID = -4207463393380164526L;
+	
+	/** How long until the breaker will let a trial request through. */
+	private final long retryAfterMillis;
+	
+	public WebHookCircuitOpenException(String message, long retryAfterMillis) {
+		super(message, WEBHOOK_CIRCUIT_OPEN_ERROR_CODE);
+		this.retryAfterMillis = retryAfterMillis;
+	}
+
+}
@@ -1,13 +1,15 @@
 package webhook.teamcity;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.SortedMap;
 import java.util.TreeMap;
+import java.util.function.Supplier;
 
 import org.jetbrains.annotations.Nullable;
 
-import jetbrains.buildServer.serverSide.ParametersSupport;
 import jetbrains.buildServer.serverSide.SBuild;
 import jetbrains.buildServer.serverSide.SBuildServer;
 import jetbrains.buildServer.serverSide.SFinishedBuild;
@@ -17,14 +19,18 @@ import webhook.WebHook;
 import webhook.teamcity.executor.WebHookResponsibilityHolder;
 import webhook.teamcity.payload.WebHookContentObjectSerialiser;
 import webhook.teamcity.payload.WebHookPayload;
+import webhook.teamcity.payload.WebHookPayloadContentRenderer;
+import webhook.teamcity.payload.WebHookRenderCache;
+import webhook.teamcity.payload.WebHookRenderKey;
 import webhook.teamcity.payload.WebHookTemplateContent;
 import webhook.teamcity.payload.WebHookTemplateResolver;
+import webhook.teamcity.payload.content.WebHookFilterContent;
 import webhook.teamcity.payload.content.WebHookPayloadContent;
-import webhook.teamcity.payload.variableresolver.VariableMessageBuilder;
-import webhook.teamcity.payload.variableresolver.VariableResolver;
+import webhook.teamcity.payload.content.WebHookPayloadContentContext;
 import webhook.teamcity.payload.variableresolver.VariableResolverFactory;
 import webhook.teamcity.payload.variableresolver.WebHookVariableResolverManager;
 import webhook.teamcity.settings.WebHookConfig;
+import webhook.teamcity.settings.WebHookFilterConfig;
 
 public class WebHookContentBuilder {
 	private final WebHookTemplateResolver webHookTemplateResolver;
@@ -42,7 +48,6 @@ public class WebHookContentBuilder {
 			String user, String comment, boolean overrideIsEnabled) {
 		WebHookPayload payloadFormat = webHookTemplateResolver.getTemplatePayloadFormat(whc.getPayloadTemplate());
 		VariableResolverFactory variableResolverFactory = this.webHookVariableResolverManager.getVariableResolverFactory(payloadFormat.getTemplateEngineType());
-		WebHookTemplateContent templateForThisBuild;
 		wh.setContentType(payloadFormat.getContentType());
 		wh.setCharset(payloadFormat.getCharset());
 		wh.setVariableResolverFactory(variableResolverFactory);
@@ -50,20 +55,24 @@ public class WebHookContentBuilder {
 		if (state.equals(BuildStateEnum.BUILD_ADDED_TO_QUEUE) ){
 			wh.setEnabledForBuildState(state, overrideIsEnabled || (whc.isEnabledForBuildType(sBuild.getBuildType()) && wh.getBuildStates().enabled(state)));
 			if (wh.isEnabled()){
-				templateForThisBuild = findTemplateForState(sBuild, state, whc.getPayloadTemplate());
-				wh.setPayload(payloadFormat.buildAddedToQueue(sBuild, mergeParameters(whc.getParams(), null, getPreferredDateFormat(templateForThisBuild)), whc.getEnabledTemplates(), templateForThisBuild));
-				wh.setUrl(resolveTemplatedUrl(variableResolverFactory, whc.getUrl(), state, sBuild, payloadFormat, mergeParameters(whc.getParams(),null, getPreferredDateFormat(templateForThisBuild)), whc.getEnabledTemplates(), user, comment));
-				wh.checkFilters(getVariableResolver(variableResolverFactory, state, sBuild, payloadFormat, mergeParameters(whc.getParams(), null, getPreferredDateFormat(templateForThisBuild)), whc.getEnabledTemplates(), user, comment));
-				wh.resolveHeaders(getVariableResolver(variableResolverFactory, state, sBuild, payloadFormat, mergeParameters(whc.getParams(), null, getPreferredDateFormat(templateForThisBuild)), whc.getEnabledTemplates(), user, comment));
+				final WebHookTemplateContent templateForThisBuild = findTemplateForState(sBuild, state, whc.getPayloadTemplate());
+				final SortedMap<String,String> extraParameters = mergeParameters(whc.getParams(), null, getPreferredDateFormat(templateForThisBuild));
+				final WebHookPayloadContentContext context = buildContext(variableResolverFactory, payloadFormat, state, sBuild, extraParameters, whc.getEnabledTemplates(), user, comment);
+				resolveContent(wh, whc, context, context, overrideIsEnabled,
+						() -> renderPayload(wh, new WebHookRenderKey(String.valueOf(sBuild.getItemId()), state, whc.getPayloadTemplate(), false, extraParameters, whc.getEnabledTemplates(), user, comment),
+							payloadFormat, context, templateForThisBuild,
+							() -> payloadFormat.buildAddedToQueue(sBuild, extraParameters, whc.getEnabledTemplates(), templateForThisBuild)));
 			}
 		} else if (state.equals(BuildStateEnum.BUILD_REMOVED_FROM_QUEUE) ){
 			wh.setEnabledForBuildState(state, overrideIsEnabled || (whc.isEnabledForBuildType(sBuild.getBuildType()) && wh.getBuildStates().enabled(state)));
 			if (wh.isEnabled()){
-				templateForThisBuild = findTemplateForState(sBuild, state, whc.getPayloadTemplate());
-				wh.setPayload(payloadFormat.buildRemovedFromQueue(sBuild, mergeParameters(whc.getParams(), null, getPreferredDateFormat(templateForThisBuild)), whc.getEnabledTemplates(), templateForThisBuild, user, comment));
-				wh.setUrl(resolveTemplatedUrl(variableResolverFactory, whc.getUrl(), state, sBuild, payloadFormat, mergeParameters(whc.getParams(),null, getPreferredDateFormat(templateForThisBuild)), whc.getEnabledTemplates(), user, comment));
-				wh.checkFilters(getVariableResolver(variableResolverFactory, state, sBuild, payloadFormat, mergeParameters(whc.getParams(), null, getPreferredDateFormat(templateForThisBuild)), whc.getEnabledTemplates(), user, comment));
-				wh.resolveHeaders(getVariableResolver(variableResolverFactory, state, sBuild, payloadFormat, mergeParameters(whc.getParams(), null, getPreferredDateFormat(templateForThisBuild)), whc.getEnabledTemplates(), user, comment));
+				final WebHookTemplateContent templateForThisBuild = findTemplateForState(sBuild, state, whc.getPayloadTemplate());
+				final SortedMap<String,String> extraParameters = mergeParameters(whc.getParams(), null, getPreferredDateFormat(templateForThisBuild));
+				final WebHookPayloadContentContext context = buildContext(variableResolverFactory, payloadFormat, state, sBuild, extraParameters, whc.getEnabledTemplates(), user, comment);
+				resolveContent(wh, whc, context, context, overrideIsEnabled,
+						() -> renderPayload(wh, new WebHookRenderKey(String.valueOf(sBuild.getItemId()), state, whc.getPayloadTemplate(), false, extraParameters, whc.getEnabledTemplates(), user, comment),
+							payloadFormat, context, templateForThisBuild,
+							() -> payloadFormat.buildRemovedFromQueue(sBuild, extraParameters, whc.getEnabledTemplates(), templateForThisBuild, user, comment)));
 			}
 		}
 		return wh;
@@ -72,7 +81,6 @@ public class WebHookContentBuilder {
 	public WebHook buildWebHookContent(WebHook wh, WebHookConfig whc, SBuild sBuild, BuildStateEnum state, String username, String comment, boolean isOverrideEnabled) {
 		WebHookPayload payloadFormat = webHookTemplateResolver.getTemplatePayloadFormat(whc.getPayloadTemplate());
 		VariableResolverFactory variableResolverFactory = this.webHookVariableResolverManager.getVariableResolverFactory(payloadFormat.getTemplateEngineType());
-		WebHookTemplateContent templateForThisBuild;
 		wh.setContentType(payloadFormat.getContentType());
 		wh.setCharset(payloadFormat.getCharset());
 		wh.setVariableResolverFactory(variableResolverFactory);
@@ -80,38 +88,50 @@ public class WebHookContentBuilder {
 		if (state.equals(BuildStateEnum.BUILD_STARTED)){
 			wh.setEnabledForBuildState(BuildStateEnum.BUILD_STARTED, isOverrideEnabled || (whc.isEnabledForBuildType(sBuild.getBuildType()) && wh.getBuildStates().enabled(BuildStateEnum.BUILD_STARTED)));
 			if (wh.isEnabled()){
-				templateForThisBuild = findTemplateForState(sBuild, state, whc.getPayloadTemplate());
-				wh.setPayload(payloadFormat.buildStarted(sBuild, getPreviousNonPersonalBuild(wh, sBuild), mergeParameters(whc.getParams(),sBuild, getPreferredDateFormat(templateForThisBuild)), whc.getEnabledTemplates(), templateForThisBuild));
-				wh.setUrl(resolveTemplatedUrl(variableResolverFactory, wh, whc.getUrl(), state, sBuild, payloadFormat, mergeParameters(whc.getParams(),sBuild, getPreferredDateFormat(templateForThisBuild)), whc.getEnabledTemplates()));
-				wh.checkFilters(getVariableResolver(variableResolverFactory, wh, state, sBuild, payloadFormat, mergeParameters(whc.getParams(),sBuild, getPreferredDateFormat(templateForThisBuild)), whc.getEnabledTemplates()));
-				wh.resolveHeaders(getVariableResolver(variableResolverFactory, wh, state, sBuild, payloadFormat, mergeParameters(whc.getParams(),sBuild, getPreferredDateFormat(templateForThisBuild)), whc.getEnabledTemplates()));
+				final WebHookTemplateContent templateForThisBuild = findTemplateForState(sBuild, state, whc.getPayloadTemplate());
+				final Map<String,String> buildParameters = sBuild.getParametersProvider().getAll();
+				final SortedMap<String,String> extraParameters = mergeParameters(whc.getParams(), buildParameters, getPreferredDateFormat(templateForThisBuild));
+				final WebHookPayloadContentContext context = buildContext(variableResolverFactory, payloadFormat, wh, state, sBuild, extraParameters, buildParameters, whc.getEnabledTemplates());
+				resolveContent(wh, whc, context, context, isOverrideEnabled,
+						() -> renderPayload(wh, new WebHookRenderKey(String.valueOf(sBuild.getBuildId()), state, whc.getPayloadTemplate(), sBuild.getBranch() != null, extraParameters, whc.getEnabledTemplates(), null, null),
+							payloadFormat, context, templateForThisBuild,
+							() -> payloadFormat.buildStarted(sBuild, getPreviousNonPersonalBuild(wh, sBuild), extraParameters, whc.getEnabledTemplates(), templateForThisBuild)));
 			}
 		} else if (state.equals(BuildStateEnum.CHANGES_LOADED)){
 			wh.setEnabledForBuildState(BuildStateEnum.CHANGES_LOADED, isOverrideEnabled || (whc.isEnabledForBuildType(sBuild.getBuildType()) && wh.getBuildStates().enabled(BuildStateEnum.CHANGES_LOADED)));
 			if (wh.isEnabled()){
-				templateForThisBuild = findTemplateForState(sBuild, state, whc.getPayloadTemplate());
-				wh.setPayload(payloadFormat.changesLoaded(sBuild, getPreviousNonPersonalBuild(wh, sBuild), mergeParameters(whc.getParams(),sBuild, getPreferredDateFormat(templateForThisBuild)), whc.getEnabledTemplates(), templateForThisBuild));
-				wh.setUrl(resolveTemplatedUrl(variableResolverFactory, wh, whc.getUrl(), state, sBuild, payloadFormat, mergeParameters(whc.getParams(),sBuild, getPreferredDateFormat(templateForThisBuild)), whc.getEnabledTemplates()));
-				wh.checkFilters(getVariableResolver(variableResolverFactory, wh, state, sBuild, payloadFormat, mergeParameters(whc.getParams(),sBuild, getPreferredDateFormat(templateForThisBuild)), whc.getEnabledTemplates()));
-				wh.resolveHeaders(getVariableResolver(variableResolverFactory, wh, state, sBuild, payloadFormat, mergeParameters(whc.getParams(),sBuild, getPreferredDateFormat(templateForThisBuild)), whc.getEnabledTemplates()));
+				final WebHookTemplateContent templateForThisBuild = findTemplateForState(sBuild, state, whc.getPayloadTemplate());
+				final Map<String,String> buildParameters = sBuild.getParametersProvider().getAll();
+				final SortedMap<String,String> extraParameters = mergeParameters(whc.getParams(), buildParameters, getPreferredDateFormat(templateForThisBuild));
+				final WebHookPayloadContentContext context = buildContext(variableResolverFactory, payloadFormat, wh, state, sBuild, extraParameters, buildParameters, whc.getEnabledTemplates());
+				resolveContent(wh, whc, context, context, isOverrideEnabled,
+						() -> renderPayload(wh, new WebHookRenderKey(String.valueOf(sBuild.getBuildId()), state, whc.getPayloadTemplate(), sBuild.getBranch() != null, extraParameters, whc.getEnabledTemplates(), null, null),
+							payloadFormat, context, templateForThisBuild,
+							() -> payloadFormat.changesLoaded(sBuild, getPreviousNonPersonalBuild(wh, sBuild), extraParameters, whc.getEnabledTemplates(), templateForThisBuild)));
 			}
 		} else if (state.equals(BuildStateEnum.BUILD_INTERRUPTED)){
 			wh.setEnabledForBuildState(BuildStateEnum.BUILD_INTERRUPTED, isOverrideEnabled || (whc.isEnabledForBuildType(sBuild.getBuildType()) && wh.getBuildStates().enabled(BuildStateEnum.BUILD_INTERRUPTED)));
 			if (wh.isEnabled()){
-				templateForThisBuild = findTemplateForState(sBuild, state, whc.getPayloadTemplate());
-				wh.setPayload(payloadFormat.buildInterrupted(sBuild, getPreviousNonPersonalBuild(wh, sBuild), mergeParameters(whc.getParams(),sBuild, getPreferredDateFormat(templateForThisBuild)), whc.getEnabledTemplates(), templateForThisBuild));
-				wh.setUrl(resolveTemplatedUrl(variableResolverFactory, wh, whc.getUrl(), state, sBuild, payloadFormat, mergeParameters(whc.getParams(),sBuild, getPreferredDateFormat(templateForThisBuild)), whc.getEnabledTemplates()));
-				wh.checkFilters(getVariableResolver(variableResolverFactory, wh, state, sBuild, payloadFormat, mergeParameters(whc.getParams(),sBuild, getPreferredDateFormat(templateForThisBuild)), whc.getEnabledTemplates()));
-				wh.resolveHeaders(getVariableResolver(variableResolverFactory, wh, state, sBuild, payloadFormat, mergeParameters(whc.getParams(),sBuild, getPreferredDateFormat(templateForThisBuild)), whc.getEnabledTemplates()));
+				final WebHookTemplateContent templateForThisBuild = findTemplateForState(sBuild, state, whc.getPayloadTemplate());
+				final Map<String,String> buildParameters = sBuild.getParametersProvider().getAll();
+				final SortedMap<String,String> extraParameters = mergeParameters(whc.getParams(), buildParameters, getPreferredDateFormat(templateForThisBuild));
+				final WebHookPayloadContentContext context = buildContext(variableResolverFactory, payloadFormat, wh, state, sBuild, extraParameters, buildParameters, whc.getEnabledTemplates());
+				resolveContent(wh, whc, context, context, isOverrideEnabled,
+						() -> renderPayload(wh, new WebHookRenderKey(String.valueOf(sBuild.getBuildId()), state, whc.getPayloadTemplate(), sBuild.getBranch() != null, extraParameters, whc.getEnabledTemplates(), null, null),
+							payloadFormat, context, templateForThisBuild,
+							() -> payloadFormat.buildInterrupted(sBuild, getPreviousNonPersonalBuild(wh, sBuild), extraParameters, whc.getEnabledTemplates(), templateForThisBuild)));
 			}
 		} else if (state.equals(BuildStateEnum.BEFORE_BUILD_FINISHED)){
 			wh.setEnabledForBuildState(BuildStateEnum.BEFORE_BUILD_FINISHED, isOverrideEnabled || (whc.isEnabledForBuildType(sBuild.getBuildType()) && wh.getBuildStates().enabled(BuildStateEnum.BEFORE_BUILD_FINISHED)));
 			if (wh.isEnabled()){
-				templateForThisBuild = findTemplateForState(sBuild, state, whc.getPayloadTemplate());
-				wh.setPayload(payloadFormat.beforeBuildFinish(sBuild, getPreviousNonPersonalBuild(wh, sBuild), mergeParameters(whc.getParams(),sBuild, getPreferredDateFormat(templateForThisBuild)), whc.getEnabledTemplates(), templateForThisBuild));
-				wh.setUrl(resolveTemplatedUrl(variableResolverFactory, wh, whc.getUrl(), state, sBuild, payloadFormat, mergeParameters(whc.getParams(),sBuild, getPreferredDateFormat(templateForThisBuild)), whc.getEnabledTemplates()));
-				wh.checkFilters(getVariableResolver(variableResolverFactory, wh, state, sBuild, payloadFormat, mergeParameters(whc.getParams(),sBuild, getPreferredDateFormat(templateForThisBuild)), whc.getEnabledTemplates()));
-				wh.resolveHeaders(getVariableResolver(variableResolverFactory, wh, state, sBuild, payloadFormat, mergeParameters(whc.getParams(),sBuild, getPreferredDateFormat(templateForThisBuild)), whc.getEnabledTemplates()));
+				final WebHookTemplateContent templateForThisBuild = findTemplateForState(sBuild, state, whc.getPayloadTemplate());
+				final Map<String,String> buildParameters = sBuild.getParametersProvider().getAll();
+				final SortedMap<String,String> extraParameters = mergeParameters(whc.getParams(), buildParameters, getPreferredDateFormat(templateForThisBuild));
+				final WebHookPayloadContentContext context = buildContext(variableResolverFactory, payloadFormat, wh, state, sBuild, extraParameters, buildParameters, whc.getEnabledTemplates());
+				resolveContent(wh, whc, context, context, isOverrideEnabled,
+						() -> renderPayload(wh, new WebHookRenderKey(String.valueOf(sBuild.getBuildId()), state, whc.getPayloadTemplate(), sBuild.getBranch() != null, extraParameters, whc.getEnabledTemplates(), null, null),
+							payloadFormat, context, templateForThisBuild,
+							() -> payloadFormat.beforeBuildFinish(sBuild, getPreviousNonPersonalBuild(wh, sBuild), extraParameters, whc.getEnabledTemplates(), templateForThisBuild)));
 			}
 		} else if (state.equals(BuildStateEnum.BUILD_FINISHED) || state.equals(BuildStateEnum.BUILD_SUCCESSFUL) || state.equals(BuildStateEnum.BUILD_FAILED) || state.equals(BuildStateEnum.BUILD_FIXED) || state.equals(BuildStateEnum.BUILD_BROKEN)){
 			wh.setEnabledForBuildState(BuildStateEnum.BUILD_FINISHED, isOverrideEnabled || (whc.isEnabledForBuildType(sBuild.getBuildType()) && wh.getBuildStates().enabled(
@@ -120,29 +140,43 @@ public class WebHookContentBuilder {
 					hasBuildChangedHistoricalState(sBuild, getPreviousNonPersonalBuild(wh, sBuild)))));
 			
 			if (wh.isEnabled()){
-				templateForThisBuild = findTemplateForState(sBuild, BuildState.getEffectiveState(state, sBuild.getStatusDescriptor().isSuccessful(), this.hasBuildChangedHistoricalState(sBuild,getPreviousNonPersonalBuild(wh, sBuild))), whc.getPayloadTemplate());
-				wh.setPayload(payloadFormat.buildFinished(sBuild, getPreviousNonPersonalBuild(wh, sBuild), mergeParameters(whc.getParams(),sBuild, getPreferredDateFormat(templateForThisBuild)), whc.getEnabledTemplates(), templateForThisBuild));
-				wh.setUrl(resolveTemplatedUrl(variableResolverFactory, wh, whc.getUrl(), BuildState.getEffectiveState(state, sBuild.getStatusDescriptor().isSuccessful(), this.hasBuildChangedHistoricalState(sBuild, getPreviousNonPersonalBuild(wh, sBuild))), sBuild, payloadFormat, mergeParameters(whc.getParams(),sBuild, getPreferredDateFormat(templateForThisBuild)), whc.getEnabledTemplates()));
-				wh.checkFilters(getVariableResolver(variableResolverFactory, wh, state, sBuild, payloadFormat, mergeParameters(whc.getParams(),sBuild, getPreferredDateFormat(templateForThisBuild)), whc.getEnabledTemplates()));
-				wh.resolveHeaders(getVariableResolver(variableResolverFactory, wh, state, sBuild, payloadFormat, mergeParameters(whc.getParams(),sBuild, getPreferredDateFormat(templateForThisBuild)), whc.getEnabledTemplates()));
+				final BuildStateEnum effectiveState = BuildState.getEffectiveState(state, sBuild.getStatusDescriptor().isSuccessful(), this.hasBuildChangedHistoricalState(sBuild, getPreviousNonPersonalBuild(wh, sBuild)));
+				final WebHookTemplateContent templateForThisBuild = findTemplateForState(sBuild, effectiveState, whc.getPayloadTemplate());
+				final Map<String,String> buildParameters = sBuild.getParametersProvider().getAll();
+				final SortedMap<String,String> extraParameters = mergeParameters(whc.getParams(), buildParameters, getPreferredDateFormat(templateForThisBuild));
+				final WebHookPayloadContentContext context = buildContext(variableResolverFactory, payloadFormat, wh, state, sBuild, extraParameters, buildParameters, whc.getEnabledTemplates());
+				// The URL is resolved with the effective state (eg, buildFixed), and the payload with buildFinished. 
+				// Both are usually the state the filters and headers are resolved with, so only build them separately when they differ.
+				final WebHookPayloadContentContext urlContext = effectiveState.equals(state) ? context : buildContext(variableResolverFactory, payloadFormat, wh, effectiveState, sBuild, extraParameters, buildParameters, whc.getEnabledTemplates());
+				final WebHookPayloadContentContext payloadContext = BuildStateEnum.BUILD_FINISHED.equals(state) ? context : buildContext(variableResolverFactory, payloadFormat, wh, BuildStateEnum.BUILD_FINISHED, sBuild, extraParameters, buildParameters, whc.getEnabledTemplates());
+				resolveContent(wh, whc, urlContext, context, isOverrideEnabled,
+						() -> renderPayload(wh, new WebHookRenderKey(String.valueOf(sBuild.getBuildId()), state, whc.getPayloadTemplate(), sBuild.getBranch() != null, extraParameters, whc.getEnabledTemplates(), null, null),
+							payloadFormat, payloadContext, templateForThisBuild,
+							() -> payloadFormat.buildFinished(sBuild, getPreviousNonPersonalBuild(wh, sBuild), extraParameters, whc.getEnabledTemplates(), templateForThisBuild)));
 			}
 		} else if (state.equals(BuildStateEnum.BUILD_PINNED)) {
 			wh.setEnabledForBuildState(state, isOverrideEnabled || (whc.isEnabledForBuildType(sBuild.getBuildType()) && wh.getBuildStates().enabled(state)));
 			if (wh.isEnabled()){
-				templateForThisBuild = findTemplateForState(sBuild, state, whc.getPayloadTemplate());
-				wh.setPayload(payloadFormat.buildPinned(sBuild, mergeParameters(whc.getParams(),sBuild, getPreferredDateFormat(templateForThisBuild)), whc.getEnabledTemplates(), templateForThisBuild, username, comment));
-				wh.setUrl(resolveTemplatedUrl(variableResolverFactory, whc.getUrl(), state, sBuild, payloadFormat, mergeParameters(whc.getParams(),sBuild, getPreferredDateFormat(templateForThisBuild)), whc.getEnabledTemplates(), username, comment));
-				wh.checkFilters(getVariableResolver(variableResolverFactory, state, sBuild, payloadFormat, mergeParameters(whc.getParams(),sBuild, getPreferredDateFormat(templateForThisBuild)), whc.getEnabledTemplates(), username, comment));
-				wh.resolveHeaders(getVariableResolver(variableResolverFactory, state, sBuild, payloadFormat, mergeParameters(whc.getParams(),sBuild, getPreferredDateFormat(templateForThisBuild)), whc.getEnabledTemplates(), username, comment));
+				final WebHookTemplateContent templateForThisBuild = findTemplateForState(sBuild, state, whc.getPayloadTemplate());
+				final Map<String,String> buildParameters = sBuild.getParametersProvider().getAll();
+				final SortedMap<String,String> extraParameters = mergeParameters(whc.getParams(), buildParameters, getPreferredDateFormat(templateForThisBuild));
+				final WebHookPayloadContentContext context = buildContext(variableResolverFactory, payloadFormat, state, sBuild, extraParameters, buildParameters, whc.getEnabledTemplates(), username, comment);
+				resolveContent(wh, whc, context, context, isOverrideEnabled,
+						() -> renderPayload(wh, new WebHookRenderKey(String.valueOf(sBuild.getBuildId()), state, whc.getPayloadTemplate(), sBuild.getBranch() != null, extraParameters, whc.getEnabledTemplates(), username, comment),
+							payloadFormat, context, templateForThisBuild,
+							() -> payloadFormat.buildPinned(sBuild, extraParameters, whc.getEnabledTemplates(), templateForThisBuild, username, comment)));
 			}
 		} else if (state.equals(BuildStateEnum.BUILD_UNPINNED)) {
 			wh.setEnabledForBuildState(state, isOverrideEnabled || (whc.isEnabledForBuildType(sBuild.getBuildType()) && wh.getBuildStates().enabled(state)));
 			if (wh.isEnabled()){
-				templateForThisBuild = findTemplateForState(sBuild, state, whc.getPayloadTemplate());
-				wh.setPayload(payloadFormat.buildUnpinned(sBuild, mergeParameters(whc.getParams(),sBuild, getPreferredDateFormat(templateForThisBuild)), whc.getEnabledTemplates(), templateForThisBuild, username, comment));
-				wh.setUrl(resolveTemplatedUrl(variableResolverFactory, whc.getUrl(), state, sBuild, payloadFormat, mergeParameters(whc.getParams(),sBuild, getPreferredDateFormat(templateForThisBuild)), whc.getEnabledTemplates(), username, comment));
-				wh.checkFilters(getVariableResolver(variableResolverFactory, state, sBuild, payloadFormat, mergeParameters(whc.getParams(),sBuild, getPreferredDateFormat(templateForThisBuild)), whc.getEnabledTemplates(), username, comment));
-				wh.resolveHeaders(getVariableResolver(variableResolverFactory, state, sBuild, payloadFormat, mergeParameters(whc.getParams(),sBuild, getPreferredDateFormat(templateForThisBuild)), whc.getEnabledTemplates(), username, comment));
+				final WebHookTemplateContent templateForThisBuild = findTemplateForState(sBuild, state, whc.getPayloadTemplate());
+				final Map<String,String> buildParameters = sBuild.getParametersProvider().getAll();
+				final SortedMap<String,String> extraParameters = mergeParameters(whc.getParams(), buildParameters, getPreferredDateFormat(templateForThisBuild));
+				final WebHookPayloadContentContext context = buildContext(variableResolverFactory, payloadFormat, state, sBuild, extraParameters, buildParameters, whc.getEnabledTemplates(), username, comment);
+				resolveContent(wh, whc, context, context, isOverrideEnabled,
+						() -> renderPayload(wh, new WebHookRenderKey(String.valueOf(sBuild.getBuildId()), state, whc.getPayloadTemplate(), sBuild.getBranch() != null, extraParameters, whc.getEnabledTemplates(), username, comment),
+							payloadFormat, context, templateForThisBuild,
+							() -> payloadFormat.buildUnpinned(sBuild, extraParameters, whc.getEnabledTemplates(), templateForThisBuild, username, comment)));
 			}
 		}
 		return wh;
@@ -152,94 +186,103 @@ public class WebHookContentBuilder {
 			WebHookResponsibilityHolder responsibilityHolder, BuildStateEnum state, boolean isOverrideEnabled) {
 		WebHookPayload payloadFormat = webHookTemplateResolver.getTemplatePayloadFormat(whc.getPayloadTemplate());
 		VariableResolverFactory variableResolverFactory = this.webHookVariableResolverManager.getVariableResolverFactory(payloadFormat.getTemplateEngineType());
-		WebHookTemplateContent templateForThisBuild;
 		wh.setContentType(payloadFormat.getContentType());
 		wh.setCharset(payloadFormat.getCharset());
 		wh.setVariableResolverFactory(variableResolverFactory);
 		
 		wh.setEnabledForBuildState(BuildStateEnum.RESPONSIBILITY_CHANGED, isOverrideEnabled || wh.getBuildStates().enabled(BuildStateEnum.RESPONSIBILITY_CHANGED));
 		if (wh.isEnabled()){
-			templateForThisBuild = findTemplateForState(responsibilityHolder.getSProject(), state, whc.getPayloadTemplate());
-			wh.setPayload(payloadFormat.responsibilityChanged(responsibilityHolder, mergeParameters(whc.getParams(), null, getPreferredDateFormat(templateForThisBuild)), whc.getEnabledTemplates(), templateForThisBuild));
-			wh.setUrl(resolveTemplatedUrl(variableResolverFactory, whc.getUrl(), state, responsibilityHolder, payloadFormat, mergeParameters(whc.getParams(),null, getPreferredDateFormat(templateForThisBuild)), whc.getEnabledTemplates()));
-			wh.checkFilters(getVariableResolver(variableResolverFactory, state, responsibilityHolder, payloadFormat, mergeParameters(whc.getParams(), null, getPreferredDateFormat(templateForThisBuild)), whc.getEnabledTemplates()));
-			wh.resolveHeaders(getVariableResolver(variableResolverFactory, state, responsibilityHolder, payloadFormat, mergeParameters(whc.getParams(), null, getPreferredDateFormat(templateForThisBuild)), whc.getEnabledTemplates()));
+			final WebHookTemplateContent templateForThisBuild = findTemplateForState(responsibilityHolder.getSProject(), state, whc.getPayloadTemplate());
+			final SortedMap<String,String> extraParameters = mergeParameters(whc.getParams(), null, getPreferredDateFormat(templateForThisBuild));
+			final WebHookPayloadContentContext context = buildContext(variableResolverFactory, payloadFormat, state, responsibilityHolder, extraParameters, whc.getEnabledTemplates());
+			resolveContent(wh, whc, context, context, isOverrideEnabled,
+					() -> renderPayload(wh, new WebHookRenderKey(responsibilityHolder.getSProject().getProjectId(), state, whc.getPayloadTemplate(), false, extraParameters, whc.getEnabledTemplates(), null, null),
+						payloadFormat, context, templateForThisBuild,
+						() -> payloadFormat.responsibilityChanged(responsibilityHolder, extraParameters, whc.getEnabledTemplates(), templateForThisBuild)));
 		}
 		return wh;
 	}
 	
-	public static String getPreferredDateFormat(WebHookTemplateContent templateContent){
-		if (templateContent != null){
-			return templateContent.getPreferredDateTimeFormat();
-		}
-		return "";
-	}
-
-	/** SBuild version */
-	public String resolveTemplatedUrl(VariableResolverFactory variableResolverFactory, WebHook wh, String url, BuildStateEnum buildState, SBuild sBuild, WebHookContentObjectSerialiser serialiser, SortedMap<String,String> extraParameters, Map<String,String> templates){
-		if (url.contains(variableResolverFactory.getPayloadTemplateType().getVariablePrefix()) && url.contains(variableResolverFactory.getPayloadTemplateType().getVariableSuffix())){
-			WebHookPayloadContent content = new WebHookPayloadContent(variableResolverFactory, server, sBuild, getPreviousNonPersonalBuild(wh, sBuild), buildState, extraParameters, sBuild.getParametersProvider().getAll(), templates);
-			VariableResolver variableResolver = variableResolverFactory.buildVariableResolver(serialiser,content, content.getAllParameters());
-			VariableMessageBuilder builder = variableResolverFactory.createVariableMessageBuilder(url, variableResolver);
-			return builder.build();
-		} else {
-			return url;
+	/**
+	 * Resolves the URL, and then checks the filters. The headers and payload are only
+	 * resolved if the filters match, as a webhook which won't be sent does not need them.
+	 * Webhooks which have been explicitly requested (eg, a test from the UI) are always rendered.
+	 * <p>
+	 * A URL and filters which only refer to build and project properties are resolved from
+	 * the context's {@link WebHookFilterContent}, so the full content is not built for a
+	 * webhook which is filtered out.
+	 */
+	private void resolveContent(WebHook wh, WebHookConfig whc, WebHookPayloadContentContext urlContext, 
+			WebHookPayloadContentContext context, boolean isOverrideEnabled, Supplier<String> payloadRenderer) {
+		wh.setUrl(urlContext.resolve(whc.getUrl()));
+		if (wh.checkFilters(context.getVariableResolver(getEnabledFilterValues(whc))) || isOverrideEnabled) {
+			wh.resolveHeaders(context.getVariableResolver());
+			wh.setPayload(payloadRenderer.get());
 		}
 	}
 	
-	/** SBuild version with user and comment*/
-	public String resolveTemplatedUrl(VariableResolverFactory variableResolverFactory, String url, BuildStateEnum buildState, SBuild sBuild, WebHookContentObjectSerialiser serialiser, SortedMap<String,String> extraParameters, Map<String,String> templates, String user, String comment){
-		if (url.contains(variableResolverFactory.getPayloadTemplateType().getVariablePrefix()) && url.contains(variableResolverFactory.getPayloadTemplateType().getVariableSuffix())){
-			WebHookPayloadContent content = new WebHookPayloadContent(variableResolverFactory, server, sBuild, buildState, extraParameters, sBuild.getParametersProvider().getAll(), templates, user, comment);
-			VariableResolver variableResolver = variableResolverFactory.buildVariableResolver(serialiser,content, content.getAllParameters());
-			VariableMessageBuilder builder = variableResolverFactory.createVariableMessageBuilder(url, variableResolver);
-			return builder.build();
-		} else {
-			return url;
+	private static List<String> getEnabledFilterValues(WebHookConfig whc) {
+		List<String> filterValues = new ArrayList<>();
+		if (whc.getTriggerFilters() != null) {
+			for (WebHookFilterConfig filter : whc.getTriggerFilters()) {
+				if (filter.isEnabled()) {
+					filterValues.add(filter.getValue());
+				}
+			}
 		}
+		return filterValues;
 	}
 	
-	/** SQueuedBuild version */
-	public String resolveTemplatedUrl(VariableResolverFactory variableResolverFactory, String url, BuildStateEnum buildState, SQueuedBuild sQueuedBuild, WebHookContentObjectSerialiser serialiser, SortedMap<String,String> extraParameters, Map<String,String> templates, String user, String comment){
-		if (url.contains(variableResolverFactory.getPayloadTemplateType().getVariablePrefix()) && url.contains(variableResolverFactory.getPayloadTemplateType().getVariableSuffix())){
-			WebHookPayloadContent content = new WebHookPayloadContent(variableResolverFactory, server, sQueuedBuild, buildState, extraParameters, templates, user, comment);
-			VariableResolver variableResolver = variableResolverFactory.buildVariableResolver(serialiser,content, content.getAllParameters());
-			VariableMessageBuilder builder = variableResolverFactory.createVariableMessageBuilder(url, variableResolver);
-			return builder.build();
-		} else {
-			return url;
+	/**
+	 * Renders the payload, or takes it from the event's render cache if another
+	 * webhook has already rendered it from the same inputs.
+	 * Formats which render a {@link WebHookPayloadContent} are given the content
+	 * already built for this webhook, rather than building it again.
+	 */
+	private String renderPayload(WebHook wh, WebHookRenderKey key, WebHookPayload payloadFormat, 
+			WebHookPayloadContentContext context, WebHookTemplateContent templateForThisBuild, Supplier<String> renderer) {
+		Supplier<String> payloadRenderer = renderer;
+		if (payloadFormat instanceof WebHookPayloadContentRenderer) {
+			payloadRenderer = () -> ((WebHookPayloadContentRenderer)payloadFormat).render(context.getContent(), templateForThisBuild);
 		}
-	}
-	/** ResponsibleChanged version */
-	public String resolveTemplatedUrl(VariableResolverFactory variableResolverFactory, String url, BuildStateEnum buildState, WebHookResponsibilityHolder responsibilityHolder, WebHookContentObjectSerialiser serialiser, SortedMap<String,String> extraParameters, Map<String,String> templates){
-		if (url.contains(variableResolverFactory.getPayloadTemplateType().getVariablePrefix()) && url.contains(variableResolverFactory.getPayloadTemplateType().getVariableSuffix())){
-			WebHookPayloadContent content = new WebHookPayloadContent(variableResolverFactory, server, responsibilityHolder, buildState, extraParameters, templates);
-			VariableResolver variableResolver = variableResolverFactory.buildVariableResolver(serialiser,content, content.getAllParameters());
-			VariableMessageBuilder builder = variableResolverFactory.createVariableMessageBuilder(url, variableResolver);
-			return builder.build();
-		} else {
-			return url;
+		WebHookRenderCache renderCache = wh.getRenderCache();
+		if (renderCache == null) {
+			return payloadRenderer.get();
 		}
+		return renderCache.getPayload(key, payloadRenderer);
 	}
 	
-	public VariableResolver getVariableResolver(VariableResolverFactory variableResolverFactory, WebHook wh, BuildStateEnum buildState, SBuild runningBuild, WebHookContentObjectSerialiser serialiser, SortedMap<String,String> extraParameters, Map<String,String> templates){
-		WebHookPayloadContent content = new WebHookPayloadContent(variableResolverFactory, server, runningBuild, getPreviousNonPersonalBuild(wh, runningBuild), buildState, extraParameters, runningBuild.getParametersProvider().getAll(), templates);
-		return variableResolverFactory.buildVariableResolver(serialiser, content, content.getAllParameters());
+	public static String getPreferredDateFormat(WebHookTemplateContent templateContent){
+		if (templateContent != null){
+			return templateContent.getPreferredDateTimeFormat();
+		}
+		return "";
+	}
+
+	/** SBuild version */
+	private WebHookPayloadContentContext buildContext(VariableResolverFactory variableResolverFactory, WebHookContentObjectSerialiser serialiser, WebHook wh, BuildStateEnum buildState, SBuild sBuild, SortedMap<String,String> extraParameters, Map<String,String> buildParameters, Map<String,String> templates){
+		return new WebHookPayloadContentContext(variableResolverFactory, serialiser, 
+				() -> new WebHookPayloadContent(variableResolverFactory, server, sBuild, getPreviousNonPersonalBuild(wh, sBuild), buildState, extraParameters, buildParameters, templates),
+				() -> new WebHookFilterContent(sBuild, buildState, extraParameters, buildParameters));
 	}
 	
-	public VariableResolver getVariableResolver(VariableResolverFactory variableResolverFactory, BuildStateEnum buildState, SBuild runningBuild, WebHookContentObjectSerialiser serialiser, SortedMap<String,String> extraParameters, Map<String,String> templates, String user, String comment){
-		WebHookPayloadContent content = new WebHookPayloadContent(variableResolverFactory, server, runningBuild, buildState, extraParameters, runningBuild.getParametersProvider().getAll(), templates, user, comment);
-		return variableResolverFactory.buildVariableResolver(serialiser, content, content.getAllParameters());
+	/** SBuild version with user and comment*/
+	private WebHookPayloadContentContext buildContext(VariableResolverFactory variableResolverFactory, WebHookContentObjectSerialiser serialiser, BuildStateEnum buildState, SBuild sBuild, SortedMap<String,String> extraParameters, Map<String,String> buildParameters, Map<String,String> templates, String user, String comment){
+		return new WebHookPayloadContentContext(variableResolverFactory, serialiser, 
+				() -> new WebHookPayloadContent(variableResolverFactory, server, sBuild, buildState, extraParameters, buildParameters, templates, user, comment),
+				() -> new WebHookFilterContent(sBuild, buildState, extraParameters, buildParameters));
 	}
 	
-	public VariableResolver getVariableResolver(VariableResolverFactory variableResolverFactory, BuildStateEnum buildState, SQueuedBuild queuedBuild, WebHookContentObjectSerialiser serialiser, SortedMap<String,String> extraParameters, Map<String,String> templates, String user, String comment){
-		WebHookPayloadContent content = new WebHookPayloadContent(variableResolverFactory,  server,  queuedBuild,  buildState, extraParameters, templates, user, comment);
-		return variableResolverFactory.buildVariableResolver(serialiser, content, content.getAllParameters());
+	/** SQueuedBuild version */
+	private WebHookPayloadContentContext buildContext(VariableResolverFactory variableResolverFactory, WebHookContentObjectSerialiser serialiser, BuildStateEnum buildState, SQueuedBuild sQueuedBuild, SortedMap<String,String> extraParameters, Map<String,String> templates, String user, String comment){
+		return new WebHookPayloadContentContext(variableResolverFactory, serialiser, 
+				() -> new WebHookPayloadContent(variableResolverFactory, server, sQueuedBuild, buildState, extraParameters, templates, user, comment));
 	}
 	
-	public VariableResolver getVariableResolver(VariableResolverFactory variableResolverFactory, BuildStateEnum buildState, WebHookResponsibilityHolder responsibilityHolder, WebHookContentObjectSerialiser serialiser, SortedMap<String,String> extraParameters, Map<String,String> templates){
-		WebHookPayloadContent content = new WebHookPayloadContent(variableResolverFactory,  server, responsibilityHolder,  buildState, extraParameters,  templates);
-		return variableResolverFactory.buildVariableResolver(serialiser, content, content.getAllParameters());
+	/** ResponsibleChanged version */
+	private WebHookPayloadContentContext buildContext(VariableResolverFactory variableResolverFactory, WebHookContentObjectSerialiser serialiser, BuildStateEnum buildState, WebHookResponsibilityHolder responsibilityHolder, SortedMap<String,String> extraParameters, Map<String,String> templates){
+		return new WebHookPayloadContentContext(variableResolverFactory, serialiser, 
+				() -> new WebHookPayloadContent(variableResolverFactory, server, responsibilityHolder, buildState, extraParameters, templates));
 	}
 	
 	public WebHookTemplateContent findTemplateForState(
@@ -272,7 +315,7 @@ public class WebHookContentBuilder {
 		return webHookTemplateResolver.findWebHookTemplate(state, sProject, payloadtemplateName);
 	}
 	
-	public static SortedMap<String,String> mergeParameters(SortedMap<String,String> parametersFromConfig, ParametersSupport build, String preferredDateFormat){
+	public static SortedMap<String,String> mergeParameters(SortedMap<String,String> parametersFromConfig, Map<String,String> buildParameters, String preferredDateFormat){
 		SortedMap<String, String> newMap = new TreeMap<>();
 		
 		// First add the preferredDateFormat from the template. This can then be overriden 
@@ -285,9 +328,8 @@ public class WebHookContentBuilder {
 		newMap.putAll(parametersFromConfig);
 
 		// Then override any from ones declared in the actual build via webhook.*
-		if (build != null) {
-			Map<String,String> teamCityProperties = build.getParametersProvider().getAll(); 
-			for (Entry<String,String> tcProperty : teamCityProperties.entrySet()){
+		if (buildParameters != null) {
+			for (Entry<String,String> tcProperty : buildParameters.entrySet()){
 				if (tcProperty.getKey().startsWith("webhook.")){
 					newMap.put(tcProperty.getKey().substring("webhook.".length()), tcProperty.getValue());
 				}
@@ -10,6 +10,8 @@ public class WebHookExecutionException extends RuntimeException {
 	public static final int    WEBHOOK_DISABLED_BY_FILTER_INFO_CODE = 702;
 	
 	public static final int    WEBHOOK_EXECUTION_ERROR_CODE = 801;
+	public static final int    WEBHOOK_EXECUTOR_QUEUE_FULL_ERROR_CODE = 802;
+	public static final int    WEBHOOK_CIRCUIT_OPEN_ERROR_CODE = 803;
 	
 	public static final int    WEBHOOK_CONTENT_RESOLUTION_ERROR_CODE = 900;
 	public static final int    TEMPLATE_NOT_FOUND_ERROR_CODE = 901;
@@ -61,6 +61,7 @@ public class WebHookFactoryImpl implements WebHookFactory {
 		webHook.setProxy(myMainSettings.getProxyConfigForUrl(webHookConfig.getUrl()));
 		webHook.setConnectionTimeOut(myMainSettings.getHttpConnectionTimeout());
 		webHook.setResponseTimeOut(myMainSettings.getHttpResponseTimeout());
+		webHook.setConnectionRequestTimeOut(myMainSettings.getHttpConnectionPoolLeaseTimeout());
 
 		return webHook;
 	}
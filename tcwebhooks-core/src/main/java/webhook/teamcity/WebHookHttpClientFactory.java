@@ -1,7 +1,21 @@
 package webhook.teamcity;
 
 import org.apache.http.client.HttpClient;
+import org.apache.http.nio.client.HttpAsyncClient;
+import org.apache.http.pool.PoolStats;
 
 public interface WebHookHttpClientFactory {
 	public abstract HttpClient getHttpClient();
-}
\ No newline at end of file
+	
+	/**
+	 * Returns a started, shared non-blocking client for use by the async executor.
+	 * @return HttpAsyncClient which is already started.
+	 */
+	public abstract HttpAsyncClient getAsyncHttpClient();
+	
+	/**
+	 * Returns the current connection pool statistics for the shared client.
+	 * @return PoolStats containing leased, pending, available and max connections.
+	 */
+	public abstract PoolStats getPoolStats();
+}
@@ -1,13 +1,216 @@
 package webhook.teamcity;
 
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.http.HttpResponse;
 import org.apache.http.client.HttpClient;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.conn.ConnectionKeepAliveStrategy;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
 import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
+import org.apache.http.impl.nio.client.HttpAsyncClients;
+import org.apache.http.impl.nio.conn.PoolingNHttpClientConnectionManager;
+import org.apache.http.impl.nio.reactor.DefaultConnectingIOReactor;
+import org.apache.http.nio.client.HttpAsyncClient;
+import org.apache.http.nio.reactor.IOReactorException;
+import org.apache.http.pool.ConnPoolControl;
+import org.apache.http.pool.PoolStats;
+import org.apache.http.protocol.HttpContext;
+
+import webhook.teamcity.settings.WebHookMainConfig;
+import webhook.teamcity.settings.WebHookMainSettings;
 
+/**
+ * Provides a single long lived {@link HttpClient} backed by a {@link PoolingHttpClientConnectionManager}.
+ * The client is shared by every WebHook, so that connections (and their TLS sessions) 
+ * to the same host are re-used between requests rather than being re-established for every webhook.
+ * <p>
+ * The non-blocking client has its own pool, with the same limits. Its idle and expired
+ * connections are closed by a plugin owned thread, as the client does not evict them itself.
+ * <p>
+ * Requests wait no longer than the lease-timeout for a pooled connection, so that a 
+ * host which holds on to every connection in its route can't block its callers forever.
+ * Webhooks set the same timeout on their own request config.
+ * <p>
+ * Cookie management is disabled, otherwise a cookie set by an endpoint for one webhook
+ * would be sent with the requests of every other webhook to the same host.
+ */
 public class WebHookHttpClientFactoryImpl implements WebHookHttpClientFactory {
 	
+	private static final String CLASS_NAME = "WebHookHttpClientFactoryImpl :: ";
+	private static final WebHookMainConfig DEFAULT_CONFIG = new WebHookMainConfig();
+	
+	private final WebHookMainSettings myMainSettings;
+	private PoolingHttpClientConnectionManager connectionManager;
+	private CloseableHttpClient httpClient;
+	private PoolingNHttpClientConnectionManager asyncConnectionManager;
+	private CloseableHttpAsyncClient asyncHttpClient;
+	private ScheduledExecutorService asyncConnectionEvictor;
+	
+	public WebHookHttpClientFactoryImpl() {
+		this(null);
+	}
+	
+	public WebHookHttpClientFactoryImpl(WebHookMainSettings mainSettings) {
+		this.myMainSettings = mainSettings;
+	}
+	
 	@Override
-	public HttpClient getHttpClient(){
-		return HttpClients.createDefault();
+	public synchronized HttpClient getHttpClient(){
+		if (this.httpClient == null) {
+			WebHookMainConfig config = getMainConfig();
+			this.connectionManager = new PoolingHttpClientConnectionManager();
+			this.httpClient = HttpClients.custom()
+					.setConnectionManager(this.connectionManager)
+					.setKeepAliveStrategy(new ConfigurableKeepAliveStrategy())
+					.setDefaultRequestConfig(buildDefaultRequestConfig(config))
+					.disableCookieManagement()
+					.evictExpiredConnections()
+					.evictIdleConnections(config.getHttpConnectionPoolIdleTimeout(), TimeUnit.SECONDS)
+					.build();
+			Loggers.SERVER.info(CLASS_NAME + "Created shared HTTP client with pooled connection manager");
+		}
+		applyPoolLimits(this.connectionManager, getMainConfig());
+		return this.httpClient;
+	}
+	
+	@Override
+	public synchronized HttpAsyncClient getAsyncHttpClient() {
+		if (this.asyncHttpClient == null) {
+			try {
+				this.asyncConnectionManager = new PoolingNHttpClientConnectionManager(new DefaultConnectingIOReactor());
+			} catch (IOReactorException ex) {
+				Loggers.SERVER.warn(CLASS_NAME + "Unable to create connection manager for non-blocking HTTP client: " + ex.getMessage());
+				throw new IllegalStateException("Unable to create connection manager for non-blocking HTTP client", ex);
+			}
+			this.asyncHttpClient = HttpAsyncClients.custom()
+					.setConnectionManager(this.asyncConnectionManager)
+					.setKeepAliveStrategy(new ConfigurableKeepAliveStrategy())
+					.setDefaultRequestConfig(buildDefaultRequestConfig(getMainConfig()))
+					.disableCookieManagement()
+					.build();
+			this.asyncHttpClient.start();
+			startAsyncConnectionEvictor(getMainConfig().getHttpConnectionPoolIdleTimeout());
+			Loggers.SERVER.info(CLASS_NAME + "Started shared non-blocking HTTP client with pooled connection manager");
+		}
+		applyPoolLimits(this.asyncConnectionManager, getMainConfig());
+		return this.asyncHttpClient;
+	}
+	
+	@Override
+	public synchronized PoolStats getPoolStats() {
+		if (this.connectionManager == null) {
+			return new PoolStats(0, 0, 0, getMainConfig().getHttpConnectionPoolMaxTotal());
+		}
+		return this.connectionManager.getTotalStats();
+	}
+	
+	synchronized PoolStats getAsyncPoolStats() {
+		if (this.asyncConnectionManager == null) {
+			return new PoolStats(0, 0, 0, getMainConfig().getHttpConnectionPoolMaxTotal());
+		}
+		return this.asyncConnectionManager.getTotalStats();
+	}
+	
+	/**
+	 * Closes the shared clients and all pooled connections.
+	 * Called by Spring when the plugin is unloaded.
+	 */
+	public synchronized void shutdown() {
+		if (this.asyncConnectionEvictor != null) {
+			this.asyncConnectionEvictor.shutdownNow();
+			this.asyncConnectionEvictor = null;
+		}
+		if (this.httpClient != null) {
+			try {
+				this.httpClient.close();
+			} catch (Exception ex) {
+				Loggers.SERVER.warn(CLASS_NAME + "Unable to close shared HTTP client: " + ex.getMessage());
+				Loggers.SERVER.debug(ex);
+			}
+			this.httpClient = null;
+			this.connectionManager = null;
+		}
+		if (this.asyncHttpClient != null) {
+			try {
+				this.asyncHttpClient.close();
+			} catch (Exception ex) {
+				Loggers.SERVER.warn(CLASS_NAME + "Unable to close shared non-blocking HTTP client: " + ex.getMessage());
+				Loggers.SERVER.debug(ex);
+			}
+			this.asyncHttpClient = null;
+			this.asyncConnectionManager = null;
+		}
+	}
+	
+	/**
+	 * Closes the non-blocking client's expired connections, and those which have been 
+	 * idle for longer than the idle timeout, as often as the idle timeout.
+	 */
+	private void startAsyncConnectionEvictor(int idleTimeoutSeconds) {
+		final PoolingNHttpClientConnectionManager manager = this.asyncConnectionManager;
+		this.asyncConnectionEvictor = Executors.newSingleThreadScheduledExecutor(r -> {
+			Thread thread = new Thread(r, "tcWebHooks-async-connection-evictor");
+			thread.setDaemon(true);
+			return thread;
+		});
+		long period = Math.max(1, idleTimeoutSeconds);
+		this.asyncConnectionEvictor.scheduleWithFixedDelay(() -> {
+			manager.closeExpiredConnections();
+			manager.closeIdleConnections(getMainConfig().getHttpConnectionPoolIdleTimeout(), TimeUnit.SECONDS);
+		}, period, period, TimeUnit.SECONDS);
+	}
+	
+	/**
+	 * The pool limits can be changed at runtime, so re-apply them in case 
+	 * the main-config has been re-read since the pool was created.
+	 */
+	private static void applyPoolLimits(ConnPoolControl<HttpRoute> pool, WebHookMainConfig config) {
+		int maxTotal = config.getHttpConnectionPoolMaxTotal();
+		int maxPerRoute = config.getHttpConnectionPoolMaxPerRoute();
+		if (pool.getMaxTotal() != maxTotal) {
+			pool.setMaxTotal(maxTotal);
+		}
+		if (pool.getDefaultMaxPerRoute() != maxPerRoute) {
+			pool.setDefaultMaxPerRoute(maxPerRoute);
+		}
+	}
+	
+	private static RequestConfig buildDefaultRequestConfig(WebHookMainConfig config) {
+		return RequestConfig.custom()
+				.setConnectionRequestTimeout(config.getHttpConnectionPoolLeaseTimeout() * 1000)
+				.build();
+	}
+	
+	private WebHookMainConfig getMainConfig() {
+		if (this.myMainSettings != null && this.myMainSettings.getWebHookMainConfig() != null) {
+			return this.myMainSettings.getWebHookMainConfig();
+		}
+		return DEFAULT_CONFIG;
+	}
+	
+	/**
+	 * Honours the Keep-Alive header sent by the server, but never keeps 
+	 * a connection alive for longer than the configured keep-alive time.
+	 */
+	private class ConfigurableKeepAliveStrategy implements ConnectionKeepAliveStrategy {
+
+		@Override
+		public long getKeepAliveDuration(HttpResponse response, HttpContext context) {
+			long maxKeepAlive = getMainConfig().getHttpConnectionPoolKeepAlive() * 1000L;
+			long serverKeepAlive = DefaultConnectionKeepAliveStrategy.INSTANCE.getKeepAliveDuration(response, context);
+			if (serverKeepAlive > 0 && serverKeepAlive < maxKeepAlive) {
+				return serverKeepAlive;
+			}
+			return maxKeepAlive;
+		}
+		
 	}
 
 }
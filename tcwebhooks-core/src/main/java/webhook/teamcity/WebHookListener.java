@@ -26,11 +26,12 @@ import webhook.teamcity.executor.WebHookExecutor;
 import webhook.teamcity.executor.WebHookResponsibilityHolder;
 import webhook.teamcity.history.WebHookHistoryItemFactory;
 import webhook.teamcity.history.WebHookHistoryRepository;
+import webhook.teamcity.payload.WebHookRenderCache;
 import webhook.teamcity.payload.WebHookTemplateManager;
 import webhook.teamcity.payload.WebHookTemplateResolver;
 import webhook.teamcity.settings.WebHookConfig;
+import webhook.teamcity.settings.WebHookDispatchIndex;
 import webhook.teamcity.settings.WebHookMainSettings;
-import webhook.teamcity.settings.WebHookProjectSettings;
 import webhook.teamcity.settings.WebHookSettingsManager;
 
 
@@ -50,6 +51,7 @@ public class WebHookListener extends BuildServerAdapter {
     private final WebHookTemplateManager myManager;
     private final WebHookFactory webHookFactory;
     private final WebHookExecutor webHookExecutor;
+    private final WebHookDispatchIndex dispatchIndex;
     
     
     public WebHookListener(SBuildServer sBuildServer, WebHookSettingsManager settings, 
@@ -65,6 +67,7 @@ public class WebHookListener extends BuildServerAdapter {
         myManager = manager;
         webHookFactory = factory;
         webHookExecutor = executor;
+        dispatchIndex = new WebHookDispatchIndex(settings);
         
         Loggers.SERVER.info(WEB_HOOK_LISTENER + "Starting");
     }
@@ -77,16 +80,20 @@ public class WebHookListener extends BuildServerAdapter {
 	private void processBuildEvent(SBuild sBuild, BuildStateEnum state) {
 			
 		Loggers.SERVER.debug(ABOUT_TO_PROCESS_WEB_HOOKS_FOR + sBuild.getProjectId() + AT_BUILD_STATE + state.getShortName());
+		WebHookRenderCache renderCache = new WebHookRenderCache();
 		for (WebHookConfig whc : getListOfEnabledWebHooks(sBuild.getProjectId())){
 			WebHook wh = webHookFactory.getWebHook(whc, myMainSettings.getProxyConfigForUrl(whc.getUrl()));
+			wh.setRenderCache(renderCache);
 			webHookExecutor.execute(wh, whc, sBuild, state, null, null, false);
     	}
 	}
 	private void processQueueEvent(SQueuedBuild sBuild, BuildStateEnum state, String user, String comment) {
 		
 		Loggers.SERVER.debug(ABOUT_TO_PROCESS_WEB_HOOKS_FOR + sBuild.getBuildType().getProjectId() + AT_BUILD_STATE + state.getShortName());
+		WebHookRenderCache renderCache = new WebHookRenderCache();
 		for (WebHookConfig whc : getListOfEnabledWebHooks(sBuild.getBuildType().getProjectId())){
 			WebHook wh = webHookFactory.getWebHook(whc, myMainSettings.getProxyConfigForUrl(whc.getUrl()));
+			wh.setRenderCache(renderCache);
 			webHookExecutor.execute(wh, whc, sBuild, state, user, comment, false);
 		}
 	}
@@ -94,8 +101,10 @@ public class WebHookListener extends BuildServerAdapter {
 	private void processResponsibilityEvent(BuildStateEnum state, WebHookResponsibilityHolder responsibilityHolder) {
 		
 		Loggers.SERVER.debug(ABOUT_TO_PROCESS_WEB_HOOKS_FOR + responsibilityHolder.getSProject().getProjectId() + AT_BUILD_STATE + state.getShortName());
+		WebHookRenderCache renderCache = new WebHookRenderCache();
 		for (WebHookConfig whc : getListOfEnabledWebHooks(responsibilityHolder.getSProject().getProjectId())){
 			WebHook wh = webHookFactory.getWebHook(whc, myMainSettings.getProxyConfigForUrl(whc.getUrl()));
+			wh.setRenderCache(renderCache);
 			webHookExecutor.execute(wh, whc, state, responsibilityHolder, false);
 		}
 	}
@@ -103,8 +112,10 @@ public class WebHookListener extends BuildServerAdapter {
 	private void processPinEvent(SBuild sBuild, BuildStateEnum state, String user, String comment) {
 		
 		Loggers.SERVER.debug(ABOUT_TO_PROCESS_WEB_HOOKS_FOR + sBuild.getBuildType().getProjectId() + AT_BUILD_STATE + state.getShortName());
+		WebHookRenderCache renderCache = new WebHookRenderCache();
 		for (WebHookConfig whc : getListOfEnabledWebHooks(sBuild.getBuildType().getProjectId())){
 			WebHook wh = webHookFactory.getWebHook(whc, myMainSettings.getProxyConfigForUrl(whc.getUrl()));
+			wh.setRenderCache(renderCache);
 			webHookExecutor.execute(wh, whc, sBuild, state, user, comment, false);
 		}
 	}
@@ -116,38 +127,13 @@ public class WebHookListener extends BuildServerAdapter {
 	 */
 	private List<WebHookConfig> getListOfEnabledWebHooks(String projectId) {
 		List<WebHookConfig> configs = new ArrayList<>();
-		List<SProject> projects = new ArrayList<>();
 		SProject myProject = myBuildServer.getProjectManager().findProjectById(projectId);
-		projects.addAll(myProject.getProjectPath());
-		for (SProject project : projects){
-			WebHookProjectSettings projSettings = mySettings.getSettings(project.getProjectId());
-	    	if (projSettings.isEnabled()){
-		    	for (WebHookConfig whc : projSettings.getWebHooksConfigs()){
-		    		if ( !whc.isEnabledForSubProjects() && !myProject.getProjectId().equals(project.getProjectId())){
-		    			// Sub-projects are disabled and we are a subproject.
-		    			if (Loggers.ACTIVITIES.isDebugEnabled()){
-			    			Loggers.ACTIVITIES.debug(this.getClass().getSimpleName() + ":getListOfEnabledWebHooks() "
-			    					+ ":: subprojects not enabled. myProject is: " + myProject.getProjectId() + ". webhook project is: " + project.getProjectId());
-		    			}
-		    			continue;
-		    		}
-		    		
-		    		if (whc.getEnabled()){
-						if (myManager.isRegisteredTemplate(whc.getPayloadTemplate())){
-							whc.setProjectExternalId(project.getExternalId());
-							whc.setProjectInternalId(project.getProjectId());
-							configs.add(whc);
-						} else {
-							Loggers.ACTIVITIES.warn("WebHookListener :: No registered Template: " + whc.getPayloadTemplate());
-						}
-		    		} else {
-		    			Loggers.ACTIVITIES.debug(this.getClass().getSimpleName() 
-		    					+ ":processBuildEvent() :: WebHook disabled. Will not process " + whc.getUrl() + " (" + whc.getPayloadTemplate() + ")");
-		    		}
-				}
-	    	} else {
-	    		Loggers.ACTIVITIES.debug("WebHookListener :: WebHooks are disasbled for  " + projectId);
-	    	}
+		for (WebHookConfig whc : dispatchIndex.getEnabledWebHooks(myProject)){
+			if (myManager.isRegisteredTemplate(whc.getPayloadTemplate())){
+				configs.add(whc);
+			} else {
+				Loggers.ACTIVITIES.warn("WebHookListener :: No registered Template: " + whc.getPayloadTemplate());
+			}
 		}
     	return configs;
 	}
@@ -327,6 +313,11 @@ public class WebHookListener extends BuildServerAdapter {
 				comment);
 	}
 	
+	@Override
+	public void projectRemoved(@NotNull String projectId) {
+		dispatchIndex.remove(projectId);
+	}
+	
 	@Override
 	public void serverStartup() {
 		mySettings.initialise();
@@ -0,0 +1,55 @@
+package webhook.teamcity.circuitbreaker;
+
+import java.util.List;
+
+import webhook.teamcity.WebHookCircuitOpenException;
+
+/**
+ * Holds a circuit breaker for each endpoint that webhooks are sent to.
+ * Endpoints are identified by the hash of their {@link webhook.teamcity.history.GeneralisedWebAddress},
+ * so all webhooks sent to the same host share a breaker.
+ */
+public interface WebHookCircuitBreakerRegistry {
+
+	/** Returned when breakers are disabled. Outcomes recorded with it are ignored. */
+	public static final long NO_PERMIT = 0L;
+
+	/**
+	 * Checks whether a request may be sent to the URL. Every call which returns normally
+	 * must be followed by a call to {@link #recordOutcome(String, long, Exception, long)}.
+	 * @param url The webhook URL.
+	 * @return The permit for this request, which must be passed to recordOutcome.
+	 * @throws WebHookCircuitOpenException if the breaker for the URL's endpoint is open.
+	 */
+	public long acquirePermission(String url) throws WebHookCircuitOpenException;
+
+	/**
+	 * Records the result of a request, which may open or close the endpoint's breaker.
+	 * Results of requests which were permitted before the breaker last changed state 
+	 * are ignored, so only the trial request can decide a half-open breaker.
+	 * @param url The webhook URL.
+	 * @param permit The permit returned by {@link #acquirePermission(String)} for the request.
+	 * @param failure The exception thrown by the request, or null if it succeeded.
+	 * @param durationMillis How long the request took.
+	 */
+	public void recordOutcome(String url, long permit, Exception failure, long durationMillis);
+
+	/**
+	 * @return The state of every endpoint's breaker.
+	 */
+	public List<WebHookCircuitBreakerStatus> getStatuses();
+
+	/**
+	 * @param hash The hashed generalised address of the endpoint.
+	 * @return The state of the endpoint's breaker, or null if nothing has been sent to it.
+	 */
+	public WebHookCircuitBreakerStatus getStatus(String hash);
+
+	/**
+	 * Closes an endpoint's breaker and clears its recorded outcomes.
+	 * @param hash The hashed generalised address of the endpoint.
+	 * @return The state of the breaker after it was reset, or null if nothing has been sent to the endpoint.
+	 */
+	public WebHookCircuitBreakerStatus reset(String hash);
+
+}
@@ -0,0 +1,288 @@
+package webhook.teamcity.circuitbreaker;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.http.HttpStatus;
+
+import webhook.teamcity.Loggers;
+import webhook.teamcity.WebHookCircuitOpenException;
+import webhook.teamcity.WebHookHttpExecutionException;
+import webhook.teamcity.WebHookHttpResponseException;
+import webhook.teamcity.history.GeneralisedWebAddress;
+import webhook.teamcity.history.WebAddressTransformer;
+import webhook.teamcity.settings.WebHookMainConfig;
+import webhook.teamcity.settings.WebHookMainSettings;
+
+/**
+ * Keeps a circuit breaker for each generalised host.
+ * <p>
+ * Each breaker holds the outcomes of the most recent requests in a rolling window.
+ * A request counts as failed if the endpoint could not be reached, or it returned
+ * a 5xx or 429 response. A request counts as slow if it took longer than
+ * <code>slow-call-duration</code>. Once the window holds at least <code>minimum-calls</code>
+ * outcomes, and either rate reaches its threshold, the breaker opens.
+ * <p>
+ * While open, no requests are sent to the endpoint. After <code>open-duration</code>
+ * the breaker becomes half-open and lets a single trial request through. The breaker
+ * closes if the trial succeeds, and opens again if it does not.
+ * <p>
+ * Each permit carries the breaker's generation, which changes whenever the breaker 
+ * changes state or hands out a trial. Outcomes with a permit from an earlier generation 
+ * (eg, a request which was already in flight when the breaker opened) are ignored.
+ */
+public class WebHookCircuitBreakerRegistryImpl implements WebHookCircuitBreakerRegistry {
+
+	private static final String CLASS_NAME = "WebHookCircuitBreakerRegistryImpl :: ";
+	private static final WebHookMainConfig DEFAULT_CONFIG = new WebHookMainConfig();
+	private static final long MILLIS_PER_SECOND = 1000L;
+	private static final int TOO_MANY_REQUESTS = 429;
+
+	private final WebHookMainSettings myMainSettings;
+	private final WebAddressTransformer myWebAddressTransformer;
+	private final ConcurrentMap<String, CircuitBreaker> breakers = new ConcurrentHashMap<>();
+
+	public WebHookCircuitBreakerRegistryImpl(WebHookMainSettings mainSettings, WebAddressTransformer webAddressTransformer) {
+		this.myMainSettings = mainSettings;
+		this.myWebAddressTransformer = webAddressTransformer;
+	}
+
+	@Override
+	public long acquirePermission(String url) throws WebHookCircuitOpenException {
+		WebHookMainConfig config = getMainConfig();
+		if (!config.isCircuitBreakerEnabled()) {
+			return NO_PERMIT;
+		}
+		CircuitBreaker breaker = getBreaker(url);
+		if (breaker != null) {
+			return breaker.acquirePermission(config, currentTimeMillis());
+		}
+		return NO_PERMIT;
+	}
+
+	@Override
+	public void recordOutcome(String url, long permit, Exception failure, long durationMillis) {
+		WebHookMainConfig config = getMainConfig();
+		if (!config.isCircuitBreakerEnabled() || permit == NO_PERMIT || failure instanceof WebHookCircuitOpenException) {
+			return;
+		}
+		CircuitBreaker breaker = getBreaker(url);
+		if (breaker != null) {
+			boolean slow = durationMillis >= config.getCircuitBreakerSlowCallDuration() * MILLIS_PER_SECOND;
+			breaker.record(config, permit, isFailure(failure), slow, currentTimeMillis());
+		}
+	}
+
+	@Override
+	public List<WebHookCircuitBreakerStatus> getStatuses() {
+		WebHookMainConfig config = getMainConfig();
+		List<WebHookCircuitBreakerStatus> statuses = new ArrayList<>();
+		for (CircuitBreaker breaker : breakers.values()) {
+			statuses.add(breaker.getStatus(config));
+		}
+		statuses.sort(Comparator.comparing(WebHookCircuitBreakerStatus::getAddress));
+		return statuses;
+	}
+
+	@Override
+	public WebHookCircuitBreakerStatus getStatus(String hash) {
+		CircuitBreaker breaker = breakers.get(hash);
+		if (breaker == null) {
+			return null;
+		}
+		return breaker.getStatus(getMainConfig());
+	}
+
+	@Override
+	public WebHookCircuitBreakerStatus reset(String hash) {
+		CircuitBreaker breaker = breakers.get(hash);
+		if (breaker == null) {
+			return null;
+		}
+		breaker.reset();
+		return breaker.getStatus(getMainConfig());
+	}
+
+	/**
+	 * Only failures which suggest the endpoint is unwell are counted. Requests which were
+	 * rejected (eg, a 4xx response) show the endpoint is up, so they count as successes.
+	 */
+	protected boolean isFailure(Exception failure) {
+		if (failure instanceof WebHookHttpResponseException) {
+			int statusCode = ((WebHookHttpResponseException)failure).getErrorCode();
+			return statusCode >= HttpStatus.SC_INTERNAL_SERVER_ERROR || statusCode == TOO_MANY_REQUESTS;
+		}
+		return failure instanceof WebHookHttpExecutionException;
+	}
+
+	protected long currentTimeMillis() {
+		return System.currentTimeMillis();
+	}
+
+	private CircuitBreaker getBreaker(String url) {
+		final GeneralisedWebAddress address = myWebAddressTransformer.getGeneralisedHostName(url);
+		if (address == null) {
+			return null;
+		}
+		return breakers.computeIfAbsent(address.getHashedGeneralisedAddress(), hash -> new CircuitBreaker(address));
+	}
+
+	private WebHookMainConfig getMainConfig() {
+		if (this.myMainSettings != null && this.myMainSettings.getWebHookMainConfig() != null) {
+			return this.myMainSettings.getWebHookMainConfig();
+		}
+		return DEFAULT_CONFIG;
+	}
+
+	private static final class CircuitBreaker {
+
+		private final GeneralisedWebAddress address;
+		private WebHookCircuitState state = WebHookCircuitState.CLOSED;
+
+		/* The rolling window, as a ring buffer. */
+		private boolean[] failed = new boolean[0];
+		private boolean[] slow = new boolean[0];
+		private int next;
+		private int calls;
+
+		/* Changes on every state change and trial, so stale outcomes can be told apart. */
+		private long generation = 1;
+		private long openedAt;
+		private boolean trialInFlight;
+		private long trialStartedAt;
+
+		CircuitBreaker(GeneralisedWebAddress address) {
+			this.address = address;
+		}
+
+		synchronized long acquirePermission(WebHookMainConfig config, long now) {
+			long openDuration = config.getCircuitBreakerOpenDuration() * MILLIS_PER_SECOND;
+			if (state == WebHookCircuitState.CLOSED) {
+				return generation;
+			}
+			if (state == WebHookCircuitState.OPEN) {
+				if (now < openedAt + openDuration) {
+					throw circuitOpen(openedAt + openDuration - now);
+				}
+				state = WebHookCircuitState.HALF_OPEN;
+				Loggers.SERVER.info(CLASS_NAME + "Circuit breaker for " + address.getGeneralisedAddress() + " is half-open. Sending a trial request.");
+			} else if (trialInFlight && now < trialStartedAt + openDuration) {
+				// Another request is already testing the endpoint. A trial which hasn't
+				// reported back within the open duration is assumed lost, and replaced.
+				throw circuitOpen(trialStartedAt + openDuration - now);
+			}
+			trialInFlight = true;
+			trialStartedAt = now;
+			// Only the outcome of this trial can decide the breaker.
+			return ++generation;
+		}
+
+		synchronized void record(WebHookMainConfig config, long permit, boolean isFailed, boolean isSlow, long now) {
+			if (permit != generation) {
+				// Permitted before the breaker last changed state, or a trial which was replaced.
+				return;
+			}
+			switch (state) {
+			case HALF_OPEN:
+				trialInFlight = false;
+				if (isFailed || isSlow) {
+					open(now);
+				} else {
+					close();
+				}
+				break;
+			case OPEN:
+				// Unreachable, as opening the breaker invalidates every permit.
+				break;
+			case CLOSED:
+			default:
+				int windowSize = config.getCircuitBreakerWindowSize();
+				if (failed.length != windowSize) {
+					resizeWindow(windowSize);
+				}
+				failed[next] = isFailed;
+				slow[next] = isSlow;
+				next = (next + 1) % windowSize;
+				calls = Math.min(calls + 1, windowSize);
+				if (calls >= config.getCircuitBreakerMinimumCalls()
+						&& (   countOf(failed) * 100 >= config.getCircuitBreakerFailureRate() * calls
+							|| countOf(slow) * 100 >= config.getCircuitBreakerSlowCallRate() * calls))
+				{
+					open(now);
+				}
+			}
+		}
+
+		synchronized void reset() {
+			if (state != WebHookCircuitState.CLOSED) {
+				close();
+			} else {
+				generation++;
+				clearWindow();
+			}
+		}
+
+		synchronized WebHookCircuitBreakerStatus getStatus(WebHookMainConfig config) {
+			boolean closed = state == WebHookCircuitState.CLOSED;
+			return WebHookCircuitBreakerStatus.builder()
+					.hash(address.getHashedGeneralisedAddress())
+					.address(address.getGeneralisedAddress())
+					.state(state)
+					.calls(calls)
+					.failedCalls(countOf(failed))
+					.slowCalls(countOf(slow))
+					.openedAt(closed ? null : openedAt)
+					.retryAt(state == WebHookCircuitState.OPEN ? openedAt + config.getCircuitBreakerOpenDuration() * MILLIS_PER_SECOND : null)
+					.build();
+		}
+
+		private WebHookCircuitOpenException circuitOpen(long retryAfterMillis) {
+			return new WebHookCircuitOpenException("Circuit breaker for " + address.getGeneralisedAddress()
+					+ " is open. WebHook not sent.", retryAfterMillis);
+		}
+
+		private void open(long now) {
+			Loggers.SERVER.warn(CLASS_NAME + "Opening circuit breaker for " + address.getGeneralisedAddress()
+					+ " after " + countOf(failed) + " failed and " + countOf(slow) + " slow requests out of " + calls);
+			state = WebHookCircuitState.OPEN;
+			generation++;
+			openedAt = now;
+			trialInFlight = false;
+			clearWindow();
+		}
+
+		private void close() {
+			Loggers.SERVER.info(CLASS_NAME + "Closing circuit breaker for " + address.getGeneralisedAddress());
+			state = WebHookCircuitState.CLOSED;
+			generation++;
+			trialInFlight = false;
+			clearWindow();
+		}
+
+		private void resizeWindow(int windowSize) {
+			failed = new boolean[windowSize];
+			slow = new boolean[windowSize];
+			next = 0;
+			calls = 0;
+		}
+
+		private void clearWindow() {
+			resizeWindow(failed.length);
+		}
+
+		private int countOf(boolean[] outcomes) {
+			int count = 0;
+			for (int i = 0; i < calls; i++) {
+				if (outcomes[i]) {
+					count++;
+				}
+			}
+			return count;
+		}
+
+	}
+
+}
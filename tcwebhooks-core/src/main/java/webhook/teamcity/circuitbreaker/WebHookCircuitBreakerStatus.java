@@ -0,0 +1,41 @@
+package webhook.teamcity.circuitbreaker;
+
+import lombok.Builder;
+import lombok.Getter;
+
+/**
+ * A snapshot of the state of one endpoint's circuit breaker.
+ */
+@Getter @Builder
+public class WebHookCircuitBreakerStatus {
+
+	private final String hash;
+	private final String address;
+	private final WebHookCircuitState state;
+	
+	/** The number of outcomes in the rolling window. */
+	private final int calls;
+	private final int failedCalls;
+	private final int slowCalls;
+	
+	/** When the breaker last opened, or null if it has not opened since it was last closed. */
+	private final Long openedAt;
+	
+	/** When an open breaker will let a trial request through, or null if it is not open. */
+	private final Long retryAt;
+
+	/**
+	 * @return The percentage of calls in the window which failed.
+	 */
+	public int getFailureRate() {
+		return calls == 0 ? 0 : failedCalls * 100 / calls;
+	}
+
+	/**
+	 * @return The percentage of calls in the window which were slow.
+	 */
+	public int getSlowCallRate() {
+		return calls == 0 ? 0 : slowCalls * 100 / calls;
+	}
+
+}
@@ -0,0 +1,31 @@
+package webhook.teamcity.circuitbreaker;
+
+import lombok.Getter;
+
+/**
+ * Determines what happens to a webhook whose endpoint's circuit breaker is open.
+ */
+@Getter
+public enum WebHookCircuitOpenPolicy {
+	
+	/** Record the webhook as failed without sending it. */
+	FAIL ("fail"),
+	/** Pass the webhook to the retry scheduler, to be sent once the breaker lets requests through again. */
+	DEFER ("defer");
+	
+	String configValue;
+	
+	WebHookCircuitOpenPolicy(String configValue) {
+		this.configValue = configValue;
+	}
+	
+	public static WebHookCircuitOpenPolicy findByConfigValue(String configValue) {
+		for (WebHookCircuitOpenPolicy policy : values()) {
+			if (policy.getConfigValue().equalsIgnoreCase(configValue)) {
+				return policy;
+			}
+		}
+		return null;
+	}
+
+}
@@ -0,0 +1,12 @@
+package webhook.teamcity.circuitbreaker;
+
+public enum WebHookCircuitState {
+	
+	/** Requests are sent, and their outcomes recorded. */
+	CLOSED,
+	/** Too many recent requests failed or were slow. Requests are not sent. */
+	OPEN,
+	/** The open duration has passed. A single trial request is sent to decide whether to close or re-open. */
+	HALF_OPEN
+
+}
@@ -2,22 +2,33 @@ package webhook.teamcity.executor;
 
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
 
 import org.apache.http.HttpStatus;
+import org.apache.http.concurrent.FutureCallback;
 import org.apache.http.impl.EnglishReasonPhraseCatalog;
+import org.apache.http.nio.client.HttpAsyncClient;
 
 import lombok.Getter;
 import webhook.WebHook;
 import webhook.teamcity.BuildStateEnum;
 import webhook.teamcity.Loggers;
 import webhook.teamcity.WebHookContentBuilder;
+import webhook.teamcity.WebHookCircuitOpenException;
 import webhook.teamcity.WebHookExecutionException;
 import webhook.teamcity.WebHookHttpExecutionException;
 import webhook.teamcity.WebHookHttpResponseException;
+import webhook.teamcity.circuitbreaker.WebHookCircuitBreakerRegistry;
 import webhook.teamcity.history.WebHookHistoryItem;
 import webhook.teamcity.history.WebHookHistoryItem.WebHookErrorStatus;
 import webhook.teamcity.history.WebHookHistoryItemFactory;
 import webhook.teamcity.history.WebHookHistoryRepository;
+import webhook.teamcity.journal.WebHookDeliveryJournal;
+import webhook.teamcity.journal.WebHookJournalEntry;
+import webhook.teamcity.retry.WebHookFailedDelivery;
+import webhook.teamcity.retry.WebHookRetryScheduler;
 import webhook.teamcity.settings.WebHookConfig;
 
 public abstract class AbstractWebHookExecutor implements WebHookRunner {
@@ -26,6 +37,10 @@ public abstract class AbstractWebHookExecutor implements WebHookRunner {
 	protected final WebHookContentBuilder webHookContentBuilder;
 	protected final WebHookHistoryRepository webHookHistoryRepository;
 	protected final WebHookHistoryItemFactory webHookHistoryItemFactory;
+	protected final WebHookDeliveryJournal webHookDeliveryJournal;
+	protected final WebHookJournalRunnerFactory webHookJournalRunnerFactory;
+	protected final WebHookRetryScheduler webHookRetryScheduler;
+	protected final WebHookCircuitBreakerRegistry webHookCircuitBreakerRegistry;
 	protected final WebHookConfig whc;
 	protected final BuildStateEnum state;
 	protected boolean overrideIsEnabled = false;
@@ -35,11 +50,18 @@ public abstract class AbstractWebHookExecutor implements WebHookRunner {
 	
 	protected WebHook webhook;
 	protected boolean isTest;
+	protected long journalSequence = WebHookDeliveryJournal.NOT_JOURNALED;
+	protected int attempt = 1;
+	private boolean contentBuilt = false;
 	
 	public AbstractWebHookExecutor(
 			WebHookContentBuilder webHookContentBuilder,
 			WebHookHistoryRepository webHookHistoryRepository,
 			WebHookHistoryItemFactory webHookHistoryItemFactory,
+			WebHookDeliveryJournal webHookDeliveryJournal,
+			WebHookJournalRunnerFactory webHookJournalRunnerFactory,
+			WebHookRetryScheduler webHookRetryScheduler,
+			WebHookCircuitBreakerRegistry webHookCircuitBreakerRegistry,
 			WebHookConfig whc,
 			BuildStateEnum state,
 			boolean overrideIsEnabled,
@@ -49,6 +71,10 @@ public abstract class AbstractWebHookExecutor implements WebHookRunner {
 		this.webHookContentBuilder = webHookContentBuilder;
 		this.webHookHistoryRepository = webHookHistoryRepository;
 		this.webHookHistoryItemFactory = webHookHistoryItemFactory;
+		this.webHookDeliveryJournal = webHookDeliveryJournal;
+		this.webHookJournalRunnerFactory = webHookJournalRunnerFactory;
+		this.webHookRetryScheduler = webHookRetryScheduler;
+		this.webHookCircuitBreakerRegistry = webHookCircuitBreakerRegistry;
 		this.whc = whc;
 		this.state = state;
 		this.overrideIsEnabled = overrideIsEnabled;
@@ -61,23 +87,213 @@ public abstract class AbstractWebHookExecutor implements WebHookRunner {
 		Loggers.SERVER.debug("AbstractWebHookExecutor :: Starting runner for webhook: " + whc.getUniqueKey() 
 						+  " : " + webhook.getExecutionStats().getTrackingIdAsString());
 		
+		boolean retrying = false;
 		try {
-			this.webhook = getWebHookContent();
+			buildContent();
+			appendToJournal();
 			
-			doPost(webhook, whc.getPayloadTemplate());
-			Loggers.ACTIVITIES.debug(CLASS_NAME + whc.getPayloadTemplate());
-			this.webHookHistoryItem = buildWebHookHistoryItem(null);
-			webHookHistoryRepository.addHistoryItem(this.webHookHistoryItem);
+			post();
+			recordSuccess();
 
-		} catch (WebHookExecutionException ex){
+		} catch (Exception ex){
+			recordFailure(ex);
+			retrying = retry(ex);
+		}
+		if (!retrying) {
+			acknowledge();
+		}
+		
+		Loggers.SERVER.debug("AbstractWebHookExecutor :: Finishing runner for webhook: " + whc.getUniqueKey() 
+		+  " : " + webhook.getExecutionStats().getTrackingIdAsString());
+	}
+	
+	@Override
+	public void runAsync(HttpAsyncClient asyncClient, Executor completionExecutor) {
+		Loggers.SERVER.debug("AbstractWebHookExecutor :: Starting async runner for webhook: " + whc.getUniqueKey() 
+						+  " : " + webhook.getExecutionStats().getTrackingIdAsString());
+		
+		long circuitPermit = WebHookCircuitBreakerRegistry.NO_PERMIT;
+		long startTime = 0L;
+		try {
+			buildContent();
+			appendToJournal();
+			
+			circuitPermit = acquireCircuitPermission();
+			startTime = System.currentTimeMillis();
+			webhook.postAsync(asyncClient, new AsyncPostCallback(completionExecutor, circuitPermit, startTime));
+			
+		} catch (Exception ex){
+			// If the breaker let the request through, it must hear how it went.
+			recordCircuitOutcome(circuitPermit, ex, startTime);
+			recordFailure(ex);
+			finishAsync(ex);
+		}
+	}
+	
+	@Override
+	public void recordRejection(String reason) {
+		recordFailure(new WebHookExecutionException(reason, WebHookExecutionException.WEBHOOK_EXECUTOR_QUEUE_FULL_ERROR_CODE));
+		acknowledge();
+	}
+	
+	@Override
+	public WebHookRunner spill() {
+		if (this.webHookDeliveryJournal == null || this.webHookJournalRunnerFactory == null || this.isTest) {
+			recordRejection("WebHook dropped because the executor queue was full and the delivery journal is not available");
+			return null;
+		}
+		try {
+			buildContent();
+		} catch (Exception ex) {
+			recordFailure(ex);
+			return null;
+		}
+		if (!webhook.isEnabled()) {
+			// Nothing to send, so complete it now rather than replaying it later.
+			logNotTriggered(webhook);
+			recordSuccess();
+			return null;
+		}
+		appendToJournal();
+		if (this.journalSequence == WebHookDeliveryJournal.NOT_JOURNALED) {
+			recordRejection("WebHook dropped because the executor queue and the delivery journal were full");
+			return null;
+		}
+		return new DeferredWebHookRunner(this.webHookJournalRunnerFactory, this.journalSequence, null, this.attempt);
+	}
+	
+	@Override
+	public void journal() {
+		if (this.webHookDeliveryJournal == null || this.isTest 
+			|| this.journalSequence != WebHookDeliveryJournal.NOT_JOURNALED)
+		{
+			return;
+		}
+		try {
+			buildContent();
+		} catch (Exception ex) {
+			// Left for the runner to build again, and record the failure, when it runs.
+			Loggers.SERVER.debug(CLASS_NAME + "Unable to build webhook content for the journal :: " + ex.getMessage());
+			return;
+		}
+		appendToJournal();
+	}
+	
+	/**
+	 * Builds the webhook's content, unless it was already built when the runner was journaled.
+	 */
+	private void buildContent() {
+		if (!this.contentBuilt) {
+			this.webhook = getWebHookContent();
+			this.contentBuilt = true;
+		}
+	}
+	
+	/**
+	 * Writes the rendered webhook to the delivery journal, so that it can be 
+	 * replayed if TeamCity is restarted before the runner completes.
+	 * Test webhooks and webhooks which won't be sent are not journaled.
+	 */
+	protected void appendToJournal() {
+		if (   this.webHookDeliveryJournal == null || this.isTest 
+			|| this.journalSequence != WebHookDeliveryJournal.NOT_JOURNALED
+			|| !webhook.isEnabled() || webhook.getExecutionStats().isErrored())
+		{
+			return;
+		}
+		this.journalSequence = this.webHookDeliveryJournal.append(WebHookJournalEntry.fromWebHook(webhook, whc, state));
+	}
+	
+	/**
+	 * Passes a failed delivery to the retry scheduler. Test webhooks are never retried.
+	 * @return true if the scheduler has taken over the delivery, in which case
+	 * its journal entry must not be acknowledged.
+	 */
+	protected boolean retry(Exception ex) {
+		if (   this.webHookRetryScheduler == null || this.webHookJournalRunnerFactory == null 
+			|| this.isTest || !webhook.isEnabled()) 
+		{
+			return false;
+		}
+		WebHookJournalEntry entry = WebHookJournalEntry.fromWebHook(webhook, whc, state);
+		// Journaled deliveries are read back from the journal, so only hold on to the entry if it isn't there.
+		WebHookJournalEntry nextAttemptEntry = this.journalSequence == WebHookDeliveryJournal.NOT_JOURNALED ? entry : null;
+		return this.webHookRetryScheduler.handleFailure(WebHookFailedDelivery.builder()
+				.entry(entry)
+				.journalSequence(this.journalSequence)
+				.attempt(this.attempt)
+				.failure(ex)
+				.executionStats(webhook.getExecutionStats())
+				.nextAttempt(new DeferredWebHookRunner(this.webHookJournalRunnerFactory, this.journalSequence, nextAttemptEntry, this.attempt + 1))
+				.build());
+	}
+	
+	/**
+	 * Posts the webhook, unless the circuit breaker for its endpoint is open.
+	 * The outcome is recorded against the endpoint's breaker.
+	 */
+	private void post() {
+		long circuitPermit = acquireCircuitPermission();
+		long startTime = System.currentTimeMillis();
+		try {
+			doPost(webhook, whc.getPayloadTemplate());
+		} catch (RuntimeException ex) {
+			recordCircuitOutcome(circuitPermit, ex, startTime);
+			throw ex;
+		}
+		recordCircuitOutcome(circuitPermit, null, startTime);
+	}
+	
+	/**
+	 * Test webhooks bypass the circuit breaker, so that they can be used to check whether an endpoint has recovered.
+	 * @return The permit to record the outcome of the post with, or {@link WebHookCircuitBreakerRegistry#NO_PERMIT} 
+	 * if the post does not go through the circuit breaker.
+	 * @throws WebHookCircuitOpenException if the breaker for the webhook's endpoint is open.
+	 */
+	private long acquireCircuitPermission() {
+		if (this.webHookCircuitBreakerRegistry == null || this.isTest || !webhook.isEnabled()) {
+			return WebHookCircuitBreakerRegistry.NO_PERMIT;
+		}
+		return this.webHookCircuitBreakerRegistry.acquirePermission(webhook.getUrl());
+	}
+	
+	private void recordCircuitOutcome(long circuitPermit, Exception failure, long startTime) {
+		if (circuitPermit != WebHookCircuitBreakerRegistry.NO_PERMIT) {
+			this.webHookCircuitBreakerRegistry.recordOutcome(webhook.getUrl(), circuitPermit, failure, System.currentTimeMillis() - startTime);
+		}
+	}
+	
+	protected void acknowledge() {
+		if (this.webHookDeliveryJournal != null && this.journalSequence != WebHookDeliveryJournal.NOT_JOURNALED) {
+			this.webHookDeliveryJournal.acknowledge(this.journalSequence);
+		}
+	}
+	
+	private void finishAsync(Exception failure) {
+		if (failure == null || !retry(failure)) {
+			acknowledge();
+		}
+		Loggers.SERVER.debug("AbstractWebHookExecutor :: Finishing async runner for webhook: " + whc.getUniqueKey() 
+		+  " : " + webhook.getExecutionStats().getTrackingIdAsString());
+	}
+	
+	private void recordSuccess() {
+		Loggers.ACTIVITIES.debug(CLASS_NAME + whc.getPayloadTemplate());
+		this.webHookHistoryItem = buildWebHookHistoryItem(null);
+		webHookHistoryRepository.addHistoryItem(this.webHookHistoryItem);
+	}
+	
+	private void recordFailure(Exception ex) {
+		if (ex instanceof WebHookExecutionException) {
+			WebHookExecutionException executionException = (WebHookExecutionException)ex;
 			webhook.getExecutionStats().setErrored(true);
-			webhook.getExecutionStats().setRequestCompleted(ex.getErrorCode(), ex.getMessage());
+			webhook.getExecutionStats().setRequestCompleted(executionException.getErrorCode(), ex.getMessage());
 			Loggers.SERVER.error(CLASS_NAME + webhook.getExecutionStats().getTrackingIdAsString() + " :: " + ex.getMessage());
 			Loggers.SERVER.debug(CLASS_NAME + webhook.getExecutionStats().getTrackingIdAsString() + " :: URL: " + webhook.getUrl(), ex);
-			this.webHookHistoryItem = buildWebHookHistoryItem(new WebHookErrorStatus(ex, ex.getMessage(), ex.getErrorCode()));
+			this.webHookHistoryItem = buildWebHookHistoryItem(new WebHookErrorStatus(ex, ex.getMessage(), executionException.getErrorCode()));
 			webHookHistoryRepository.addHistoryItem(webHookHistoryItem);
 		
-		} catch (Exception ex){
+		} else {
 			webhook.getExecutionStats().setErrored(true);
 			webhook.getExecutionStats().setRequestCompleted(WebHookExecutionException.WEBHOOK_UNEXPECTED_EXCEPTION_ERROR_CODE, WebHookExecutionException.WEBHOOK_UNEXPECTED_EXCEPTION_MESSAGE + ex.getMessage());
 			Loggers.SERVER.error(CLASS_NAME + webhook.getExecutionStats().getTrackingIdAsString() + " :: " + ex.getMessage());
@@ -86,13 +302,7 @@ public abstract class AbstractWebHookExecutor implements WebHookRunner {
 					WebHookExecutionException.WEBHOOK_UNEXPECTED_EXCEPTION_ERROR_CODE));
 			webHookHistoryRepository.addHistoryItem(this.webHookHistoryItem);
 		}
-		
-		Loggers.SERVER.debug("AbstractWebHookExecutor :: Finishing runner for webhook: " + whc.getUniqueKey() 
-		+  " : " + webhook.getExecutionStats().getTrackingIdAsString());
 	}
-
-	
-	
 	
 	/** doPost
 	 * 
@@ -103,40 +313,143 @@ public abstract class AbstractWebHookExecutor implements WebHookRunner {
 		try {
 			if (wh.isEnabled()){
 				wh.post();
-				Loggers.SERVER.info(CLASS_NAME + " :: WebHook triggered : " 
-						+ wh.getUrl() + " using template " + payloadTemplate 
-						+ " returned " + wh.getStatus() 
-						+ " " + wh.getErrorReason());	
-				Loggers.SERVER.debug(CLASS_NAME + ":doPost :: content dump: " + wh.getPayload());
-				if (Loggers.SERVER.isDebugEnabled()) Loggers.SERVER.debug("WebHook execution stats: " + wh.getExecutionStats().toString());
-				if (wh.isErrored()){
-					Loggers.SERVER.error(wh.getErrorReason());
-				}
-				if (wh.getStatus() == null) {
-					Loggers.SERVER.warn(CLASS_NAME + wh.getParam("projectId") + " WebHook (url: " + wh.getUrl() + " proxy: " + wh.getProxyHost() + ":" + wh.getProxyPort()+") returned HTTP status " + wh.getStatus().toString());
-					throw new WebHookHttpExecutionException("WebHook endpoint returned null response code");
-				} else if (wh.getStatus() < HttpStatus.SC_OK || wh.getStatus() >= HttpStatus.SC_MULTIPLE_CHOICES) {
-					Loggers.SERVER.warn(CLASS_NAME + wh.getParam("projectId") + " WebHook (url: " + wh.getUrl() + " proxy: " + wh.getProxyHost() + ":" + wh.getProxyPort()+") returned HTTP status " + wh.getStatus().toString());
-					throw new WebHookHttpResponseException("WebHook endpoint returned non-2xx response (" + EnglishReasonPhraseCatalog.INSTANCE.getReason(wh.getStatus(), null) +")", wh.getStatus());
-				}
+				checkResponse(wh, payloadTemplate);
 			} else {
-				if (Loggers.SERVER.isDebugEnabled()) Loggers.SERVER.debug("WebHook NOT triggered: " + wh.getDisabledReason() + " " +  wh.getParam("buildStatus") + " " + wh.getUrl());	
+				logNotTriggered(wh);
 			}
-		} catch (FileNotFoundException e) {
-			Loggers.SERVER.warn(CLASS_NAME + ":doPost :: " 
-					+ "A FileNotFoundException occurred while attempting to execute WebHook (" + wh.getUrl() + "). See the following debug stacktrace");
-			Loggers.SERVER.debug(e);
-			throw new WebHookHttpExecutionException("A FileNotFoundException occurred while attempting to execute WebHook (" + wh.getUrl() + ")", e);
 		} catch (IOException e) {
+			throw buildIOExecutionException(wh, e);
+		}
+		
+	}
+	
+	/**
+	 * Logs the result of a completed post, and throws a {@link WebHookExecutionException} 
+	 * if the endpoint did not return a 2xx response.
+	 * @param wh
+	 * @param payloadTemplate
+	 */
+	protected static void checkResponse(WebHook wh, String payloadTemplate) {
+		Loggers.SERVER.info(CLASS_NAME + " :: WebHook triggered : " 
+				+ wh.getUrl() + " using template " + payloadTemplate 
+				+ " returned " + wh.getStatus() 
+				+ " " + wh.getErrorReason());	
+		Loggers.SERVER.debug(CLASS_NAME + ":doPost :: content dump: " + wh.getPayload());
+		if (Loggers.SERVER.isDebugEnabled()) Loggers.SERVER.debug("WebHook execution stats: " + wh.getExecutionStats().toString());
+		if (wh.isErrored()){
+			Loggers.SERVER.error(wh.getErrorReason());
+		}
+		if (wh.getStatus() == null) {
+			Loggers.SERVER.warn(CLASS_NAME + wh.getParam("projectId") + " WebHook (url: " + wh.getUrl() + " proxy: " + wh.getProxyHost() + ":" + wh.getProxyPort()+") returned HTTP status " + wh.getStatus());
+			throw new WebHookHttpExecutionException("WebHook endpoint returned null response code");
+		} else if (wh.getStatus() < HttpStatus.SC_OK || wh.getStatus() >= HttpStatus.SC_MULTIPLE_CHOICES) {
+			Loggers.SERVER.warn(CLASS_NAME + wh.getParam("projectId") + " WebHook (url: " + wh.getUrl() + " proxy: " + wh.getProxyHost() + ":" + wh.getProxyPort()+") returned HTTP status " + wh.getStatus().toString());
+			throw new WebHookHttpResponseException("WebHook endpoint returned non-2xx response (" + EnglishReasonPhraseCatalog.INSTANCE.getReason(wh.getStatus(), null) +")", wh.getStatus());
+		}
+	}
+	
+	private static void logNotTriggered(WebHook wh) {
+		if (Loggers.SERVER.isDebugEnabled()) Loggers.SERVER.debug("WebHook NOT triggered: " + wh.getDisabledReason() + " " +  wh.getParam("buildStatus") + " " + wh.getUrl());
+	}
+	
+	private static WebHookHttpExecutionException buildIOExecutionException(WebHook wh, IOException e) {
+		if (e instanceof FileNotFoundException) {
 			Loggers.SERVER.warn(CLASS_NAME + ":doPost :: " 
-					+ "An IOException occurred while attempting to execute WebHook (" + wh.getUrl() + "). See the following debug stacktrace");
+					+ "A FileNotFoundException occurred while attempting to execute WebHook (" + wh.getUrl() + "). See the following debug stacktrace");
 			Loggers.SERVER.debug(e);
-			throw new WebHookHttpExecutionException("Error " + e.getMessage() + " occurred while attempting to execute WebHook.", e);
+			return new WebHookHttpExecutionException("A FileNotFoundException occurred while attempting to execute WebHook (" + wh.getUrl() + ")", e);
 		}
-		
+		Loggers.SERVER.warn(CLASS_NAME + ":doPost :: " 
+				+ "An IOException occurred while attempting to execute WebHook (" + wh.getUrl() + "). See the following debug stacktrace");
+		Loggers.SERVER.debug(e);
+		return new WebHookHttpExecutionException("Error " + e.getMessage() + " occurred while attempting to execute WebHook.", e);
 	}
 
 	protected abstract WebHook getWebHookContent();
 	protected abstract WebHookHistoryItem buildWebHookHistoryItem(WebHookErrorStatus errorStatus);
+	
+	/**
+	 * Completes an async post. Every outcome of a post which went through 
+	 * the circuit breaker is recorded against the endpoint's breaker.
+	 * <p>
+	 * The callbacks are invoked on the client's I/O threads, which must not block, 
+	 * so the history, retry and journal work is handed to the completion executor.
+	 */
+	private class AsyncPostCallback implements FutureCallback<WebHook> {
+		private final Executor completionExecutor;
+		private final long circuitPermit;
+		private final long startTime;
+		
+		AsyncPostCallback(Executor completionExecutor, long circuitPermit, long startTime) {
+			this.completionExecutor = completionExecutor;
+			this.circuitPermit = circuitPermit;
+			this.startTime = startTime;
+		}
+		
+		@Override
+		public void completed(final WebHook wh) {
+			handOff(() -> onCompleted(wh));
+		}
+		
+		@Override
+		public void failed(final Exception ex) {
+			handOff(() -> onFailed(ex));
+		}
+		
+		@Override
+		public void cancelled() {
+			handOff(this::onCancelled);
+		}
+		
+		private void handOff(Runnable work) {
+			try {
+				completionExecutor.execute(work);
+			} catch (RejectedExecutionException ex) {
+				// Shutting down, so finish up here rather than lose the outcome.
+				work.run();
+			}
+		}
+		
+		private void onCompleted(WebHook wh) {
+			Exception failure = null;
+			try {
+				if (wh.isEnabled()) {
+					checkResponse(wh, whc.getPayloadTemplate());
+				} else {
+					logNotTriggered(wh);
+				}
+				recordSuccess();
+			} catch (Exception ex) {
+				failure = ex;
+			}
+			recordCircuitOutcome(circuitPermit, failure, startTime);
+			if (failure != null) {
+				recordFailure(failure);
+			}
+			finishAsync(failure);
+		}
+		
+		private void onFailed(Exception ex) {
+			Exception failure = ex;
+			if (ex instanceof IOException) {
+				failure = buildIOExecutionException(webhook, (IOException)ex);
+			}
+			recordCircuitOutcome(circuitPermit, failure, startTime);
+			recordFailure(failure);
+			finishAsync(failure);
+		}
+		
+		/**
+		 * The request never completed (eg, the client was shut down), 
+		 * so it is retried or dead lettered like any other failure.
+		 */
+		private void onCancelled() {
+			WebHookHttpExecutionException failure = new WebHookHttpExecutionException("WebHook request was cancelled before completing", 
+					new CancellationException("WebHook request was cancelled"));
+			recordCircuitOutcome(circuitPermit, failure, startTime);
+			recordFailure(failure);
+			finishAsync(failure);
+		}
+	}
 
 }
@@ -0,0 +1,102 @@
+package webhook.teamcity.executor;
+
+import java.util.concurrent.Executor;
+
+import org.apache.http.nio.client.HttpAsyncClient;
+
+import webhook.teamcity.history.WebHookHistoryItem;
+import webhook.teamcity.journal.WebHookDeliveryJournal;
+import webhook.teamcity.journal.WebHookJournalEntry;
+
+/**
+ * Stands in for a runner which is waiting to be sent, either because the executor queue 
+ * was full or because it is waiting to be retried. It holds only the journal sequence 
+ * (or the rendered entry if it could not be journaled), and the real runner is 
+ * built by the {@link WebHookJournalRunnerFactory} when this one is executed.
+ */
+public class DeferredWebHookRunner implements WebHookRunner {
+
+	private final WebHookJournalRunnerFactory webHookJournalRunnerFactory;
+	private final long journalSequence;
+	private final WebHookJournalEntry entry;
+	private final int attempt;
+	private WebHookRunner runner;
+
+	/**
+	 * @param webHookJournalRunnerFactory
+	 * @param journalSequence The sequence to read from the journal, or {@link WebHookDeliveryJournal#NOT_JOURNALED}.
+	 * @param entry The rendered entry, when it is not in the journal.
+	 * @param attempt The attempt number of the next delivery, starting at 1.
+	 */
+	public DeferredWebHookRunner(
+			WebHookJournalRunnerFactory webHookJournalRunnerFactory,
+			long journalSequence,
+			WebHookJournalEntry entry,
+			int attempt)
+	{
+		this.webHookJournalRunnerFactory = webHookJournalRunnerFactory;
+		this.journalSequence = journalSequence;
+		this.entry = entry;
+		this.attempt = attempt;
+	}
+
+	@Override
+	public void run() {
+		WebHookRunner webHookRunner = getRunner();
+		if (webHookRunner != null) {
+			webHookRunner.run();
+		}
+	}
+
+	@Override
+	public void runAsync(HttpAsyncClient asyncClient, Executor completionExecutor) {
+		WebHookRunner webHookRunner = getRunner();
+		if (webHookRunner != null) {
+			webHookRunner.runAsync(asyncClient, completionExecutor);
+		}
+	}
+
+	@Override
+	public void recordRejection(String reason) {
+		WebHookRunner webHookRunner = getRunner();
+		if (webHookRunner != null) {
+			webHookRunner.recordRejection(reason);
+		}
+	}
+
+	/**
+	 * Already in the journal (or holding its rendered entry), so there is nothing to write.
+	 */
+	@Override
+	public void journal() {
+		// Nothing to do.
+	}
+
+	/**
+	 * Already deferred, so there is nothing more to write.
+	 */
+	@Override
+	public WebHookRunner spill() {
+		return this;
+	}
+
+	@Override
+	public WebHookHistoryItem getWebHookHistoryItem() {
+		if (this.runner != null) {
+			return this.runner.getWebHookHistoryItem();
+		}
+		return null;
+	}
+
+	private WebHookRunner getRunner() {
+		if (this.runner == null) {
+			if (this.journalSequence != WebHookDeliveryJournal.NOT_JOURNALED) {
+				this.runner = webHookJournalRunnerFactory.getRunner(this.journalSequence, this.attempt);
+			} else {
+				this.runner = webHookJournalRunnerFactory.getRunner(this.entry, this.attempt);
+			}
+		}
+		return this.runner;
+	}
+
+}
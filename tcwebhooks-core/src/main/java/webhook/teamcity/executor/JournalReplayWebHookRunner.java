@@ -0,0 +1,74 @@
+package webhook.teamcity.executor;
+
+import jetbrains.buildServer.serverSide.SProject;
+import webhook.WebHook;
+import webhook.teamcity.BuildStateEnum;
+import webhook.teamcity.circuitbreaker.WebHookCircuitBreakerRegistry;
+import webhook.teamcity.history.WebHookHistoryItem;
+import webhook.teamcity.history.WebHookHistoryItem.WebHookErrorStatus;
+import webhook.teamcity.history.WebHookHistoryItemFactory;
+import webhook.teamcity.history.WebHookHistoryRepository;
+import webhook.teamcity.journal.WebHookDeliveryJournal;
+import webhook.teamcity.retry.WebHookRetryScheduler;
+import webhook.teamcity.settings.WebHookConfig;
+
+/**
+ * Sends a webhook which was rendered earlier and read back from the delivery journal.
+ * The webhook already has its payload and headers, so no content is built.
+ */
+public class JournalReplayWebHookRunner extends AbstractWebHookExecutor implements WebHookRunner {
+
+	private final SProject sProject;
+
+	public JournalReplayWebHookRunner(
+			WebHookHistoryRepository webHookHistoryRepository,
+			WebHookHistoryItemFactory webHookHistoryItemFactory,
+			WebHookDeliveryJournal webHookDeliveryJournal,
+			WebHookJournalRunnerFactory webHookJournalRunnerFactory,
+			WebHookRetryScheduler webHookRetryScheduler,
+			WebHookCircuitBreakerRegistry webHookCircuitBreakerRegistry,
+			WebHookConfig whc,
+			BuildStateEnum state,
+			WebHook webhook,
+			SProject sProject,
+			long journalSequence,
+			int attempt)
+	{
+		super (
+			 null,
+			 webHookHistoryRepository,
+			 webHookHistoryItemFactory,
+			 webHookDeliveryJournal,
+			 webHookJournalRunnerFactory,
+			 webHookRetryScheduler,
+			 webHookCircuitBreakerRegistry,
+			 whc,
+			 state,
+			 false,
+			 webhook,
+			 false);
+		this.sProject = sProject;
+		this.journalSequence = journalSequence;
+		this.attempt = attempt;
+	}
+
+	public String getUrl() {
+		return webhook.getUrl();
+	}
+
+	@Override
+	protected WebHook getWebHookContent() {
+		return webhook;
+	}
+
+	@Override
+	protected WebHookHistoryItem buildWebHookHistoryItem(WebHookErrorStatus errorStatus) {
+		return webHookHistoryItemFactory.getWebHookHistoryItem(
+				whc,
+				webhook.getExecutionStats(),
+				sProject,
+				errorStatus
+			);
+	}
+
+}
@@ -4,10 +4,13 @@ import jetbrains.buildServer.serverSide.SQueuedBuild;
 import webhook.WebHook;
 import webhook.teamcity.BuildStateEnum;
 import webhook.teamcity.WebHookContentBuilder;
+import webhook.teamcity.circuitbreaker.WebHookCircuitBreakerRegistry;
 import webhook.teamcity.history.WebHookHistoryItem;
 import webhook.teamcity.history.WebHookHistoryItem.WebHookErrorStatus;
 import webhook.teamcity.history.WebHookHistoryItemFactory;
 import webhook.teamcity.history.WebHookHistoryRepository;
+import webhook.teamcity.journal.WebHookDeliveryJournal;
+import webhook.teamcity.retry.WebHookRetryScheduler;
 import webhook.teamcity.settings.WebHookConfig;
 
 public class QueuedBuildWebHookRunner extends AbstractWebHookExecutor implements WebHookRunner {
@@ -20,6 +23,10 @@ public class QueuedBuildWebHookRunner extends AbstractWebHookExecutor implements
 			WebHookContentBuilder webHookContentBuilder,
 			WebHookHistoryRepository webHookHistoryRepository,
 			WebHookHistoryItemFactory webHookHistoryItemFactory,
+			WebHookDeliveryJournal webHookDeliveryJournal,
+			WebHookJournalRunnerFactory webHookJournalRunnerFactory,
+			WebHookRetryScheduler webHookRetryScheduler,
+			WebHookCircuitBreakerRegistry webHookCircuitBreakerRegistry,
 			WebHookConfig whc,
 			BuildStateEnum state,
 			boolean isOverrideEnabled,
@@ -33,6 +40,10 @@ public class QueuedBuildWebHookRunner extends AbstractWebHookExecutor implements
 			 webHookContentBuilder,
 			 webHookHistoryRepository,
 			 webHookHistoryItemFactory,
+			 webHookDeliveryJournal,
+			 webHookJournalRunnerFactory,
+			 webHookRetryScheduler,
+			 webHookCircuitBreakerRegistry,
 			 whc,
 			 state,
 			 isOverrideEnabled,
@@ -3,10 +3,13 @@ package webhook.teamcity.executor;
 import webhook.WebHook;
 import webhook.teamcity.BuildStateEnum;
 import webhook.teamcity.WebHookContentBuilder;
+import webhook.teamcity.circuitbreaker.WebHookCircuitBreakerRegistry;
 import webhook.teamcity.history.WebHookHistoryItem;
 import webhook.teamcity.history.WebHookHistoryItem.WebHookErrorStatus;
 import webhook.teamcity.history.WebHookHistoryItemFactory;
 import webhook.teamcity.history.WebHookHistoryRepository;
+import webhook.teamcity.journal.WebHookDeliveryJournal;
+import webhook.teamcity.retry.WebHookRetryScheduler;
 import webhook.teamcity.settings.WebHookConfig;
 
 public class ResponsibilityChangedWebHookRunner extends AbstractWebHookExecutor implements WebHookRunner {
@@ -17,6 +20,10 @@ public class ResponsibilityChangedWebHookRunner extends AbstractWebHookExecutor
 			WebHookContentBuilder webHookContentBuilder,
 			WebHookHistoryRepository webHookHistoryRepository,
 			WebHookHistoryItemFactory webHookHistoryItemFactory,
+			WebHookDeliveryJournal webHookDeliveryJournal,
+			WebHookJournalRunnerFactory webHookJournalRunnerFactory,
+			WebHookRetryScheduler webHookRetryScheduler,
+			WebHookCircuitBreakerRegistry webHookCircuitBreakerRegistry,
 			WebHookConfig whc,
 			BuildStateEnum state,
 			boolean isOverrideEnabled,
@@ -28,6 +35,10 @@ public class ResponsibilityChangedWebHookRunner extends AbstractWebHookExecutor
 			 webHookContentBuilder,
 			 webHookHistoryRepository,
 			 webHookHistoryItemFactory,
+			 webHookDeliveryJournal,
+			 webHookJournalRunnerFactory,
+			 webHookRetryScheduler,
+			 webHookCircuitBreakerRegistry,
 			 whc,
 			 state,
 			 isOverrideEnabled,
@@ -0,0 +1,5 @@
+package webhook.teamcity.executor;
+
+public interface WebHookAsyncExecutor extends WebHookExecutor {
+
+}
@@ -0,0 +1,117 @@
+package webhook.teamcity.executor;
+
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import jetbrains.buildServer.serverSide.SBuild;
+import jetbrains.buildServer.serverSide.SQueuedBuild;
+import jetbrains.buildServer.serverSide.executors.ExecutorServices;
+import webhook.WebHook;
+import webhook.teamcity.BuildStateEnum;
+import webhook.teamcity.Loggers;
+import webhook.teamcity.WebHookHttpClientFactory;
+import webhook.teamcity.settings.WebHookConfig;
+
+/**
+ * Executes webhooks using a non-blocking HTTP client.
+ * The webhook content is built on TeamCity's normal executor (which is quick), 
+ * and the request is then handed to the client's I/O threads. No executor thread 
+ * is held while waiting for the receiver to respond, so a slow endpoint 
+ * can not starve the shared executor.
+ * <p>
+ * Once the response arrives, recording the history, scheduling retries and 
+ * acknowledging the journal are done on a small plugin owned completion executor, 
+ * as they can block and the client's I/O threads must not.
+ */
+public class WebHookAsyncExecutorImpl implements WebHookAsyncExecutor {
+	
+	private static final int COMPLETION_THREAD_COUNT = 2;
+	
+    private final WebHookRunnerFactory webHookRunnerFactory;
+    private final ExecutorServices executorServices;
+    private final WebHookHttpClientFactory webHookHttpClientFactory;
+    private final ThreadPoolExecutor completionExecutor;
+    
+	public WebHookAsyncExecutorImpl(
+			WebHookRunnerFactory webHookRunnerFactory,
+			ExecutorServices executorServices,
+			WebHookHttpClientFactory webHookHttpClientFactory)
+	{
+		this.webHookRunnerFactory = webHookRunnerFactory;
+		this.executorServices = executorServices;
+		this.webHookHttpClientFactory = webHookHttpClientFactory;
+		final AtomicInteger threadNumber = new AtomicInteger(1);
+		this.completionExecutor = new ThreadPoolExecutor(
+				COMPLETION_THREAD_COUNT, COMPLETION_THREAD_COUNT, 
+				60L, TimeUnit.SECONDS, 
+				new LinkedBlockingQueue<Runnable>(), 
+				r -> {
+					Thread thread = new Thread(r, "tcWebHooks-async-completion-" + threadNumber.getAndIncrement());
+					thread.setDaemon(true);
+					return thread;
+				});
+		this.completionExecutor.allowCoreThreadTimeOut(true);
+	}
+
+	@Override
+	public void execute(WebHook webhook, WebHookConfig whc, SQueuedBuild sQueuedBuild, 
+						BuildStateEnum state, String user, String comment, boolean isTest) 
+	{
+		Loggers.SERVER.debug("WebHookAsyncExecutorImpl :: About to schedule runner for webhook :: " + 
+				webhook.getExecutionStats().getTrackingIdAsString() + " : " + whc.getUniqueKey());
+		
+		WebHookRunner runner = webHookRunnerFactory.getRunner(webhook, whc, sQueuedBuild, state, user, comment, isTest);
+		schedule(runner);
+		
+		Loggers.SERVER.debug("WebHookAsyncExecutorImpl :: Finished scheduling runner for webhook :: " + 
+				webhook.getExecutionStats().getTrackingIdAsString() + " : " + whc.getUniqueKey());
+	}
+
+	@Override
+	public void execute(WebHook webhook, WebHookConfig whc, BuildStateEnum state, WebHookResponsibilityHolder responsibilityHolder,
+			boolean isTest) {
+		Loggers.SERVER.debug("WebHookAsyncExecutorImpl :: About to schedule runner for webhook :: " + 
+				webhook.getExecutionStats().getTrackingIdAsString() + " : " + whc.getUniqueKey());
+		
+		WebHookRunner runner = webHookRunnerFactory.getRunner(webhook, whc, state, responsibilityHolder, isTest);
+		schedule(runner);
+		
+		Loggers.SERVER.debug("WebHookAsyncExecutorImpl :: Finished scheduling runner for webhook :: " + 
+				webhook.getExecutionStats().getTrackingIdAsString() + " : " + whc.getUniqueKey());
+	}
+
+	@Override
+	public void execute(WebHook webhook, WebHookConfig whc, SBuild sBuild, BuildStateEnum state, String user, String comment,
+			boolean isTest) {
+		Loggers.SERVER.debug("WebHookAsyncExecutorImpl :: About to schedule runner for webhook :: " + 
+				webhook.getExecutionStats().getTrackingIdAsString() + " : " + whc.getUniqueKey());
+		
+		WebHookRunner runner = webHookRunnerFactory.getRunner(webhook, whc, sBuild, state, user, comment, isTest);
+		schedule(runner);
+		
+		Loggers.SERVER.debug("WebHookAsyncExecutorImpl :: Finished scheduling runner for webhook :: " + 
+				webhook.getExecutionStats().getTrackingIdAsString() + " : " + whc.getUniqueKey());
+	}
+	
+	private void schedule(final WebHookRunner runner) {
+		executorServices.getNormalExecutorService().execute(
+				() -> runner.runAsync(webHookHttpClientFactory.getAsyncHttpClient(), completionExecutor)
+			);
+	}
+	
+	/**
+	 * Finishes any outstanding completion work and stops the completion threads. 
+	 * Called by Spring when the plugin is unloaded.
+	 */
+	public void shutdown() {
+		this.completionExecutor.shutdown();
+		try {
+			this.completionExecutor.awaitTermination(10, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+	
+}
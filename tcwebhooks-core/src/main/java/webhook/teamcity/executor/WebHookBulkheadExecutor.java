@@ -0,0 +1,31 @@
+package webhook.teamcity.executor;
+
+public interface WebHookBulkheadExecutor {
+	
+	/**
+	 * Queues the runner for execution on the plugin's own thread pool. 
+	 * No more than the configured number of runners with the same bulkheadKey
+	 * will execute concurrently. If the queue is full, the configured 
+	 * {@link WebHookOverflowPolicy} is applied.
+	 * @param bulkheadKey Usually the generalised host name of the webhook URL.
+	 * @param runner The runner to execute.
+	 */
+	public void execute(String bulkheadKey, WebHookRunner runner);
+	
+	/**
+	 * @return The number of runners waiting to execute.
+	 */
+	public int getPendingCount();
+	
+	/**
+	 * @return The number of runners spilled (or waiting to be spilled) to the 
+	 * delivery journal, waiting for space in the queue.
+	 */
+	public int getSpilledCount();
+	
+	/**
+	 * @return The number of runners currently executing.
+	 */
+	public int getActiveCount();
+
+}
@@ -0,0 +1,413 @@
+package webhook.teamcity.executor;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import webhook.teamcity.Loggers;
+import webhook.teamcity.settings.WebHookMainConfig;
+import webhook.teamcity.settings.WebHookMainSettings;
+
+/**
+ * A plugin owned executor, so that webhooks don't compete with TeamCity (and other plugins) 
+ * for threads in the shared normal executor.
+ * <p>
+ * Runners are queued in a bounded queue. Each bulkhead key (the generalised host of the webhook URL)
+ * may only have a limited number of runners executing at once. Runners for a bulkhead which is 
+ * full wait in that bulkhead's queue without holding a thread, so a slow or dead endpoint can 
+ * only ever tie up its own share of the threads. 
+ * <p>
+ * Each bulkhead's queue is also limited, so a dead endpoint can't fill the shared queue
+ * with its own runners. When a bulkhead's queue is full, the overflow policy is applied 
+ * to that bulkhead's queue rather than to the shared one, so other hosts are unaffected.
+ * Runners which a bulkhead spills are held by that bulkhead, and queued as it drains.
+ * <p>
+ * Each runner is rendered into the delivery journal when it is accepted, before it is queued,
+ * so that webhooks waiting in the queue are replayed if TeamCity is restarted.
+ * <p>
+ * With the spill-to-disk overflow policy, runners which don't fit in the queue are
+ * replaced with a {@link DeferredWebHookRunner}, which only holds their journal sequence. 
+ * They are queued as space becomes available, and read back from the journal when they run.
+ * <p>
+ * Spilling is done by a single spill thread, so that runners which could not be journaled
+ * when they were accepted are rendered without holding up the TeamCity thread which raised 
+ * the event, and spilled runners keep the order they arrived in.
+ * No more than the queue size of runners can be waiting to be spilled; beyond that, 
+ * runners are dropped as with the drop-newest policy.
+ */
+public class WebHookBulkheadExecutorImpl implements WebHookBulkheadExecutor {
+	
+	private static final String CLASS_NAME = "WebHookBulkheadExecutorImpl :: ";
+	private static final WebHookMainConfig DEFAULT_CONFIG = new WebHookMainConfig();
+	
+	private final WebHookMainSettings myMainSettings;
+	private final Object lock = new Object();
+	
+	/** Runners which have not yet started, oldest first. */
+	private final LinkedHashSet<QueuedRunner> pendingRunners = new LinkedHashSet<>();
+	private final Map<String, Bulkhead> bulkheads = new HashMap<>();
+	/** Runners which have been spilled to the delivery journal, oldest first. */
+	private final Deque<QueuedRunner> spilledRunners = new ArrayDeque<>();
+	/** The number of runners spilled from the shared queue which the spill thread has not yet journaled. */
+	private int spillingCount = 0;
+	private final ThreadPoolExecutor threadPoolExecutor;
+	private final ThreadPoolExecutor spillExecutor;
+	
+	public WebHookBulkheadExecutorImpl(WebHookMainSettings mainSettings) {
+		this.myMainSettings = mainSettings;
+		int threads = getMainConfig().getExecutorThreadCount();
+		this.threadPoolExecutor = new ThreadPoolExecutor(
+				threads, threads, 
+				60L, TimeUnit.SECONDS, 
+				new LinkedBlockingQueue<Runnable>(), 
+				new WebHookThreadFactory("tcWebHooks-executor-"));
+		this.threadPoolExecutor.allowCoreThreadTimeOut(true);
+		this.spillExecutor = new ThreadPoolExecutor(
+				1, 1, 
+				60L, TimeUnit.SECONDS, 
+				new LinkedBlockingQueue<Runnable>(), 
+				new WebHookThreadFactory("tcWebHooks-spill-"));
+		this.spillExecutor.allowCoreThreadTimeOut(true);
+	}
+	
+	@Override
+	public void execute(String bulkheadKey, WebHookRunner runner) {
+		WebHookMainConfig config = getMainConfig();
+		applyThreadCount(config.getExecutorThreadCount());
+		// Outside the lock, as it renders the webhook.
+		runner.journal();
+		
+		QueuedRunner queuedRunner = new QueuedRunner(bulkheadKey, runner);
+		QueuedRunner rejectedRunner = null;
+		boolean spill = false;
+		Bulkhead spillingBulkhead = null;
+		String overflowedQueue = "executor queue";
+		synchronized (lock) {
+			Bulkhead bulkhead = bulkheads.get(bulkheadKey);
+			boolean queueFull = pendingRunners.size() >= config.getExecutorQueueSize();
+			if (bulkhead != null && bulkhead.isFull(config.getExecutorMaxWaitingPerHost())) {
+				/* Only this host's queue is full, so apply the overflow policy to it 
+				 * rather than to the shared queue which other hosts are using. */
+				overflowedQueue = "queue for " + bulkheadKey;
+				if (WebHookOverflowPolicy.SPILL_TO_DISK.equals(config.getExecutorOverflowPolicy())) {
+					rejectedRunner = queuedRunner;
+					if (getTotalSpillingCount() < config.getExecutorQueueSize()) {
+						spill = true;
+						spillingBulkhead = bulkhead;
+						bulkhead.spillingCount++;
+					}
+				} else if (WebHookOverflowPolicy.DROP_OLDEST.equals(config.getExecutorOverflowPolicy())) {
+					rejectedRunner = bulkhead.waitingRunners.poll();
+					pendingRunners.remove(rejectedRunner);
+				} else {
+					rejectedRunner = queuedRunner;
+				}
+			} else if (WebHookOverflowPolicy.SPILL_TO_DISK.equals(config.getExecutorOverflowPolicy()) 
+					&& (queueFull || !spilledRunners.isEmpty() || spillingCount > 0)) 
+			{
+				/* Once anything has been spilled, keep spilling until the
+				 * backlog has drained so that webhooks are sent in order. */
+				rejectedRunner = queuedRunner;
+				if (getTotalSpillingCount() < config.getExecutorQueueSize()) {
+					spill = true;
+					spillingCount++;
+				}
+			} else if (queueFull) {
+				if (WebHookOverflowPolicy.DROP_OLDEST.equals(config.getExecutorOverflowPolicy())) {
+					rejectedRunner = removeOldestPendingRunner();
+				} else {
+					rejectedRunner = queuedRunner;
+				}
+			}
+			if (rejectedRunner != queuedRunner) {
+				enqueue(queuedRunner, config.getExecutorMaxPerHost());
+			}
+		}
+		
+		if (spill) {
+			submitSpill(queuedRunner, spillingBulkhead, overflowedQueue);
+		} else if (rejectedRunner != null) {
+			Loggers.SERVER.warn(CLASS_NAME + "The " + overflowedQueue + " is full. Applying overflow policy '" 
+					+ config.getExecutorOverflowPolicy().getConfigValue() 
+					+ "' and dropping webhook for " + rejectedRunner.bulkheadKey);
+			rejectedRunner.runner.recordRejection("WebHook dropped because the " + overflowedQueue + " was full (overflow policy: " 
+					+ config.getExecutorOverflowPolicy().getConfigValue() + ")");
+		}
+	}
+	
+	@Override
+	public int getPendingCount() {
+		synchronized (lock) {
+			return pendingRunners.size();
+		}
+	}
+	
+	@Override
+	public int getSpilledCount() {
+		synchronized (lock) {
+			int count = spilledRunners.size() + getTotalSpillingCount();
+			for (Bulkhead bulkhead : bulkheads.values()) {
+				count += bulkhead.spilledRunners.size();
+			}
+			return count;
+		}
+	}
+	
+	@Override
+	public int getActiveCount() {
+		return this.threadPoolExecutor.getActiveCount();
+	}
+	
+	/**
+	 * Stops the thread pool. Called by Spring when the plugin is unloaded.
+	 */
+	public void shutdown() {
+		this.threadPoolExecutor.shutdownNow();
+		this.spillExecutor.shutdownNow();
+	}
+	
+	/**
+	 * Hands the runner to the spill thread.
+	 * @param bulkhead The bulkhead whose queue overflowed, or null if it was the shared queue.
+	 */
+	private void submitSpill(final QueuedRunner queuedRunner, final Bulkhead bulkhead, String overflowedQueue) {
+		Loggers.SERVER.debug(CLASS_NAME + "The " + overflowedQueue + " is full. Spilling webhook for " 
+				+ queuedRunner.bulkheadKey + " to the delivery journal");
+		try {
+			spillExecutor.execute(() -> spillRunner(queuedRunner, bulkhead));
+		} catch (RejectedExecutionException ex) {
+			synchronized (lock) {
+				if (bulkhead != null) {
+					bulkhead.spillingCount--;
+				} else {
+					spillingCount--;
+				}
+			}
+			queuedRunner.runner.recordRejection("WebHook dropped because the executor is shutting down");
+		}
+	}
+	
+	/* Runs on the spill thread, outside the lock */
+	private void spillRunner(QueuedRunner queuedRunner, Bulkhead bulkhead) {
+		WebHookRunner spilledRunner = null;
+		try {
+			spilledRunner = queuedRunner.runner.spill();
+		} finally {
+			synchronized (lock) {
+				Deque<QueuedRunner> target = spilledRunners;
+				if (bulkhead != null) {
+					bulkhead.spillingCount--;
+					target = bulkhead.spilledRunners;
+				} else {
+					spillingCount--;
+				}
+				if (spilledRunner != null) {
+					target.add(new QueuedRunner(queuedRunner.bulkheadKey, spilledRunner));
+				}
+			}
+		}
+		// In case the queue drained while the runner was being journaled.
+		drainSpilledRunners();
+	}
+	
+	/**
+	 * Moves spilled runners into the queue while there is space, 
+	 * firstly those held by each bulkhead and then those spilled from the shared queue.
+	 */
+	private void drainSpilledRunners() {
+		synchronized (lock) {
+			WebHookMainConfig config = getMainConfig();
+			int queueSize = config.getExecutorQueueSize();
+			int maxPerHost = config.getExecutorMaxPerHost();
+			int maxWaitingPerHost = config.getExecutorMaxWaitingPerHost();
+			Iterator<Map.Entry<String, Bulkhead>> iterator = bulkheads.entrySet().iterator();
+			while (iterator.hasNext()) {
+				Bulkhead bulkhead = iterator.next().getValue();
+				while (!bulkhead.spilledRunners.isEmpty() && pendingRunners.size() < queueSize
+						&& bulkhead.waitingRunners.size() < maxWaitingPerHost) 
+				{
+					addToBulkhead(bulkhead, bulkhead.spilledRunners.poll(), maxPerHost);
+				}
+				if (bulkhead.isIdle()) {
+					iterator.remove();
+				}
+			}
+			while (!spilledRunners.isEmpty() && pendingRunners.size() < queueSize) {
+				QueuedRunner queuedRunner = spilledRunners.poll();
+				Bulkhead bulkhead = bulkheads.get(queuedRunner.bulkheadKey);
+				if (bulkhead != null && bulkhead.isFull(maxWaitingPerHost)) {
+					// Its host's queue is full, so the host holds it until there is room.
+					bulkhead.spilledRunners.add(queuedRunner);
+				} else {
+					enqueue(queuedRunner, maxPerHost);
+				}
+			}
+		}
+	}
+	
+	/* Must be called while holding the lock */
+	private int getTotalSpillingCount() {
+		int count = spillingCount;
+		for (Bulkhead bulkhead : bulkheads.values()) {
+			count += bulkhead.spillingCount;
+		}
+		return count;
+	}
+	
+	/* Must be called while holding the lock */
+	private void enqueue(QueuedRunner queuedRunner, int maxPerHost) {
+		Bulkhead bulkhead = bulkheads.get(queuedRunner.bulkheadKey);
+		if (bulkhead == null) {
+			bulkhead = new Bulkhead();
+			bulkheads.put(queuedRunner.bulkheadKey, bulkhead);
+		}
+		addToBulkhead(bulkhead, queuedRunner, maxPerHost);
+	}
+	
+	/* Must be called while holding the lock */
+	private void addToBulkhead(Bulkhead bulkhead, QueuedRunner queuedRunner, int maxPerHost) {
+		pendingRunners.add(queuedRunner);
+		if (bulkhead.permitsInUse < maxPerHost) {
+			bulkhead.permitsInUse++;
+			dispatch(queuedRunner);
+		} else {
+			bulkhead.waitingRunners.add(queuedRunner);
+		}
+	}
+	
+	/* Must be called while holding the lock */
+	private QueuedRunner removeOldestPendingRunner() {
+		Iterator<QueuedRunner> iterator = pendingRunners.iterator();
+		if (!iterator.hasNext()) {
+			return null;
+		}
+		QueuedRunner oldest = iterator.next();
+		iterator.remove();
+		Bulkhead bulkhead = bulkheads.get(oldest.bulkheadKey);
+		if (bulkhead != null) {
+			/* If it was already dispatched, it holds a permit which 
+			 * will be released when the pool gets to it. */
+			bulkhead.waitingRunners.remove(oldest);
+		}
+		return oldest;
+	}
+	
+	/* Must be called while holding the lock */
+	private void dispatch(final QueuedRunner queuedRunner) {
+		threadPoolExecutor.execute(() -> runQueuedRunner(queuedRunner));
+	}
+	
+	private void runQueuedRunner(QueuedRunner queuedRunner) {
+		synchronized (lock) {
+			if (!pendingRunners.remove(queuedRunner)) {
+				// Runner was dropped while it was waiting for a thread.
+				releasePermit(queuedRunner.bulkheadKey);
+				return;
+			}
+		}
+		try {
+			queuedRunner.runner.run();
+		} finally {
+			synchronized (lock) {
+				releasePermit(queuedRunner.bulkheadKey);
+			}
+			drainSpilledRunners();
+		}
+	}
+	
+	/* Must be called while holding the lock */
+	private void releasePermit(String bulkheadKey) {
+		Bulkhead bulkhead = bulkheads.get(bulkheadKey);
+		if (bulkhead == null) {
+			return;
+		}
+		QueuedRunner next = bulkhead.waitingRunners.poll();
+		if (next != null) {
+			dispatch(next);
+		} else {
+			bulkhead.permitsInUse--;
+			if (bulkhead.isIdle()) {
+				bulkheads.remove(bulkheadKey);
+			}
+		}
+	}
+	
+	private void applyThreadCount(int threads) {
+		if (threadPoolExecutor.getMaximumPoolSize() == threads) {
+			return;
+		}
+		synchronized (threadPoolExecutor) {
+			if (threads > threadPoolExecutor.getMaximumPoolSize()) {
+				threadPoolExecutor.setMaximumPoolSize(threads);
+				threadPoolExecutor.setCorePoolSize(threads);
+			} else if (threads < threadPoolExecutor.getMaximumPoolSize()) {
+				threadPoolExecutor.setCorePoolSize(threads);
+				threadPoolExecutor.setMaximumPoolSize(threads);
+			}
+		}
+	}
+	
+	private WebHookMainConfig getMainConfig() {
+		if (this.myMainSettings != null && this.myMainSettings.getWebHookMainConfig() != null) {
+			return this.myMainSettings.getWebHookMainConfig();
+		}
+		return DEFAULT_CONFIG;
+	}
+	
+	private static class QueuedRunner {
+		private final String bulkheadKey;
+		private final WebHookRunner runner;
+		
+		QueuedRunner(String bulkheadKey, WebHookRunner runner) {
+			this.bulkheadKey = bulkheadKey;
+			this.runner = runner;
+		}
+	}
+	
+	private static class Bulkhead {
+		private int permitsInUse = 0;
+		private final Deque<QueuedRunner> waitingRunners = new ArrayDeque<>();
+		/** Runners spilled because this bulkhead's queue was full, oldest first. */
+		private final Deque<QueuedRunner> spilledRunners = new ArrayDeque<>();
+		/** The number of this bulkhead's runners which the spill thread has not yet journaled. */
+		private int spillingCount = 0;
+		
+		/**
+		 * Full once its queue has reached the limit. While it holds spilled runners it 
+		 * stays full, so that they are sent before any newer runners for the host.
+		 */
+		boolean isFull(int maxWaiting) {
+			return waitingRunners.size() >= maxWaiting || !spilledRunners.isEmpty() || spillingCount > 0;
+		}
+		
+		boolean isIdle() {
+			return permitsInUse <= 0 && spilledRunners.isEmpty() && spillingCount == 0;
+		}
+	}
+	
+	private static class WebHookThreadFactory implements ThreadFactory {
+		private final String namePrefix;
+		private final AtomicInteger threadNumber = new AtomicInteger(1);
+		
+		WebHookThreadFactory(String namePrefix) {
+			this.namePrefix = namePrefix;
+		}
+
+		@Override
+		public Thread newThread(Runnable r) {
+			Thread thread = new Thread(r, namePrefix + threadNumber.getAndIncrement());
+			thread.setDaemon(true);
+			return thread;
+		}
+	}
+
+}
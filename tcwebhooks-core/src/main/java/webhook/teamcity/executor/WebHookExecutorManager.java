@@ -13,44 +13,44 @@ public class WebHookExecutorManager implements WebHookExecutor {
 	private WebHookMainSettings myWebHookMainSettings;
 	private WebHookSerialExecutor myWebHookSerialExecutor;
 	private WebHookThreadingExecutor myWebHookThreadingExecutor;
+	private WebHookAsyncExecutor myWebHookAsyncExecutor;
 	
 	public WebHookExecutorManager(
 			WebHookMainSettings webHookMainSettings,
 			WebHookSerialExecutor webHookSerialExecutor,
-			WebHookThreadingExecutor webHookThreadingExecutor) {
+			WebHookThreadingExecutor webHookThreadingExecutor,
+			WebHookAsyncExecutor webHookAsyncExecutor) {
 		myWebHookMainSettings = webHookMainSettings;
 		myWebHookSerialExecutor = webHookSerialExecutor;
 		myWebHookThreadingExecutor = webHookThreadingExecutor;
+		myWebHookAsyncExecutor = webHookAsyncExecutor;
+	}
+	
+	private WebHookExecutor getExecutor() {
+		if (myWebHookMainSettings.useAsyncExecutor()) {
+			return myWebHookAsyncExecutor;
+		} else if (myWebHookMainSettings.useThreadedExecutor()) {
+			return myWebHookThreadingExecutor;
+		}
+		return myWebHookSerialExecutor;
 	}
 
 	@Override
 	public void execute(WebHook webHook, WebHookConfig whc, SQueuedBuild sBuild, BuildStateEnum state, String username,
 			String comment, boolean isTest) {
-		if (myWebHookMainSettings.useThreadedExecutor()) {
-			myWebHookThreadingExecutor.execute(webHook, whc, sBuild, state, username, comment, isTest);
-		} else {
-			myWebHookSerialExecutor.execute(webHook, whc, sBuild, state, username, comment, isTest);
-		}
+		getExecutor().execute(webHook, whc, sBuild, state, username, comment, isTest);
 	}
 	
 	@Override
 	public void execute(WebHook webHook, WebHookConfig whc, BuildStateEnum state,
 			WebHookResponsibilityHolder responsibilityHolder, boolean isTest) {
-		if (myWebHookMainSettings.useThreadedExecutor()) {
-			myWebHookThreadingExecutor.execute(webHook, whc, state, responsibilityHolder, isTest);
-		} else {
-			myWebHookSerialExecutor.execute(webHook, whc, state, responsibilityHolder, isTest);
-		}
+		getExecutor().execute(webHook, whc, state, responsibilityHolder, isTest);
 	}
 
 	@Override
 	public void execute(WebHook webHook, WebHookConfig whc, SBuild sBuild, BuildStateEnum state, String username,
 			String comment, boolean isTest) {
-		if (myWebHookMainSettings.useThreadedExecutor()) {
-			myWebHookThreadingExecutor.execute(webHook, whc, sBuild, state, username, comment, isTest);
-		} else {
-			myWebHookSerialExecutor.execute(webHook, whc, sBuild, state, username, comment, isTest);
-		}
+		getExecutor().execute(webHook, whc, sBuild, state, username, comment, isTest);
 	}
 
 }
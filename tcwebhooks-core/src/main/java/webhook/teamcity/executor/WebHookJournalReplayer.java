@@ -0,0 +1,105 @@
+package webhook.teamcity.executor;
+
+import java.util.List;
+
+import webhook.teamcity.DeferrableService;
+import webhook.teamcity.DeferrableServiceManager;
+import webhook.teamcity.Loggers;
+import webhook.teamcity.history.GeneralisedWebAddress;
+import webhook.teamcity.history.WebAddressTransformer;
+import webhook.teamcity.journal.WebHookDeliveryJournal;
+import webhook.teamcity.retry.WebHookDeadLetter;
+import webhook.teamcity.retry.WebHookDeadLetterStore;
+
+/**
+ * Once TeamCity has started, re-sends any webhooks which were still in the
+ * delivery journal when the server was stopped. Also re-sends dead letters on request.
+ */
+public class WebHookJournalReplayer implements DeferrableService {
+
+	private static final String CLASS_NAME = "WebHookJournalReplayer :: ";
+
+	private final WebHookDeliveryJournal webHookDeliveryJournal;
+	private final WebHookJournalRunnerFactory webHookJournalRunnerFactory;
+	private final WebHookBulkheadExecutor webHookBulkheadExecutor;
+	private final WebAddressTransformer webAddressTransformer;
+	private final DeferrableServiceManager deferrableServiceManager;
+	private final WebHookDeadLetterStore webHookDeadLetterStore;
+
+	public WebHookJournalReplayer(
+			WebHookDeliveryJournal webHookDeliveryJournal,
+			WebHookJournalRunnerFactory webHookJournalRunnerFactory,
+			WebHookBulkheadExecutor webHookBulkheadExecutor,
+			WebAddressTransformer webAddressTransformer,
+			DeferrableServiceManager deferrableServiceManager,
+			WebHookDeadLetterStore webHookDeadLetterStore)
+	{
+		this.webHookDeliveryJournal = webHookDeliveryJournal;
+		this.webHookJournalRunnerFactory = webHookJournalRunnerFactory;
+		this.webHookBulkheadExecutor = webHookBulkheadExecutor;
+		this.webAddressTransformer = webAddressTransformer;
+		this.deferrableServiceManager = deferrableServiceManager;
+		this.webHookDeadLetterStore = webHookDeadLetterStore;
+	}
+
+	@Override
+	public void requestDeferredRegistration() {
+		Loggers.SERVER.info(CLASS_NAME + "Registering as a deferrable service");
+		deferrableServiceManager.registerService(this);
+	}
+
+	@Override
+	public void register() {
+		List<Long> sequences = webHookDeliveryJournal.getUnacknowledgedSequences();
+		if (sequences.isEmpty()) {
+			return;
+		}
+		Loggers.SERVER.info(CLASS_NAME + "Replaying " + sequences.size() + " undelivered webhooks from the delivery journal");
+		for (Long sequence : sequences) {
+			JournalReplayWebHookRunner runner = webHookJournalRunnerFactory.getRunner(sequence);
+			if (runner != null) {
+				webHookBulkheadExecutor.execute(getBulkheadKey(runner.getUrl()), runner);
+			}
+		}
+	}
+
+	/**
+	 * Sends a dead letter again, starting from its first attempt, and removes it from the store.
+	 * If it fails again it is retried, and may end up back in the dead letter store with a new id.
+	 * The dead letter stays in the store if it can't be sent.
+	 * @param id The id of the dead letter.
+	 * @return false if there is no dead letter with that id, or its webhook no longer exists.
+	 */
+	public boolean replayDeadLetter(String id) {
+		WebHookDeadLetter deadLetter = webHookDeadLetterStore.get(id);
+		if (deadLetter == null) {
+			return false;
+		}
+		JournalReplayWebHookRunner runner = webHookJournalRunnerFactory.getRunner(deadLetter.getEntry(), 1);
+		if (runner == null) {
+			Loggers.SERVER.warn(CLASS_NAME + "Unable to replay dead letter " + id + ". Its webhook no longer exists.");
+			return false;
+		}
+		if (webHookDeadLetterStore.remove(id) == null) {
+			// Another request has already replayed it.
+			return false;
+		}
+		Loggers.SERVER.info(CLASS_NAME + "Replaying dead letter " + id + " for webhook " + deadLetter.getEntry().getTrackingId());
+		try {
+			webHookBulkheadExecutor.execute(getBulkheadKey(runner.getUrl()), runner);
+		} catch (RuntimeException ex) {
+			webHookDeadLetterStore.add(deadLetter);
+			throw ex;
+		}
+		return true;
+	}
+
+	private String getBulkheadKey(String url) {
+		GeneralisedWebAddress address = webAddressTransformer.getGeneralisedHostName(url);
+		if (address != null) {
+			return address.getGeneralisedAddress();
+		}
+		return "unknown";
+	}
+
+}
@@ -0,0 +1,126 @@
+package webhook.teamcity.executor;
+
+import java.util.UUID;
+
+import jetbrains.buildServer.serverSide.ProjectManager;
+import jetbrains.buildServer.serverSide.SProject;
+import lombok.AllArgsConstructor;
+import webhook.WebHook;
+import webhook.teamcity.BuildStateEnum;
+import webhook.teamcity.Loggers;
+import webhook.teamcity.WebHookFactory;
+import webhook.teamcity.circuitbreaker.WebHookCircuitBreakerRegistry;
+import webhook.teamcity.history.WebHookHistoryItemFactory;
+import webhook.teamcity.history.WebHookHistoryRepository;
+import webhook.teamcity.journal.WebHookDeliveryJournal;
+import webhook.teamcity.journal.WebHookJournalEntry;
+import webhook.teamcity.retry.WebHookRetryScheduler;
+import webhook.teamcity.settings.WebHookConfig;
+import webhook.teamcity.settings.WebHookMainSettings;
+import webhook.teamcity.settings.WebHookSettingsManager;
+
+/**
+ * Rebuilds runners from entries in the {@link WebHookDeliveryJournal}.
+ * The webhook's current configuration is used for authentication, proxy and timeouts,
+ * but the URL, headers and payload are sent exactly as they were journaled.
+ */
+@AllArgsConstructor
+public class WebHookJournalRunnerFactory {
+
+	private static final String CLASS_NAME = "WebHookJournalRunnerFactory :: ";
+
+	private final WebHookDeliveryJournal webHookDeliveryJournal;
+	private final WebHookSettingsManager webHookSettingsManager;
+	private final ProjectManager projectManager;
+	private final WebHookFactory webHookFactory;
+	private final WebHookMainSettings webHookMainSettings;
+	private final WebHookHistoryRepository webHookHistoryRepository;
+	private final WebHookHistoryItemFactory webHookHistoryItemFactory;
+	private final WebHookRetryScheduler webHookRetryScheduler;
+	private final WebHookCircuitBreakerRegistry webHookCircuitBreakerRegistry;
+
+	/**
+	 * @param sequence The journal sequence of the entry to replay.
+	 * @return A runner, or null if the entry has already been acknowledged or its
+	 * webhook no longer exists (in which case the entry is acknowledged and discarded).
+	 */
+	public JournalReplayWebHookRunner getRunner(long sequence) {
+		return getRunner(sequence, 1);
+	}
+
+	/**
+	 * @param sequence The journal sequence of the entry to replay.
+	 * @param attempt The attempt number of the delivery, starting at 1.
+	 * @return A runner, or null if the entry has already been acknowledged or its
+	 * webhook no longer exists (in which case the entry is acknowledged and discarded).
+	 */
+	public JournalReplayWebHookRunner getRunner(long sequence, int attempt) {
+		WebHookJournalEntry entry = webHookDeliveryJournal.getEntry(sequence);
+		if (entry == null) {
+			return null;
+		}
+		return buildRunner(entry, sequence, attempt);
+	}
+
+	/**
+	 * Builds a runner for an entry which is not in the journal, such as a dead letter.
+	 * The entry is journaled when the runner is executed.
+	 * @param entry The rendered webhook request.
+	 * @param attempt The attempt number of the delivery, starting at 1.
+	 * @return A runner, or null if the entry's webhook no longer exists.
+	 */
+	public JournalReplayWebHookRunner getRunner(WebHookJournalEntry entry, int attempt) {
+		return buildRunner(entry, WebHookDeliveryJournal.NOT_JOURNALED, attempt);
+	}
+
+	private JournalReplayWebHookRunner buildRunner(WebHookJournalEntry entry, long sequence, int attempt) {
+		SProject sProject = projectManager.findProjectById(entry.getProjectInternalId());
+		WebHookConfig whc = sProject == null ? null : findWebHookConfig(entry);
+		if (whc == null || !whc.getEnabled()) {
+			Loggers.SERVER.info(CLASS_NAME + "Discarding journaled webhook " + entry.getTrackingId()
+					+ ". WebHook " + entry.getWebHookUniqueKey() + " no longer exists or is disabled.");
+			if (sequence != WebHookDeliveryJournal.NOT_JOURNALED) {
+				webHookDeliveryJournal.acknowledge(sequence);
+			}
+			return null;
+		}
+		whc.setProjectExternalId(sProject.getExternalId());
+		whc.setProjectInternalId(sProject.getProjectId());
+
+		BuildStateEnum state = BuildStateEnum.findBuildState(entry.getBuildState());
+		WebHook webhook = webHookFactory.getWebHook(whc, webHookMainSettings.getProxyConfigForUrl(entry.getUrl()));
+		webhook.setUrl(entry.getUrl());
+		webhook.setContentType(entry.getContentType());
+		webhook.setCharset(entry.getCharset());
+		webhook.setPayload(entry.getPayload());
+		webhook.setResolvedHeaders(entry.getHeaders());
+		webhook.setEnabled(true);
+		webhook.getExecutionStats().setTrackingId(UUID.fromString(entry.getTrackingId()));
+		webhook.getExecutionStats().setBuildState(state);
+
+		return new JournalReplayWebHookRunner(
+				webHookHistoryRepository,
+				webHookHistoryItemFactory,
+				webHookDeliveryJournal,
+				this,
+				webHookRetryScheduler,
+				webHookCircuitBreakerRegistry,
+				whc,
+				state,
+				webhook,
+				sProject,
+				sequence,
+				attempt
+			);
+	}
+
+	private WebHookConfig findWebHookConfig(WebHookJournalEntry entry) {
+		for (WebHookConfig whc : webHookSettingsManager.getSettings(entry.getProjectInternalId()).getWebHooksConfigs()) {
+			if (whc.getUniqueKey().equals(entry.getWebHookUniqueKey())) {
+				return whc;
+			}
+		}
+		return null;
+	}
+
+}
@@ -0,0 +1,30 @@
+package webhook.teamcity.executor;
+
+import lombok.Getter;
+
+/**
+ * Determines what happens to a webhook when the executor queue is full.
+ */
+@Getter
+public enum WebHookOverflowPolicy {
+	
+	DROP_OLDEST ("drop-oldest"),
+	DROP_NEWEST ("drop-newest"),
+	SPILL_TO_DISK ("spill-to-disk");
+	
+	String configValue;
+	
+	WebHookOverflowPolicy(String configValue) {
+		this.configValue = configValue;
+	}
+	
+	public static WebHookOverflowPolicy findByConfigValue(String configValue) {
+		for (WebHookOverflowPolicy policy : values()) {
+			if (policy.getConfigValue().equalsIgnoreCase(configValue)) {
+				return policy;
+			}
+		}
+		return null;
+	}
+
+}
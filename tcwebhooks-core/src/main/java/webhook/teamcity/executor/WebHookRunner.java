@@ -1,9 +1,49 @@
 package webhook.teamcity.executor;
 
+import java.util.concurrent.Executor;
+
+import org.apache.http.nio.client.HttpAsyncClient;
+
 import webhook.teamcity.history.WebHookHistoryItem;
+import webhook.teamcity.journal.WebHookDeliveryJournal;
 
 public interface WebHookRunner extends Runnable {
 	
 	public WebHookHistoryItem getWebHookHistoryItem();
+	
+	/**
+	 * Builds the webhook content on the calling thread, and then posts it 
+	 * using the non-blocking client. Once the response arrives, the client's callback
+	 * hands the history, retry and journal work to the completion executor, so that 
+	 * none of it runs on the client's I/O threads.
+	 * @param asyncClient A started non-blocking client
+	 * @param completionExecutor Runs the work which follows the response.
+	 */
+	public void runAsync(HttpAsyncClient asyncClient, Executor completionExecutor);
+	
+	/**
+	 * Records an errored history item for a webhook which 
+	 * was not executed because the executor could not accept it.
+	 * @param reason Human readable reason the webhook was rejected.
+	 */
+	public void recordRejection(String reason);
+	
+	/**
+	 * Renders the webhook and writes it to the delivery journal, so that it is not lost if 
+	 * TeamCity is restarted while it waits in the executor's queue. Called when the executor 
+	 * accepts the runner; the entry is acknowledged once the runner completes.
+	 * Does nothing if the webhook is already journaled, or can't be.
+	 */
+	public void journal();
+	
+	/**
+	 * Renders the webhook and writes it to the delivery journal instead of executing it. 
+	 * Used when the executor queue is full, so that the runner (and the TeamCity objects 
+	 * it holds) can be discarded and the webhook replayed from the journal later.
+	 * If the webhook can't be journaled, its history is recorded before returning.
+	 * @return A lightweight runner which reads the webhook back from the 
+	 * {@link WebHookDeliveryJournal} when it is run, or null if there is nothing to replay.
+	 */
+	public WebHookRunner spill();
 
 }
@@ -6,8 +6,11 @@ import lombok.AllArgsConstructor;
 import webhook.WebHook;
 import webhook.teamcity.BuildStateEnum;
 import webhook.teamcity.WebHookContentBuilder;
+import webhook.teamcity.circuitbreaker.WebHookCircuitBreakerRegistry;
 import webhook.teamcity.history.WebHookHistoryItemFactory;
 import webhook.teamcity.history.WebHookHistoryRepository;
+import webhook.teamcity.journal.WebHookDeliveryJournal;
+import webhook.teamcity.retry.WebHookRetryScheduler;
 import webhook.teamcity.settings.WebHookConfig;
 
 @AllArgsConstructor
@@ -16,6 +19,22 @@ public class WebHookRunnerFactory {
 	private WebHookContentBuilder webHookContentBuilder;
 	private WebHookHistoryRepository webHookHistoryRepository;
 	private WebHookHistoryItemFactory webHookHistoryItemFactory;
+	private WebHookDeliveryJournal webHookDeliveryJournal;
+	private WebHookJournalRunnerFactory webHookJournalRunnerFactory;
+	private WebHookRetryScheduler webHookRetryScheduler;
+	private WebHookCircuitBreakerRegistry webHookCircuitBreakerRegistry;
+	
+	/**
+	 * Creates a factory whose runners are not journaled, retried or circuit broken. 
+	 * Used when executing test and user requested webhooks.
+	 */
+	public WebHookRunnerFactory(
+			WebHookContentBuilder webHookContentBuilder,
+			WebHookHistoryRepository webHookHistoryRepository,
+			WebHookHistoryItemFactory webHookHistoryItemFactory) 
+	{
+		this(webHookContentBuilder, webHookHistoryRepository, webHookHistoryItemFactory, null, null, null, null);
+	}
 
 	public WebHookRunner getRunner(WebHook webhook, WebHookConfig whc, SBuild sBuild, BuildStateEnum state, String username,
 			String comment, boolean isTest) {
@@ -23,6 +42,10 @@ public class WebHookRunnerFactory {
 				webHookContentBuilder, 
 				webHookHistoryRepository, 
 				webHookHistoryItemFactory, 
+				webHookDeliveryJournal,
+				webHookJournalRunnerFactory,
+				webHookRetryScheduler,
+				webHookCircuitBreakerRegistry,
 				whc, 
 				state,
 				username,
@@ -42,6 +65,10 @@ public class WebHookRunnerFactory {
 				webHookContentBuilder, 
 				webHookHistoryRepository, 
 				webHookHistoryItemFactory, 
+				webHookDeliveryJournal,
+				webHookJournalRunnerFactory,
+				webHookRetryScheduler,
+				webHookCircuitBreakerRegistry,
 				whc,
 				state,
 				isTest,	// Test enables override too.
@@ -57,6 +84,10 @@ public class WebHookRunnerFactory {
 				webHookContentBuilder, 
 				webHookHistoryRepository, 
 				webHookHistoryItemFactory, 
+				webHookDeliveryJournal,
+				webHookJournalRunnerFactory,
+				webHookRetryScheduler,
+				webHookCircuitBreakerRegistry,
 				whc, 
 				state, 
 				isTest,	// Test enables override too.
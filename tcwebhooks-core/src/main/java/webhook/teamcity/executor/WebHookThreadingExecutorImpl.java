@@ -2,18 +2,23 @@ package webhook.teamcity.executor;
 
 import jetbrains.buildServer.serverSide.SBuild;
 import jetbrains.buildServer.serverSide.SQueuedBuild;
-import jetbrains.buildServer.serverSide.executors.ExecutorServices;
 import lombok.AllArgsConstructor;
 import webhook.WebHook;
 import webhook.teamcity.BuildStateEnum;
 import webhook.teamcity.Loggers;
+import webhook.teamcity.history.GeneralisedWebAddress;
+import webhook.teamcity.history.WebAddressTransformer;
 import webhook.teamcity.settings.WebHookConfig;
 
 @AllArgsConstructor
 public class WebHookThreadingExecutorImpl implements WebHookThreadingExecutor {
 	
+	private static final String SCHEME_SEPARATOR = "://";
+	private static final String VARIABLE_START = "$";
+	
     private final WebHookRunnerFactory webHookRunnerFactory;
-    private final ExecutorServices executorServices;
+    private final WebHookBulkheadExecutor webHookBulkheadExecutor;
+    private final WebAddressTransformer webAddressTransformer;
 
 	@Override
 	public void execute(WebHook webhook, WebHookConfig whc, SQueuedBuild sQueuedBuild, 
@@ -23,7 +28,7 @@ public class WebHookThreadingExecutorImpl implements WebHookThreadingExecutor {
 				webhook.getExecutionStats().getTrackingIdAsString() + " : " + whc.getUniqueKey());
 		
 		WebHookRunner runner = webHookRunnerFactory.getRunner(webhook, whc, sQueuedBuild, state, user, comment, isTest);
-		executorServices.getNormalExecutorService().execute(runner);
+		webHookBulkheadExecutor.execute(getBulkheadKey(webhook, whc), runner);
 		
 		Loggers.SERVER.debug("WebHookThreadingExecutorImpl :: Finished scheduling runner for webhook :: " + 
 				webhook.getExecutionStats().getTrackingIdAsString() + " : " + whc.getUniqueKey());
@@ -36,7 +41,7 @@ public class WebHookThreadingExecutorImpl implements WebHookThreadingExecutor {
 				webhook.getExecutionStats().getTrackingIdAsString() + " : " + whc.getUniqueKey());
 		
 		WebHookRunner runner = webHookRunnerFactory.getRunner(webhook, whc, state, responsibilityHolder, isTest);
-		executorServices.getNormalExecutorService().execute(runner);
+		webHookBulkheadExecutor.execute(getBulkheadKey(webhook, whc), runner);
 		
 		Loggers.SERVER.debug("WebHookThreadingExecutorImpl :: Finished scheduling runner for webhook :: " + 
 				webhook.getExecutionStats().getTrackingIdAsString() + " : " + whc.getUniqueKey());
@@ -49,11 +54,40 @@ public class WebHookThreadingExecutorImpl implements WebHookThreadingExecutor {
 				webhook.getExecutionStats().getTrackingIdAsString() + " : " + whc.getUniqueKey());
 		
 		WebHookRunner runner = webHookRunnerFactory.getRunner(webhook, whc, sBuild, state, user, comment, isTest);
-		executorServices.getNormalExecutorService().execute(runner);
+		webHookBulkheadExecutor.execute(getBulkheadKey(webhook, whc), runner);
 		
 		Loggers.SERVER.debug("WebHookThreadingExecutorImpl :: Finished scheduling runner for webhook :: " + 
 				webhook.getExecutionStats().getTrackingIdAsString() + " : " + whc.getUniqueKey());
 		
 	}
 	
+	/**
+	 * The bulkhead is keyed on the generalised host of the webhook's URL. However, the URL 
+	 * is not resolved until the runner builds the webhook's content, so the host of a URL 
+	 * like <code>https://${teamcity.host}/hook</code> is not known yet. Such a webhook is 
+	 * keyed on its own config instead, so that it does not share a bulkhead with every 
+	 * other webhook whose host is a variable.
+	 */
+	private String getBulkheadKey(WebHook webhook, WebHookConfig whc) {
+		if (hasVariableHost(webhook.getUrl())) {
+			return "webhook:" + whc.getUniqueKey();
+		}
+		GeneralisedWebAddress address = webAddressTransformer.getGeneralisedHostName(webhook.getUrl());
+		if (address != null) {
+			return address.getGeneralisedAddress();
+		}
+		return "unknown";
+	}
+	
+	static boolean hasVariableHost(String url) {
+		if (url == null) {
+			return false;
+		}
+		int hostStart = url.indexOf(SCHEME_SEPARATOR);
+		hostStart = hostStart < 0 ? 0 : hostStart + SCHEME_SEPARATOR.length();
+		int hostEnd = url.indexOf('/', hostStart);
+		String host = hostEnd < 0 ? url.substring(hostStart) : url.substring(hostStart, hostEnd);
+		return host.contains(VARIABLE_START);
+	}
+	
 }
@@ -10,6 +10,7 @@ import jetbrains.buildServer.serverSide.SProject;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import webhook.WebHookExecutionStats;
+import webhook.teamcity.WebHookExecutionException;
 import webhook.teamcity.settings.WebHookConfig;
 
 @Data @AllArgsConstructor
@@ -33,6 +34,13 @@ public class WebHookHistoryItem {
 		Exception exception;
 		String message;
 		int errorCode;
+		
+		/**
+		 * @return true if the webhook was not sent because the circuit breaker for its endpoint was open.
+		 */
+		public boolean isCircuitOpen() {
+			return errorCode == WebHookExecutionException.WEBHOOK_CIRCUIT_OPEN_ERROR_CODE;
+		}
 	}
 	
 	public String getUrl() {
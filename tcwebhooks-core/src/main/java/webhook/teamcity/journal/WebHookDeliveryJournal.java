@@ -0,0 +1,44 @@
+package webhook.teamcity.journal;
+
+import java.util.List;
+
+/**
+ * A persistent record of rendered webhook requests which have not yet completed.
+ * <p>
+ * Entries are appended when the executor accepts a webhook, and acknowledged once 
+ * its runner completes. Any entries which are still unacknowledged when TeamCity
+ * starts up are sent again, so delivery is at-least-once. Replayed requests
+ * keep their original <code>X-tcwebhooks-request-id</code> header, so receivers
+ * can detect duplicates.
+ */
+public interface WebHookDeliveryJournal {
+
+	public static final long NOT_JOURNALED = -1L;
+
+	/**
+	 * Appends an entry to the journal.
+	 * @param entry The rendered webhook request
+	 * @return The sequence number assigned to the entry, or {@link #NOT_JOURNALED}
+	 * if the journal is disabled or the entry could not be written.
+	 */
+	public long append(WebHookJournalEntry entry);
+
+	/**
+	 * Marks an entry as complete, so that it will not be replayed.
+	 * @param sequence The sequence returned from {@link #append(WebHookJournalEntry)}
+	 */
+	public void acknowledge(long sequence);
+
+	/**
+	 * Reads an unacknowledged entry back from the journal.
+	 * @param sequence
+	 * @return The entry, or null if it has been acknowledged or can't be read.
+	 */
+	public WebHookJournalEntry getEntry(long sequence);
+
+	/**
+	 * @return The sequence numbers of all unacknowledged entries, oldest first.
+	 */
+	public List<Long> getUnacknowledgedSequences();
+
+}
@@ -0,0 +1,440 @@
+package webhook.teamcity.journal;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+import jetbrains.buildServer.serverSide.ServerPaths;
+import webhook.teamcity.Loggers;
+import webhook.teamcity.settings.WebHookMainConfig;
+import webhook.teamcity.settings.WebHookMainSettings;
+
+/**
+ * An append-only delivery journal, stored in two memory-mapped files in the
+ * tcWebHooks plugin data directory.
+ * <p>
+ * Records are written sequentially into the active file. Appending only copies
+ * the record into the mapped buffer. The buffer is flushed to disk by a background
+ * thread every <code>commit-interval</code> milliseconds, so all records written
+ * during an interval share a single flush (group commit). A TeamCity restart
+ * does not lose records which have not been flushed, as the mapped pages are
+ * already in the OS page cache. An OS crash can lose up to one interval.
+ * <p>
+ * When the active file is full, the unacknowledged records are copied into
+ * the other file with a higher generation number, which then becomes active.
+ * The generation is included in each record's checksum, so stale records left
+ * over from an older generation are never read back.
+ * <p>
+ * Record layout: length(4) type(1) sequence(8) crc(4) body(length)
+ */
+public class WebHookDeliveryJournalImpl implements WebHookDeliveryJournal {
+
+	private static final String CLASS_NAME = "WebHookDeliveryJournalImpl :: ";
+	private static final WebHookMainConfig DEFAULT_CONFIG = new WebHookMainConfig();
+	private static final String JOURNAL_DIRECTORY_NAME = "tcWebHooks";
+	private static final String JOURNAL_FILE_PREFIX = "delivery-journal-";
+	private static final String JOURNAL_FILE_SUFFIX = ".dat";
+	private static final int MAGIC = 0x7463574A;
+	private static final int FILE_HEADER_SIZE = 12;
+	private static final int RECORD_HEADER_SIZE = 17;
+	private static final byte RECORD_APPEND = 1;
+	private static final byte RECORD_ACK = 2;
+	private static final int MEGABYTE = 1024 * 1024;
+	/** Once everything is acknowledged, compact if the active file has grown past this. */
+	private static final int COMPACT_WHEN_EMPTY_THRESHOLD = MEGABYTE;
+
+	private final File journalDirectory;
+	private final WebHookMainSettings myMainSettings;
+	private final Object lock = new Object();
+
+	/** Sequence number to record offset in the active file, oldest first. */
+	private final Map<Long, Integer> unacknowledgedOffsets = new LinkedHashMap<>();
+	private final Segment[] segments = new Segment[2];
+	private int activeSegment;
+	private long generation;
+	private long lastSequence;
+	private int writePosition;
+	/** Where the last compaction finished writing, used to decide when the next one is worthwhile. */
+	private int compactedPosition;
+	private boolean opened = false;
+	private boolean failed = false;
+	private volatile boolean dirty = false;
+	private volatile boolean compactionRequested = false;
+	private ScheduledExecutorService committer;
+
+	public WebHookDeliveryJournalImpl(ServerPaths serverPaths, WebHookMainSettings mainSettings) {
+		this.journalDirectory = new File(serverPaths.getPluginDataDirectory(), JOURNAL_DIRECTORY_NAME);
+		this.myMainSettings = mainSettings;
+	}
+
+	@Override
+	public long append(WebHookJournalEntry entry) {
+		if (!getMainConfig().isDeliveryJournalEnabled()) {
+			return NOT_JOURNALED;
+		}
+		byte[] body;
+		try {
+			body = entry.serialise();
+		} catch (IOException e) {
+			Loggers.SERVER.warn(CLASS_NAME + "Unable to serialise journal entry for " + entry.getUrl() + " :: " + e.getMessage());
+			return NOT_JOURNALED;
+		}
+		synchronized (lock) {
+			if (!ensureOpen()) {
+				return NOT_JOURNALED;
+			}
+			int recordSize = RECORD_HEADER_SIZE + body.length;
+			if (!hasCapacity(recordSize)) {
+				compactionRequested = true;
+				Loggers.SERVER.warn(CLASS_NAME + "Delivery journal is full. Webhook for " + entry.getUrl()
+						+ " will not survive a restart. Consider increasing the delivery-journal max-size.");
+				return NOT_JOURNALED;
+			}
+			long sequence = ++lastSequence;
+			unacknowledgedOffsets.put(sequence, writePosition);
+			writeRecord(RECORD_APPEND, sequence, body);
+			entry.setSequence(sequence);
+			return sequence;
+		}
+	}
+
+	@Override
+	public void acknowledge(long sequence) {
+		if (sequence == NOT_JOURNALED) {
+			return;
+		}
+		synchronized (lock) {
+			if (!opened || unacknowledgedOffsets.remove(sequence) == null) {
+				return;
+			}
+			if (unacknowledgedOffsets.isEmpty() && writePosition > COMPACT_WHEN_EMPTY_THRESHOLD) {
+				compactionRequested = true;
+			} else if (hasCapacity(RECORD_HEADER_SIZE)) {
+				writeRecord(RECORD_ACK, sequence, new byte[0]);
+			} else {
+				// Compaction drops the acknowledged record, so no ack record is needed.
+				// Until it runs, the entry would be replayed after a crash, which is still at-least-once.
+				compactionRequested = true;
+			}
+		}
+	}
+
+	@Override
+	public WebHookJournalEntry getEntry(long sequence) {
+		synchronized (lock) {
+			if (!ensureOpen()) {
+				return null;
+			}
+			Integer offset = unacknowledgedOffsets.get(sequence);
+			if (offset == null) {
+				return null;
+			}
+			try {
+				return WebHookJournalEntry.deserialise(sequence, readBody(segments[activeSegment].buffer, offset));
+			} catch (IOException e) {
+				Loggers.SERVER.warn(CLASS_NAME + "Unable to read journal entry " + sequence + " :: " + e.getMessage());
+				return null;
+			}
+		}
+	}
+
+	@Override
+	public List<Long> getUnacknowledgedSequences() {
+		synchronized (lock) {
+			if (!ensureOpen()) {
+				return new ArrayList<>();
+			}
+			return new ArrayList<>(unacknowledgedOffsets.keySet());
+		}
+	}
+
+	/**
+	 * Flushes any outstanding records and closes the journal files.
+	 * Called by Spring when the plugin is unloaded.
+	 */
+	public void shutdown() {
+		synchronized (lock) {
+			if (!opened) {
+				return;
+			}
+			committer.shutdownNow();
+			commit();
+			for (Segment segment : segments) {
+				segment.close();
+			}
+			opened = false;
+		}
+	}
+
+	/**
+	 * Flushes the active file, and compacts it if an append or acknowledgement 
+	 * asked for that. Runs on the committer thread, so neither compaction nor its 
+	 * flushes hold up the threads appending to the journal.
+	 */
+	void maintain() {
+		commit();
+		if (!compactionRequested) {
+			return;
+		}
+		synchronized (lock) {
+			compactionRequested = false;
+			if (opened && !compact(0)) {
+				Loggers.SERVER.debug(CLASS_NAME + "Unable to compact delivery journal, as the unacknowledged entries fill it");
+			}
+		}
+	}
+
+	/**
+	 * Flushes the active file if anything has been written since the last flush.
+	 * Runs on the committer thread without holding the lock, so appends are not
+	 * blocked while the disk catches up.
+	 */
+	void commit() {
+		if (!dirty) {
+			return;
+		}
+		dirty = false;
+		MappedByteBuffer buffer;
+		synchronized (lock) {
+			if (!opened) {
+				return;
+			}
+			buffer = segments[activeSegment].buffer;
+		}
+		buffer.force();
+	}
+
+	/* Must be called while holding the lock */
+	private boolean ensureOpen() {
+		if (opened) {
+			return true;
+		}
+		if (failed) {
+			return false;
+		}
+		WebHookMainConfig config = getMainConfig();
+		int size = (int) Math.min((long) config.getDeliveryJournalMaxSize() * MEGABYTE, Integer.MAX_VALUE);
+		try {
+			if (!journalDirectory.isDirectory() && !journalDirectory.mkdirs()) {
+				throw new IOException("Unable to create directory " + journalDirectory.getAbsolutePath());
+			}
+			for (int i = 0; i < segments.length; i++) {
+				segments[i] = new Segment(new File(journalDirectory, JOURNAL_FILE_PREFIX + i + JOURNAL_FILE_SUFFIX), size);
+			}
+			long generation0 = segments[0].readGeneration();
+			long generation1 = segments[1].readGeneration();
+			if (generation0 < 0 && generation1 < 0) {
+				activeSegment = 0;
+				generation = 1;
+				writePosition = FILE_HEADER_SIZE;
+				compactedPosition = FILE_HEADER_SIZE;
+				segments[activeSegment].writeHeader(generation);
+				segments[activeSegment].buffer.force();
+			} else {
+				activeSegment = generation1 > generation0 ? 1 : 0;
+				generation = Math.max(generation0, generation1);
+				scan();
+				compactedPosition = FILE_HEADER_SIZE;
+			}
+		} catch (IOException e) {
+			Loggers.SERVER.warn(CLASS_NAME + "Unable to open delivery journal in " + journalDirectory.getAbsolutePath()
+					+ ". Webhooks will not be journaled :: " + e.getMessage());
+			Loggers.SERVER.debug(e);
+			for (Segment segment : segments) {
+				if (segment != null) {
+					segment.close();
+				}
+			}
+			failed = true;
+			return false;
+		}
+
+		long interval = config.getDeliveryJournalCommitInterval();
+		committer = Executors.newSingleThreadScheduledExecutor(r -> {
+			Thread thread = new Thread(r, "tcWebHooks-journal-commit");
+			thread.setDaemon(true);
+			return thread;
+		});
+		committer.scheduleWithFixedDelay(this::maintain, interval, interval, TimeUnit.MILLISECONDS);
+		opened = true;
+		Loggers.SERVER.info(CLASS_NAME + "Opened delivery journal " + segments[activeSegment].file.getAbsolutePath()
+				+ " with " + unacknowledgedOffsets.size() + " unacknowledged entries");
+		return true;
+	}
+
+	/* Reads the active file, rebuilding the unacknowledged entries.
+	 * Stops at the first record which is incomplete or from an older generation. */
+	private void scan() {
+		ByteBuffer buffer = segments[activeSegment].buffer.duplicate();
+		int position = FILE_HEADER_SIZE;
+		while (position + RECORD_HEADER_SIZE <= buffer.capacity()) {
+			buffer.position(position);
+			int length = buffer.getInt();
+			byte type = buffer.get();
+			long sequence = buffer.getLong();
+			int crc = buffer.getInt();
+			if ((type != RECORD_APPEND && type != RECORD_ACK) || length < 0
+					|| position + RECORD_HEADER_SIZE + length > buffer.capacity())
+			{
+				break;
+			}
+			byte[] body = new byte[length];
+			buffer.get(body);
+			if (crc != checksum(generation, type, sequence, body)) {
+				break;
+			}
+			if (type == RECORD_APPEND) {
+				unacknowledgedOffsets.put(sequence, position);
+			} else {
+				unacknowledgedOffsets.remove(sequence);
+			}
+			lastSequence = Math.max(lastSequence, sequence);
+			position += RECORD_HEADER_SIZE + length;
+		}
+		writePosition = position;
+	}
+
+	/* Must be called while holding the lock */
+	private boolean hasCapacity(int recordSize) {
+		return writePosition + recordSize <= segments[activeSegment].buffer.capacity();
+	}
+
+	/* Must be called while holding the lock */
+	private void writeRecord(byte type, long sequence, byte[] body) {
+		MappedByteBuffer buffer = segments[activeSegment].buffer;
+		buffer.position(writePosition);
+		buffer.putInt(body.length);
+		buffer.put(type);
+		buffer.putLong(sequence);
+		buffer.putInt(checksum(generation, type, sequence, body));
+		buffer.put(body);
+		writePosition = buffer.position();
+		dirty = true;
+		// Compact once half of the space left after the last compaction has been used.
+		if (writePosition > (buffer.capacity() + compactedPosition) / 2) {
+			compactionRequested = true;
+		}
+	}
+
+	/**
+	 * Copies the unacknowledged records into the inactive file, and then makes it
+	 * the active file. The new header is only written once the records have been
+	 * flushed, so a crash part way through leaves the old file active.
+	 * Must be called while holding the lock.
+	 * @param requiredCapacity Space needed after compaction
+	 * @return true if there is enough space once compacted.
+	 */
+	private boolean compact(int requiredCapacity) {
+		MappedByteBuffer source = segments[activeSegment].buffer;
+		int targetSegment = 1 - activeSegment;
+		MappedByteBuffer target = segments[targetSegment].buffer;
+		long targetGeneration = generation + 1;
+
+		int requiredSize = FILE_HEADER_SIZE + requiredCapacity;
+		Map<Long, byte[]> bodies = new LinkedHashMap<>();
+		for (Map.Entry<Long, Integer> entry : unacknowledgedOffsets.entrySet()) {
+			byte[] body = readBody(source, entry.getValue());
+			bodies.put(entry.getKey(), body);
+			requiredSize += RECORD_HEADER_SIZE + body.length;
+		}
+		if (requiredSize > target.capacity()) {
+			return false;
+		}
+
+		target.position(FILE_HEADER_SIZE);
+		for (Map.Entry<Long, byte[]> entry : bodies.entrySet()) {
+			unacknowledgedOffsets.put(entry.getKey(), target.position());
+			target.putInt(entry.getValue().length);
+			target.put(RECORD_APPEND);
+			target.putLong(entry.getKey());
+			target.putInt(checksum(targetGeneration, RECORD_APPEND, entry.getKey(), entry.getValue()));
+			target.put(entry.getValue());
+		}
+		int position = target.position();
+		target.force();
+		segments[targetSegment].writeHeader(targetGeneration);
+		target.force();
+
+		activeSegment = targetSegment;
+		generation = targetGeneration;
+		writePosition = position;
+		compactedPosition = position;
+		Loggers.SERVER.debug(CLASS_NAME + "Compacted delivery journal into " + segments[activeSegment].file.getName()
+				+ " with " + unacknowledgedOffsets.size() + " unacknowledged entries");
+		return true;
+	}
+
+	private static byte[] readBody(MappedByteBuffer source, int offset) {
+		ByteBuffer buffer = source.duplicate();
+		buffer.position(offset);
+		int length = buffer.getInt();
+		buffer.position(offset + RECORD_HEADER_SIZE);
+		byte[] body = new byte[length];
+		buffer.get(body);
+		return body;
+	}
+
+	private static int checksum(long generation, byte type, long sequence, byte[] body) {
+		CRC32 crc = new CRC32();
+		crc.update(ByteBuffer.allocate(17).putLong(generation).put(type).putLong(sequence).array());
+		crc.update(body);
+		return (int) crc.getValue();
+	}
+
+	private WebHookMainConfig getMainConfig() {
+		if (this.myMainSettings != null && this.myMainSettings.getWebHookMainConfig() != null) {
+			return this.myMainSettings.getWebHookMainConfig();
+		}
+		return DEFAULT_CONFIG;
+	}
+
+	private static class Segment {
+		private final File file;
+		private final RandomAccessFile randomAccessFile;
+		private final FileChannel channel;
+		private final MappedByteBuffer buffer;
+
+		Segment(File file, int size) throws IOException {
+			this.file = file;
+			this.randomAccessFile = new RandomAccessFile(file, "rw");
+			if (this.randomAccessFile.length() < size) {
+				this.randomAccessFile.setLength(size);
+			}
+			this.channel = this.randomAccessFile.getChannel();
+			this.buffer = this.channel.map(FileChannel.MapMode.READ_WRITE, 0, this.randomAccessFile.length());
+		}
+
+		long readGeneration() {
+			if (buffer.getInt(0) != MAGIC) {
+				return -1;
+			}
+			return buffer.getLong(4);
+		}
+
+		void writeHeader(long generation) {
+			buffer.putInt(0, MAGIC);
+			buffer.putLong(4, generation);
+		}
+
+		void close() {
+			try {
+				channel.close();
+				randomAccessFile.close();
+			} catch (IOException e) {
+				Loggers.SERVER.debug(CLASS_NAME + "Unable to close " + file.getAbsolutePath(), e);
+			}
+		}
+	}
+
+}
@@ -0,0 +1,129 @@
+package webhook.teamcity.journal;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import webhook.WebHook;
+import webhook.teamcity.BuildStateEnum;
+import webhook.teamcity.settings.WebHookConfig;
+
+/**
+ * A rendered webhook request, as written to the {@link WebHookDeliveryJournal}.
+ * Contains everything needed to send the request again without the
+ * TeamCity objects which were used to build it.
+ */
+@Data @Builder @NoArgsConstructor @AllArgsConstructor
+public class WebHookJournalEntry {
+
+	private static final byte FORMAT_VERSION = 1;
+
+	/** Assigned by the journal when the entry is appended. Not serialised. */
+	private long sequence;
+	private long timestamp;
+	private String webHookUniqueKey;
+	private String projectInternalId;
+	private String buildState;
+	private String trackingId;
+	private String url;
+	private String contentType;
+	private String charset;
+	private String payload;
+	@Builder.Default
+	private Map<String, String> headers = new LinkedHashMap<>();
+
+	public static WebHookJournalEntry fromWebHook(WebHook webhook, WebHookConfig whc, BuildStateEnum state) {
+		return WebHookJournalEntry.builder()
+				.timestamp(System.currentTimeMillis())
+				.webHookUniqueKey(whc.getUniqueKey())
+				.projectInternalId(whc.getProjectInternalId())
+				.buildState(state != null ? state.getShortName() : null)
+				.trackingId(webhook.getExecutionStats().getTrackingIdAsString())
+				.url(webhook.getUrl())
+				.contentType(webhook.getContentType())
+				.charset(webhook.getCharset())
+				.payload(webhook.getPayload())
+				.headers(new LinkedHashMap<>(webhook.getResolvedHeaders()))
+				.build();
+	}
+
+	public byte[] serialise() throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(512);
+		try (DataOutputStream out = new DataOutputStream(bytes)) {
+			out.writeByte(FORMAT_VERSION);
+			out.writeLong(timestamp);
+			writeString(out, webHookUniqueKey);
+			writeString(out, projectInternalId);
+			writeString(out, buildState);
+			writeString(out, trackingId);
+			writeString(out, url);
+			writeString(out, contentType);
+			writeString(out, charset);
+			writeString(out, payload);
+			out.writeInt(headers.size());
+			for (Map.Entry<String, String> header : headers.entrySet()) {
+				writeString(out, header.getKey());
+				writeString(out, header.getValue());
+			}
+		}
+		return bytes.toByteArray();
+	}
+
+	public static WebHookJournalEntry deserialise(long sequence, byte[] body) throws IOException {
+		try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(body))) {
+			byte version = in.readByte();
+			if (version != FORMAT_VERSION) {
+				throw new IOException("Unsupported journal entry version: " + version);
+			}
+			WebHookJournalEntry entry = new WebHookJournalEntry();
+			entry.setSequence(sequence);
+			entry.setTimestamp(in.readLong());
+			entry.setWebHookUniqueKey(readString(in));
+			entry.setProjectInternalId(readString(in));
+			entry.setBuildState(readString(in));
+			entry.setTrackingId(readString(in));
+			entry.setUrl(readString(in));
+			entry.setContentType(readString(in));
+			entry.setCharset(readString(in));
+			entry.setPayload(readString(in));
+			int headerCount = in.readInt();
+			Map<String, String> headers = new LinkedHashMap<>();
+			for (int i = 0; i < headerCount; i++) {
+				headers.put(readString(in), readString(in));
+			}
+			entry.setHeaders(headers);
+			return entry;
+		}
+	}
+
+	/* DataOutput.writeUTF is limited to 64k, which is too small for some payloads. */
+	private static void writeString(DataOutputStream out, String value) throws IOException {
+		if (value == null) {
+			out.writeInt(-1);
+			return;
+		}
+		byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	private static String readString(DataInputStream in) throws IOException {
+		int length = in.readInt();
+		if (length < 0) {
+			return null;
+		}
+		byte[] bytes = new byte[length];
+		in.readFully(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+}
@@ -0,0 +1,22 @@
+package webhook.teamcity.payload;
+
+import webhook.teamcity.payload.content.WebHookPayloadContent;
+
+/**
+ * Implemented by payload formats which render their payload from a {@link WebHookPayloadContent}.
+ * This allows the content already built for a webhook's URL, filters and headers
+ * to be used for its payload too, rather than being built again.
+ */
+public interface WebHookPayloadContentRenderer {
+
+	/**
+	 * Renders the payload from content built for the event.
+	 * The content may be altered while rendering it.
+	 *
+	 * @param content
+	 * @param webHookTemplate
+	 * @return Formatted payload for the WebHook to send.
+	 */
+	String render(WebHookPayloadContent content, WebHookTemplateContent webHookTemplate);
+
+}
@@ -0,0 +1,50 @@
+package webhook.teamcity.payload;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Supplier;
+
+/**
+ * Holds the payloads rendered for a single event, so that webhooks which use the same 
+ * template and parameters share one rendered payload rather than each rendering their own.
+ * <p>
+ * A new cache is created for every event, and is referenced only by that event's webhooks,
+ * so payloads are never shared between events and are released once the webhooks have been sent.
+ */
+public class WebHookRenderCache {
+
+	private final ConcurrentMap<WebHookRenderKey, RenderedPayload> payloads = new ConcurrentHashMap<>();
+
+	/**
+	 * Returns the payload already rendered for the key, or renders it. If several threads ask for
+	 * the same key at once, only one of them renders it and the others wait for its result.
+	 * If rendering throws an exception nothing is cached, so the next webhook will try again.
+	 * @param key The inputs to the render.
+	 * @param renderer Renders the payload.
+	 * @return The rendered payload.
+	 */
+	public String getPayload(WebHookRenderKey key, Supplier<String> renderer) {
+		return payloads.computeIfAbsent(key, k -> new RenderedPayload()).get(renderer);
+	}
+
+	/**
+	 * @return The number of distinct payloads held.
+	 */
+	public int size() {
+		return payloads.size();
+	}
+
+	private static final class RenderedPayload {
+		private String payload;
+		private boolean rendered;
+
+		synchronized String get(Supplier<String> renderer) {
+			if (!rendered) {
+				payload = renderer.get();
+				rendered = true;
+			}
+			return payload;
+		}
+	}
+
+}
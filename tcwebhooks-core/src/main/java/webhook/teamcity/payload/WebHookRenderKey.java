@@ -0,0 +1,26 @@
+package webhook.teamcity.payload;
+
+import java.util.Map;
+import java.util.SortedMap;
+
+import lombok.Value;
+import webhook.teamcity.BuildStateEnum;
+
+/**
+ * Everything which determines the rendered payload for an event.
+ * Webhooks whose keys are equal would render identical payloads.
+ */
+@Value
+public class WebHookRenderKey {
+
+	/** The build id, queued item id or responsibility being notified about. */
+	String subject;
+	BuildStateEnum state;
+	String templateId;
+	boolean branch;
+	SortedMap<String,String> parameters;
+	Map<String,String> enabledTemplates;
+	String user;
+	String comment;
+
+}
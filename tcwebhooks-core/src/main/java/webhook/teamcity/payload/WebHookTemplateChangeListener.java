@@ -0,0 +1,11 @@
+package webhook.teamcity.payload;
+
+/**
+ * Notified by the {@link WebHookTemplateManager} whenever templates are registered,
+ * reloaded or removed, so that anything derived from template text can be discarded.
+ */
+public interface WebHookTemplateChangeListener {
+
+	void templatesChanged();
+
+}
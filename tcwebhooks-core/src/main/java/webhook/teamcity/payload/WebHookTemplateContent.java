@@ -2,30 +2,52 @@ package webhook.teamcity.payload;
 
 import org.jdom.Element;
 
+import webhook.teamcity.payload.variableresolver.standard.WebHookCompiledTemplate;
+
+/**
+ * The text of a template for one build state. Content is immutable once it is created,
+ * so the same instance is handed to every render of its template.
+ */
 public class WebHookTemplateContent {
-	String templateState;
-	String templateText;
-	boolean enabled;
-	String preferredDateTimeFormat = "";
+	final String templateState;
+	final String templateText;
+	final boolean enabled;
+	final String preferredDateTimeFormat;
+	private transient volatile WebHookCompiledTemplate compiledTemplate;
 	
 	public static final String XML_ELEMENT_NAME = "template";
 	public static final String ATTR_STATE = "build-state";
 	public static final String ATTR_TEMPLATE = "template-text";
 	public static final String ATTR_ENABLED = "enabled";
 	
+	private WebHookTemplateContent(String templateState, String templateText, boolean enabled, String dateTimeFormat){
+		this.templateState = templateState;
+		this.templateText = templateText;
+		this.enabled = enabled;
+		this.preferredDateTimeFormat = dateTimeFormat;
+	}
+	
 	public static WebHookTemplateContent create(String templateState, String templateText, boolean enabled, String dateTimeFormat){
-		WebHookTemplateContent t = new WebHookTemplateContent();
-		t.templateState = templateState;
-		t.templateText = templateText;
-		t.enabled = enabled;
-		t.preferredDateTimeFormat = dateTimeFormat;
-		return t;
+		return new WebHookTemplateContent(templateState, templateText, enabled, dateTimeFormat);
 	}
 	
 	public String getTemplateText() {
 		return templateText;
 	}
 	
+	/**
+	 * The template text compiled for the standard template engine.
+	 * It is compiled the first time it is asked for, and shared with any copies of this template.
+	 */
+	public WebHookCompiledTemplate getCompiledTemplate() {
+		WebHookCompiledTemplate compiled = this.compiledTemplate;
+		if (compiled == null) {
+			compiled = WebHookCompiledTemplate.compile(this.templateText);
+			this.compiledTemplate = compiled;
+		}
+		return compiled;
+	}
+	
 	public String getPreferredDateTimeFormat() {
 		return preferredDateTimeFormat;
 	}
@@ -39,11 +61,8 @@ public class WebHookTemplateContent {
 	}
 	
 	public WebHookTemplateContent copy (){
-		WebHookTemplateContent t = new WebHookTemplateContent();
-		t.templateState = this.templateState;
-		t.templateText = this.templateText;
-		t.enabled = this.enabled;
-		t.preferredDateTimeFormat = this.preferredDateTimeFormat;
+		WebHookTemplateContent t = new WebHookTemplateContent(this.templateState, this.templateText, this.enabled, this.preferredDateTimeFormat);
+		t.compiledTemplate = this.compiledTemplate;
 		return t;
 	}
 }
\ No newline at end of file
@@ -0,0 +1,99 @@
+package webhook.teamcity.payload;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import jetbrains.buildServer.serverSide.SProject;
+import webhook.teamcity.settings.entity.WebHookTemplateEntity;
+
+/**
+ * The registered templates, indexed by the internal id of the project they belong to,
+ * and then by template id.
+ * <p>
+ * Finding the templates available to a project only has to look up each project
+ * in its path, rather than check every registered template. The payload format of each
+ * template is also read once here, rather than building its config for every webhook
+ * that is sent. An index is immutable.
+ * The {@link WebHookTemplateManager} builds a new one whenever templates are
+ * registered or removed.
+ */
+public class WebHookTemplateIndex {
+
+	private final Map<String, Map<String, WebHookPayloadTemplate>> templatesByProject;
+	private final Map<String, Integer> rankedPositions;
+	private final Map<String, String> formats;
+
+	private WebHookTemplateIndex(Map<String, Map<String, WebHookPayloadTemplate>> templatesByProject, Map<String, Integer> rankedPositions, Map<String, String> formats) {
+		this.templatesByProject = templatesByProject;
+		this.rankedPositions = rankedPositions;
+		this.formats = formats;
+	}
+
+	/**
+	 * @param rankedTemplates The registered templates, in rank order.
+	 */
+	public static WebHookTemplateIndex build(List<WebHookPayloadTemplate> rankedTemplates) {
+		Map<String, Map<String, WebHookPayloadTemplate>> templatesByProject = new HashMap<>();
+		Map<String, Integer> rankedPositions = new HashMap<>();
+		Map<String, String> formats = new HashMap<>();
+		int position = 0;
+		for (WebHookPayloadTemplate template : rankedTemplates) {
+			templatesByProject.computeIfAbsent(template.getProjectId(), projectId -> new LinkedHashMap<>())
+							  .put(template.getTemplateId(), template);
+			rankedPositions.put(template.getTemplateId(), position++);
+			WebHookTemplateEntity entity = template.getAsEntity();
+			if (entity != null) {
+				formats.put(template.getTemplateId(), entity.getFormat());
+			}
+		}
+		return new WebHookTemplateIndex(templatesByProject, rankedPositions, formats);
+	}
+
+	/**
+	 * @return The payload format of the template with this id, or null if there is no such template.
+	 */
+	public String getFormat(String templateId) {
+		return this.formats.get(templateId);
+	}
+
+	/**
+	 * @return The template with this id, if it belongs to the project or any of its parents, otherwise null.
+	 */
+	public WebHookPayloadTemplate findTemplate(SProject project, String templateId) {
+		for (SProject pathProject : project.getProjectPath()) {
+			Map<String, WebHookPayloadTemplate> projectTemplates = this.templatesByProject.get(pathProject.getProjectId());
+			if (projectTemplates != null) {
+				WebHookPayloadTemplate template = projectTemplates.get(templateId);
+				if (template != null) {
+					return template;
+				}
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * @return The templates belonging to the project and its parents, in rank order.
+	 */
+	public List<WebHookPayloadTemplate> findTemplates(SProject project) {
+		List<WebHookPayloadTemplate> templates = new ArrayList<>();
+		int projectsWithTemplates = 0;
+		for (SProject pathProject : project.getProjectPath()) {
+			Map<String, WebHookPayloadTemplate> projectTemplates = this.templatesByProject.get(pathProject.getProjectId());
+			if (projectTemplates != null) {
+				templates.addAll(projectTemplates.values());
+				projectsWithTemplates++;
+			}
+		}
+		if (projectsWithTemplates > 1) {
+			Collections.sort(templates, Comparator.comparing(template -> this.rankedPositions.get(template.getTemplateId())));
+		}
+		return templates;
+	}
+
+}
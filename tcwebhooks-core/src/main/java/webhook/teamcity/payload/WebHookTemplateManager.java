@@ -4,10 +4,13 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 import javax.xml.bind.JAXBException;
 
@@ -24,18 +27,29 @@ import webhook.teamcity.settings.entity.WebHookTemplateEntity;
 import webhook.teamcity.settings.entity.WebHookTemplateJaxHelper;
 import webhook.teamcity.settings.entity.WebHookTemplates;
 
+/**
+ * Holds the templates bundled with tcWebHooks (registered by Spring) and those defined
+ * in the templates file or via the REST API (registered from XML).
+ * <p>
+ * Templates are registered and removed under a lock. Each change publishes a new
+ * {@link Registry}, which is an immutable snapshot of the templates. Lookups read the
+ * current snapshot without locking, so they never wait for, or see part of, a change.
+ */
 public class WebHookTemplateManager {
 	
 	private static final String TEMPLATES_ARE_RANKED_IN_THE_FOLLOWING_ORDER = " items long. Templates are ranked in the following order..";
 	private static final String TEMPLATE_NAME = " :: Template Name: ";
 	private static final String TEMPLATES_LIST_IS = " :: Templates list is ";
+	private final Object registryLock = new Object();
 	private HashMap<String, WebHookPayloadTemplate> springTemplates = new HashMap<>();
 	private HashMap<String, WebHookPayloadTemplate> xmlConfigTemplates = new HashMap<>();
+	private HashMap<String, Integer> xmlConfigTemplateHashes = new HashMap<>();
 	private Comparator<WebHookPayloadTemplate> rankComparator = new WebHookTemplateRankingComparator();
-	private List<WebHookPayloadTemplate> orderedTemplateCollection = new ArrayList<>();
+	private volatile Registry registry = new Registry(Collections.emptyMap(), Collections.emptyMap(), Collections.emptyList());
 	private final WebHookPayloadManager webHookPayloadManager;
 	private final WebHookTemplateJaxHelper webHookTemplateJaxHelper;
 	private final ProjectIdResolver projectIdResolver;
+	private final List<WebHookTemplateChangeListener> templateChangeListeners = new CopyOnWriteArrayList<>();
 	private String configFilePath;
 	
 	public WebHookTemplateManager(
@@ -50,14 +64,14 @@ public class WebHookTemplateManager {
 	}
 	
 	public void registerTemplateFormatFromSpring(WebHookPayloadTemplate payloadTemplate){
-		synchronized (orderedTemplateCollection) {
+		synchronized (registryLock) {
 			Loggers.SERVER.info(this.getClass().getSimpleName() + " :: Registering Spring template " 
 					+ payloadTemplate.getTemplateDescription() + " (" + payloadTemplate.getTemplateId() + ")"
 					+ " with rank of " + payloadTemplate.getRank());
 			springTemplates.put(payloadTemplate.getTemplateId(),payloadTemplate);
 			rebuildOrderedListOfTemplates();
-			Loggers.SERVER.debug(this.getClass().getSimpleName() + TEMPLATES_LIST_IS + this.orderedTemplateCollection.size() + TEMPLATES_ARE_RANKED_IN_THE_FOLLOWING_ORDER);
-			for (WebHookPayloadTemplate pl : this.orderedTemplateCollection){
+			Loggers.SERVER.debug(this.getClass().getSimpleName() + TEMPLATES_LIST_IS + this.registry.rankedTemplates.size() + TEMPLATES_ARE_RANKED_IN_THE_FOLLOWING_ORDER);
+			for (WebHookPayloadTemplate pl : this.registry.rankedTemplates){
 				Loggers.SERVER.debug(this.getClass().getSimpleName() + TEMPLATE_NAME + pl.getTemplateDescription() + " (" + pl.getTemplateId() + ")" + " Rank: " + pl.getRank());
 			}
 		}
@@ -67,22 +81,38 @@ public class WebHookTemplateManager {
 		Loggers.SERVER.info(this.getClass().getSimpleName() + " :: Registering XML template " 
 				+ payloadTemplate.getId() 
 				+ " with rank of " + payloadTemplate.getRank());
+		normaliseXmlEntity(payloadTemplate);
+		xmlConfigTemplates.put(payloadTemplate.getId(),WebHookTemplateFromXml.build(payloadTemplate, webHookPayloadManager));
+		xmlConfigTemplateHashes.put(payloadTemplate.getId(), payloadTemplate.hashCode());
+	}
+	
+	private void normaliseXmlEntity(WebHookTemplateEntity payloadTemplate) {
 		// Set template as belonging to _Root if no associated project id found for this template.
 		if (Objects.isNull(payloadTemplate.getAssociatedProjectId()) || payloadTemplate.getAssociatedProjectId().isEmpty()) {
 			payloadTemplate.setAssociatedProjectId(projectIdResolver.getInternalProjectId(Constants.ROOT_PROJECT_ID));
 		}
 		payloadTemplate.fixTemplateIds();
-		xmlConfigTemplates.put(payloadTemplate.getId(),WebHookTemplateFromXml.build(payloadTemplate, webHookPayloadManager));
+	}
+	
+	/**
+	 * An XML template is unchanged if it has the same content as when it was registered,
+	 * and as the entity the registered template still holds.
+	 */
+	private boolean isUnchangedXmlTemplate(WebHookTemplateEntity payloadTemplate) {
+		WebHookPayloadTemplate registeredTemplate = xmlConfigTemplates.get(payloadTemplate.getId());
+		return registeredTemplate != null
+				&& Integer.valueOf(payloadTemplate.hashCode()).equals(xmlConfigTemplateHashes.get(payloadTemplate.getId()))
+				&& payloadTemplate.equals(registeredTemplate.getAsEntity());
 	}
 	
 	
 	
 	public void registerTemplateFormatFromXmlEntity(WebHookTemplateEntity payloadTemplate){
-		synchronized (orderedTemplateCollection) {
+		synchronized (registryLock) {
 			registerTemplateFormatFromXmlEntityUnsyncd(payloadTemplate);	
 			rebuildOrderedListOfTemplates();
-			Loggers.SERVER.debug(this.getClass().getSimpleName() + TEMPLATES_LIST_IS + this.orderedTemplateCollection.size() + TEMPLATES_ARE_RANKED_IN_THE_FOLLOWING_ORDER);
-			for (WebHookPayloadTemplate pl : this.orderedTemplateCollection){
+			Loggers.SERVER.debug(this.getClass().getSimpleName() + TEMPLATES_LIST_IS + this.registry.rankedTemplates.size() + TEMPLATES_ARE_RANKED_IN_THE_FOLLOWING_ORDER);
+			for (WebHookPayloadTemplate pl : this.registry.rankedTemplates){
 				Loggers.SERVER.debug(this.getClass().getSimpleName() + TEMPLATE_NAME + pl.getTemplateId() + " Rank: " + pl.getRank());
 			}
 		}
@@ -90,28 +120,18 @@ public class WebHookTemplateManager {
 	
 	public void registerTemplateFormatFromXmlConfig(WebHookTemplateConfig payloadTemplateConfig){
 		WebHookTemplateEntity payloadTemplate = WebHookTemplateConfigBuilder.buildEntity(payloadTemplateConfig);
-		synchronized (orderedTemplateCollection) {
+		synchronized (registryLock) {
 			registerTemplateFormatFromXmlEntityUnsyncd(payloadTemplate);	
 			rebuildOrderedListOfTemplates();
-			Loggers.SERVER.debug(this.getClass().getSimpleName() + TEMPLATES_LIST_IS + this.orderedTemplateCollection.size() + TEMPLATES_ARE_RANKED_IN_THE_FOLLOWING_ORDER);
-			for (WebHookPayloadTemplate pl : this.orderedTemplateCollection){
+			Loggers.SERVER.debug(this.getClass().getSimpleName() + TEMPLATES_LIST_IS + this.registry.rankedTemplates.size() + TEMPLATES_ARE_RANKED_IN_THE_FOLLOWING_ORDER);
+			for (WebHookPayloadTemplate pl : this.registry.rankedTemplates){
 				Loggers.SERVER.debug(this.getClass().getSimpleName() + TEMPLATE_NAME + pl.getTemplateId() + " Rank: " + pl.getRank());
 			}
 		}
 	}
 	
-	private void unregisterAllXmlConfigTemplates(){
-			Loggers.SERVER.debug(this.getClass().getSimpleName() + " :: un-registering all XML config templates.");
-			xmlConfigTemplates.clear();
-			rebuildOrderedListOfTemplates();
-			Loggers.SERVER.debug(this.getClass().getSimpleName() + TEMPLATES_LIST_IS + this.orderedTemplateCollection.size() + TEMPLATES_ARE_RANKED_IN_THE_FOLLOWING_ORDER);
-			for (WebHookPayloadTemplate pl : this.orderedTemplateCollection){
-				Loggers.SERVER.debug(this.getClass().getSimpleName() + TEMPLATE_NAME + pl.getTemplateId() + " Rank: " + pl.getRank());
-			}
-	}
-	
 	public boolean persistAllXmlConfigTemplates() throws ProbableJaxbJarConflictErrorException{
-		synchronized (orderedTemplateCollection) {
+		synchronized (registryLock) {
 			WebHookTemplates templates = new WebHookTemplates();
 			for (WebHookPayloadTemplate xmlConfig : xmlConfigTemplates.values()){
 				templates.addWebHookTemplate(xmlConfig.getAsEntity());
@@ -130,12 +150,10 @@ public class WebHookTemplateManager {
 	}
 	
 	public boolean xmlTemplateExists(String name){
-		return xmlConfigTemplates.containsKey(name);
+		return this.registry.xmlConfigTemplates.containsKey(name);
 	}
 
 	private void rebuildOrderedListOfTemplates() {
-		this.orderedTemplateCollection.clear();
-		
 		HashMap<String, WebHookPayloadTemplate> combinedTemplates = new HashMap<>();
 		
 		// Rebuild the list of configured templates.
@@ -151,55 +169,86 @@ public class WebHookTemplateManager {
 			combinedTemplates.put(payloadTemplate.getTemplateId(), payloadTemplate);
 		}
 		
-		this.orderedTemplateCollection.addAll(combinedTemplates.values());
-		Collections.sort(this.orderedTemplateCollection, rankComparator);
+		List<WebHookPayloadTemplate> rankedTemplates = new ArrayList<>(combinedTemplates.values());
+		Collections.sort(rankedTemplates, rankComparator);
+		this.registry = new Registry(springTemplates, xmlConfigTemplates, rankedTemplates);
+		notifyTemplateChangeListeners();
+	}
+	
+	public void addTemplateChangeListener(WebHookTemplateChangeListener listener) {
+		this.templateChangeListeners.add(listener);
+	}
+	
+	private void notifyTemplateChangeListeners() {
+		for (WebHookTemplateChangeListener listener : this.templateChangeListeners) {
+			listener.templatesChanged();
+		}
 	}
 
 	public WebHookPayloadTemplate getTemplate(String templateId){
-		synchronized (orderedTemplateCollection) {
-			if (xmlConfigTemplates.containsKey(templateId)){
-				return xmlConfigTemplates.get(templateId);
-			}
-			if (springTemplates.containsKey(templateId)){
-				return springTemplates.get(templateId);
-			}
-			return null;
+		Registry currentRegistry = this.registry;
+		if (currentRegistry.xmlConfigTemplates.containsKey(templateId)){
+			return currentRegistry.xmlConfigTemplates.get(templateId);
+		}
+		if (currentRegistry.springTemplates.containsKey(templateId)){
+			return currentRegistry.springTemplates.get(templateId);
 		}
+		return null;
 	}
 	
 	public WebHookTemplateConfig getTemplateConfig(String templateId, TemplateState templateState){
-		synchronized (orderedTemplateCollection) {
-			if (springTemplates.containsKey(templateId) 
-					&& xmlConfigTemplates.containsKey(templateId)
-					&& TemplateState.PROVIDED.equals(templateState))
-			{
-				return WebHookTemplateConfigBuilder.buildConfig(springTemplates.get(templateId).getAsEntity());
-			}
-			if (xmlConfigTemplates.containsKey(templateId) 
-				&& ( TemplateState.BEST.equals(templateState) || getTemplateState(templateId, templateState).equals(templateState)))
-			{
-				return WebHookTemplateConfigBuilder.buildConfig(xmlConfigTemplates.get(templateId).getAsEntity());
-			}
-			if (springTemplates.containsKey(templateId)
-				&& ( TemplateState.BEST.equals(templateState) || TemplateState.PROVIDED.equals(templateState) || getTemplateState(templateId, templateState).equals(templateState)))
-			{
-				return WebHookTemplateConfigBuilder.buildConfig(springTemplates.get(templateId).getAsEntity());
-			}
-			return null;
+		Registry currentRegistry = this.registry;
+		if (currentRegistry.springTemplates.containsKey(templateId) 
+				&& currentRegistry.xmlConfigTemplates.containsKey(templateId)
+				&& TemplateState.PROVIDED.equals(templateState))
+		{
+			return WebHookTemplateConfigBuilder.buildConfig(currentRegistry.springTemplates.get(templateId).getAsEntity());
+		}
+		if (currentRegistry.xmlConfigTemplates.containsKey(templateId) 
+			&& ( TemplateState.BEST.equals(templateState) || currentRegistry.getTemplateState(templateId, templateState).equals(templateState)))
+		{
+			return WebHookTemplateConfigBuilder.buildConfig(currentRegistry.xmlConfigTemplates.get(templateId).getAsEntity());
+		}
+		if (currentRegistry.springTemplates.containsKey(templateId)
+			&& ( TemplateState.BEST.equals(templateState) || TemplateState.PROVIDED.equals(templateState) || currentRegistry.getTemplateState(templateId, templateState).equals(templateState)))
+		{
+			return WebHookTemplateConfigBuilder.buildConfig(currentRegistry.springTemplates.get(templateId).getAsEntity());
 		}
+		return null;
+	}
+	
+	/**
+	 * @return The payload format of the best version of the template, without building
+	 * its config, or null if the template is not registered.
+	 */
+	public String getTemplateFormat(String templateId) {
+		return this.registry.templateIndex.getFormat(templateId);
+	}
+	
+	/**
+	 * @return An index of the registered templates by project. A new index is built
+	 * whenever templates change, so hold on to it only for the current lookup.
+	 */
+	public WebHookTemplateIndex getTemplateIndex() {
+		return this.registry.templateIndex;
 	}
 	
 	public boolean isRegisteredTemplate(String template){
-		return xmlConfigTemplates.containsKey(template) || springTemplates.containsKey(template);
+		Registry currentRegistry = this.registry;
+		return currentRegistry.xmlConfigTemplates.containsKey(template) || currentRegistry.springTemplates.containsKey(template);
 	}
 	
+	/**
+	 * @return The registered templates in rank order. The list is unmodifiable, and is
+	 * not changed by later registrations.
+	 */
 	public List<WebHookPayloadTemplate> getRegisteredTemplates(){
-		return orderedTemplateCollection;
+		return this.registry.rankedTemplates;
 	}
 	
 	public List<WebHookPayloadTemplate> getRegisteredPermissionedTemplates(){
 		List<WebHookPayloadTemplate> orderedTemplates = new ArrayList<>();
-		for (WebHookPayloadTemplate template : orderedTemplateCollection) {
+		for (WebHookPayloadTemplate template : getRegisteredTemplates()) {
 			try {
 				projectIdResolver.getExternalProjectId(template.getProjectId()); // Throws AccessDeniedException if user is not permissioned on Project
 				orderedTemplates.add(template);
@@ -212,7 +261,7 @@ public class WebHookTemplateManager {
 	
 	public List<WebHookPayloadTemplate> getRegisteredPermissionedTemplatesForProject(SProject project){
 		List<WebHookPayloadTemplate> orderedTemplates = new ArrayList<>();
-		for (WebHookPayloadTemplate template : orderedTemplateCollection) {
+		for (WebHookPayloadTemplate template : getRegisteredTemplates()) {
 			if (project.getProjectId().equals(template.getProjectId())) {
 				try {
 					projectIdResolver.getExternalProjectId(template.getProjectId()); // Throws AccessDeniedException if user is not permissioned on Project
@@ -247,14 +296,7 @@ public class WebHookTemplateManager {
 	}
 
 	public TemplateState getTemplateState(String template, TemplateState templateState){
-		if ((TemplateState.BEST.equals(templateState) || TemplateState.USER_OVERRIDDEN.equals(templateState)) && springTemplates.containsKey(template) && xmlConfigTemplates.containsKey(template)){
-			return TemplateState.USER_OVERRIDDEN;
-		} else if (springTemplates.containsKey(template)){
-			return TemplateState.PROVIDED;
-		} else if (xmlConfigTemplates.containsKey(template)){
-			return TemplateState.USER_DEFINED;
-		}
-		return TemplateState.UNKNOWN;
+		return this.registry.getTemplateState(template, templateState);
 	}
 	
 	public enum TemplateState {
@@ -302,16 +344,16 @@ public class WebHookTemplateManager {
 	}
 
 	public boolean removeXmlConfigTemplateFormat(String name) {
-		synchronized (orderedTemplateCollection) {
+		synchronized (registryLock) {
 			if (isRegisteredTemplate(name)) {
 				xmlConfigTemplates.remove(name);
-				rebuildOrderedListOfTemplates();
+				xmlConfigTemplateHashes.remove(name);
 				
 				Loggers.SERVER.info(this.getClass().getSimpleName() + " :: Deleting XML template " 
 						+ name);
 				rebuildOrderedListOfTemplates();
-				Loggers.SERVER.debug(this.getClass().getSimpleName() + TEMPLATES_LIST_IS + this.orderedTemplateCollection.size() + TEMPLATES_ARE_RANKED_IN_THE_FOLLOWING_ORDER);
-				for (WebHookPayloadTemplate pl : this.orderedTemplateCollection){
+				Loggers.SERVER.debug(this.getClass().getSimpleName() + TEMPLATES_LIST_IS + this.registry.rankedTemplates.size() + TEMPLATES_ARE_RANKED_IN_THE_FOLLOWING_ORDER);
+				for (WebHookPayloadTemplate pl : this.registry.rankedTemplates){
 					Loggers.SERVER.debug(this.getClass().getSimpleName() + TEMPLATE_NAME + pl.getTemplateId() + " Rank: " + pl.getRank());
 				}			
 				return true;
@@ -320,18 +362,71 @@ public class WebHookTemplateManager {
 		}
 	}
 
+	/**
+	 * Replaces the XML templates with those in the list, eg, when the templates file is reloaded.
+	 * <p>
+	 * Only templates which are new or whose content has changed are rebuilt. Unchanged templates
+	 * are kept as they are, along with anything already compiled from them, and templates no
+	 * longer in the list are removed.
+	 */
 	public void registerAllXmlTemplates(WebHookTemplates templatesList) {
-		synchronized (orderedTemplateCollection) {
-			this.unregisterAllXmlConfigTemplates();
+		synchronized (registryLock) {
+			Set<String> listedTemplateIds = new HashSet<>();
+			int unchangedCount = 0;
+			int changedCount = 0;
 			for (WebHookTemplateEntity template : templatesList.getWebHookTemplateList()){
-				this.registerTemplateFormatFromXmlEntityUnsyncd(template);
+				normaliseXmlEntity(template);
+				listedTemplateIds.add(template.getId());
+				if (isUnchangedXmlTemplate(template)) {
+					unchangedCount++;
+				} else {
+					this.registerTemplateFormatFromXmlEntityUnsyncd(template);
+					changedCount++;
+				}
+			}
+			int removedCount = xmlConfigTemplates.size() - listedTemplateIds.size();
+			xmlConfigTemplates.keySet().retainAll(listedTemplateIds);
+			xmlConfigTemplateHashes.keySet().retainAll(listedTemplateIds);
+			Loggers.SERVER.info(this.getClass().getSimpleName() + " :: Reloaded XML templates. Changed: " + changedCount 
+					+ ", Unchanged: " + unchangedCount + ", Removed: " + removedCount);
+			if (changedCount == 0 && removedCount == 0) {
+				return;
 			}
 			rebuildOrderedListOfTemplates();
-			Loggers.SERVER.debug(this.getClass().getSimpleName() + TEMPLATES_LIST_IS + this.orderedTemplateCollection.size() + TEMPLATES_ARE_RANKED_IN_THE_FOLLOWING_ORDER);
-			for (WebHookPayloadTemplate pl : this.orderedTemplateCollection){
+			Loggers.SERVER.debug(this.getClass().getSimpleName() + TEMPLATES_LIST_IS + this.registry.rankedTemplates.size() + TEMPLATES_ARE_RANKED_IN_THE_FOLLOWING_ORDER);
+			for (WebHookPayloadTemplate pl : this.registry.rankedTemplates){
 				Loggers.SERVER.debug(this.getClass().getSimpleName() + TEMPLATE_NAME + pl.getTemplateId() + " Rank: " + pl.getRank());
 			}
 		}
 	}
 	
+	/**
+	 * An immutable snapshot of the registered templates. A new one is built and
+	 * published whenever templates are registered or removed.
+	 */
+	private static final class Registry {
+		private final Map<String, WebHookPayloadTemplate> springTemplates;
+		private final Map<String, WebHookPayloadTemplate> xmlConfigTemplates;
+		private final List<WebHookPayloadTemplate> rankedTemplates;
+		private final WebHookTemplateIndex templateIndex;
+		
+		Registry(Map<String, WebHookPayloadTemplate> springTemplates, Map<String, WebHookPayloadTemplate> xmlConfigTemplates, List<WebHookPayloadTemplate> rankedTemplates) {
+			this.springTemplates = Collections.unmodifiableMap(new HashMap<>(springTemplates));
+			this.xmlConfigTemplates = Collections.unmodifiableMap(new HashMap<>(xmlConfigTemplates));
+			this.rankedTemplates = Collections.unmodifiableList(new ArrayList<>(rankedTemplates));
+			this.templateIndex = WebHookTemplateIndex.build(this.rankedTemplates);
+		}
+		
+		TemplateState getTemplateState(String template, TemplateState templateState){
+			if ((TemplateState.BEST.equals(templateState) || TemplateState.USER_OVERRIDDEN.equals(templateState)) && springTemplates.containsKey(template) && xmlConfigTemplates.containsKey(template)){
+				return TemplateState.USER_OVERRIDDEN;
+			} else if (springTemplates.containsKey(template)){
+				return TemplateState.PROVIDED;
+			} else if (xmlConfigTemplates.containsKey(template)){
+				return TemplateState.USER_DEFINED;
+			}
+			return TemplateState.UNKNOWN;
+		}
+	}
+	
 }
@@ -1,12 +1,10 @@
 package webhook.teamcity.payload;
 
 import java.util.List;
-import java.util.stream.Collectors;
 
 import jetbrains.buildServer.serverSide.SBuildType;
 import jetbrains.buildServer.serverSide.SProject;
 import webhook.teamcity.BuildStateEnum;
-import webhook.teamcity.payload.WebHookTemplateManager.TemplateState;
 import webhook.teamcity.payload.template.TemplateNotFoundException;
 import webhook.teamcity.payload.template.UnSupportedBuildStateException;
 
@@ -24,40 +22,36 @@ public class WebHookTemplateResolver {
 	}
 	
 	public WebHookPayload getTemplatePayloadFormat(String templateId) {
-		return this.payloadManager.getFormat(this.webHookTemplateManager.getTemplateConfig(templateId, TemplateState.BEST).getFormat());
+		return this.payloadManager.getFormat(this.webHookTemplateManager.getTemplateFormat(templateId));
 	}
 	
 	public WebHookTemplateContent findWebHookTemplate(BuildStateEnum state, SBuildType buildType, String templateId){
-		for (WebHookPayloadTemplate template : findWebHookTemplatesForBuild(buildType)){
-			if (template.getTemplateId().equals(templateId)){
-				return template.getTemplateForState(state);
-			}
+		WebHookPayloadTemplate template = findWebHookTemplateForProject(buildType.getProject(), templateId);
+		if (template != null){
+			return template.getTemplateForState(state);
 		}
 		throw new TemplateNotFoundException(state, buildType, templateId, BRANCH_TYPE_NON_BRANCH);
 	}
 	public WebHookTemplateContent findWebHookBranchTemplate(BuildStateEnum state, SBuildType buildType, String templateId){
-		for (WebHookPayloadTemplate template : findWebHookTemplatesForBuild(buildType)){
-			if (template.getTemplateId().equals(templateId)){
-				return template.getBranchTemplateForState(state);
-			}
+		WebHookPayloadTemplate template = findWebHookTemplateForProject(buildType.getProject(), templateId);
+		if (template != null){
+			return template.getBranchTemplateForState(state);
 		}
 		throw new TemplateNotFoundException(state, buildType, templateId, BRANCH_TYPE_BRANCH);
 	}
 	
 	public WebHookTemplateContent findWebHookTemplate(BuildStateEnum state, SProject project, String templateId){
-		for (WebHookPayloadTemplate template : findWebHookTemplatesForProject(project)){
-			if (template.getTemplateId().equals(templateId)){
-				return template.getTemplateForState(state);
-			}
+		WebHookPayloadTemplate template = findWebHookTemplateForProject(project, templateId);
+		if (template != null){
+			return template.getTemplateForState(state);
 		}
 		throw new TemplateNotFoundException(state, project, templateId, BRANCH_TYPE_NON_BRANCH);
 	}
 	
 	public WebHookTemplateContent findWebHookBranchTemplate(BuildStateEnum state, SProject project, String webhookFormat, String templateId){
-		for (WebHookPayloadTemplate template : findWebHookTemplatesForProject(project)){
-			if (template.supportsPayloadFormat(webhookFormat) && template.getTemplateId().equals(templateId)){
-				return template.getBranchTemplateForState(state);
-			}
+		WebHookPayloadTemplate template = findWebHookTemplateForProject(project, templateId);
+		if (template != null && template.supportsPayloadFormat(webhookFormat)){
+			return template.getBranchTemplateForState(state);
 		}
 		throw new TemplateNotFoundException(state, project, templateId, BRANCH_TYPE_BRANCH);
 	}
@@ -68,34 +62,26 @@ public class WebHookTemplateResolver {
 			branchType = BRANCH_TYPE_BRANCH;
 			String sBuildState = stateString.substring(0,stateString.length() - "Branch".length());
 			BuildStateEnum state =	BuildStateEnum.findBuildState(sBuildState);
-			if (state != null){
-				for (WebHookPayloadTemplate template : findWebHookTemplatesForProject(project)){
-					if (template.getTemplateId().equals(templateId)){
-						return template.getBranchTemplateForState(state);
-					}
-				}
+			WebHookPayloadTemplate template = findWebHookTemplateForProject(project, templateId);
+			if (state != null && template != null){
+				return template.getBranchTemplateForState(state);
 			}
 		} else {
 			BuildStateEnum state =	BuildStateEnum.findBuildState(stateString);
-			if (state != null){
-				for (WebHookPayloadTemplate template : findWebHookTemplatesForProject(project)){
-					if (template.getTemplateId().equals(templateId)){
-						return template.getTemplateForState(state);
-					}
-				}
+			WebHookPayloadTemplate template = findWebHookTemplateForProject(project, templateId);
+			if (state != null && template != null){
+				return template.getTemplateForState(state);
 			}
 		}
 		throw new UnSupportedBuildStateException(BuildStateEnum.findBuildState(stateString), branchType, project.getProjectId(), templateId);
 	}
 	
-	private List<WebHookPayloadTemplate> findWebHookTemplatesForBuild(SBuildType sBuildType){
-		return findWebHookTemplatesForProject(sBuildType.getProject());
+	private WebHookPayloadTemplate findWebHookTemplateForProject(SProject sProject, String templateId){
+		return webHookTemplateManager.getTemplateIndex().findTemplate(sProject, templateId);
 	}
 	
-	
 	public List<WebHookPayloadTemplate> findWebHookTemplatesForProject(SProject sProject){
-		List<String> projectIds = sProject.getProjectPath().stream().map(SProject::getProjectId).collect(Collectors.toList());
-		return webHookTemplateManager.getRegisteredTemplates().stream().filter(template -> projectIds.contains(template.getProjectId())).collect(Collectors.toList());
+		return webHookTemplateManager.getTemplateIndex().findTemplates(sProject);
 	}
 	
 	public boolean templateIsValid(SProject project, String webhookFormat, String templateName){
@@ -108,20 +94,12 @@ public class WebHookTemplateResolver {
 	}
 	
 	public boolean templateNonBranchSupportsState(BuildStateEnum myBuildState, SProject project, String templateName){
-		for (WebHookPayloadTemplate template : findWebHookTemplatesForProject(project)){
-			if (template.getTemplateId().equals(templateName)){
-				return template.getSupportedBuildStates().contains(myBuildState);
-			}
-		}
-		return false;
+		WebHookPayloadTemplate template = findWebHookTemplateForProject(project, templateName);
+		return template != null && template.getSupportedBuildStates().contains(myBuildState);
 	}
 	public boolean templateForBranchSupportsState(BuildStateEnum myBuildState, SProject project, String templateName){
-		for (WebHookPayloadTemplate template : findWebHookTemplatesForProject(project)){
-			if (template.getTemplateId().equals(templateName)){
-				return template.getSupportedBranchBuildStates().contains(myBuildState);
-			}
-		}
-		return false;
+		WebHookPayloadTemplate template = findWebHookTemplateForProject(project, templateName);
+		return template != null && template.getSupportedBranchBuildStates().contains(myBuildState);
 	}
 
 	public boolean templateSupportsFormatAndState(BuildStateEnum myBuildState, SProject project, String templateName) {
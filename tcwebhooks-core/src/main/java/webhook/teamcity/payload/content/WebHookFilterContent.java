@@ -0,0 +1,177 @@
+package webhook.teamcity.payload.content;
+
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import jetbrains.buildServer.serverSide.Branch;
+import jetbrains.buildServer.serverSide.SBuild;
+import jetbrains.buildServer.serverSide.SBuildType;
+import jetbrains.buildServer.serverSide.SProject;
+import webhook.teamcity.BuildStateEnum;
+import webhook.teamcity.TeamCityIdResolver;
+import webhook.teamcity.payload.variableresolver.BeanPropertyAccessors;
+
+/**
+ * The build and project properties of a {@link WebHookPayloadContent}, without the
+ * changes, comments, tags and agent details which are expensive to read from TeamCity.
+ * <p>
+ * Trigger filters usually refer to properties such as <code>branchDisplayName</code>
+ * or <code>buildExternalTypeId</code>, so they can be checked against this content
+ * before the full content is built. Each property is set in the same way as
+ * {@link WebHookPayloadContent} sets it, so a template which only refers to these
+ * properties and the parameters resolves to the same value from either.
+ */
+public class WebHookFilterContent {
+
+	private static final Set<String> CONTENT_ONLY_PROPERTIES = findContentOnlyProperties();
+
+	private final String notifyType;
+	private final String buildStateDescription;
+	private final String buildFullName;
+	private final String buildName;
+	private final String buildId;
+	private final String buildNumber;
+	private final String buildTypeId;
+	private final String buildInternalTypeId;
+	private final String buildExternalTypeId;
+	private final String projectName;
+	private final String projectId;
+	private final String projectInternalId;
+	private final String projectExternalId;
+	private final Boolean buildIsPersonal;
+	private String branchName;
+	private String branchDisplayName;
+	private Boolean branchIsDefault;
+	private final ExtraParametersMap extraParameters;
+	private final ExtraParametersMap teamcityProperties;
+
+	public WebHookFilterContent(SBuild sBuild, BuildStateEnum buildState, Map<String, String> extraParameters, Map<String, String> teamcityProperties) {
+		SBuildType sBuildType = sBuild.getBuildType();
+		SProject sProject = sBuildType.getProject();
+		this.notifyType = buildState.getShortName();
+		this.buildStateDescription = buildState.getDescriptionSuffix();
+		this.buildFullName = sBuildType.getFullName();
+		this.buildName = sBuildType.getName();
+		this.buildId = Long.toString(sBuild.getBuildId());
+		this.buildNumber = sBuild.getBuildNumber();
+		this.buildTypeId = TeamCityIdResolver.getBuildTypeId(sBuildType);
+		this.buildInternalTypeId = TeamCityIdResolver.getInternalBuildId(sBuildType);
+		this.buildExternalTypeId = TeamCityIdResolver.getExternalBuildId(sBuildType);
+		this.projectName = sBuildType.getProjectName();
+		this.projectId = TeamCityIdResolver.getProjectId(sProject);
+		this.projectInternalId = TeamCityIdResolver.getInternalProjectId(sProject);
+		this.projectExternalId = TeamCityIdResolver.getExternalProjectId(sProject);
+		this.buildIsPersonal = sBuild.isPersonal();
+		try {
+			Branch branch = sBuild.getBranch();
+			if (branch != null) {
+				this.branchName = branch.getName();
+				this.branchDisplayName = branch.getDisplayName();
+				this.branchIsDefault = branch.isDefaultBranch();
+			}
+		} catch (NoSuchMethodError e) {
+			// An old version of TeamCity without branch support. The content leaves the branch unset too.
+		}
+		this.extraParameters = new ExtraParametersMap(extraParameters);
+		this.teamcityProperties = new ExtraParametersMap(teamcityProperties);
+	}
+
+	/**
+	 * Returns true if the template refers to no property which only the full
+	 * {@link WebHookPayloadContent} has, and so resolves to the same value from this content.
+	 * Any word in the template matching one of those property names counts, so a template
+	 * may be sent to the full content when it did not need to be, but never the other way round.
+	 * Words following a dot are skipped, as they name a parameter (eg, <code>teamcity.build.id</code>)
+	 * or a property of the word before, not a property of the content.
+	 */
+	public static boolean canResolve(String template) {
+		if (template == null) {
+			return true;
+		}
+		int start = -1;
+		for (int i = 0; i <= template.length(); i++) {
+			boolean wordCharacter = i < template.length() && Character.isJavaIdentifierPart(template.charAt(i));
+			if (wordCharacter && start < 0) {
+				start = i;
+			} else if (!wordCharacter && start >= 0) {
+				boolean nested = start > 0 && template.charAt(start - 1) == '.';
+				if (!nested && CONTENT_ONLY_PROPERTIES.contains(template.substring(start, i))) {
+					return false;
+				}
+				start = -1;
+			}
+		}
+		return true;
+	}
+
+	private static Set<String> findContentOnlyProperties() {
+		Set<String> properties = new HashSet<>(BeanPropertyAccessors.forClass(WebHookPayloadContent.class).getPropertyNames());
+		properties.removeAll(BeanPropertyAccessors.forClass(WebHookFilterContent.class).getPropertyNames());
+		return properties;
+	}
+
+	public String getNotifyType() {
+		return notifyType;
+	}
+	public String getBuildStateDescription() {
+		return buildStateDescription;
+	}
+	public String getBuildFullName() {
+		return buildFullName;
+	}
+	public String getBuildName() {
+		return buildName;
+	}
+	public String getBuildId() {
+		return buildId;
+	}
+	public String getBuildNumber() {
+		return buildNumber;
+	}
+	public String getBuildTypeId() {
+		return buildTypeId;
+	}
+	public String getBuildInternalTypeId() {
+		return buildInternalTypeId;
+	}
+	public String getBuildExternalTypeId() {
+		return buildExternalTypeId;
+	}
+	public String getProjectName() {
+		return projectName;
+	}
+	public String getProjectId() {
+		return projectId;
+	}
+	public String getProjectInternalId() {
+		return projectInternalId;
+	}
+	public String getProjectExternalId() {
+		return projectExternalId;
+	}
+	public Boolean getBuildIsPersonal() {
+		return buildIsPersonal;
+	}
+	public String getBranchName() {
+		return branchName;
+	}
+	public String getBranchDisplayName() {
+		return branchDisplayName;
+	}
+	public Boolean getBranchIsDefault() {
+		return branchIsDefault;
+	}
+
+	/**
+	 * The parameters in the same order as {@link WebHookPayloadContent#getAllParameters()}.
+	 */
+	public Map<String, ExtraParametersMap> getAllParameters() {
+		Map<String, ExtraParametersMap> allParameters = new LinkedHashMap<>();
+		allParameters.put("teamcity", this.teamcityProperties);
+		allParameters.put("webhook", this.extraParameters);
+		return allParameters;
+	}
+
+}
@@ -368,12 +368,13 @@ public class WebHookPayloadContent {
     		setTriggeredBy(sBuild.getTriggeredBy().getAsString());
     		setComment(WebHooksComment.build(sBuild.getBuildComment()));
     		setTags(sBuild.getTags());
+    		List<SVcsModification> containingChanges = sBuild.getContainingChanges();
     		int fileChangeCount = 0;
-    		for (SVcsModification mod : sBuild.getContainingChanges()) {
+    		for (SVcsModification mod : containingChanges) {
     			fileChangeCount += mod.getChangeCount();
     		}
     		this.changeFileListCount = fileChangeCount;
-			setChanges(sBuild.getContainingChanges(), includeVcsFileList());
+			setChanges(containingChanges, includeVcsFileList());
     		try {
     			if (sBuild.getBranch() != null){
 	    			setBranch(sBuild.getBranch());
@@ -0,0 +1,107 @@
+package webhook.teamcity.payload.content;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.function.Supplier;
+
+import webhook.teamcity.payload.WebHookContentObjectSerialiser;
+import webhook.teamcity.payload.variableresolver.VariableResolver;
+import webhook.teamcity.payload.variableresolver.VariableResolverFactory;
+
+/**
+ * Holds the {@link WebHookPayloadContent} for one webhook and event, so that its URL,
+ * filters, headers and payload are all resolved from the same content rather than
+ * each building their own.
+ * <p>
+ * The content, and the {@link VariableResolver} built from it, are only created when
+ * first asked for. A context belongs to a single webhook and is not thread safe.
+ * <p>
+ * A context may also be given a lightweight {@link WebHookFilterContent}. Templates
+ * which only refer to its build and project properties (typically the URL and the
+ * trigger filters) are then resolved from it, so a webhook which is filtered out
+ * never builds the full content.
+ * <p>
+ * Payload formats may alter the content while rendering it (eg, removing the TeamCity
+ * objects before serialising it), so the payload must be rendered last.
+ */
+public class WebHookPayloadContentContext {
+
+	private final VariableResolverFactory variableResolverFactory;
+	private final WebHookContentObjectSerialiser serialiser;
+	private final Supplier<WebHookPayloadContent> contentBuilder;
+	private final Supplier<WebHookFilterContent> filterContentBuilder;
+
+	private WebHookPayloadContent content;
+	private VariableResolver variableResolver;
+	private VariableResolver filterVariableResolver;
+
+	public WebHookPayloadContentContext(VariableResolverFactory variableResolverFactory, WebHookContentObjectSerialiser serialiser, Supplier<WebHookPayloadContent> contentBuilder) {
+		this(variableResolverFactory, serialiser, contentBuilder, null);
+	}
+
+	public WebHookPayloadContentContext(VariableResolverFactory variableResolverFactory, WebHookContentObjectSerialiser serialiser, 
+			Supplier<WebHookPayloadContent> contentBuilder, Supplier<WebHookFilterContent> filterContentBuilder) {
+		this.variableResolverFactory = variableResolverFactory;
+		this.serialiser = serialiser;
+		this.contentBuilder = contentBuilder;
+		this.filterContentBuilder = filterContentBuilder;
+	}
+
+	public WebHookPayloadContent getContent() {
+		if (this.content == null) {
+			this.content = this.contentBuilder.get();
+		}
+		return this.content;
+	}
+
+	public VariableResolver getVariableResolver() {
+		if (this.variableResolver == null) {
+			WebHookPayloadContent payloadContent = getContent();
+			this.variableResolver = this.variableResolverFactory.buildVariableResolver(this.serialiser, payloadContent, payloadContent.getAllParameters());
+		}
+		return this.variableResolver;
+	}
+
+	/**
+	 * Returns a resolver for the templates. It is built from the {@link WebHookFilterContent}
+	 * when the context has one, the full content has not been built yet, and none of the
+	 * templates refer to a property only the full content has. Otherwise it is the same
+	 * resolver as {@link #getVariableResolver()}.
+	 * @param templates eg, the values of the trigger filters.
+	 */
+	public VariableResolver getVariableResolver(Collection<String> templates) {
+		if (this.filterContentBuilder == null || this.content != null) {
+			return getVariableResolver();
+		}
+		for (String template : templates) {
+			if (!WebHookFilterContent.canResolve(template)) {
+				return getVariableResolver();
+			}
+		}
+		if (this.filterVariableResolver == null) {
+			WebHookFilterContent filterContent = this.filterContentBuilder.get();
+			this.filterVariableResolver = this.variableResolverFactory.buildVariableResolver(this.serialiser, filterContent, filterContent.getAllParameters());
+		}
+		return this.filterVariableResolver;
+	}
+
+	/**
+	 * Resolves any variables in the template. The content is not built
+	 * if the template does not contain any variables.
+	 * @param template eg, a URL containing variables.
+	 * @return The template with its variables resolved.
+	 */
+	public String resolve(String template) {
+		if (!isTemplated(template)) {
+			return template;
+		}
+		return this.variableResolverFactory.createVariableMessageBuilder(template, getVariableResolver(Collections.singleton(template))).build();
+	}
+
+	public boolean isTemplated(String template) {
+		return template != null
+				&& template.contains(this.variableResolverFactory.getPayloadTemplateType().getVariablePrefix())
+				&& template.contains(this.variableResolverFactory.getPayloadTemplateType().getVariableSuffix());
+	}
+
+}
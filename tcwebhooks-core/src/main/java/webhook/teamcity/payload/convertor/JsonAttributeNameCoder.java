@@ -0,0 +1,23 @@
+package webhook.teamcity.payload.convertor;
+
+import com.thoughtworks.xstream.io.naming.NoNameCoder;
+
+/**
+ * XStream's JSON writer prefixes attribute names with "@". The parameters written by
+ * {@link ExtraParametersMapToJsonConvertor} have always been sent as "name" and "value",
+ * so drop the prefix from those two as the attributes are written.
+ */
+public class JsonAttributeNameCoder extends NoNameCoder {
+
+	private static final String NAME_ATTRIBUTE = "@name";
+	private static final String VALUE_ATTRIBUTE = "@value";
+
+	@Override
+	public String encodeAttribute(String name) {
+		if (NAME_ATTRIBUTE.equals(name) || VALUE_ATTRIBUTE.equals(name)) {
+			return name.substring(1);
+		}
+		return super.encodeAttribute(name);
+	}
+
+}
@@ -0,0 +1,68 @@
+package webhook.teamcity.payload.convertor;
+
+import java.util.List;
+
+import webhook.teamcity.payload.content.WebHooksChange;
+import webhook.teamcity.payload.content.WebHooksChanges;
+
+import com.thoughtworks.xstream.converters.Converter;
+import com.thoughtworks.xstream.converters.MarshallingContext;
+import com.thoughtworks.xstream.converters.UnmarshallingContext;
+import com.thoughtworks.xstream.io.ExtendedHierarchicalStreamWriterHelper;
+import com.thoughtworks.xstream.io.HierarchicalStreamReader;
+import com.thoughtworks.xstream.io.HierarchicalStreamWriter;
+
+/**
+ * Writes each {@link WebHooksChanges} and its {@link WebHooksChange} straight to the
+ * writer, field by field, rather than having XStream discover the fields by reflection
+ * for every change in the build.
+ * <p>
+ * The nodes are written in field declaration order and null fields are left out, so
+ * the output is the same as XStream's reflection converter produced.
+ */
+public class WebHooksChangesConvertor implements Converter {
+
+	public void marshal(Object source, HierarchicalStreamWriter writer,
+			MarshallingContext context) {
+		WebHooksChanges changes = (WebHooksChanges) source;
+		addValueNode(writer, "version", changes.getVersion());
+		WebHooksChange change = changes.getChange();
+		if (change != null) {
+			ExtendedHierarchicalStreamWriterHelper.startNode(writer, "change", WebHooksChange.class);
+			addFilesNode(writer, context, change.getFiles());
+			addValueNode(writer, "comment", change.getComment());
+			addValueNode(writer, "username", change.getUsername());
+			addValueNode(writer, "vcsRoot", change.getVcsRoot());
+			writer.endNode();
+		}
+	}
+
+	private void addValueNode(HierarchicalStreamWriter writer, String name, String value) {
+		if (value != null) {
+			ExtendedHierarchicalStreamWriterHelper.startNode(writer, name, String.class);
+			writer.setValue(value);
+			writer.endNode();
+		}
+	}
+
+	private void addFilesNode(HierarchicalStreamWriter writer, MarshallingContext context, List<String> files) {
+		if (files != null) {
+			ExtendedHierarchicalStreamWriterHelper.startNode(writer, "files", files.getClass());
+			context.convertAnother(files);
+			writer.endNode();
+		}
+	}
+
+	/*
+	 * We don't support unmarshalling. One way only I'm afraid.
+	 */
+	public Object unmarshal(HierarchicalStreamReader reader,
+			UnmarshallingContext context) {
+		return null;
+	}
+
+	@SuppressWarnings({ "rawtypes" })
+	public boolean canConvert(Class clazz) {
+		return WebHooksChanges.class == clazz;
+	}
+}
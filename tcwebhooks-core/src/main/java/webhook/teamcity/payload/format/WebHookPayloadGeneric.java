@@ -13,13 +13,14 @@ import jetbrains.buildServer.serverSide.SQueuedBuild;
 import webhook.teamcity.BuildStateEnum;
 import webhook.teamcity.executor.WebHookResponsibilityHolder;
 import webhook.teamcity.payload.WebHookPayload;
+import webhook.teamcity.payload.WebHookPayloadContentRenderer;
 import webhook.teamcity.payload.WebHookPayloadManager;
 import webhook.teamcity.payload.WebHookTemplateContent;
 import webhook.teamcity.payload.content.WebHookPayloadContent;
 import webhook.teamcity.payload.variableresolver.VariableResolverFactory;
 import webhook.teamcity.payload.variableresolver.WebHookVariableResolverManager;
 
-public abstract class WebHookPayloadGeneric implements WebHookPayload {
+public abstract class WebHookPayloadGeneric implements WebHookPayload, WebHookPayloadContentRenderer {
 
 	WebHookPayloadManager myManager;
 	WebHookVariableResolverManager webHookVariableResolverManager;
@@ -125,6 +126,12 @@ public abstract class WebHookPayloadGeneric implements WebHookPayload {
 		return getStatusAsString(content, webHookTemplate);
 
 	}
+
+	@Override
+	public String render(WebHookPayloadContent content, WebHookTemplateContent webHookTemplate) {
+		return getStatusAsString(content, webHookTemplate);
+	}
+
 	protected abstract String getStatusAsString(WebHookPayloadContent content, WebHookTemplateContent webHookTemplate);
 
 	public Object serialiseObject(Object object) {
@@ -9,7 +9,9 @@ import webhook.teamcity.payload.WebHookPayloadManager;
 import webhook.teamcity.payload.WebHookTemplateContent;
 import webhook.teamcity.payload.content.WebHookPayloadContent;
 import webhook.teamcity.payload.convertor.ExtraParametersMapToJsonConvertor;
+import webhook.teamcity.payload.convertor.JsonAttributeNameCoder;
 import webhook.teamcity.payload.convertor.UserSingleValueConverter;
+import webhook.teamcity.payload.convertor.WebHooksChangesConvertor;
 import webhook.teamcity.payload.template.render.JsonToHtmlPrettyPrintingRenderer;
 import webhook.teamcity.payload.template.render.WebHookStringRenderer;
 import webhook.teamcity.payload.variableresolver.WebHookVariableResolverManager;
@@ -23,8 +25,17 @@ public class WebHookPayloadJson extends WebHookPayloadGeneric implements WebHook
 	Integer rank = 100;
 	String charset = "UTF-8";
 	
+	/* XStream is thread safe once configured, so configure it once and share it. */
+	XStream xstream = new XStream(new JsonHierarchicalStreamDriver(new JsonAttributeNameCoder()));
+	
 	public WebHookPayloadJson(WebHookPayloadManager manager, WebHookVariableResolverManager variableResolverManager){
 		super(manager, variableResolverManager);
+		xstream.setMode(XStream.NO_REFERENCES);
+		xstream.registerConverter(new ExtraParametersMapToJsonConvertor());
+		xstream.registerConverter(new UserSingleValueConverter());
+		xstream.registerConverter(new WebHooksChangesConvertor());
+		xstream.alias("build", WebHookPayloadContent.class);
+		xstream.processAnnotations(WebHookPayloadContent.class);
 	}
 
 	public void register(){
@@ -47,17 +58,7 @@ public class WebHookPayloadJson extends WebHookPayloadGeneric implements WebHook
 	protected String getStatusAsString(WebHookPayloadContent content,WebHookTemplateContent webHookTemplate){
 
 		cleanContextContent(content);
-
-		XStream xstream = new XStream(new JsonHierarchicalStreamDriver());
-        xstream.setMode(XStream.NO_REFERENCES);
-        xstream.registerConverter(new ExtraParametersMapToJsonConvertor());
-        xstream.registerConverter(new UserSingleValueConverter());
-        xstream.autodetectAnnotations(true);
-        xstream.alias("build", WebHookPayloadContent.class);
-        /* For some reason, the items are coming back as "@name" and "@value"
-         * so strip those out with a regex.
-         */
-		return xstream.toXML(content).replaceAll("\"@(name|value)\": \"(.*)\"", "\"$1\": \"$2\"");
+		return xstream.toXML(content);
 
 	}
 
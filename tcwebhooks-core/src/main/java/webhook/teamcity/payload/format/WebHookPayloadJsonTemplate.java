@@ -52,7 +52,7 @@ public class WebHookPayloadJsonTemplate extends WebHookPayloadGeneric implements
 
 	@Override
 	protected String getStatusAsString(WebHookPayloadContent content, WebHookTemplateContent webHookTemplateContent){
-		VariableMessageBuilder builder = this.myVariableResolverFactory.createVariableMessageBuilder(webHookTemplateContent.getTemplateText(), this.myVariableResolverFactory.buildVariableResolver(this, content, content.getAllParameters()));
+		VariableMessageBuilder builder = this.myVariableResolverFactory.createVariableMessageBuilder(webHookTemplateContent, this.myVariableResolverFactory.buildVariableResolver(this, content, content.getAllParameters()));
 		return builder.build();
 	}
 
@@ -54,7 +54,7 @@ public class WebHookPayloadNameValuePairsTemplate extends WebHookPayloadGeneric
 
 	@Override
 	protected String getStatusAsString(WebHookPayloadContent content, WebHookTemplateContent webHookTemplateContent){
-		VariableMessageBuilder builder = this.myVariableResolverFactory.createVariableMessageBuilder(webHookTemplateContent.getTemplateText(), this.myVariableResolverFactory.buildVariableResolver(this, content, content.getAllParameters()));
+		VariableMessageBuilder builder = this.myVariableResolverFactory.createVariableMessageBuilder(webHookTemplateContent, this.myVariableResolverFactory.buildVariableResolver(this, content, content.getAllParameters()));
 		try {
 			return URLEncodedUtils.format(parseToNvPairs(builder.build()), Charset.forName(getCharset()));
 		} catch (Exception ex) {
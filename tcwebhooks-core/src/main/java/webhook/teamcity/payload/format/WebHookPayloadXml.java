@@ -15,9 +15,16 @@ public class WebHookPayloadXml extends WebHookPayloadGeneric {
 
 	public static final String FORMAT_SHORT_NAME = "xml";
 	private Integer rank = 100; 
+	
+	/* XStream is thread safe once configured, so configure it once and share it. */
+	private final XStream xstream = new XStream();
 
 	public WebHookPayloadXml(WebHookPayloadManager wpm, WebHookVariableResolverManager variableResolverManager) {
 		super(wpm, variableResolverManager);
+		xstream.setMode(XStream.NO_REFERENCES);
+		xstream.registerConverter(new ExtraParametersMapToXmlConvertor());
+		xstream.alias("build", WebHookPayloadContent.class);
+		xstream.processAnnotations(WebHookPayloadContent.class);
 	}
 
 	public void register(){
@@ -57,12 +64,6 @@ public class WebHookPayloadXml extends WebHookPayloadGeneric {
 	protected String getStatusAsString(WebHookPayloadContent content, WebHookTemplateContent webHookTemplateContent) {
 
 		cleanContextContent(content);
-
-		XStream xstream = new XStream();
-        xstream.setMode(XStream.NO_REFERENCES);
-        xstream.registerConverter(new ExtraParametersMapToXmlConvertor());
-        xstream.autodetectAnnotations(true);
-        xstream.alias("build", WebHookPayloadContent.class);
 		return xstream.toXML(content);
 	}
 
@@ -50,7 +50,7 @@ public class WebHookPayloadXmlTemplate extends WebHookPayloadGeneric implements
 
 	@Override
 	protected String getStatusAsString(WebHookPayloadContent content, WebHookTemplateContent webHookTemplateContent){
-		VariableMessageBuilder builder = this.myVariableResolverFactory.createVariableMessageBuilder(webHookTemplateContent.getTemplateText(), this.myVariableResolverFactory.buildVariableResolver(this, content, content.getAllParameters()));
+		VariableMessageBuilder builder = this.myVariableResolverFactory.createVariableMessageBuilder(webHookTemplateContent, this.myVariableResolverFactory.buildVariableResolver(this, content, content.getAllParameters()));
 		return builder.build();
 	}
 
@@ -107,7 +107,7 @@ public class WebHookTemplateFromXml implements WebHookPayloadTemplate {
 	@Override
 	public WebHookTemplateContent getTemplateForState(BuildStateEnum buildState) {
 		if (templateContent.containsKey(buildState)){
-			return (templateContent.get(buildState)).copy(); 
+			return templateContent.get(buildState);
 		}
 		throw new UnSupportedBuildStateException(buildState, BRANCH_TYPE_NON_BRANCH, this.getTemplateId(), this.getTemplateDescription(), this.getSupportedBranchBuildStates());
 	}
@@ -115,7 +115,7 @@ public class WebHookTemplateFromXml implements WebHookPayloadTemplate {
 	@Override
 	public WebHookTemplateContent getBranchTemplateForState(BuildStateEnum buildState) {
 		if (branchTemplateContent.containsKey(buildState)){
-			return (branchTemplateContent.get(buildState)).copy(); 
+			return branchTemplateContent.get(buildState);
 		}
 		throw new UnSupportedBuildStateException(buildState, BRANCH_TYPE_BRANCH, this.getTemplateId(), this.getTemplateDescription(), this.getSupportedBranchBuildStates());
 	}
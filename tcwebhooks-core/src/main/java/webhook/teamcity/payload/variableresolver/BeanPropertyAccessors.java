@@ -0,0 +1,122 @@
+package webhook.teamcity.payload.variableresolver;
+
+import java.beans.IntrospectionException;
+import java.beans.Introspector;
+import java.beans.PropertyDescriptor;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.commons.beanutils.PropertyUtils;
+
+import webhook.teamcity.Loggers;
+
+/**
+ * A table of the readable properties of a bean class, with a {@link MethodHandle} for each getter.
+ * <p>
+ * The table is built the first time a class is used, and then shared, so reading a property
+ * is a map lookup and a direct call rather than the introspection and reflection that
+ * {@link PropertyUtils} does on every call.
+ * <p>
+ * Only simple property names are read through the table. Nested, indexed and mapped names
+ * (eg, <code>build.vcs.number</code>) are passed to {@link PropertyUtils} if the bean has
+ * a property of the first name, so the same values and exceptions are seen as before.
+ */
+public class BeanPropertyAccessors {
+
+	private static final MethodType GETTER_TYPE = MethodType.methodType(Object.class, Object.class);
+
+	private static final ClassValue<BeanPropertyAccessors> ACCESSORS = new ClassValue<BeanPropertyAccessors>() {
+		@Override
+		protected BeanPropertyAccessors computeValue(Class<?> type) {
+			return new BeanPropertyAccessors(type);
+		}
+	};
+
+	private final Class<?> beanClass;
+	private final Map<String, MethodHandle> getters;
+
+	private BeanPropertyAccessors(Class<?> beanClass) {
+		this.beanClass = beanClass;
+		Map<String, MethodHandle> handles = new LinkedHashMap<>();
+		try {
+			for (PropertyDescriptor descriptor : Introspector.getBeanInfo(beanClass).getPropertyDescriptors()) {
+				Method readMethod = descriptor.getReadMethod();
+				if (readMethod != null) {
+					try {
+						handles.put(descriptor.getName(), MethodHandles.publicLookup().unreflect(readMethod).asType(GETTER_TYPE));
+					} catch (IllegalAccessException ex) {
+						Loggers.SERVER.debug("BeanPropertyAccessors :: Skipping inaccessible property '" + descriptor.getName() + "' on " + beanClass.getName());
+					}
+				}
+			}
+		} catch (IntrospectionException ex) {
+			Loggers.SERVER.warn("BeanPropertyAccessors :: Unable to introspect " + beanClass.getName(), ex);
+		}
+		this.getters = Collections.unmodifiableMap(handles);
+	}
+
+	public static BeanPropertyAccessors forClass(Class<?> beanClass) {
+		return ACCESSORS.get(beanClass);
+	}
+
+	/**
+	 * Reads a property from a bean, in place of {@link PropertyUtils#getProperty(Object, String)}.
+	 */
+	public static Object getProperty(Object bean, String propertyName) throws IllegalAccessException, InvocationTargetException, NoSuchMethodException {
+		if (bean == null || propertyName == null) {
+			throw new IllegalArgumentException("No bean or property name specified");
+		}
+		if (bean instanceof Map) {
+			return PropertyUtils.getProperty(bean, propertyName);
+		}
+		return forClass(bean.getClass()).get(bean, propertyName);
+	}
+
+	public Set<String> getPropertyNames() {
+		return this.getters.keySet();
+	}
+
+	public boolean hasProperty(String propertyName) {
+		return this.getters.containsKey(propertyName);
+	}
+
+	public Object get(Object bean, String propertyName) throws IllegalAccessException, InvocationTargetException, NoSuchMethodException {
+		MethodHandle getter = this.getters.get(propertyName);
+		if (getter != null) {
+			return invoke(getter, bean);
+		}
+		int end = indexOfDelimiter(propertyName);
+		if (end > 0 && hasProperty(propertyName.substring(0, end))) {
+			return PropertyUtils.getProperty(bean, propertyName);
+		}
+		throw new NoSuchMethodException("Unknown property '" + propertyName + "' on class '" + this.beanClass + "'");
+	}
+
+	private static Object invoke(MethodHandle getter, Object bean) throws InvocationTargetException {
+		try {
+			return getter.invokeExact(bean);
+		} catch (Error err) {
+			throw err;
+		} catch (Throwable ex) {
+			throw new InvocationTargetException(ex);
+		}
+	}
+
+	private static int indexOfDelimiter(String propertyName) {
+		for (int i = 0; i < propertyName.length(); i++) {
+			char c = propertyName.charAt(i);
+			if (c == '.' || c == '[' || c == '(') {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+}
@@ -4,6 +4,7 @@ import java.util.Map;
 
 import webhook.teamcity.payload.PayloadTemplateEngineType;
 import webhook.teamcity.payload.WebHookContentObjectSerialiser;
+import webhook.teamcity.payload.WebHookTemplateContent;
 import webhook.teamcity.payload.content.ExtraParametersMap;
 
 public interface VariableResolverFactory {
@@ -13,6 +14,7 @@ public interface VariableResolverFactory {
 	public abstract PayloadTemplateEngineType getPayloadTemplateType();
 	public abstract String getVariableResolverFactoryName();
 	public abstract VariableMessageBuilder createVariableMessageBuilder(final String template, VariableResolver resolver);
+	public abstract VariableMessageBuilder createVariableMessageBuilder(final WebHookTemplateContent template, VariableResolver resolver);
 	public abstract VariableResolver buildVariableResolver(WebHookContentObjectSerialiser webhookPayload, Object javaBean, Map<String, ExtraParametersMap> extraAndTeamCityProperties);
 	
 
@@ -0,0 +1,178 @@
+package webhook.teamcity.payload.variableresolver.standard;
+
+import java.text.SimpleDateFormat;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+import org.apache.commons.lang3.StringEscapeUtils;
+
+import webhook.teamcity.payload.util.StringSanitiser;
+import webhook.teamcity.payload.util.StringUtils;
+
+/**
+ * The functions available in standard templates.
+ * <ul>
+ * <li><code>now(pattern)</code> - The current date and time, in the {@link SimpleDateFormat} pattern.</li>
+ * <li><code>escapejson(variable)</code> - The value escaped for use in a JSON string.</li>
+ * <li><code>capitalise(variable)</code> - The value with every word capitalised.</li>
+ * <li><code>capitaliseFirst(variable)</code> - The value with the first word capitalised.</li>
+ * <li><code>substr(variable,startIndex,endIndex,minLength)</code> - Part of the value.</li>
+ * <li><code>sanitise(variable)</code> - The value with characters unsafe in names replaced.</li>
+ * </ul>
+ * The American spellings work too.
+ */
+public class StandardTemplateFunctions {
+
+	private StandardTemplateFunctions(){}
+
+	public static List<TemplateFunction> getFunctions() {
+		return Arrays.asList(
+				new NowFunction(),
+				new EscapeJsonFunction(),
+				new CapitaliseFunction("capitalise"),
+				new CapitaliseFunction("capitalize"),
+				new CapitaliseFirstFunction("capitaliseFirst"),
+				new CapitaliseFirstFunction("capitalizeFirst"),
+				new SubStringFunction(),
+				new SanitiseFunction("sanitise"),
+				new SanitiseFunction("sanitize")
+			);
+	}
+
+	/**
+	 * A function of one variable, which transforms the variable's value.
+	 */
+	public abstract static class ValueFunction implements TemplateFunction {
+		private final String name;
+
+		protected ValueFunction(String name) {
+			this.name = name;
+		}
+
+		@Override
+		public String getName() {
+			return this.name;
+		}
+
+		@Override
+		public TemplateFunctionCall compile(final String variableName) {
+			return values -> {
+				String value = getValue(values, variableName);
+				return value != null ? apply(value) : null;
+			};
+		}
+
+		protected String getValue(TemplateFunctionValues values, String variableName) {
+			return values.getValue(variableName);
+		}
+
+		protected abstract String apply(String value);
+	}
+
+	public static class EscapeJsonFunction extends ValueFunction {
+		public EscapeJsonFunction() {
+			super("escapejson");
+		}
+
+		@Override
+		protected String apply(String value) {
+			return StringEscapeUtils.escapeJson(value);
+		}
+	}
+
+	public static class CapitaliseFunction extends ValueFunction {
+		public CapitaliseFunction(String name) {
+			super(name);
+		}
+
+		@Override
+		protected String apply(String value) {
+			return StringUtils.capitaliseAllWords(value);
+		}
+	}
+
+	public static class CapitaliseFirstFunction extends ValueFunction {
+		public CapitaliseFirstFunction(String name) {
+			super(name);
+		}
+
+		@Override
+		protected String getValue(TemplateFunctionValues values, String variableName) {
+			return values.getValueAsString(variableName);
+		}
+
+		@Override
+		protected String apply(String value) {
+			return StringUtils.capitaliseFirstWord(value);
+		}
+	}
+
+	public static class SanitiseFunction extends ValueFunction {
+		public SanitiseFunction(String name) {
+			super(name);
+		}
+
+		@Override
+		protected String apply(String value) {
+			return StringSanitiser.sanitise(value);
+		}
+	}
+
+	/**
+	 * <code>now(pattern)</code>. The pattern is checked once, when the template is compiled.
+	 * It is a {@link SimpleDateFormat} pattern, the same as Velocity templates' <code>#now</code>,
+	 * and because those are not thread safe each thread formats with its own.
+	 */
+	public static class NowFunction implements TemplateFunction {
+		@Override
+		public String getName() {
+			return "now";
+		}
+
+		@Override
+		public TemplateFunctionCall compile(String pattern) {
+			try {
+				new SimpleDateFormat(pattern);
+			} catch (IllegalArgumentException ex) {
+				return null;
+			}
+			final ThreadLocal<SimpleDateFormat> formatters = ThreadLocal.withInitial(() -> new SimpleDateFormat(pattern));
+			return values -> formatters.get().format(new Date());
+		}
+	}
+
+	/**
+	 * <code>substr(variable,startIndex,endIndex,minLength)</code>. The indexes are parsed once.
+	 */
+	public static class SubStringFunction implements TemplateFunction {
+		@Override
+		public String getName() {
+			return "substr";
+		}
+
+		@Override
+		public TemplateFunctionCall compile(String argument) {
+			final String[] options = argument.split(",");
+			if (options.length < 4) {
+				return null;
+			}
+			final int startIndex;
+			final int endIndex;
+			final int minLength;
+			try {
+				startIndex = Integer.parseInt(options[1]);
+				endIndex = Integer.parseInt(options[2]);
+				minLength = Integer.parseInt(options[3]);
+			} catch (NumberFormatException ex) {
+				return null;
+			}
+			final String variableName = options[0];
+			return values -> {
+				String value = values.getValue(variableName);
+				return value != null ? StringUtils.subString(value, startIndex, endIndex, minLength) : null;
+			};
+		}
+	}
+
+}
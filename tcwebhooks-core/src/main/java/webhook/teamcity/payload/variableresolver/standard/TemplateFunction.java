@@ -0,0 +1,25 @@
+package webhook.teamcity.payload.variableresolver.standard;
+
+/**
+ * A function which can be called from a standard template, eg, the <code>escapejson</code>
+ * in <code>${escapejson(buildName)}</code>.
+ * <p>
+ * Functions are found by name in the {@link TemplateFunctionRegistry} when a template
+ * is compiled, and their argument is parsed then, once, into a {@link TemplateFunctionCall}.
+ */
+public interface TemplateFunction {
+
+	/**
+	 * @return The name the function is called by in a template.
+	 */
+	public abstract String getName();
+
+	/**
+	 * Parses the text between the function's brackets.
+	 * @param argument
+	 * @return The call to apply when the template is rendered, or null if the argument
+	 *   is not valid for this function, in which case the variable is treated as a plain variable.
+	 */
+	public abstract TemplateFunctionCall compile(String argument);
+
+}
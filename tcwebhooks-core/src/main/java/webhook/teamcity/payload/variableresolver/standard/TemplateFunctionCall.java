@@ -0,0 +1,16 @@
+package webhook.teamcity.payload.variableresolver.standard;
+
+/**
+ * A call to a {@link TemplateFunction} with its argument already parsed.
+ * Calls are shared by every render of a compiled template, so must be thread safe.
+ */
+public interface TemplateFunctionCall {
+
+	/**
+	 * @param values The parameters and payload properties of the current render.
+	 * @return The result of the function, or null if it could not be applied (eg, the
+	 *   variable passed to it has no value), in which case the variable is resolved as a plain variable.
+	 */
+	public abstract String apply(TemplateFunctionValues values);
+
+}
@@ -0,0 +1,70 @@
+package webhook.teamcity.payload.variableresolver.standard;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import webhook.teamcity.Loggers;
+
+/**
+ * The functions which can be called from standard templates, by name.
+ * <p>
+ * The registry starts with the {@link StandardTemplateFunctions}. Further functions can be
+ * registered, and are available to templates compiled after that.
+ * <p>
+ * The registry also keeps each {@link TemplateVariable} it has parsed, so that a URL or
+ * header resolved for every webhook does not compile its function calls (eg, the date
+ * format of <code>now()</code>) again each time. Registering a function discards them.
+ */
+public class TemplateFunctionRegistry {
+
+	private static final TemplateFunctionRegistry INSTANCE = new TemplateFunctionRegistry();
+	private static final int MAX_CACHED_VARIABLES = 10000;
+
+	private final Map<String, TemplateFunction> functions = new ConcurrentHashMap<>();
+	private final Map<String, TemplateVariable> variables = new ConcurrentHashMap<>();
+
+	TemplateFunctionRegistry() {
+		for (TemplateFunction function : StandardTemplateFunctions.getFunctions()) {
+			register(function);
+		}
+	}
+
+	public static TemplateFunctionRegistry getInstance() {
+		return INSTANCE;
+	}
+
+	public void register(TemplateFunction function) {
+		TemplateFunction previous = this.functions.put(function.getName(), function);
+		if (previous != null) {
+			Loggers.SERVER.info("TemplateFunctionRegistry :: Template function '" + function.getName() + "' replaced with " + function.getClass().getName());
+		}
+		this.variables.clear();
+	}
+
+	/**
+	 * @param name
+	 * @return The function of that name, or null if there is none.
+	 */
+	public TemplateFunction getFunction(String name) {
+		return this.functions.get(name);
+	}
+
+	/**
+	 * Returns the variable parsed with this registry's functions, parsing it
+	 * the first time it is asked for.
+	 * @param name The text of the variable, eg, <code>now(yyyy-MM-dd)</code>
+	 * @return The parsed variable, shared with every other caller of the same name.
+	 */
+	public TemplateVariable getVariable(String name) {
+		TemplateVariable variable = this.variables.get(name);
+		if (variable == null) {
+			if (this.variables.size() >= MAX_CACHED_VARIABLES) {
+				this.variables.clear();
+			}
+			variable = TemplateVariable.parse(name, this);
+			this.variables.put(name, variable);
+		}
+		return variable;
+	}
+
+}
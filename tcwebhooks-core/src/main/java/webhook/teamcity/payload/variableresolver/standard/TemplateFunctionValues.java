@@ -0,0 +1,22 @@
+package webhook.teamcity.payload.variableresolver.standard;
+
+/**
+ * The values a {@link TemplateFunctionCall} can read while a template is rendered.
+ */
+public interface TemplateFunctionValues {
+
+	/**
+	 * @param variableName
+	 * @return The parameter of that name if one is set, otherwise the payload property
+	 *   as serialised by the payload format, or null if there is neither.
+	 */
+	public abstract String getValue(String variableName);
+
+	/**
+	 * @param variableName
+	 * @return The parameter of that name if one is set, otherwise the payload property
+	 *   as a plain string, or null if there is neither.
+	 */
+	public abstract String getValueAsString(String variableName);
+
+}
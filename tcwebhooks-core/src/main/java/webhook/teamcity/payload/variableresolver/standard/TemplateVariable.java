@@ -0,0 +1,71 @@
+package webhook.teamcity.payload.variableresolver.standard;
+
+/**
+ * A variable from a standard template, eg, the <code>escapejson(buildName)</code> in
+ * <code>${escapejson(buildName)}</code>.
+ * <p>
+ * Any function the variable calls is looked up in the {@link TemplateFunctionRegistry}
+ * and compiled when the variable is created, so that resolving it does not need to work
+ * out the function and its arguments again.
+ * A variable whose function call is not valid (eg, a <code>substr</code> without
+ * its numeric arguments) is treated as a plain variable of the same name.
+ */
+public class TemplateVariable {
+
+	private static final char ARGUMENT_START = '(';
+	private static final String SUFFIX = ")";
+
+	private final String name;
+	private final TemplateFunction function;
+	private final TemplateFunctionCall functionCall;
+
+	private TemplateVariable(String name, TemplateFunction function, TemplateFunctionCall functionCall) {
+		this.name = name;
+		this.function = function;
+		this.functionCall = functionCall;
+	}
+
+	/**
+	 * Returns the variable parsed with the shared registry's functions.
+	 * Variables are cached by the registry, so the same name returns the same instance.
+	 */
+	public static TemplateVariable parse(String name) {
+		return TemplateFunctionRegistry.getInstance().getVariable(name);
+	}
+
+	public static TemplateVariable parse(String name, TemplateFunctionRegistry registry) {
+		int argumentStart = name.indexOf(ARGUMENT_START);
+		if (argumentStart > 0 && name.endsWith(SUFFIX)) {
+			TemplateFunction function = registry.getFunction(name.substring(0, argumentStart));
+			if (function != null) {
+				TemplateFunctionCall functionCall = function.compile(name.substring(argumentStart + 1, name.length() - SUFFIX.length()));
+				if (functionCall != null) {
+					return new TemplateVariable(name, function, functionCall);
+				}
+			}
+		}
+		return new TemplateVariable(name, null, null);
+	}
+
+	/**
+	 * @return The full text of the variable, including any function call.
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * @return The function the variable calls, or null for a plain variable.
+	 */
+	public TemplateFunction getFunction() {
+		return function;
+	}
+
+	/**
+	 * @return The compiled call of the function, or null for a plain variable.
+	 */
+	public TemplateFunctionCall getFunctionCall() {
+		return functionCall;
+	}
+
+}
@@ -0,0 +1,132 @@
+package webhook.teamcity.payload.variableresolver.standard;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import webhook.teamcity.payload.variableresolver.VariableResolver;
+
+/**
+ * A standard template split into its literal text and its <code>${...}</code> variables,
+ * so that it can be rendered many times without searching the template text again.
+ * <p>
+ * Variables are found in the same way as {@link TemplateMatcher} finds them, and a
+ * variable which resolves to null is rendered as it appears in the template.
+ * A compiled template is immutable, and can be rendered by several threads at once.
+ */
+public class WebHookCompiledTemplate {
+
+	private static final String VAR_START = WebHookVariableMessageBuilder.VAR_START;
+	private static final String VAR_END = WebHookVariableMessageBuilder.VAR_END;
+	private static final int ESTIMATED_VARIABLE_LENGTH = 16;
+
+	private final List<Segment> segments;
+	private final int estimatedLength;
+
+	private WebHookCompiledTemplate(List<Segment> segments, int estimatedLength) {
+		this.segments = segments;
+		this.estimatedLength = estimatedLength;
+	}
+
+	public static WebHookCompiledTemplate compile(String template) {
+		List<Segment> segments = new ArrayList<>();
+		int literalLength = 0;
+		int variableCount = 0;
+		int cursor = 0;
+		int start = template.indexOf(VAR_START);
+		while (start >= 0) {
+			int end = template.indexOf(VAR_END, start + VAR_START.length());
+			if (end < 0) {
+				break;
+			}
+			String name = template.substring(start + VAR_START.length(), end);
+			if (containsLineTerminator(name)) {
+				// The regex used by TemplateMatcher does not match across lines.
+				start = template.indexOf(VAR_START, start + 1);
+				continue;
+			}
+			if (start > cursor) {
+				segments.add(new Literal(template.substring(cursor, start)));
+				literalLength += start - cursor;
+			}
+			segments.add(new Variable(TemplateVariable.parse(name), template.substring(start, end + VAR_END.length())));
+			variableCount++;
+			cursor = end + VAR_END.length();
+			start = template.indexOf(VAR_START, cursor);
+		}
+		if (cursor < template.length()) {
+			segments.add(new Literal(template.substring(cursor)));
+			literalLength += template.length() - cursor;
+		}
+		return new WebHookCompiledTemplate(
+				Collections.unmodifiableList(segments),
+				literalLength + (variableCount * ESTIMATED_VARIABLE_LENGTH));
+	}
+
+	public String render(VariableResolver resolver) {
+		StringBuilder sb = new StringBuilder(this.estimatedLength);
+		for (Segment segment : this.segments) {
+			segment.appendTo(sb, resolver);
+		}
+		return sb.toString();
+	}
+
+	public int getSegmentCount() {
+		return this.segments.size();
+	}
+
+	private static boolean containsLineTerminator(String name) {
+		for (int i = 0; i < name.length(); i++) {
+			switch (name.charAt(i)) {
+				case '\n':
+				case '\r':
+				case '\u0085':
+				case '\u2028':
+				case '\u2029':
+					return true;
+				default:
+					break;
+			}
+		}
+		return false;
+	}
+
+	private interface Segment {
+		void appendTo(StringBuilder sb, VariableResolver resolver);
+	}
+
+	private static class Literal implements Segment {
+		private final String text;
+
+		Literal(String text) {
+			this.text = text;
+		}
+
+		@Override
+		public void appendTo(StringBuilder sb, VariableResolver resolver) {
+			sb.append(this.text);
+		}
+	}
+
+	private static class Variable implements Segment {
+		private final TemplateVariable variable;
+		private final String unresolvedText;
+
+		Variable(TemplateVariable variable, String unresolvedText) {
+			this.variable = variable;
+			this.unresolvedText = unresolvedText;
+		}
+
+		@Override
+		public void appendTo(StringBuilder sb, VariableResolver resolver) {
+			String value;
+			if (resolver instanceof WebHooksBeanUtilsVariableResolver) {
+				value = ((WebHooksBeanUtilsVariableResolver) resolver).resolve(this.variable);
+			} else {
+				value = resolver.resolve(this.variable.getName());
+			}
+			sb.append(value != null ? value : this.unresolvedText);
+		}
+	}
+
+}
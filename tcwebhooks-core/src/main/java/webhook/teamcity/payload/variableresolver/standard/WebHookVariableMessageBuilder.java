@@ -7,20 +7,22 @@ public class WebHookVariableMessageBuilder implements VariableMessageBuilder {
 	static final String VAR_START = "${";
 	static final String VAR_END = "}";
 	
-	String template;
+	WebHookCompiledTemplate template;
 	VariableResolver resolver;
-	TemplateMatcher matcher;
 	
 	public static WebHookVariableMessageBuilder create(final String template, VariableResolver resolver){
+		return create(WebHookCompiledTemplate.compile(template), resolver);
+	}
+	
+	public static WebHookVariableMessageBuilder create(final WebHookCompiledTemplate template, VariableResolver resolver){
 		WebHookVariableMessageBuilder builder = new WebHookVariableMessageBuilder();
 		builder.template = template;
 		builder.resolver = resolver;
-		builder.matcher = new TemplateMatcher(VAR_START, VAR_END);
 		return builder;
 	}
 
 	public String build(){
-		return matcher.replace(template, resolver);
+		return template.render(resolver);
 	}
 	
 }
@@ -1,47 +1,38 @@
 package webhook.teamcity.payload.variableresolver.standard;
 
 import java.lang.reflect.InvocationTargetException;
-import java.text.SimpleDateFormat;
 import java.util.Arrays;
-import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 
-import org.apache.commons.beanutils.PropertyUtils;
-import org.apache.commons.lang3.StringEscapeUtils;
-
 import webhook.teamcity.Loggers;
 import webhook.teamcity.payload.WebHookContentObjectSerialiser;
 import webhook.teamcity.payload.content.ExtraParametersMap;
-import webhook.teamcity.payload.util.StringSanitiser;
-import webhook.teamcity.payload.util.StringUtils;
+import webhook.teamcity.payload.variableresolver.BeanPropertyAccessors;
 import webhook.teamcity.payload.variableresolver.VariableResolver;
 
 /**
  * This is a VariableResolver for the TemplateMatcher
  *
  * It resolves the values of variables from javaBean objects using
- * org.apache.commons.beanutils.PropertyUtils
+ * {@link BeanPropertyAccessors}
+ *
+ * A resolver is built for a single render, so each property is read and
+ * serialised once, however many times the templates refer to it.
  *
  * @author NetWolfUK
  *
  */
 
-public class WebHooksBeanUtilsVariableResolver implements VariableResolver {
+public class WebHooksBeanUtilsVariableResolver implements VariableResolver, TemplateFunctionValues {
 
 	private static final List<String> HIDDEN_FIELDS = Arrays.asList("build", "project", "buildType");
-	private static final String CAPITALISE = "capitalise(";
-	private static final String CAPITALIZE = "capitalize(";
-	private static final String ESCAPEJSON = "escapejson(";
-	private static final String NOW = "now(";
-	private static final String SANITISE = "sanitise(";
-	private static final String SANITIZE = "sanitize(";
-	private static final String SUBSTR = "substr(";
-	private static final String SUFFIX = ")";
 	private final Object bean;
 	private final Map<String, ExtraParametersMap> extraAndTeamCityProperties;
 	private final WebHookContentObjectSerialiser webhookPayload;
+	private final Map<String, String> serialisedProperties = new HashMap<>();
 
 	public WebHooksBeanUtilsVariableResolver(WebHookContentObjectSerialiser webhookPayload, Object javaBean, Map<String, ExtraParametersMap> extraAndTeamCityProperties) {
 		this.webhookPayload = webhookPayload;
@@ -51,109 +42,62 @@ public class WebHooksBeanUtilsVariableResolver implements VariableResolver {
 
 	@Override
 	public String resolve(String variableName) {
-		String value = "UNRESOLVED";
+		return resolve(TemplateVariable.parse(variableName));
+	}
 
-		// if variable is a date formating variable. eg. now() or now(dateformatAsString)
-		if (variableName.startsWith(NOW) && variableName.endsWith(SUFFIX)){
-			try {
-				String datePattern = variableName.substring(NOW.length(), variableName.length() - SUFFIX.length());
-				SimpleDateFormat format = new SimpleDateFormat(datePattern);
-				return format.format(new Date());
-			} catch (NullPointerException | IllegalArgumentException e){
-				// do nothing and let the logic below handle it.
+	/**
+	 * Resolves a variable whose function call has already been compiled.
+	 * @param variable
+	 * @return The resolved value, or null if the variable resolved to null.
+	 */
+	public String resolve(TemplateVariable variable) {
+		if (variable.getFunctionCall() != null) {
+			String value = variable.getFunctionCall().apply(this);
+			if (value != null) {
+				return value;
 			}
 		}
+		return resolveVariable(variable.getName());
+	}
 
-		if (variableName.startsWith(ESCAPEJSON) && variableName.endsWith(SUFFIX)){
-			try {
-				String dirtyString = variableName.substring(ESCAPEJSON.length(), variableName.length() - SUFFIX.length());
-				for (Entry<String, ExtraParametersMap> entry : this.extraAndTeamCityProperties.entrySet()){
-					if (entry.getValue().containsKey(dirtyString)){
-						return StringEscapeUtils.escapeJson(entry.getValue().get(dirtyString));
-					}
-				}
-				return StringEscapeUtils.escapeJson((String) getProperty(bean, dirtyString).toString());
-			} catch (NullPointerException | IllegalArgumentException |
-					 IllegalAccessException | InvocationTargetException | NoSuchMethodException e)
-			{
-				// do nothing and let the logic below handle it.
-			}
+	@Override
+	public String getValue(String variableName) {
+		ExtraParametersMap parameters = findParameters(variableName);
+		if (parameters != null) {
+			return parameters.get(variableName);
 		}
-
-		if ((variableName.startsWith(CAPITALISE)|| variableName.startsWith(CAPITALIZE)) && variableName.endsWith(SUFFIX)){
-			try {
-				String dirtyString = variableName.substring(CAPITALISE.length(), variableName.length() - SUFFIX.length());
-				for (Entry<String, ExtraParametersMap> entry : this.extraAndTeamCityProperties.entrySet()){
-					if (entry.getValue().containsKey(dirtyString)){
-						return StringUtils.capitaliseAllWords(entry.getValue().get(dirtyString));
-					}
-				}
-				return StringUtils.capitaliseAllWords((String) getProperty(bean, dirtyString));
-			} catch (NullPointerException | IllegalArgumentException |
-					 IllegalAccessException | InvocationTargetException | NoSuchMethodException e)
-			{
-				// do nothing and let the logic below handle it.
-			}
+		try {
+			return getProperty(bean, variableName);
+		} catch (IllegalArgumentException | IllegalAccessException | InvocationTargetException | NoSuchMethodException e) {
+			return null;
 		}
+	}
 
-		if (variableName.startsWith(SUBSTR) && variableName.endsWith(SUFFIX)){
-			try {
-				String[] subStringOptions = variableName.substring(SUBSTR.length(), variableName.length() - SUFFIX.length()).split(",");
-				String varName = subStringOptions[0];
-				for (Entry<String, ExtraParametersMap> entry : this.extraAndTeamCityProperties.entrySet()){
-					if (entry.getValue().containsKey(varName)){
-						return StringUtils.subString(
-									entry.getValue().get(varName),
-									Integer.valueOf(subStringOptions[1]),
-									Integer.valueOf(subStringOptions[2]),
-									Integer.valueOf(subStringOptions[3])
-								);
-					}
-				}
-				return StringUtils.subString(
-								getProperty(bean, varName),
-								Integer.valueOf(subStringOptions[1]),
-								Integer.valueOf(subStringOptions[2]),
-								Integer.valueOf(subStringOptions[3])
-							);
-			} catch (NullPointerException | IllegalArgumentException |
-					IllegalAccessException | InvocationTargetException | NoSuchMethodException e)
-			{
-				// do nothing and let the logic below handle it.
-			}
+	@Override
+	public String getValueAsString(String variableName) {
+		ExtraParametersMap parameters = findParameters(variableName);
+		if (parameters != null) {
+			return parameters.get(variableName);
 		}
-
-		if ((variableName.startsWith("capitaliseFirst(")|| variableName.startsWith("capitalizeFirst(")) && variableName.endsWith(SUFFIX)){
-			try {
-				String dirtyString = variableName.substring(CAPITALISE.length(), variableName.length() - SUFFIX.length());
-				for (Entry<String, ExtraParametersMap> entry : this.extraAndTeamCityProperties.entrySet()){
-					if (entry.getValue().containsKey(dirtyString)){
-						return StringUtils.capitaliseFirstWord(entry.getValue().get(dirtyString));
-					}
-				}
-				return StringUtils.capitaliseFirstWord((String) PropertyUtils.getProperty(bean, dirtyString).toString());
-			} catch (NullPointerException | IllegalArgumentException |
-					IllegalAccessException | InvocationTargetException | NoSuchMethodException e)
-			{
-				// do nothing and let the logic below handle it.
-			}
+		try {
+			Object value = BeanPropertyAccessors.getProperty(bean, variableName);
+			return value != null ? value.toString() : null;
+		} catch (IllegalArgumentException | IllegalAccessException | InvocationTargetException | NoSuchMethodException e) {
+			return null;
 		}
+	}
 
-		if ((variableName.startsWith(SANITISE) || variableName.startsWith(SANITIZE)) && variableName.endsWith(SUFFIX)){
-			try {
-				String dirtyString = variableName.substring(SANITISE.length(), variableName.length() - SUFFIX.length());
-				for (Entry<String, ExtraParametersMap> entry : this.extraAndTeamCityProperties.entrySet()){
-					if (entry.getValue().containsKey(dirtyString)){
-						return StringSanitiser.sanitise(entry.getValue().get(dirtyString));
-					}
-				}
-				return StringSanitiser.sanitise((String) getProperty(bean, dirtyString));
-
-			} catch (NullPointerException | IllegalArgumentException |
-					 IllegalAccessException | InvocationTargetException | NoSuchMethodException e) {
-				// do nothing and let the logic below handle it.
+	private ExtraParametersMap findParameters(String variableName) {
+		for (ExtraParametersMap parameters : this.extraAndTeamCityProperties.values()){
+			if (parameters.containsKey(variableName)){
+				return parameters;
 			}
 		}
+		return null;
+	}
+
+	private String resolveVariable(String variableName) {
+		String value = "UNRESOLVED";
 
 		try {
 			// Try getting it from properties passed in first.
@@ -164,11 +108,7 @@ public class WebHooksBeanUtilsVariableResolver implements VariableResolver {
 			}
 
 			// Or override it from the PayloadContent if it exists.
-			try {
-				value = getProperty(bean, variableName).toString();
-			} catch (NullPointerException npe){
-				value = (String) getProperty(bean, variableName);
-			}
+			value = getProperty(bean, variableName);
 
 		} catch (IllegalAccessException | InvocationTargetException | NoSuchMethodException e) {
 			Loggers.SERVER.debug(this.getClass().getSimpleName() + " :: " + e.getClass() + " thrown when trying to resolve value for " + variableName);
@@ -178,10 +118,16 @@ public class WebHooksBeanUtilsVariableResolver implements VariableResolver {
 	}
 
 	private String getProperty(Object bean, String propertyName) throws IllegalAccessException, InvocationTargetException, NoSuchMethodException {
-		if (PropertyUtils.getProperty(bean, propertyName) == null || HIDDEN_FIELDS.contains(propertyName)) {
-			return null;
+		if (this.serialisedProperties.containsKey(propertyName)) {
+			return this.serialisedProperties.get(propertyName);
+		}
+		Object value = BeanPropertyAccessors.getProperty(bean, propertyName);
+		String serialisedValue = null;
+		if (value != null && !HIDDEN_FIELDS.contains(propertyName)) {
+			serialisedValue = this.webhookPayload.serialiseObject(value).toString();
 		}
-		return this.webhookPayload.serialiseObject(PropertyUtils.getProperty(bean, propertyName)).toString();
+		this.serialisedProperties.put(propertyName, serialisedValue);
+		return serialisedValue;
 	}
 
 }
@@ -5,6 +5,7 @@ import java.util.Map;
 import jetbrains.buildServer.log.Loggers;
 import webhook.teamcity.payload.PayloadTemplateEngineType;
 import webhook.teamcity.payload.WebHookContentObjectSerialiser;
+import webhook.teamcity.payload.WebHookTemplateContent;
 import webhook.teamcity.payload.content.ExtraParametersMap;
 import webhook.teamcity.payload.variableresolver.VariableMessageBuilder;
 import webhook.teamcity.payload.variableresolver.VariableResolverFactory;
@@ -47,4 +48,9 @@ public class WebHooksBeanUtilsVariableResolverFactory implements VariableResolve
 		return WebHookVariableMessageBuilder.create(template, resolver);
 	}
 
+	@Override
+	public VariableMessageBuilder createVariableMessageBuilder(WebHookTemplateContent template, VariableResolver resolver) {
+		return WebHookVariableMessageBuilder.create(template.getCompiledTemplate(), resolver);
+	}
+
 }
@@ -13,11 +13,11 @@ import webhook.teamcity.Loggers;
 
 public class VelocityJsonTool {
 	
-	private Gson gson = new GsonBuilder().setFieldNamingPolicy(FieldNamingPolicy.IDENTITY).create();
+	private static final Gson GSON = new GsonBuilder().setFieldNamingPolicy(FieldNamingPolicy.IDENTITY).create();
 
 	public Map<String,String> jsonToStringMap(String jsonString) {
 		try {
-			return gson.fromJson(jsonString, new TypeToken<Map<String,String>>(){}.getType());
+			return GSON.fromJson(jsonString, new TypeToken<Map<String,String>>(){}.getType());
 		} catch (JsonParseException ex) {
 			Loggers.SERVER.warn("WebHooks VelocityJsonTool :: Unable to parse string into JSON. Returning empty map from String: '" +
 									jsonString + "'");
@@ -12,9 +12,15 @@ import com.google.gson.GsonBuilder;
 
 import webhook.teamcity.payload.convertor.SuperclassExclusionStrategy;
 
+/**
+ * Writes an object as JSON, optionally as a named field, eg, <code>#tojson($changes, "changes")</code>.
+ * <p>
+ * Velocity creates a directive for every place it is used in a template, so the Gson
+ * instance, which is immutable and thread safe, is shared by all of them.
+ */
 public class VelocityToJsonDirective extends Directive {
 
-	Gson gson = new GsonBuilder()
+	private static final Gson GSON = new GsonBuilder()
 			.addDeserializationExclusionStrategy(new SuperclassExclusionStrategy())
 			.addSerializationExclusionStrategy(new SuperclassExclusionStrategy())
 			.create();
@@ -35,11 +41,14 @@ public class VelocityToJsonDirective extends Directive {
 		if (node.jjtGetNumChildren() >= 2 && node.jjtGetChild(0) != null && node.jjtGetChild(1) != null) {
 			object = node.jjtGetChild(0).value(context);
 			String keyName = String.valueOf(node.jjtGetChild(1).value(context));
-			writer.write("\"" + keyName + "\" : " + gson.toJson(object));
+			writer.write('"');
+			writer.write(keyName);
+			writer.write("\" : ");
+			GSON.toJson(object, writer);
 			return true;
 		} else if (node.jjtGetChild(0) != null) {
 			object = node.jjtGetChild(0).value(context);
-			writer.write(gson.toJson(object));
+			GSON.toJson(object, writer);
 			return true;
         }
 		return false;
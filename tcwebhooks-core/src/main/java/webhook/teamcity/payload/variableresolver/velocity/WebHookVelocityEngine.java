@@ -0,0 +1,173 @@
+package webhook.teamcity.payload.variableresolver.velocity;
+
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.velocity.Template;
+import org.apache.velocity.context.Context;
+import org.apache.velocity.exception.ParseErrorException;
+import org.apache.velocity.runtime.RuntimeConstants;
+import org.apache.velocity.runtime.RuntimeInstance;
+import org.apache.velocity.runtime.parser.ParseException;
+
+import webhook.teamcity.Loggers;
+import webhook.teamcity.payload.WebHookTemplateChangeListener;
+
+/**
+ * A single Velocity runtime, configured with the tcWebHooks directives, which is
+ * initialised the first time it is used and then shared by every render.
+ * <p>
+ * Each template is parsed once and kept by its text, so a template which is
+ * rendered again (eg, the same payload template for the next build) is not re-parsed.
+ * Parsed templates hold no render state, so they can be merged concurrently.
+ * <p>
+ * When templates change, the parsed templates are set aside rather than discarded.
+ * Those whose text is still rendered are brought back without being parsed again, and
+ * the rest are discarded at the next change. The cache is also emptied whenever it
+ * grows beyond {@link #MAX_CACHED_TEMPLATES}.
+ * <p>
+ * Each parsed template is given its own name, and inline macros are scoped to the
+ * template which defines them, so two templates can define a macro with the same name
+ * differently. A template's macros are discarded along with the parsed template.
+ */
+public class WebHookVelocityEngine implements WebHookTemplateChangeListener {
+
+	private static final String CLASS_NAME = "WebHookVelocityEngine :: ";
+	private static final String PACKAGE = "webhook.teamcity.payload.variableresolver.velocity.";
+	private static final String LOG_TAG = "WebHookVelocityVariableMessageBuilder";
+	static final int MAX_CACHED_TEMPLATES = 1000;
+
+	private final AtomicLong parsedTemplateCount = new AtomicLong();
+	private volatile ConcurrentMap<String, Template> templates = new ConcurrentHashMap<>();
+	private Map<String, Template> previousTemplates = new HashMap<>();
+	private volatile RuntimeInstance runtimeInstance;
+
+	/**
+	 * Merges the template with the context.
+	 * @param template The Velocity template text.
+	 * @param context
+	 * @return The rendered template.
+	 */
+	public String render(String template, Context context) {
+		StringWriter sw = new StringWriter();
+		getTemplate(template).merge(context, sw);
+		return sw.toString();
+	}
+
+	@Override
+	public synchronized void templatesChanged() {
+		Loggers.SERVER.debug(CLASS_NAME + "Templates changed. Keeping " + templates.size() + " parsed templates until they are next used, and discarding " + previousTemplates.size() + " unused ones.");
+		Map<String, Template> discardedTemplates = previousTemplates;
+		previousTemplates = templates;
+		templates = new ConcurrentHashMap<>();
+		discard(discardedTemplates);
+	}
+
+	public int getCachedTemplateCount() {
+		return templates.size();
+	}
+
+	Template getTemplate(String templateText) {
+		Template template = this.templates.get(templateText);
+		if (template == null) {
+			template = loadTemplate(templateText);
+		}
+		return template;
+	}
+
+	/**
+	 * Finds or parses a template which is not in the cache. This is synchronised so that
+	 * a template's macros can't be discarded while it is being added to the cache.
+	 */
+	private synchronized Template loadTemplate(String templateText) {
+		Template template = this.templates.get(templateText);
+		if (template != null) {
+			return template;
+		}
+		template = this.previousTemplates.remove(templateText);
+		if (template == null) {
+			template = parse(templateText);
+		}
+		if (this.templates.size() >= MAX_CACHED_TEMPLATES) {
+			Loggers.SERVER.debug(CLASS_NAME + "Parsed template cache is full. Discarding " + this.templates.size() + " parsed templates.");
+			Map<String, Template> discardedTemplates = this.templates;
+			this.templates = new ConcurrentHashMap<>();
+			discard(discardedTemplates);
+			discard(this.previousTemplates);
+			this.previousTemplates = new HashMap<>();
+		}
+		this.templates.put(templateText, template);
+		return template;
+	}
+
+	/**
+	 * Discards the macros defined by each of the templates.
+	 */
+	private void discard(Map<String, Template> discardedTemplates) {
+		RuntimeInstance runtime = this.runtimeInstance;
+		if (runtime == null) {
+			return;
+		}
+		for (Template template : discardedTemplates.values()) {
+			runtime.dumpVMNamespace(template.getName());
+		}
+	}
+
+	private Template parse(String templateText) {
+		RuntimeInstance runtime = getRuntimeInstance();
+		String templateName = LOG_TAG + "-" + this.parsedTemplateCount.incrementAndGet();
+		Template template = new Template();
+		template.setRuntimeServices(runtime);
+		template.setName(templateName);
+		try {
+			template.setData(runtime.parse(new StringReader(templateText), templateName));
+		} catch (ParseException pex) {
+			throw new ParseErrorException(pex);
+		}
+		template.initDocument();
+		return template;
+	}
+
+	private RuntimeInstance getRuntimeInstance() {
+		RuntimeInstance runtime = this.runtimeInstance;
+		if (runtime == null) {
+			synchronized (this) {
+				runtime = this.runtimeInstance;
+				if (runtime == null) {
+					runtime = createRuntimeInstance();
+					this.runtimeInstance = runtime;
+				}
+			}
+		}
+		return runtime;
+	}
+
+	private static RuntimeInstance createRuntimeInstance() {
+		RuntimeInstance runtime = new RuntimeInstance();
+		runtime.setProperty("userdirective", PACKAGE + "VelocitySanitiseDirective, "
+										   + PACKAGE + "VelocitySanitizeDirective, "
+										   + PACKAGE + "VelocityEscapeJsonDirective, "
+										   + PACKAGE + "VelocityCapitaliseDirective, "
+										   + PACKAGE + "VelocityCapitalizeDirective, "
+										   + PACKAGE + "VelocityNowDirective, "
+										   + PACKAGE + "VelocitySubStringDirective, "
+										   + PACKAGE + "VelocityToJsonDirective");
+
+		runtime.setProperty(RuntimeConstants.VM_PERM_INLINE_LOCAL, "true");
+
+		runtime.setProperty(RuntimeConstants.RUNTIME_LOG_LOGSYSTEM_CLASS,
+				"org.apache.velocity.runtime.log.Log4JLogChute");
+
+		runtime.setProperty("runtime.log.logsystem.log4j.logger", "webhook.teamcity.Loggers");
+
+		runtime.init();
+		Loggers.SERVER.info(CLASS_NAME + "Initialised Velocity runtime");
+		return runtime;
+	}
+
+}
@@ -1,21 +1,29 @@
 package webhook.teamcity.payload.variableresolver.velocity;
 import java.lang.reflect.InvocationTargetException;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
-import java.util.Map.Entry;
+import java.util.Set;
 
-import org.apache.commons.beanutils.PropertyUtils;
 import org.apache.velocity.VelocityContext;
 import org.apache.velocity.context.Context;
 
 import webhook.teamcity.Loggers;
 import webhook.teamcity.payload.content.ExtraParametersMap;
+import webhook.teamcity.payload.variableresolver.BeanPropertyAccessors;
 import webhook.teamcity.payload.variableresolver.VariableResolver;
 
 /**
  * This is a VariableResolver for the TemplateMatcher
  * 
  * It resolves the values of variables from javaBean objects using 
- * org.apache.commons.beanutils.PropertyUtils 
+ * {@link BeanPropertyAccessors}, and from the extra and TeamCity parameters,
+ * whose names have any dots replaced with underscores.
+ * 
+ * Nothing is copied into the context when it is created. A bean property is only 
+ * read the first time a template asks for it, and parameters are looked up in 
+ * their maps when asked for. Bean properties take precedence over parameters 
+ * of the same name, and anything the template sets takes precedence over both.
  * 
  * @author NetWolfUK
  *
@@ -23,38 +31,31 @@ import webhook.teamcity.payload.variableresolver.VariableResolver;
 
 public class WebHooksBeanUtilsVelocityVariableResolver implements VariableResolver, Context {
 	
+	/* The tools are stateless, so every render shares the same ones. */
+	private static final VelocityJsonTool JSON_TOOL = new VelocityJsonTool();
+	private static final VelocityNullUtils NULL_UTILS = new VelocityNullUtils();
 	
 	Object bean;
 	Map<String, ExtraParametersMap> extraAndTeamCityProperties;
 	VelocityContext velocityContext = new VelocityContext();
+	BeanPropertyAccessors beanPropertyAccessors;
+	Set<String> unreadBeanProperties;
+	Set<String> hiddenParameters = new HashSet<>();
+	Map<String, String> underscoredParameters;
 	
 	public WebHooksBeanUtilsVelocityVariableResolver(Object javaBean, Map<String, ExtraParametersMap> extraAndTeamCityProperties) {
 		this.bean = javaBean;
 		this.extraAndTeamCityProperties = extraAndTeamCityProperties;
+		this.beanPropertyAccessors = BeanPropertyAccessors.forClass(bean.getClass());
+		this.unreadBeanProperties = new HashSet<>(this.beanPropertyAccessors.getPropertyNames());
 		
-		for (String keyName : this.extraAndTeamCityProperties.keySet()){
-			for (Map.Entry<String,String> entry : extraAndTeamCityProperties.get(keyName).entrySet()) {
-				velocityContext.put(entry.getKey().replaceAll("\\.", "_"), entry.getValue());
-			}
-		}
-		
-		try {
-			Map<String, Object> beanProperties = PropertyUtils.describe(bean);
-			for (Entry<String, Object> property : beanProperties.entrySet()) {
-				velocityContext.put(property.getKey(), property.getValue());
-			}
-		} catch (IllegalAccessException | InvocationTargetException | NoSuchMethodException e) {
-			Loggers.SERVER.debug(this.getClass().getSimpleName() + " :: " + e.getClass() + " thrown populating context from bean"); 
-			Loggers.SERVER.debug(e);
-		} 
-		
-		if (!velocityContext.containsKey("jsonTool")) {
-			velocityContext.put("jsonTool", new VelocityJsonTool());
+		if (!containsKey("jsonTool")) {
+			velocityContext.put("jsonTool", JSON_TOOL);
 		} else {
 			Loggers.SERVER.warn("WebHooksBeanUtilsVelocityVariableResolver :: Unable to add 'jsonTool' to Velocity context. An item of that name already exists");
 		}
-		if (!velocityContext.containsKey("nullUtils")) {
-			velocityContext.put("nullUtils", new VelocityNullUtils());
+		if (!containsKey("nullUtils")) {
+			velocityContext.put("nullUtils", NULL_UTILS);
 		} else {
 			Loggers.SERVER.warn("WebHooksBeanUtilsVelocityVariableResolver :: Unable to add 'nullUtils' to Velocity context. An item of that name already exists");
 		}
@@ -68,27 +69,102 @@ public class WebHooksBeanUtilsVelocityVariableResolver implements VariableResolv
 
 	@Override
 	public Object put(String key, Object value) {
+		this.unreadBeanProperties.remove(key);
+		this.hiddenParameters.remove(key);
 		return this.velocityContext.put(key, value);
 	}
 
 	@Override
 	public Object get(String key) {
-		return this.velocityContext.get(key);
+		if (this.unreadBeanProperties.remove(key)) {
+			readBeanProperty(key);
+		}
+		if (this.velocityContext.containsKey(key) || this.hiddenParameters.contains(key)) {
+			return this.velocityContext.get(key);
+		}
+		return getParameter(key);
 	}
 
 	@Override
 	public boolean containsKey(Object key) {
-		return this.velocityContext.containsKey(key);
+		return this.unreadBeanProperties.contains(key) 
+				|| this.velocityContext.containsKey(key) 
+				|| (key instanceof String && !this.hiddenParameters.contains(key) && getParameter((String) key) != null);
 	}
 
 	@Override
 	public Object[] getKeys() {
-		return this.velocityContext.getKeys();
+		Set<Object> keys = new HashSet<>(this.unreadBeanProperties);
+		for (String key : getUnderscoredParameters().keySet()) {
+			if (!this.hiddenParameters.contains(key)) {
+				keys.add(key);
+			}
+		}
+		for (Object key : this.velocityContext.getKeys()) {
+			keys.add(key);
+		}
+		return keys.toArray();
 	}
 
 	@Override
 	public Object remove(Object key) {
+		this.unreadBeanProperties.remove(key);
+		if (key instanceof String) {
+			this.hiddenParameters.add((String) key);
+		}
 		return this.velocityContext.remove(key);
 	}
+	
+	private void readBeanProperty(String key) {
+		try {
+			Object value = this.beanPropertyAccessors.get(this.bean, key);
+			if (value != null) {
+				this.velocityContext.put(key, value);
+			} else {
+				this.hiddenParameters.add(key);
+			}
+		} catch (IllegalAccessException | InvocationTargetException | NoSuchMethodException e) {
+			Loggers.SERVER.debug(this.getClass().getSimpleName() + " :: " + e.getClass() + " thrown reading '" + key + "' from bean"); 
+			Loggers.SERVER.debug(e);
+		}
+	}
+	
+	/**
+	 * Finds a parameter by its name in the context, ie, with any dots replaced with underscores.
+	 * When more than one parameter has the same name, the last one wins.
+	 */
+	private String getParameter(String key) {
+		if (key.indexOf('.') >= 0) {
+			return null;
+		}
+		if (key.indexOf('_') >= 0) {
+			return getUnderscoredParameters().get(key);
+		}
+		// Without dots or underscores, the name in the context is the same as the parameter's name.
+		String value = null;
+		for (ExtraParametersMap parameters : this.extraAndTeamCityProperties.values()) {
+			if (parameters.containsKey(key)) {
+				value = parameters.get(key);
+			}
+		}
+		return value;
+	}
+	
+	/**
+	 * Builds the index of context names to values the first time a name
+	 * containing an underscore is asked for.
+	 */
+	private Map<String, String> getUnderscoredParameters() {
+		if (this.underscoredParameters == null) {
+			Map<String, String> index = new HashMap<>();
+			for (ExtraParametersMap parameters : this.extraAndTeamCityProperties.values()) {
+				for (Map.Entry<String,String> entry : parameters.entrySet()) {
+					index.put(entry.getKey().replace('.', '_'), entry.getValue());
+				}
+			}
+			this.underscoredParameters = index;
+		}
+		return this.underscoredParameters;
+	}
 
-}
\ No newline at end of file
+}
@@ -8,6 +8,8 @@ import jetbrains.buildServer.log.Loggers;
 import webhook.teamcity.WebHookContentResolutionException;
 import webhook.teamcity.payload.PayloadTemplateEngineType;
 import webhook.teamcity.payload.WebHookContentObjectSerialiser;
+import webhook.teamcity.payload.WebHookTemplateContent;
+import webhook.teamcity.payload.WebHookTemplateManager;
 import webhook.teamcity.payload.content.ExtraParametersMap;
 import webhook.teamcity.payload.variableresolver.VariableMessageBuilder;
 import webhook.teamcity.payload.variableresolver.VariableResolverFactory;
@@ -17,11 +19,23 @@ import webhook.teamcity.payload.variableresolver.VariableResolver;
 public class WebHooksBeanUtilsVelocityVariableResolverFactory implements VariableResolverFactory {
 	
 	WebHookVariableResolverManager variableResolverManager;
+	WebHookTemplateManager templateManager;
+	private final WebHookVelocityEngine velocityEngine = new WebHookVelocityEngine();
 	
 	@Override
 	public void register() {
 		Loggers.SERVER.info("WebHooksBeanUtilsVariableResolverFactory :: Registering for type: " + getPayloadTemplateType().toString());
 		this.variableResolverManager.registerVariableResolverFactory(this);
+		if (this.templateManager != null) {
+			this.templateManager.addTemplateChangeListener(this.velocityEngine);
+		}
+	}
+	
+	/**
+	 * Optional. When set, parsed Velocity templates are discarded whenever templates are reloaded.
+	 */
+	public void setWebHookTemplateManager(WebHookTemplateManager templateManager) {
+		this.templateManager = templateManager;
 	}
 	
 	@Override
@@ -48,9 +62,14 @@ public class WebHooksBeanUtilsVelocityVariableResolverFactory implements Variabl
 	@Override
 	public VariableMessageBuilder createVariableMessageBuilder(String template, VariableResolver resolver) {
 		if (resolver instanceof WebHooksBeanUtilsVelocityVariableResolver) {
-			return WebHookVelocityVariableMessageBuilder.create(template, (Context)resolver);
+			return WebHookVelocityVariableMessageBuilder.create(template, (Context)resolver, this.velocityEngine);
 		} 
 		throw new WebHookContentResolutionException("Incompatible VariableResolver. It must implement Velocity Context");
 	}
 
+	@Override
+	public VariableMessageBuilder createVariableMessageBuilder(WebHookTemplateContent template, VariableResolver resolver) {
+		return createVariableMessageBuilder(template.getTemplateText(), resolver);
+	}
+
 }
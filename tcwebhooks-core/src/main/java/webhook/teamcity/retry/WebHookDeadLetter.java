@@ -0,0 +1,74 @@
+package webhook.teamcity.retry;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import webhook.teamcity.journal.WebHookDeliveryJournal;
+import webhook.teamcity.journal.WebHookJournalEntry;
+
+/**
+ * A delivery which was still failing after all of its retries.
+ * Holds the rendered request, so it can be replayed once the endpoint is fixed.
+ */
+@Data @Builder @NoArgsConstructor @AllArgsConstructor
+public class WebHookDeadLetter {
+
+	private static final byte FORMAT_VERSION = 1;
+	private static final int MAX_ERROR_LENGTH = 4096;
+
+	private String id;
+	private long deadLetteredAt;
+	private int attempts;
+	private Integer lastStatusCode;
+	private String lastError;
+	private WebHookJournalEntry entry;
+
+	public byte[] serialise() throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(512);
+		try (DataOutputStream out = new DataOutputStream(bytes)) {
+			out.writeByte(FORMAT_VERSION);
+			out.writeUTF(id);
+			out.writeLong(deadLetteredAt);
+			out.writeInt(attempts);
+			out.writeInt(lastStatusCode != null ? lastStatusCode : -1);
+			out.writeBoolean(lastError != null);
+			if (lastError != null) {
+				out.writeUTF(lastError.length() > MAX_ERROR_LENGTH ? lastError.substring(0, MAX_ERROR_LENGTH) : lastError);
+			}
+			byte[] entryBytes = entry.serialise();
+			out.writeInt(entryBytes.length);
+			out.write(entryBytes);
+		}
+		return bytes.toByteArray();
+	}
+
+	public static WebHookDeadLetter deserialise(byte[] body) throws IOException {
+		try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(body))) {
+			byte version = in.readByte();
+			if (version != FORMAT_VERSION) {
+				throw new IOException("Unsupported dead letter version: " + version);
+			}
+			WebHookDeadLetter deadLetter = new WebHookDeadLetter();
+			deadLetter.setId(in.readUTF());
+			deadLetter.setDeadLetteredAt(in.readLong());
+			deadLetter.setAttempts(in.readInt());
+			int statusCode = in.readInt();
+			deadLetter.setLastStatusCode(statusCode >= 0 ? statusCode : null);
+			if (in.readBoolean()) {
+				deadLetter.setLastError(in.readUTF());
+			}
+			byte[] entryBytes = new byte[in.readInt()];
+			in.readFully(entryBytes);
+			deadLetter.setEntry(WebHookJournalEntry.deserialise(WebHookDeliveryJournal.NOT_JOURNALED, entryBytes));
+			return deadLetter;
+		}
+	}
+
+}
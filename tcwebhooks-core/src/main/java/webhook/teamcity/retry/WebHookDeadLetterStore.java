@@ -0,0 +1,34 @@
+package webhook.teamcity.retry;
+
+import java.util.List;
+
+/**
+ * Holds deliveries which failed after all of their retries, so that they can be
+ * inspected and replayed through the REST API. The store is persistent and bounded;
+ * once it is full, the oldest dead letters are discarded.
+ */
+public interface WebHookDeadLetterStore {
+
+	/**
+	 * Adds a dead letter. An id is assigned if it does not already have one.
+	 * @return The id of the dead letter.
+	 */
+	public String add(WebHookDeadLetter deadLetter);
+
+	/**
+	 * @return The dead letter with that id, or null.
+	 */
+	public WebHookDeadLetter get(String id);
+
+	/**
+	 * @return All dead letters, oldest first.
+	 */
+	public List<WebHookDeadLetter> getAll();
+
+	/**
+	 * Removes a dead letter from the store.
+	 * @return The removed dead letter, or null if there was none with that id.
+	 */
+	public WebHookDeadLetter remove(String id);
+
+}
@@ -0,0 +1,163 @@
+package webhook.teamcity.retry;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import jetbrains.buildServer.serverSide.ServerPaths;
+import webhook.teamcity.Loggers;
+import webhook.teamcity.settings.WebHookMainConfig;
+import webhook.teamcity.settings.WebHookMainSettings;
+
+/**
+ * Stores each dead letter in its own file in the plugin data directory.
+ * The files are read once, the first time the store is used, and
+ * then kept in memory as the store is bounded by <code>max-dead-letters</code>.
+ */
+public class WebHookDeadLetterStoreImpl implements WebHookDeadLetterStore {
+
+	private static final String CLASS_NAME = "WebHookDeadLetterStoreImpl :: ";
+	private static final WebHookMainConfig DEFAULT_CONFIG = new WebHookMainConfig();
+	private static final String DEAD_LETTER_DIRECTORY_NAME = "tcWebHooks" + File.separator + "dead-letters";
+	private static final String DEAD_LETTER_FILE_SUFFIX = ".dlq";
+	private static final String TEMP_FILE_SUFFIX = ".tmp";
+
+	private final File deadLetterDirectory;
+	private final WebHookMainSettings myMainSettings;
+	private final Object lock = new Object();
+
+	/** Dead letters by id, oldest first. */
+	private final Map<String, WebHookDeadLetter> deadLetters = new LinkedHashMap<>();
+	private boolean loaded = false;
+
+	public WebHookDeadLetterStoreImpl(ServerPaths serverPaths, WebHookMainSettings mainSettings) {
+		this.deadLetterDirectory = new File(serverPaths.getPluginDataDirectory(), DEAD_LETTER_DIRECTORY_NAME);
+		this.myMainSettings = mainSettings;
+	}
+
+	@Override
+	public String add(WebHookDeadLetter deadLetter) {
+		if (deadLetter.getId() == null) {
+			deadLetter.setId(UUID.randomUUID().toString());
+		}
+		synchronized (lock) {
+			ensureLoaded();
+			int maxDeadLetters = getMainConfig().getRetryMaxDeadLetters();
+			if (maxDeadLetters <= 0) {
+				Loggers.SERVER.warn(CLASS_NAME + "Dead letter store is disabled. Discarding webhook for " + deadLetter.getEntry().getUrl());
+				return deadLetter.getId();
+			}
+			Iterator<String> oldest = deadLetters.keySet().iterator();
+			while (deadLetters.size() >= maxDeadLetters && oldest.hasNext()) {
+				String id = oldest.next();
+				Loggers.SERVER.info(CLASS_NAME + "Dead letter store is full. Discarding oldest dead letter " + id);
+				oldest.remove();
+				deleteFile(id);
+			}
+			writeFile(deadLetter);
+			deadLetters.put(deadLetter.getId(), deadLetter);
+		}
+		return deadLetter.getId();
+	}
+
+	@Override
+	public WebHookDeadLetter get(String id) {
+		synchronized (lock) {
+			ensureLoaded();
+			return deadLetters.get(id);
+		}
+	}
+
+	@Override
+	public List<WebHookDeadLetter> getAll() {
+		synchronized (lock) {
+			ensureLoaded();
+			return new ArrayList<>(deadLetters.values());
+		}
+	}
+
+	@Override
+	public WebHookDeadLetter remove(String id) {
+		synchronized (lock) {
+			ensureLoaded();
+			WebHookDeadLetter deadLetter = deadLetters.remove(id);
+			if (deadLetter != null) {
+				deleteFile(id);
+			}
+			return deadLetter;
+		}
+	}
+
+	/* Must be called while holding the lock */
+	private void ensureLoaded() {
+		if (loaded) {
+			return;
+		}
+		loaded = true;
+		File[] files = deadLetterDirectory.listFiles((dir, name) -> name.endsWith(DEAD_LETTER_FILE_SUFFIX));
+		if (files == null) {
+			return;
+		}
+		List<WebHookDeadLetter> found = new ArrayList<>();
+		for (File file : files) {
+			try {
+				found.add(WebHookDeadLetter.deserialise(Files.readAllBytes(file.toPath())));
+			} catch (IOException e) {
+				Loggers.SERVER.warn(CLASS_NAME + "Unable to read dead letter " + file.getAbsolutePath() + " :: " + e.getMessage());
+			}
+		}
+		Collections.sort(found, Comparator.comparingLong(WebHookDeadLetter::getDeadLetteredAt));
+		for (WebHookDeadLetter deadLetter : found) {
+			deadLetters.put(deadLetter.getId(), deadLetter);
+		}
+		Loggers.SERVER.info(CLASS_NAME + "Loaded " + deadLetters.size() + " dead letters from " + deadLetterDirectory.getAbsolutePath());
+	}
+
+	/* Writes to a temporary file first, so that a crash can't leave a partial dead letter behind. */
+	private void writeFile(WebHookDeadLetter deadLetter) {
+		File file = new File(deadLetterDirectory, deadLetter.getId() + DEAD_LETTER_FILE_SUFFIX);
+		File tempFile = new File(deadLetterDirectory, deadLetter.getId() + TEMP_FILE_SUFFIX);
+		try {
+			if (!deadLetterDirectory.isDirectory() && !deadLetterDirectory.mkdirs()) {
+				throw new IOException("Unable to create directory " + deadLetterDirectory.getAbsolutePath());
+			}
+			Files.write(tempFile.toPath(), deadLetter.serialise());
+			try {
+				Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE);
+			} catch (AtomicMoveNotSupportedException e) {
+				Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+			}
+		} catch (IOException e) {
+			Loggers.SERVER.warn(CLASS_NAME + "Unable to write dead letter " + file.getAbsolutePath()
+					+ ". It will be lost when TeamCity is restarted :: " + e.getMessage());
+			Loggers.SERVER.debug(e);
+		}
+	}
+
+	private void deleteFile(String id) {
+		File file = new File(deadLetterDirectory, id + DEAD_LETTER_FILE_SUFFIX);
+		try {
+			Files.deleteIfExists(file.toPath());
+		} catch (IOException e) {
+			Loggers.SERVER.warn(CLASS_NAME + "Unable to delete dead letter " + file.getAbsolutePath() + " :: " + e.getMessage());
+		}
+	}
+
+	private WebHookMainConfig getMainConfig() {
+		if (this.myMainSettings != null && this.myMainSettings.getWebHookMainConfig() != null) {
+			return this.myMainSettings.getWebHookMainConfig();
+		}
+		return DEFAULT_CONFIG;
+	}
+
+}
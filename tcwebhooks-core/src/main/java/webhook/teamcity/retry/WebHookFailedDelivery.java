@@ -0,0 +1,33 @@
+package webhook.teamcity.retry;
+
+import lombok.Builder;
+import lombok.Getter;
+import webhook.WebHookExecutionStats;
+import webhook.teamcity.executor.WebHookRunner;
+import webhook.teamcity.journal.WebHookDeliveryJournal;
+import webhook.teamcity.journal.WebHookJournalEntry;
+
+/**
+ * A delivery attempt which has failed, passed to the {@link WebHookRetryScheduler}
+ * to decide whether it should be tried again.
+ */
+@Getter @Builder
+public class WebHookFailedDelivery {
+
+	/** The rendered request which failed. */
+	private final WebHookJournalEntry entry;
+
+	/** The journal sequence of the request, or {@link WebHookDeliveryJournal#NOT_JOURNALED}. */
+	private final long journalSequence;
+
+	/** The attempt which failed, starting at 1. */
+	private final int attempt;
+
+	private final Exception failure;
+
+	private final WebHookExecutionStats executionStats;
+
+	/** A runner which will make the next attempt, if one is scheduled. */
+	private final WebHookRunner nextAttempt;
+
+}
@@ -0,0 +1,170 @@
+package webhook.teamcity.retry;
+
+import java.net.ConnectException;
+import java.net.SocketTimeoutException;
+import java.util.Date;
+import java.util.Random;
+import java.util.concurrent.CancellationException;
+
+import org.apache.http.NoHttpResponseException;
+import org.apache.http.client.utils.DateUtils;
+import org.apache.http.conn.ConnectTimeoutException;
+
+import webhook.WebHookExecutionStats;
+import webhook.teamcity.Loggers;
+import webhook.teamcity.WebHookCircuitOpenException;
+import webhook.teamcity.WebHookHttpResponseException;
+import webhook.teamcity.circuitbreaker.WebHookCircuitOpenPolicy;
+import webhook.teamcity.settings.WebHookMainConfig;
+
+/**
+ * Decides which failed deliveries are retried, and how long to wait before each retry.
+ * <p>
+ * A delivery is retryable if the endpoint returned one of the configured status codes,
+ * or (if enabled) the connection to the endpoint failed or timed out. The delay grows
+ * exponentially with each attempt, with some random jitter, up to the configured maximum.
+ * If the endpoint sent a <code>Retry-After</code> header, the retry is not sent any sooner than it asked,
+ * even if that is longer than the maximum delay. Such deliveries are dead lettered rather than retried,
+ * see {@link #isRetryAfterBeyondMaxDelay(WebHookExecutionStats)}.
+ * <p>
+ * Deliveries which were not sent because the endpoint's circuit breaker was open are retried
+ * if the breaker's <code>when-open</code> policy is <code>defer</code>, once the breaker will let a request through.
+ */
+public class WebHookRetryPolicy {
+
+	private static final String CLASS_NAME = "WebHookRetryPolicy :: ";
+	private static final String RETRY_AFTER_HEADER = "Retry-After";
+	private static final long MILLIS_PER_SECOND = 1000L;
+
+	private final WebHookMainConfig myConfig;
+	private final Random myRandom;
+
+	public WebHookRetryPolicy(WebHookMainConfig config, Random random) {
+		this.myConfig = config;
+		this.myRandom = random;
+	}
+
+	/**
+	 * @param failure The exception from the failed delivery.
+	 * @return true if the failure is likely to be temporary.
+	 */
+	public boolean isRetryable(Exception failure) {
+		if (failure instanceof WebHookCircuitOpenException) {
+			return myConfig.getCircuitBreakerWhenOpen() == WebHookCircuitOpenPolicy.DEFER;
+		}
+		if (failure instanceof WebHookHttpResponseException) {
+			return isRetryableStatusCode(((WebHookHttpResponseException)failure).getErrorCode());
+		}
+		if (!myConfig.isRetryConnectionFailures()) {
+			return false;
+		}
+		Throwable cause = failure;
+		while (cause != null) {
+			if (   cause instanceof ConnectException
+				|| cause instanceof ConnectTimeoutException
+				|| cause instanceof SocketTimeoutException
+				|| cause instanceof NoHttpResponseException
+				|| cause instanceof CancellationException)
+			{
+				return true;
+			}
+			cause = cause.getCause();
+		}
+		return false;
+	}
+
+	public boolean isRetryableStatusCode(int statusCode) {
+		for (String codes : myConfig.getRetryStatusCodes().split(",")) {
+			String range = codes.trim();
+			if (range.isEmpty()) {
+				continue;
+			}
+			try {
+				int dash = range.indexOf('-');
+				if (dash > 0) {
+					int from = Integer.parseInt(range.substring(0, dash).trim());
+					int to = Integer.parseInt(range.substring(dash + 1).trim());
+					if (statusCode >= from && statusCode <= to) {
+						return true;
+					}
+				} else if (statusCode == Integer.parseInt(range)) {
+					return true;
+				}
+			} catch (NumberFormatException ex) {
+				Loggers.SERVER.warn(CLASS_NAME + "Ignoring invalid retry status code '" + range + "'");
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * @param attempt The attempt which has just failed, starting at 1.
+	 * @return true if the delivery may be attempted again.
+	 */
+	public boolean hasAttemptsRemaining(int attempt) {
+		return attempt < myConfig.getRetryMaxAttempts();
+	}
+
+	/**
+	 * @param attempt The attempt which has just failed, starting at 1.
+	 * @param executionStats The stats of the failed attempt, which hold any response headers.
+	 * @return The delay in milliseconds before the next attempt.
+	 */
+	public long getDelay(int attempt, WebHookExecutionStats executionStats) {
+		long maxDelay = myConfig.getRetryMaxDelay() * MILLIS_PER_SECOND;
+		double backoff = myConfig.getRetryInitialDelay() * MILLIS_PER_SECOND
+				* Math.pow(myConfig.getRetryMultiplier(), Math.max(0, attempt - 1));
+		long delay = (long) Math.min(backoff, maxDelay);
+
+		// Take the jitter off the delay, so that it never exceeds the maximum.
+		delay -= (long) (delay * myConfig.getRetryJitter() * myRandom.nextDouble());
+
+		return Math.max(delay, getRetryAfter(executionStats));
+	}
+
+	/**
+	 * @param executionStats The stats of the failed attempt, which hold any response headers.
+	 * @return true if the endpoint asked for the retry to wait longer than the maximum delay.
+	 */
+	public boolean isRetryAfterBeyondMaxDelay(WebHookExecutionStats executionStats) {
+		return getRetryAfter(executionStats) > myConfig.getRetryMaxDelay() * MILLIS_PER_SECOND;
+	}
+
+	/**
+	 * As {@link #getDelay(int, WebHookExecutionStats)}, but a delivery stopped by an open circuit
+	 * breaker is not retried until the breaker is due to let a request through.
+	 * @param failure The exception from the failed delivery.
+	 */
+	public long getDelay(int attempt, WebHookExecutionStats executionStats, Exception failure) {
+		long delay = getDelay(attempt, executionStats);
+		if (failure instanceof WebHookCircuitOpenException) {
+			return Math.max(delay, ((WebHookCircuitOpenException)failure).getRetryAfterMillis());
+		}
+		return delay;
+	}
+
+	/**
+	 * Reads the Retry-After header, which is either a number of seconds or an HTTP date.
+	 * @return The delay in milliseconds requested by the endpoint, or zero.
+	 */
+	protected long getRetryAfter(WebHookExecutionStats executionStats) {
+		if (executionStats == null) {
+			return 0L;
+		}
+		String retryAfter = executionStats.getResponseHeader(RETRY_AFTER_HEADER);
+		if (retryAfter == null || retryAfter.trim().isEmpty()) {
+			return 0L;
+		}
+		try {
+			return Math.max(0L, Long.parseLong(retryAfter.trim()) * MILLIS_PER_SECOND);
+		} catch (NumberFormatException ex) {
+			Date date = DateUtils.parseDate(retryAfter.trim());
+			if (date != null) {
+				return Math.max(0L, date.getTime() - System.currentTimeMillis());
+			}
+			Loggers.SERVER.debug(CLASS_NAME + "Ignoring invalid Retry-After header '" + retryAfter + "'");
+			return 0L;
+		}
+	}
+
+}
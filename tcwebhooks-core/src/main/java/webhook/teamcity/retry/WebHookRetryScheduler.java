@@ -0,0 +1,31 @@
+package webhook.teamcity.retry;
+
+import webhook.teamcity.executor.WebHookRunner;
+
+public interface WebHookRetryScheduler {
+
+	/**
+	 * Decides whether a failed delivery should be tried again. If it should, its next attempt
+	 * is scheduled after a backoff delay. If it is retryable but has used all of its attempts,
+	 * it is moved to the {@link WebHookDeadLetterStore}.
+	 * @param failedDelivery The failed attempt.
+	 * @return true if the scheduler has taken over the delivery (retried or dead lettered it).
+	 * The caller must then leave its journal entry unacknowledged, as the scheduler now owns it.
+	 */
+	public boolean handleFailure(WebHookFailedDelivery failedDelivery);
+
+	/**
+	 * Executes a runner on the bulkhead executor once the delay has passed.
+	 * Waiting runners are held in a timer queue rather than on a thread each.
+	 * @param url The webhook URL, from which the bulkhead key is derived.
+	 * @param runner The runner to execute.
+	 * @param delayMillis How long to wait.
+	 */
+	public void schedule(String url, WebHookRunner runner, long delayMillis);
+
+	/**
+	 * @return The number of runners waiting for their retry delay to pass.
+	 */
+	public int getPendingCount();
+
+}
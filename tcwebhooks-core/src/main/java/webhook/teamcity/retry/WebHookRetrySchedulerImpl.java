@@ -0,0 +1,138 @@
+package webhook.teamcity.retry;
+
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import webhook.teamcity.Loggers;
+import webhook.teamcity.WebHookExecutionException;
+import webhook.teamcity.executor.WebHookBulkheadExecutor;
+import webhook.teamcity.executor.WebHookRunner;
+import webhook.teamcity.history.GeneralisedWebAddress;
+import webhook.teamcity.history.WebAddressTransformer;
+import webhook.teamcity.journal.WebHookDeliveryJournal;
+import webhook.teamcity.settings.WebHookMainConfig;
+import webhook.teamcity.settings.WebHookMainSettings;
+
+/**
+ * Holds runners waiting to be retried in the delay queue of a single threaded
+ * {@link ScheduledThreadPoolExecutor}. That thread only hands each runner to the
+ * {@link WebHookBulkheadExecutor} when it is due, so any number of retries can be
+ * pending without tying up a thread each.
+ * <p>
+ * Pending retries are not persisted. A journaled delivery stays unacknowledged while
+ * it is waiting to be retried, so it is replayed (from its first attempt) if TeamCity
+ * is restarted.
+ */
+public class WebHookRetrySchedulerImpl implements WebHookRetryScheduler {
+
+	private static final String CLASS_NAME = "WebHookRetrySchedulerImpl :: ";
+	private static final WebHookMainConfig DEFAULT_CONFIG = new WebHookMainConfig();
+
+	private final WebHookMainSettings myMainSettings;
+	private final WebHookBulkheadExecutor myBulkheadExecutor;
+	private final WebAddressTransformer myWebAddressTransformer;
+	private final WebHookDeadLetterStore myDeadLetterStore;
+	private final WebHookDeliveryJournal myDeliveryJournal;
+	private final ScheduledThreadPoolExecutor scheduledExecutor;
+
+	public WebHookRetrySchedulerImpl(
+			WebHookMainSettings mainSettings,
+			WebHookBulkheadExecutor bulkheadExecutor,
+			WebAddressTransformer webAddressTransformer,
+			WebHookDeadLetterStore deadLetterStore,
+			WebHookDeliveryJournal deliveryJournal)
+	{
+		this.myMainSettings = mainSettings;
+		this.myBulkheadExecutor = bulkheadExecutor;
+		this.myWebAddressTransformer = webAddressTransformer;
+		this.myDeadLetterStore = deadLetterStore;
+		this.myDeliveryJournal = deliveryJournal;
+		this.scheduledExecutor = new ScheduledThreadPoolExecutor(1, r -> {
+			Thread thread = new Thread(r, "tcWebHooks-retry-scheduler");
+			thread.setDaemon(true);
+			return thread;
+		});
+		this.scheduledExecutor.setRemoveOnCancelPolicy(true);
+	}
+
+	@Override
+	public boolean handleFailure(WebHookFailedDelivery failedDelivery) {
+		WebHookRetryPolicy policy = new WebHookRetryPolicy(getMainConfig(), ThreadLocalRandom.current());
+		if (!policy.isRetryable(failedDelivery.getFailure())) {
+			return false;
+		}
+		String trackingId = failedDelivery.getEntry().getTrackingId();
+		if (policy.hasAttemptsRemaining(failedDelivery.getAttempt())) {
+			if (!policy.isRetryAfterBeyondMaxDelay(failedDelivery.getExecutionStats())) {
+				long delay = policy.getDelay(failedDelivery.getAttempt(), failedDelivery.getExecutionStats(), failedDelivery.getFailure());
+				Loggers.SERVER.info(CLASS_NAME + trackingId + " :: Attempt " + failedDelivery.getAttempt()
+						+ " failed. Retrying in " + delay + "ms");
+				schedule(failedDelivery.getEntry().getUrl(), failedDelivery.getNextAttempt(), delay);
+				return true;
+			}
+			Loggers.SERVER.info(CLASS_NAME + trackingId + " :: Attempt " + failedDelivery.getAttempt()
+					+ " failed. Not retrying, because the endpoint asked to wait longer than the maximum retry delay");
+		}
+		if (getMainConfig().getRetryMaxAttempts() <= 1) {
+			// Retries are disabled, so there is nothing to dead letter.
+			return false;
+		}
+		deadLetter(failedDelivery);
+		return true;
+	}
+
+	@Override
+	public void schedule(String url, final WebHookRunner runner, long delayMillis) {
+		final String bulkheadKey = getBulkheadKey(url);
+		scheduledExecutor.schedule(() -> myBulkheadExecutor.execute(bulkheadKey, runner), delayMillis, TimeUnit.MILLISECONDS);
+	}
+
+	@Override
+	public int getPendingCount() {
+		return scheduledExecutor.getQueue().size();
+	}
+
+	/**
+	 * Stops the scheduler thread. Called by Spring when the plugin is unloaded.
+	 */
+	public void shutdown() {
+		this.scheduledExecutor.shutdownNow();
+	}
+
+	private void deadLetter(WebHookFailedDelivery failedDelivery) {
+		Exception failure = failedDelivery.getFailure();
+		Integer statusCode = null;
+		if (failure instanceof WebHookExecutionException) {
+			statusCode = ((WebHookExecutionException)failure).getErrorCode();
+		}
+		String id = myDeadLetterStore.add(WebHookDeadLetter.builder()
+				.deadLetteredAt(System.currentTimeMillis())
+				.attempts(failedDelivery.getAttempt())
+				.lastStatusCode(statusCode)
+				.lastError(failure.getMessage())
+				.entry(failedDelivery.getEntry())
+				.build());
+		Loggers.SERVER.warn(CLASS_NAME + failedDelivery.getEntry().getTrackingId() + " :: Giving up after "
+				+ failedDelivery.getAttempt() + " attempts. Moved to dead letter store as " + id);
+		if (myDeliveryJournal != null && failedDelivery.getJournalSequence() != WebHookDeliveryJournal.NOT_JOURNALED) {
+			myDeliveryJournal.acknowledge(failedDelivery.getJournalSequence());
+		}
+	}
+
+	private String getBulkheadKey(String url) {
+		GeneralisedWebAddress address = myWebAddressTransformer.getGeneralisedHostName(url);
+		if (address != null) {
+			return address.getGeneralisedAddress();
+		}
+		return "unknown";
+	}
+
+	private WebHookMainConfig getMainConfig() {
+		if (this.myMainSettings != null && this.myMainSettings.getWebHookMainConfig() != null) {
+			return this.myMainSettings.getWebHookMainConfig();
+		}
+		return DEFAULT_CONFIG;
+	}
+
+}
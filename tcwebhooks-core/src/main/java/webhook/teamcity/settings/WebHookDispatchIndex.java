@@ -0,0 +1,142 @@
+package webhook.teamcity.settings;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import jetbrains.buildServer.serverSide.SProject;
+import webhook.teamcity.Loggers;
+
+/**
+ * The enabled webhooks which apply to events in a project, indexed by the project's internal id.
+ * <p>
+ * Finding them means reading the settings of the project and each of its parents, and
+ * checking every webhook for whether it is enabled and whether it applies to sub-projects.
+ * That is done the first time an event happens in a project, and the result is kept.
+ * <p>
+ * Settings can be changed by TeamCity reloading them and by the web UI, as well as through
+ * the {@link WebHookSettingsManager}, so the index is not told when they change. Instead,
+ * a project's webhooks are found again when its project path, or the settings or
+ * {@link WebHookProjectSettings#getModificationCount() modification count} of any project
+ * on that path, are not the ones they were found from.
+ * <p>
+ * Only projects which have enabled webhooks are kept, and a project is dropped
+ * when it is removed, so the index does not grow with every project which has an event.
+ */
+public class WebHookDispatchIndex {
+
+	private static final String CLASS_NAME = "WebHookDispatchIndex :: ";
+
+	private final WebHookSettingsManager settingsManager;
+	private final ConcurrentMap<String, ProjectWebHooks> projectWebHooks = new ConcurrentHashMap<>();
+
+	public WebHookDispatchIndex(WebHookSettingsManager settingsManager) {
+		this.settingsManager = settingsManager;
+	}
+
+	/**
+	 * @return The enabled webhooks from the project and its parents which apply to the project,
+	 * starting with those from the root project. The list is unmodifiable.
+	 */
+	public List<WebHookConfig> getEnabledWebHooks(SProject project) {
+		List<SProject> projectPath = project.getProjectPath();
+		List<WebHookProjectSettings> projectSettings = new ArrayList<>(projectPath.size());
+		for (SProject pathProject : projectPath) {
+			projectSettings.add(this.settingsManager.getSettings(pathProject.getProjectId()));
+		}
+		ProjectWebHooks webHooks = this.projectWebHooks.get(project.getProjectId());
+		if (webHooks == null || !webHooks.isCurrent(projectPath, projectSettings)) {
+			webHooks = new ProjectWebHooks(project, projectPath, projectSettings);
+			if (webHooks.enabledWebHooks.isEmpty()) {
+				this.projectWebHooks.remove(project.getProjectId());
+			} else {
+				this.projectWebHooks.put(project.getProjectId(), webHooks);
+			}
+		}
+		return webHooks.enabledWebHooks;
+	}
+
+	/**
+	 * Drops the project's webhooks from the index. Called when the project is removed.
+	 */
+	public void remove(String projectId) {
+		if (this.projectWebHooks.remove(projectId) != null) {
+			Loggers.SERVER.debug(CLASS_NAME + "Removed webhooks of project " + projectId + " from the index");
+		}
+	}
+
+	int getIndexedProjectCount() {
+		return this.projectWebHooks.size();
+	}
+
+	/**
+	 * The enabled webhooks for a project, and the project path and settings they were found from.
+	 */
+	private static final class ProjectWebHooks {
+		private final List<String> projectIds = new ArrayList<>();
+		private final List<String> projectExternalIds = new ArrayList<>();
+		private final List<WebHookProjectSettings> projectSettings;
+		private final long[] modificationCounts;
+		private final List<WebHookConfig> enabledWebHooks;
+
+		ProjectWebHooks(SProject myProject, List<SProject> projectPath, List<WebHookProjectSettings> projectSettings) {
+			this.projectSettings = projectSettings;
+			this.modificationCounts = new long[projectSettings.size()];
+			List<WebHookConfig> configs = new ArrayList<>();
+			for (int i = 0; i < projectPath.size(); i++) {
+				SProject project = projectPath.get(i);
+				WebHookProjectSettings projSettings = projectSettings.get(i);
+				this.projectIds.add(project.getProjectId());
+				this.projectExternalIds.add(project.getExternalId());
+				this.modificationCounts[i] = projSettings.getModificationCount();
+				if (!projSettings.isEnabled()) {
+					Loggers.ACTIVITIES.debug(CLASS_NAME + "WebHooks are disabled for " + project.getProjectId());
+					continue;
+				}
+				if (projSettings.getWebHooksConfigs() == null) {
+					continue;
+				}
+				for (WebHookConfig whc : projSettings.getWebHooksConfigs()) {
+					if (!whc.isEnabledForSubProjects() && !myProject.getProjectId().equals(project.getProjectId())) {
+						// Sub-projects are disabled and we are a subproject.
+						if (Loggers.ACTIVITIES.isDebugEnabled()) {
+							Loggers.ACTIVITIES.debug(CLASS_NAME + "subprojects not enabled. myProject is: "
+									+ myProject.getProjectId() + ". webhook project is: " + project.getProjectId());
+						}
+						continue;
+					}
+					if (whc.getEnabled()) {
+						whc.setProjectExternalId(project.getExternalId());
+						whc.setProjectInternalId(project.getProjectId());
+						configs.add(whc);
+					} else {
+						Loggers.ACTIVITIES.debug(CLASS_NAME + "WebHook disabled. Will not process "
+								+ whc.getUrl() + " (" + whc.getPayloadTemplate() + ")");
+					}
+				}
+			}
+			this.enabledWebHooks = Collections.unmodifiableList(configs);
+		}
+
+		boolean isCurrent(List<SProject> projectPath, List<WebHookProjectSettings> currentSettings) {
+			if (projectPath.size() != this.projectIds.size()) {
+				return false;
+			}
+			for (int i = 0; i < projectPath.size(); i++) {
+				SProject project = projectPath.get(i);
+				WebHookProjectSettings projSettings = currentSettings.get(i);
+				if (!Objects.equals(this.projectIds.get(i), project.getProjectId())
+						|| !Objects.equals(this.projectExternalIds.get(i), project.getExternalId())
+						|| this.projectSettings.get(i) != projSettings
+						|| this.modificationCounts[i] != projSettings.getModificationCount()) {
+					return false;
+				}
+			}
+			return true;
+		}
+	}
+
+}
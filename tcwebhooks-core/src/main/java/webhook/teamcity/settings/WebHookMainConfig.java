@@ -9,6 +9,8 @@ import java.util.regex.Pattern;
 import org.jdom.Element;
 
 import webhook.WebHookProxyConfig;
+import webhook.teamcity.circuitbreaker.WebHookCircuitOpenPolicy;
+import webhook.teamcity.executor.WebHookOverflowPolicy;
 
 
 public class WebHookMainConfig {
@@ -17,6 +19,37 @@ public class WebHookMainConfig {
 	public static final String HOSTNAME_ONLY_REGEX = "^([^/]+)(?:/.*)?$";
 	private static final int HTTP_CONNECT_TIMEOUT_DEFAULT = 120;
 	private static final int HTTP_RESPONSE_TIMEOUT_DEFAULT = 120;
+	private static final int HTTP_CONNECTION_POOL_MAX_TOTAL_DEFAULT = 100;
+	private static final int HTTP_CONNECTION_POOL_MAX_PER_ROUTE_DEFAULT = 20;
+	private static final int HTTP_CONNECTION_POOL_IDLE_TIMEOUT_DEFAULT = 60;
+	private static final int HTTP_CONNECTION_POOL_KEEP_ALIVE_DEFAULT = 30;
+	private static final int HTTP_CONNECTION_POOL_LEASE_TIMEOUT_DEFAULT = 30;
+	private static final int EXECUTOR_THREAD_COUNT_DEFAULT = 10;
+	private static final int EXECUTOR_QUEUE_SIZE_DEFAULT = 5000;
+	private static final int EXECUTOR_MAX_PER_HOST_DEFAULT = 5;
+	private static final int EXECUTOR_MAX_WAITING_PER_HOST_DEFAULT = 1000;
+	private static final WebHookOverflowPolicy EXECUTOR_OVERFLOW_POLICY_DEFAULT = WebHookOverflowPolicy.DROP_OLDEST;
+	private static final boolean DELIVERY_JOURNAL_ENABLED_DEFAULT = true;
+	private static final int DELIVERY_JOURNAL_MAX_SIZE_DEFAULT = 32;
+	/** Journal files are memory mapped, so must be smaller than 2GB. */
+	public static final int DELIVERY_JOURNAL_MAX_SIZE_LIMIT = 2047;
+	private static final int DELIVERY_JOURNAL_COMMIT_INTERVAL_DEFAULT = 100;
+	private static final int RETRY_MAX_ATTEMPTS_DEFAULT = 5;
+	private static final int RETRY_INITIAL_DELAY_DEFAULT = 10;
+	private static final int RETRY_MAX_DELAY_DEFAULT = 600;
+	private static final double RETRY_MULTIPLIER_DEFAULT = 2.0;
+	private static final double RETRY_JITTER_DEFAULT = 0.2;
+	private static final String RETRY_STATUS_CODES_DEFAULT = "429,500-599";
+	private static final boolean RETRY_CONNECTION_FAILURES_DEFAULT = true;
+	private static final int RETRY_MAX_DEAD_LETTERS_DEFAULT = 1000;
+	private static final boolean CIRCUIT_BREAKER_ENABLED_DEFAULT = true;
+	private static final int CIRCUIT_BREAKER_WINDOW_SIZE_DEFAULT = 20;
+	private static final int CIRCUIT_BREAKER_MINIMUM_CALLS_DEFAULT = 10;
+	private static final int CIRCUIT_BREAKER_FAILURE_RATE_DEFAULT = 50;
+	private static final int CIRCUIT_BREAKER_SLOW_CALL_DURATION_DEFAULT = 30;
+	private static final int CIRCUIT_BREAKER_SLOW_CALL_RATE_DEFAULT = 80;
+	private static final int CIRCUIT_BREAKER_OPEN_DURATION_DEFAULT = 60;
+	private static final WebHookCircuitOpenPolicy CIRCUIT_BREAKER_WHEN_OPEN_DEFAULT = WebHookCircuitOpenPolicy.DEFER;
 
 	private String webhookInfoUrl = null;
 	private String webhookInfoText = null;
@@ -30,7 +63,37 @@ public class WebHookMainConfig {
 	private List<Pattern> noProxyPatterns;
 	private Integer httpConnectionTimeout;
 	private Integer httpResponseTimeout;
+	private Integer httpConnectionPoolMaxTotal;
+	private Integer httpConnectionPoolMaxPerRoute;
+	private Integer httpConnectionPoolIdleTimeout;
+	private Integer httpConnectionPoolKeepAlive;
+	private Integer httpConnectionPoolLeaseTimeout;
+	private Integer executorThreadCount;
+	private Integer executorQueueSize;
+	private Integer executorMaxPerHost;
+	private Integer executorMaxWaitingPerHost;
+	private WebHookOverflowPolicy executorOverflowPolicy;
+	private Boolean deliveryJournalEnabled;
+	private Integer deliveryJournalMaxSize;
+	private Integer deliveryJournalCommitInterval;
+	private Integer retryMaxAttempts;
+	private Integer retryInitialDelay;
+	private Integer retryMaxDelay;
+	private Double retryMultiplier;
+	private Double retryJitter;
+	private String retryStatusCodes;
+	private Boolean retryConnectionFailures;
+	private Integer retryMaxDeadLetters;
+	private Boolean circuitBreakerEnabled;
+	private Integer circuitBreakerWindowSize;
+	private Integer circuitBreakerMinimumCalls;
+	private Integer circuitBreakerFailureRate;
+	private Integer circuitBreakerSlowCallDuration;
+	private Integer circuitBreakerSlowCallRate;
+	private Integer circuitBreakerOpenDuration;
+	private WebHookCircuitOpenPolicy circuitBreakerWhenOpen;
 	private boolean useThreadedExecutor = true;
+	private boolean useAsyncExecutor = false;
 
 	private Pattern singleHostPattern;
 	private Pattern hostnameOnlyPattern;
@@ -194,6 +257,91 @@ public class WebHookMainConfig {
 		return el;
 	}
 
+	public Element getConnectionPoolAsElement () {
+		if (   this.httpConnectionPoolMaxTotal == null && this.httpConnectionPoolMaxPerRoute == null
+			&& this.httpConnectionPoolIdleTimeout == null && this.httpConnectionPoolKeepAlive == null
+			&& this.httpConnectionPoolLeaseTimeout == null) 
+		{
+			return null;
+		}
+		Element el = new Element("http-connection-pool")
+				.setAttribute("max-total", String.valueOf(getHttpConnectionPoolMaxTotal()))
+				.setAttribute("max-per-route", String.valueOf(getHttpConnectionPoolMaxPerRoute()))
+				.setAttribute("idle-timeout", String.valueOf(getHttpConnectionPoolIdleTimeout()))
+				.setAttribute("keep-alive", String.valueOf(getHttpConnectionPoolKeepAlive()))
+				.setAttribute("lease-timeout", String.valueOf(getHttpConnectionPoolLeaseTimeout()));
+		return el;
+	}
+
+	public Element getExecutorAsElement () {
+		if (   this.executorThreadCount == null && this.executorQueueSize == null
+			&& this.executorMaxPerHost == null && this.executorMaxWaitingPerHost == null
+			&& this.executorOverflowPolicy == null) 
+		{
+			return null;
+		}
+		Element el = new Element("executor")
+				.setAttribute("threads", String.valueOf(getExecutorThreadCount()))
+				.setAttribute("queue-size", String.valueOf(getExecutorQueueSize()))
+				.setAttribute("max-per-host", String.valueOf(getExecutorMaxPerHost()))
+				.setAttribute("max-waiting-per-host", String.valueOf(getExecutorMaxWaitingPerHost()))
+				.setAttribute("overflow-policy", getExecutorOverflowPolicy().getConfigValue());
+		return el;
+	}
+
+	public Element getDeliveryJournalAsElement () {
+		if (   this.deliveryJournalEnabled == null && this.deliveryJournalMaxSize == null
+			&& this.deliveryJournalCommitInterval == null) 
+		{
+			return null;
+		}
+		Element el = new Element("delivery-journal")
+				.setAttribute("enabled", String.valueOf(isDeliveryJournalEnabled()))
+				.setAttribute("max-size", String.valueOf(getDeliveryJournalMaxSize()))
+				.setAttribute("commit-interval", String.valueOf(getDeliveryJournalCommitInterval()));
+		return el;
+	}
+
+	public Element getRetryAsElement () {
+		if (   this.retryMaxAttempts == null && this.retryInitialDelay == null
+			&& this.retryMaxDelay == null && this.retryMultiplier == null
+			&& this.retryJitter == null && this.retryStatusCodes == null
+			&& this.retryConnectionFailures == null && this.retryMaxDeadLetters == null) 
+		{
+			return null;
+		}
+		Element el = new Element("retry")
+				.setAttribute("max-attempts", String.valueOf(getRetryMaxAttempts()))
+				.setAttribute("initial-delay", String.valueOf(getRetryInitialDelay()))
+				.setAttribute("max-delay", String.valueOf(getRetryMaxDelay()))
+				.setAttribute("multiplier", String.valueOf(getRetryMultiplier()))
+				.setAttribute("jitter", String.valueOf(getRetryJitter()))
+				.setAttribute("status-codes", getRetryStatusCodes())
+				.setAttribute("retry-connection-failures", String.valueOf(isRetryConnectionFailures()))
+				.setAttribute("max-dead-letters", String.valueOf(getRetryMaxDeadLetters()));
+		return el;
+	}
+
+	public Element getCircuitBreakerAsElement () {
+		if (   this.circuitBreakerEnabled == null && this.circuitBreakerWindowSize == null
+			&& this.circuitBreakerMinimumCalls == null && this.circuitBreakerFailureRate == null
+			&& this.circuitBreakerSlowCallDuration == null && this.circuitBreakerSlowCallRate == null
+			&& this.circuitBreakerOpenDuration == null && this.circuitBreakerWhenOpen == null) 
+		{
+			return null;
+		}
+		Element el = new Element("circuit-breaker")
+				.setAttribute("enabled", String.valueOf(isCircuitBreakerEnabled()))
+				.setAttribute("window-size", String.valueOf(getCircuitBreakerWindowSize()))
+				.setAttribute("minimum-calls", String.valueOf(getCircuitBreakerMinimumCalls()))
+				.setAttribute("failure-rate", String.valueOf(getCircuitBreakerFailureRate()))
+				.setAttribute("slow-call-duration", String.valueOf(getCircuitBreakerSlowCallDuration()))
+				.setAttribute("slow-call-rate", String.valueOf(getCircuitBreakerSlowCallRate()))
+				.setAttribute("open-duration", String.valueOf(getCircuitBreakerOpenDuration()))
+				.setAttribute("when-open", getCircuitBreakerWhenOpen().getConfigValue());
+		return el;
+	}
+
 	public Integer getProxyPort() {
 		return proxyPort;
 	}
@@ -288,6 +436,376 @@ public class WebHookMainConfig {
 		this.httpResponseTimeout = httpResponseimeout;
 	}
 
+	public Integer getHttpConnectionPoolMaxTotal() {
+		if (this.httpConnectionPoolMaxTotal != null) {
+			return httpConnectionPoolMaxTotal;
+		}
+		return HTTP_CONNECTION_POOL_MAX_TOTAL_DEFAULT;
+	}
+
+	public void setHttpConnectionPoolMaxTotal(Integer httpConnectionPoolMaxTotal) {
+		this.httpConnectionPoolMaxTotal = httpConnectionPoolMaxTotal;
+	}
+
+	public Integer getHttpConnectionPoolMaxPerRoute() {
+		if (this.httpConnectionPoolMaxPerRoute != null) {
+			return httpConnectionPoolMaxPerRoute;
+		}
+		return HTTP_CONNECTION_POOL_MAX_PER_ROUTE_DEFAULT;
+	}
+
+	public void setHttpConnectionPoolMaxPerRoute(Integer httpConnectionPoolMaxPerRoute) {
+		this.httpConnectionPoolMaxPerRoute = httpConnectionPoolMaxPerRoute;
+	}
+
+	public Integer getHttpConnectionPoolIdleTimeout() {
+		if (this.httpConnectionPoolIdleTimeout != null) {
+			return httpConnectionPoolIdleTimeout;
+		}
+		return HTTP_CONNECTION_POOL_IDLE_TIMEOUT_DEFAULT;
+	}
+
+	public void setHttpConnectionPoolIdleTimeout(Integer httpConnectionPoolIdleTimeout) {
+		this.httpConnectionPoolIdleTimeout = httpConnectionPoolIdleTimeout;
+	}
+
+	public Integer getHttpConnectionPoolKeepAlive() {
+		if (this.httpConnectionPoolKeepAlive != null) {
+			return httpConnectionPoolKeepAlive;
+		}
+		return HTTP_CONNECTION_POOL_KEEP_ALIVE_DEFAULT;
+	}
+
+	public void setHttpConnectionPoolKeepAlive(Integer httpConnectionPoolKeepAlive) {
+		this.httpConnectionPoolKeepAlive = httpConnectionPoolKeepAlive;
+	}
+
+	/**
+	 * How long (in seconds) a request waits to lease a connection from the pool 
+	 * when every connection to its host is in use, before it fails.
+	 */
+	public Integer getHttpConnectionPoolLeaseTimeout() {
+		if (this.httpConnectionPoolLeaseTimeout != null && this.httpConnectionPoolLeaseTimeout > 0) {
+			return httpConnectionPoolLeaseTimeout;
+		}
+		return HTTP_CONNECTION_POOL_LEASE_TIMEOUT_DEFAULT;
+	}
+
+	public void setHttpConnectionPoolLeaseTimeout(Integer httpConnectionPoolLeaseTimeout) {
+		this.httpConnectionPoolLeaseTimeout = httpConnectionPoolLeaseTimeout;
+	}
+
+	public Integer getExecutorThreadCount() {
+		if (this.executorThreadCount != null && this.executorThreadCount > 0) {
+			return executorThreadCount;
+		}
+		return EXECUTOR_THREAD_COUNT_DEFAULT;
+	}
+
+	public void setExecutorThreadCount(Integer executorThreadCount) {
+		this.executorThreadCount = executorThreadCount;
+	}
+
+	public Integer getExecutorQueueSize() {
+		if (this.executorQueueSize != null && this.executorQueueSize > 0) {
+			return executorQueueSize;
+		}
+		return EXECUTOR_QUEUE_SIZE_DEFAULT;
+	}
+
+	public void setExecutorQueueSize(Integer executorQueueSize) {
+		this.executorQueueSize = executorQueueSize;
+	}
+
+	public Integer getExecutorMaxPerHost() {
+		if (this.executorMaxPerHost != null && this.executorMaxPerHost > 0) {
+			return executorMaxPerHost;
+		}
+		return EXECUTOR_MAX_PER_HOST_DEFAULT;
+	}
+
+	public void setExecutorMaxPerHost(Integer executorMaxPerHost) {
+		this.executorMaxPerHost = executorMaxPerHost;
+	}
+
+	/**
+	 * The number of runners which may wait for a host's bulkhead before the 
+	 * overflow policy is applied to that host's queue.
+	 */
+	public Integer getExecutorMaxWaitingPerHost() {
+		if (this.executorMaxWaitingPerHost != null && this.executorMaxWaitingPerHost > 0) {
+			return executorMaxWaitingPerHost;
+		}
+		return EXECUTOR_MAX_WAITING_PER_HOST_DEFAULT;
+	}
+
+	public void setExecutorMaxWaitingPerHost(Integer executorMaxWaitingPerHost) {
+		this.executorMaxWaitingPerHost = executorMaxWaitingPerHost;
+	}
+
+	public WebHookOverflowPolicy getExecutorOverflowPolicy() {
+		if (this.executorOverflowPolicy != null) {
+			return executorOverflowPolicy;
+		}
+		return EXECUTOR_OVERFLOW_POLICY_DEFAULT;
+	}
+
+	public void setExecutorOverflowPolicy(WebHookOverflowPolicy executorOverflowPolicy) {
+		this.executorOverflowPolicy = executorOverflowPolicy;
+	}
+
+	public boolean isDeliveryJournalEnabled() {
+		if (this.deliveryJournalEnabled != null) {
+			return deliveryJournalEnabled;
+		}
+		return DELIVERY_JOURNAL_ENABLED_DEFAULT;
+	}
+
+	public void setDeliveryJournalEnabled(Boolean deliveryJournalEnabled) {
+		this.deliveryJournalEnabled = deliveryJournalEnabled;
+	}
+
+	/**
+	 * @return The size (in megabytes) of each delivery journal file, 
+	 * no larger than {@link #DELIVERY_JOURNAL_MAX_SIZE_LIMIT}.
+	 */
+	public Integer getDeliveryJournalMaxSize() {
+		if (this.deliveryJournalMaxSize != null && this.deliveryJournalMaxSize > 0) {
+			return Math.min(deliveryJournalMaxSize, DELIVERY_JOURNAL_MAX_SIZE_LIMIT);
+		}
+		return DELIVERY_JOURNAL_MAX_SIZE_DEFAULT;
+	}
+
+	public void setDeliveryJournalMaxSize(Integer deliveryJournalMaxSize) {
+		this.deliveryJournalMaxSize = deliveryJournalMaxSize;
+	}
+
+	/**
+	 * @return The interval (in milliseconds) between flushes of the delivery journal to disk.
+	 */
+	public Integer getDeliveryJournalCommitInterval() {
+		if (this.deliveryJournalCommitInterval != null && this.deliveryJournalCommitInterval > 0) {
+			return deliveryJournalCommitInterval;
+		}
+		return DELIVERY_JOURNAL_COMMIT_INTERVAL_DEFAULT;
+	}
+
+	public void setDeliveryJournalCommitInterval(Integer deliveryJournalCommitInterval) {
+		this.deliveryJournalCommitInterval = deliveryJournalCommitInterval;
+	}
+
+	/**
+	 * @return The total number of times a delivery is attempted before it is dead lettered.
+	 * A value of 1 disables retries.
+	 */
+	public Integer getRetryMaxAttempts() {
+		if (this.retryMaxAttempts != null && this.retryMaxAttempts > 0) {
+			return retryMaxAttempts;
+		}
+		return RETRY_MAX_ATTEMPTS_DEFAULT;
+	}
+
+	public void setRetryMaxAttempts(Integer retryMaxAttempts) {
+		this.retryMaxAttempts = retryMaxAttempts;
+	}
+
+	/**
+	 * @return The delay (in seconds) before the first retry.
+	 */
+	public Integer getRetryInitialDelay() {
+		if (this.retryInitialDelay != null && this.retryInitialDelay >= 0) {
+			return retryInitialDelay;
+		}
+		return RETRY_INITIAL_DELAY_DEFAULT;
+	}
+
+	public void setRetryInitialDelay(Integer retryInitialDelay) {
+		this.retryInitialDelay = retryInitialDelay;
+	}
+
+	/**
+	 * @return The longest delay (in seconds) between retries. A delivery whose endpoint
+	 * sent a Retry-After longer than this is dead lettered instead of being retried.
+	 */
+	public Integer getRetryMaxDelay() {
+		if (this.retryMaxDelay != null && this.retryMaxDelay >= 0) {
+			return retryMaxDelay;
+		}
+		return RETRY_MAX_DELAY_DEFAULT;
+	}
+
+	public void setRetryMaxDelay(Integer retryMaxDelay) {
+		this.retryMaxDelay = retryMaxDelay;
+	}
+
+	public Double getRetryMultiplier() {
+		if (this.retryMultiplier != null && this.retryMultiplier >= 1.0) {
+			return retryMultiplier;
+		}
+		return RETRY_MULTIPLIER_DEFAULT;
+	}
+
+	public void setRetryMultiplier(Double retryMultiplier) {
+		this.retryMultiplier = retryMultiplier;
+	}
+
+	/**
+	 * @return The fraction (0.0 to 1.0) of each delay which is randomised, so that
+	 * webhooks which failed together are not all retried together.
+	 */
+	public Double getRetryJitter() {
+		if (this.retryJitter != null && this.retryJitter >= 0.0 && this.retryJitter <= 1.0) {
+			return retryJitter;
+		}
+		return RETRY_JITTER_DEFAULT;
+	}
+
+	public void setRetryJitter(Double retryJitter) {
+		this.retryJitter = retryJitter;
+	}
+
+	/**
+	 * @return A comma separated list of HTTP status codes and ranges which are retried, eg "429,500-599".
+	 */
+	public String getRetryStatusCodes() {
+		if (this.retryStatusCodes != null) {
+			return retryStatusCodes;
+		}
+		return RETRY_STATUS_CODES_DEFAULT;
+	}
+
+	public void setRetryStatusCodes(String retryStatusCodes) {
+		this.retryStatusCodes = retryStatusCodes;
+	}
+
+	public boolean isRetryConnectionFailures() {
+		if (this.retryConnectionFailures != null) {
+			return retryConnectionFailures;
+		}
+		return RETRY_CONNECTION_FAILURES_DEFAULT;
+	}
+
+	public void setRetryConnectionFailures(Boolean retryConnectionFailures) {
+		this.retryConnectionFailures = retryConnectionFailures;
+	}
+
+	public Integer getRetryMaxDeadLetters() {
+		if (this.retryMaxDeadLetters != null && this.retryMaxDeadLetters >= 0) {
+			return retryMaxDeadLetters;
+		}
+		return RETRY_MAX_DEAD_LETTERS_DEFAULT;
+	}
+
+	public void setRetryMaxDeadLetters(Integer retryMaxDeadLetters) {
+		this.retryMaxDeadLetters = retryMaxDeadLetters;
+	}
+
+	public boolean isCircuitBreakerEnabled() {
+		if (this.circuitBreakerEnabled != null) {
+			return circuitBreakerEnabled;
+		}
+		return CIRCUIT_BREAKER_ENABLED_DEFAULT;
+	}
+
+	public void setCircuitBreakerEnabled(Boolean circuitBreakerEnabled) {
+		this.circuitBreakerEnabled = circuitBreakerEnabled;
+	}
+
+	/**
+	 * @return The number of most recent requests to each endpoint used to calculate its failure and slow call rates.
+	 */
+	public Integer getCircuitBreakerWindowSize() {
+		if (this.circuitBreakerWindowSize != null && this.circuitBreakerWindowSize > 0) {
+			return circuitBreakerWindowSize;
+		}
+		return CIRCUIT_BREAKER_WINDOW_SIZE_DEFAULT;
+	}
+
+	public void setCircuitBreakerWindowSize(Integer circuitBreakerWindowSize) {
+		this.circuitBreakerWindowSize = circuitBreakerWindowSize;
+	}
+
+	/**
+	 * @return The number of requests which must be recorded before the breaker can open.
+	 */
+	public Integer getCircuitBreakerMinimumCalls() {
+		if (this.circuitBreakerMinimumCalls != null && this.circuitBreakerMinimumCalls > 0) {
+			return circuitBreakerMinimumCalls;
+		}
+		return CIRCUIT_BREAKER_MINIMUM_CALLS_DEFAULT;
+	}
+
+	public void setCircuitBreakerMinimumCalls(Integer circuitBreakerMinimumCalls) {
+		this.circuitBreakerMinimumCalls = circuitBreakerMinimumCalls;
+	}
+
+	/**
+	 * @return The percentage of failed requests at which the breaker opens.
+	 */
+	public Integer getCircuitBreakerFailureRate() {
+		if (this.circuitBreakerFailureRate != null && this.circuitBreakerFailureRate > 0) {
+			return circuitBreakerFailureRate;
+		}
+		return CIRCUIT_BREAKER_FAILURE_RATE_DEFAULT;
+	}
+
+	public void setCircuitBreakerFailureRate(Integer circuitBreakerFailureRate) {
+		this.circuitBreakerFailureRate = circuitBreakerFailureRate;
+	}
+
+	/**
+	 * @return The time (in seconds) after which a request is counted as slow.
+	 */
+	public Integer getCircuitBreakerSlowCallDuration() {
+		if (this.circuitBreakerSlowCallDuration != null && this.circuitBreakerSlowCallDuration > 0) {
+			return circuitBreakerSlowCallDuration;
+		}
+		return CIRCUIT_BREAKER_SLOW_CALL_DURATION_DEFAULT;
+	}
+
+	public void setCircuitBreakerSlowCallDuration(Integer circuitBreakerSlowCallDuration) {
+		this.circuitBreakerSlowCallDuration = circuitBreakerSlowCallDuration;
+	}
+
+	/**
+	 * @return The percentage of slow requests at which the breaker opens.
+	 */
+	public Integer getCircuitBreakerSlowCallRate() {
+		if (this.circuitBreakerSlowCallRate != null && this.circuitBreakerSlowCallRate > 0) {
+			return circuitBreakerSlowCallRate;
+		}
+		return CIRCUIT_BREAKER_SLOW_CALL_RATE_DEFAULT;
+	}
+
+	public void setCircuitBreakerSlowCallRate(Integer circuitBreakerSlowCallRate) {
+		this.circuitBreakerSlowCallRate = circuitBreakerSlowCallRate;
+	}
+
+	/**
+	 * @return The time (in seconds) a breaker stays open before letting a trial request through.
+	 */
+	public Integer getCircuitBreakerOpenDuration() {
+		if (this.circuitBreakerOpenDuration != null && this.circuitBreakerOpenDuration > 0) {
+			return circuitBreakerOpenDuration;
+		}
+		return CIRCUIT_BREAKER_OPEN_DURATION_DEFAULT;
+	}
+
+	public void setCircuitBreakerOpenDuration(Integer circuitBreakerOpenDuration) {
+		this.circuitBreakerOpenDuration = circuitBreakerOpenDuration;
+	}
+
+	public WebHookCircuitOpenPolicy getCircuitBreakerWhenOpen() {
+		if (this.circuitBreakerWhenOpen != null) {
+			return circuitBreakerWhenOpen;
+		}
+		return CIRCUIT_BREAKER_WHEN_OPEN_DEFAULT;
+	}
+
+	public void setCircuitBreakerWhenOpen(WebHookCircuitOpenPolicy circuitBreakerWhenOpen) {
+		this.circuitBreakerWhenOpen = circuitBreakerWhenOpen;
+	}
+
 	public boolean useThreadedExecutor() {
 		return useThreadedExecutor;
 	}
@@ -296,4 +814,12 @@ public class WebHookMainConfig {
 		this.useThreadedExecutor = threadPoolSender;
 	}
 
+	public boolean useAsyncExecutor() {
+		return useAsyncExecutor;
+	}
+
+	public void setAsyncExecutor(boolean asyncSender) {
+		this.useAsyncExecutor = asyncSender;
+	}
+
 }
\ No newline at end of file
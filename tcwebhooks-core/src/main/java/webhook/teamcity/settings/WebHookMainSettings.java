@@ -10,6 +10,8 @@ import org.jdom.Element;
 
 import webhook.WebHookProxyConfig;
 import webhook.teamcity.Loggers;
+import webhook.teamcity.circuitbreaker.WebHookCircuitOpenPolicy;
+import webhook.teamcity.executor.WebHookOverflowPolicy;
 
 public class WebHookMainSettings implements MainConfigProcessor {
 	private static final String NAME = WebHookMainSettings.class.getName();
@@ -44,6 +46,9 @@ public class WebHookMainSettings implements MainConfigProcessor {
     		if (webhooksElement.getAttribute("useThreadedExecutor") != null) {
     			tempConfig.setThreadPoolExecutor(Boolean.parseBoolean(webhooksElement.getAttributeValue("useThreadedExecutor")));
     		}
+    		if (webhooksElement.getAttribute("useAsyncExecutor") != null) {
+    			tempConfig.setAsyncExecutor(Boolean.parseBoolean(webhooksElement.getAttributeValue("useAsyncExecutor")));
+    		}
     		Element extraInfoElement = webhooksElement.getChild("info");
 	        if(extraInfoElement != null)
 	        {
@@ -70,6 +75,127 @@ public class WebHookMainSettings implements MainConfigProcessor {
 	        	}
 	        }
 	        
+	        Element connectionPoolElement = webhooksElement.getChild("http-connection-pool");
+	        if (connectionPoolElement != null) {
+	        	if (connectionPoolElement.getAttribute("max-total") != null) {
+	        		tempConfig.setHttpConnectionPoolMaxTotal(Integer.valueOf(connectionPoolElement.getAttributeValue("max-total")));
+	        	}
+	        	if (connectionPoolElement.getAttribute("max-per-route") != null) {
+	        		tempConfig.setHttpConnectionPoolMaxPerRoute(Integer.valueOf(connectionPoolElement.getAttributeValue("max-per-route")));
+	        	}
+	        	if (connectionPoolElement.getAttribute("idle-timeout") != null) {
+	        		tempConfig.setHttpConnectionPoolIdleTimeout(Integer.valueOf(connectionPoolElement.getAttributeValue("idle-timeout")));
+	        	}
+	        	if (connectionPoolElement.getAttribute("keep-alive") != null) {
+	        		tempConfig.setHttpConnectionPoolKeepAlive(Integer.valueOf(connectionPoolElement.getAttributeValue("keep-alive")));
+	        	}
+	        	if (connectionPoolElement.getAttribute("lease-timeout") != null) {
+	        		tempConfig.setHttpConnectionPoolLeaseTimeout(Integer.valueOf(connectionPoolElement.getAttributeValue("lease-timeout")));
+	        	}
+	        }
+	        
+	        Element executorElement = webhooksElement.getChild("executor");
+	        if (executorElement != null) {
+	        	if (executorElement.getAttribute("threads") != null) {
+	        		tempConfig.setExecutorThreadCount(Integer.valueOf(executorElement.getAttributeValue("threads")));
+	        	}
+	        	if (executorElement.getAttribute("queue-size") != null) {
+	        		tempConfig.setExecutorQueueSize(Integer.valueOf(executorElement.getAttributeValue("queue-size")));
+	        	}
+	        	if (executorElement.getAttribute("max-per-host") != null) {
+	        		tempConfig.setExecutorMaxPerHost(Integer.valueOf(executorElement.getAttributeValue("max-per-host")));
+	        	}
+	        	if (executorElement.getAttribute("max-waiting-per-host") != null) {
+	        		tempConfig.setExecutorMaxWaitingPerHost(Integer.valueOf(executorElement.getAttributeValue("max-waiting-per-host")));
+	        	}
+	        	if (executorElement.getAttribute("overflow-policy") != null) {
+	        		WebHookOverflowPolicy policy = WebHookOverflowPolicy.findByConfigValue(executorElement.getAttributeValue("overflow-policy"));
+	        		if (policy != null) {
+	        			tempConfig.setExecutorOverflowPolicy(policy);
+	        		} else {
+	        			Loggers.SERVER.warn(NAME + ":readFrom :: Unknown executor overflow-policy '" + executorElement.getAttributeValue("overflow-policy") + "'. Using default.");
+	        		}
+	        	}
+	        }
+	        
+	        Element journalElement = webhooksElement.getChild("delivery-journal");
+	        if (journalElement != null) {
+	        	if (journalElement.getAttribute("enabled") != null) {
+	        		tempConfig.setDeliveryJournalEnabled(Boolean.parseBoolean(journalElement.getAttributeValue("enabled")));
+	        	}
+	        	if (journalElement.getAttribute("max-size") != null) {
+	        		Integer maxSize = Integer.valueOf(journalElement.getAttributeValue("max-size"));
+	        		if (maxSize > WebHookMainConfig.DELIVERY_JOURNAL_MAX_SIZE_LIMIT) {
+	        			Loggers.SERVER.warn(NAME + ":readFrom :: delivery-journal max-size " + maxSize + " is too large. Using " + WebHookMainConfig.DELIVERY_JOURNAL_MAX_SIZE_LIMIT + ".");
+	        		}
+	        		tempConfig.setDeliveryJournalMaxSize(maxSize);
+	        	}
+	        	if (journalElement.getAttribute("commit-interval") != null) {
+	        		tempConfig.setDeliveryJournalCommitInterval(Integer.valueOf(journalElement.getAttributeValue("commit-interval")));
+	        	}
+	        }
+	        
+	        Element retryElement = webhooksElement.getChild("retry");
+	        if (retryElement != null) {
+	        	if (retryElement.getAttribute("max-attempts") != null) {
+	        		tempConfig.setRetryMaxAttempts(Integer.valueOf(retryElement.getAttributeValue("max-attempts")));
+	        	}
+	        	if (retryElement.getAttribute("initial-delay") != null) {
+	        		tempConfig.setRetryInitialDelay(Integer.valueOf(retryElement.getAttributeValue("initial-delay")));
+	        	}
+	        	if (retryElement.getAttribute("max-delay") != null) {
+	        		tempConfig.setRetryMaxDelay(Integer.valueOf(retryElement.getAttributeValue("max-delay")));
+	        	}
+	        	if (retryElement.getAttribute("multiplier") != null) {
+	        		tempConfig.setRetryMultiplier(Double.valueOf(retryElement.getAttributeValue("multiplier")));
+	        	}
+	        	if (retryElement.getAttribute("jitter") != null) {
+	        		tempConfig.setRetryJitter(Double.valueOf(retryElement.getAttributeValue("jitter")));
+	        	}
+	        	if (retryElement.getAttribute("status-codes") != null) {
+	        		tempConfig.setRetryStatusCodes(retryElement.getAttributeValue("status-codes"));
+	        	}
+	        	if (retryElement.getAttribute("retry-connection-failures") != null) {
+	        		tempConfig.setRetryConnectionFailures(Boolean.parseBoolean(retryElement.getAttributeValue("retry-connection-failures")));
+	        	}
+	        	if (retryElement.getAttribute("max-dead-letters") != null) {
+	        		tempConfig.setRetryMaxDeadLetters(Integer.valueOf(retryElement.getAttributeValue("max-dead-letters")));
+	        	}
+	        }
+	        
+	        Element circuitBreakerElement = webhooksElement.getChild("circuit-breaker");
+	        if (circuitBreakerElement != null) {
+	        	if (circuitBreakerElement.getAttribute("enabled") != null) {
+	        		tempConfig.setCircuitBreakerEnabled(Boolean.parseBoolean(circuitBreakerElement.getAttributeValue("enabled")));
+	        	}
+	        	if (circuitBreakerElement.getAttribute("window-size") != null) {
+	        		tempConfig.setCircuitBreakerWindowSize(Integer.valueOf(circuitBreakerElement.getAttributeValue("window-size")));
+	        	}
+	        	if (circuitBreakerElement.getAttribute("minimum-calls") != null) {
+	        		tempConfig.setCircuitBreakerMinimumCalls(Integer.valueOf(circuitBreakerElement.getAttributeValue("minimum-calls")));
+	        	}
+	        	if (circuitBreakerElement.getAttribute("failure-rate") != null) {
+	        		tempConfig.setCircuitBreakerFailureRate(Integer.valueOf(circuitBreakerElement.getAttributeValue("failure-rate")));
+	        	}
+	        	if (circuitBreakerElement.getAttribute("slow-call-duration") != null) {
+	        		tempConfig.setCircuitBreakerSlowCallDuration(Integer.valueOf(circuitBreakerElement.getAttributeValue("slow-call-duration")));
+	        	}
+	        	if (circuitBreakerElement.getAttribute("slow-call-rate") != null) {
+	        		tempConfig.setCircuitBreakerSlowCallRate(Integer.valueOf(circuitBreakerElement.getAttributeValue("slow-call-rate")));
+	        	}
+	        	if (circuitBreakerElement.getAttribute("open-duration") != null) {
+	        		tempConfig.setCircuitBreakerOpenDuration(Integer.valueOf(circuitBreakerElement.getAttributeValue("open-duration")));
+	        	}
+	        	if (circuitBreakerElement.getAttribute("when-open") != null) {
+	        		WebHookCircuitOpenPolicy policy = WebHookCircuitOpenPolicy.findByConfigValue(circuitBreakerElement.getAttributeValue("when-open"));
+	        		if (policy != null) {
+	        			tempConfig.setCircuitBreakerWhenOpen(policy);
+	        		} else {
+	        			Loggers.SERVER.warn(NAME + ":readFrom :: Unknown circuit-breaker when-open '" + circuitBreakerElement.getAttributeValue("when-open") + "'. Using default.");
+	        		}
+	        	}
+	        }
+	        
     		Element proxyElement = webhooksElement.getChild("proxy");
 	        if(proxyElement != null)
 	        {
@@ -117,6 +243,9 @@ public class WebHookMainSettings implements MainConfigProcessor {
     	Loggers.SERVER.debug(NAME + ":writeTo :: " + parentElement.toString());
     	Element el = new Element("webhooks");
     	el.setAttribute("useThreadedExecutor", Boolean.toString(webHookMainConfig.useThreadedExecutor()));
+    	if (webHookMainConfig.useAsyncExecutor()) {
+    		el.setAttribute("useAsyncExecutor", Boolean.toString(webHookMainConfig.useAsyncExecutor()));
+    	}
         if(	  webHookMainConfig != null 
            && webHookMainConfig.getProxyHost() != null && webHookMainConfig.getProxyHost().length() > 0
            && webHookMainConfig.getProxyPort() != null && webHookMainConfig.getProxyPort() > 0 )
@@ -130,6 +259,26 @@ public class WebHookMainSettings implements MainConfigProcessor {
         	el.addContent(webHookMainConfig.getTimeoutsAsElement());
         }
         
+        if(webHookMainConfig != null && webHookMainConfig.getConnectionPoolAsElement() != null) {
+        	el.addContent(webHookMainConfig.getConnectionPoolAsElement());
+        }
+        
+        if(webHookMainConfig != null && webHookMainConfig.getExecutorAsElement() != null) {
+        	el.addContent(webHookMainConfig.getExecutorAsElement());
+        }
+        
+        if(webHookMainConfig != null && webHookMainConfig.getDeliveryJournalAsElement() != null) {
+        	el.addContent(webHookMainConfig.getDeliveryJournalAsElement());
+        }
+        
+        if(webHookMainConfig != null && webHookMainConfig.getRetryAsElement() != null) {
+        	el.addContent(webHookMainConfig.getRetryAsElement());
+        }
+        
+        if(webHookMainConfig != null && webHookMainConfig.getCircuitBreakerAsElement() != null) {
+        	el.addContent(webHookMainConfig.getCircuitBreakerAsElement());
+        }
+        
         if(webHookMainConfig != null && webHookMainConfig.getInfoUrlAsElement() != null){
         	el.addContent(webHookMainConfig.getInfoUrlAsElement());
 			Loggers.SERVER.debug(NAME + "writeTo :: infoText " + webHookMainConfig.getWebhookInfoText().toString());
@@ -176,7 +325,23 @@ public class WebHookMainSettings implements MainConfigProcessor {
 		return this.webHookMainConfig.getHttpResponseTimeout();
 	}
 	
+	public int getHttpConnectionPoolMaxTotal() {
+		return this.webHookMainConfig.getHttpConnectionPoolMaxTotal();
+	}
+	
+	public int getHttpConnectionPoolMaxPerRoute() {
+		return this.webHookMainConfig.getHttpConnectionPoolMaxPerRoute();
+	}
+	
+	public int getHttpConnectionPoolLeaseTimeout() {
+		return this.webHookMainConfig.getHttpConnectionPoolLeaseTimeout();
+	}
+	
 	public boolean useThreadedExecutor() {
 		return this.webHookMainConfig.useThreadedExecutor();
 	}
+	
+	public boolean useAsyncExecutor() {
+		return this.webHookMainConfig.useAsyncExecutor();
+	}
 }
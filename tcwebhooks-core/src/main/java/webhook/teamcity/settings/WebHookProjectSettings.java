@@ -4,6 +4,7 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Set;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.jdom.Element;
 
@@ -19,6 +20,7 @@ public class WebHookProjectSettings implements ProjectSettings {
 	private static final String NAME = WebHookProjectSettings.class.getName();
 	private Boolean webHooksEnabled = true;
 	private CopyOnWriteArrayList<WebHookConfig> webHooksConfigs;
+	private final AtomicLong modificationCount = new AtomicLong();
 	
 	public WebHookProjectSettings(){
 		webHooksConfigs = new CopyOnWriteArrayList<>();
@@ -53,6 +55,7 @@ public class WebHookProjectSettings implements ProjectSettings {
 	        }
 			this.webHooksConfigs = configs;
     	}
+        this.modificationCount.incrementAndGet();
     }
 
     public void writeTo(Element parentElement)
@@ -131,6 +134,7 @@ public class WebHookProjectSettings implements ProjectSettings {
             if (! tempWebHookList.isEmpty()){
             	updateSuccess = true;
             	this.webHooksConfigs.removeAll(tempWebHookList);	
+            	this.modificationCount.incrementAndGet();
             }
         }
         return new WebHookUpdateResult(updateSuccess, configToDelete);
@@ -173,6 +177,9 @@ public class WebHookProjectSettings implements ProjectSettings {
                 }
             }
         }
+        if (updateSuccess){
+        	this.modificationCount.incrementAndGet();
+        }
         return new WebHookUpdateResult(updateSuccess, configToUpdate);
 	}
 
@@ -183,6 +190,7 @@ public class WebHookProjectSettings implements ProjectSettings {
 	public WebHookUpdateResult addNewWebHook(String projectInternalId, String projectExternalId, String url, Boolean enabled, BuildState buildState, String template, boolean buildTypeAll, boolean buildTypeSubProjects, Set<String> buildTypesEnabled, WebHookAuthConfig webHookAuthConfig) {
 		WebHookConfig newWebHook = new WebHookConfig(projectInternalId, projectExternalId, url, enabled, buildState, template, buildTypeAll, buildTypeSubProjects, buildTypesEnabled, webHookAuthConfig); 
 		this.webHooksConfigs.add(newWebHook);
+		this.modificationCount.incrementAndGet();
 		Loggers.SERVER.debug(NAME + ":addNewWebHook :: Adding webhook to " + projectExternalId + " with URL " + url);
 		return new WebHookUpdateResult(true, newWebHook);
 	}
@@ -210,4 +218,12 @@ public class WebHookProjectSettings implements ProjectSettings {
 		return webHooksConfigs;
 	}
 	
+	/**
+	 * @return A count which goes up whenever these settings are read or their webhooks are
+	 * added, updated or deleted, so that anything derived from them can tell it is out of date.
+	 */
+	public long getModificationCount() {
+		return this.modificationCount.get();
+	}
+	
 }
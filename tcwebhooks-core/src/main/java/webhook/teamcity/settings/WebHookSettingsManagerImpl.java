@@ -24,7 +24,6 @@ import webhook.teamcity.payload.WebHookPayload;
 import webhook.teamcity.payload.WebHookPayloadManager;
 import webhook.teamcity.payload.WebHookPayloadTemplate;
 import webhook.teamcity.payload.WebHookTemplateManager;
-import webhook.teamcity.payload.WebHookTemplateManager.TemplateState;
 import webhook.teamcity.settings.WebHookSearchResult.Match;
 
 public class WebHookSettingsManagerImpl implements WebHookSettingsManager {
@@ -318,7 +317,7 @@ public class WebHookSettingsManagerImpl implements WebHookSettingsManager {
 				String templateFormatDescription = "Unknown payload format";
 				try {
 					WebHookPayloadTemplate template = this.myWebHookTemplateManager.getTemplate(c.getPayloadTemplate());
-					WebHookPayload format = this.myWebHookPayloadManager.getFormat(this.myWebHookTemplateManager.getTemplateConfig(template.getTemplateId(), TemplateState.BEST).getFormat());
+					WebHookPayload format = this.myWebHookPayloadManager.getFormat(this.myWebHookTemplateManager.getTemplateFormat(template.getTemplateId()));
 					templateName = template.getTemplateDescription();
 					templateFormat = format.getFormatShortName();
 					templateFormatDescription = format.getFormatDescription();
@@ -1,8 +1,16 @@
 package webhook.teamcity.settings.entity;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileNotFoundException;
+import java.io.IOException;
 import java.io.InputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 
 import javax.xml.bind.JAXBContext;
 import javax.xml.bind.JAXBException;
@@ -12,65 +20,194 @@ import javax.xml.bind.Unmarshaller;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import webhook.teamcity.Loggers;
+
+/**
+ * Reads and writes templates with JAXB.
+ * <p>
+ * Creating a {@link JAXBContext} is expensive, so one is created for each bound class the
+ * first time it is needed, and shared. Marshallers and unmarshallers are not thread safe,
+ * so each call borrows one from a small pool and returns it when done.
+ * <p>
+ * The contexts and pools belong to this bean rather than to TeamCity's long lived threads,
+ * so {@link #shutdown()} releases them, and with them the plugin's classes, when the plugin
+ * is unloaded.
+ * <p>
+ * Templates are only written if they differ from what is already in the file. They are written
+ * to a temporary file which then replaces the file, so a failed write can't leave a partial file
+ * for the templates file watcher to load.
+ */
 public class WebHookTemplateJaxHelperImpl implements WebHookTemplateJaxHelper {
 
+	private static final String CLASS_NAME = "WebHookTemplateJaxHelperImpl :: ";
+	private static final String TEMP_FILE_SUFFIX = ".tmp";
+	private static final int MAX_POOLED = 4;
+	private final JaxbBinding templatesBinding = new JaxbBinding(WebHookTemplates.class);
+	private final JaxbBinding templateEntityBinding = new JaxbBinding(WebHookTemplateEntity.class);
+
 	@Override
 	public WebHookTemplateEntity readTemplate(String configFilePath) throws JAXBException, FileNotFoundException {
-		JAXBContext context = JAXBContext.newInstance(WebHookTemplates.class);
-		Unmarshaller um = context.createUnmarshaller();
 		File file = new File(configFilePath);
 		if (!file.isFile()) {
 			throw new FileNotFoundException("File was not a file");
 		}
-		return (WebHookTemplateEntity) um.unmarshal(file);
+		Unmarshaller um = this.templatesBinding.borrowUnmarshaller();
+		try {
+			return (WebHookTemplateEntity) um.unmarshal(file);
+		} finally {
+			this.templatesBinding.release(um);
+		}
 	}
 
 	@Override
 	public WebHookTemplateEntity readTemplate(InputStream stream) throws JAXBException {
-		JAXBContext context = JAXBContext.newInstance(WebHookTemplates.class);
-		Unmarshaller um = context.createUnmarshaller();
-		return (WebHookTemplateEntity) um.unmarshal(stream);
+		Unmarshaller um = this.templatesBinding.borrowUnmarshaller();
+		try {
+			return (WebHookTemplateEntity) um.unmarshal(stream);
+		} finally {
+			this.templatesBinding.release(um);
+		}
 	}
 
 	@Override
 	public void writeTemplate(WebHookTemplateEntity template, String configFilePath) throws JAXBException {
-		JAXBContext context = JAXBContext.newInstance(WebHookTemplateEntity.class);
-		Marshaller m = context.createMarshaller();
-		m.setProperty(Marshaller.JAXB_FORMATTED_OUTPUT, Boolean.TRUE);
-		m.marshal(template, new File(configFilePath));
-		
+		write(this.templateEntityBinding, template, configFilePath);
 	}
-	
+
 	@Override
 	@Nullable
 	public WebHookTemplates readTemplates(@NotNull String configFilePath)
 			throws JAXBException, FileNotFoundException {
-		JAXBContext context = JAXBContext.newInstance(WebHookTemplates.class);
-		Unmarshaller um = context.createUnmarshaller();
 		File file = new File(configFilePath);
 		if (!file.isFile()) {
 			return new WebHookTemplates();
 		}
-		return (WebHookTemplates) um.unmarshal(file);
+		Unmarshaller um = this.templatesBinding.borrowUnmarshaller();
+		try {
+			return (WebHookTemplates) um.unmarshal(file);
+		} finally {
+			this.templatesBinding.release(um);
+		}
 	}
 
 	@Override
 	@NotNull
 	public WebHookTemplates readTemplates(@NotNull InputStream stream)
 			throws JAXBException {
-		JAXBContext context = JAXBContext.newInstance(WebHookTemplates.class);
-		Unmarshaller um = context.createUnmarshaller();
-		return (WebHookTemplates) um.unmarshal(stream);
+		Unmarshaller um = this.templatesBinding.borrowUnmarshaller();
+		try {
+			return (WebHookTemplates) um.unmarshal(stream);
+		} finally {
+			this.templatesBinding.release(um);
+		}
 	}
 
 	@Override
 	public void writeTemplates(@NotNull WebHookTemplates templates,
 			@NotNull String configFilePath) throws JAXBException {
-		
-		JAXBContext context = JAXBContext.newInstance(WebHookTemplates.class);
-		Marshaller m = context.createMarshaller();
-		m.setProperty(Marshaller.JAXB_FORMATTED_OUTPUT, Boolean.TRUE);
-		m.marshal(templates, new File(configFilePath));
+		write(this.templatesBinding, templates, configFilePath);
+	}
+
+	/**
+	 * Discards the JAXB contexts and the pooled marshallers and unmarshallers.
+	 * Called by Spring when the plugin is unloaded.
+	 */
+	public void shutdown() {
+		this.templatesBinding.clear();
+		this.templateEntityBinding.clear();
+	}
+
+	private static void write(JaxbBinding binding, Object jaxbElement, String configFilePath) throws JAXBException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		Marshaller m = binding.borrowMarshaller();
+		try {
+			m.marshal(jaxbElement, out);
+		} finally {
+			binding.release(m);
+		}
+		byte[] content = out.toByteArray();
+		File file = new File(configFilePath).getAbsoluteFile();
+		File tempFile = new File(file.getParentFile(), file.getName() + TEMP_FILE_SUFFIX);
+		try {
+			if (file.isFile() && Arrays.equals(content, Files.readAllBytes(file.toPath()))) {
+				Loggers.SERVER.debug(CLASS_NAME + "Templates are unchanged. Not writing " + file.getPath());
+				return;
+			}
+			Files.write(tempFile.toPath(), content);
+			try {
+				Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE);
+			} catch (AtomicMoveNotSupportedException e) {
+				Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+			}
+		} catch (IOException e) {
+			throw new JAXBException("Unable to write templates to " + file.getPath() + " :: " + e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * A shared {@link JAXBContext} for a class, and a pool of its idle marshallers and unmarshallers.
+	 * At most {@link #MAX_POOLED} of each are kept. Any more in use at once are discarded when released.
+	 */
+	private static final class JaxbBinding {
+		private final Class<?> boundClass;
+		private final Queue<Marshaller> marshallers = new ConcurrentLinkedQueue<>();
+		private final Queue<Unmarshaller> unmarshallers = new ConcurrentLinkedQueue<>();
+		private volatile JAXBContext context;
+
+		JaxbBinding(Class<?> boundClass) {
+			this.boundClass = boundClass;
+		}
+
+		private JAXBContext getContext() throws JAXBException {
+			JAXBContext jaxbContext = this.context;
+			if (jaxbContext == null) {
+				synchronized (this) {
+					jaxbContext = this.context;
+					if (jaxbContext == null) {
+						jaxbContext = JAXBContext.newInstance(this.boundClass);
+						this.context = jaxbContext;
+					}
+				}
+			}
+			return jaxbContext;
+		}
+
+		Marshaller borrowMarshaller() throws JAXBException {
+			Marshaller m = this.marshallers.poll();
+			if (m == null) {
+				m = getContext().createMarshaller();
+				m.setProperty(Marshaller.JAXB_FORMATTED_OUTPUT, Boolean.TRUE);
+			}
+			return m;
+		}
+
+		Unmarshaller borrowUnmarshaller() throws JAXBException {
+			Unmarshaller um = this.unmarshallers.poll();
+			if (um == null) {
+				um = getContext().createUnmarshaller();
+			}
+			return um;
+		}
+
+		void release(Marshaller m) {
+			if (this.marshallers.size() < MAX_POOLED) {
+				this.marshallers.offer(m);
+			}
+		}
+
+		void release(Unmarshaller um) {
+			if (this.unmarshallers.size() < MAX_POOLED) {
+				this.unmarshallers.offer(um);
+			}
+		}
+
+		void clear() {
+			this.marshallers.clear();
+			this.unmarshallers.clear();
+			synchronized (this) {
+				this.context = null;
+			}
+		}
 	}
 
 }
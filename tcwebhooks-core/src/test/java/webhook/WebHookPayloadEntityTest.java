@@ -0,0 +1,62 @@
+package webhook;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import org.apache.http.entity.StringEntity;
+import org.apache.http.util.EntityUtils;
+import org.junit.Test;
+
+public class WebHookPayloadEntityTest {
+
+	@Test
+	public void testUtf8PayloadIsSentAsStringEntityWouldSendIt() throws IOException {
+		assertSameAsStringEntity("{ \"text\" : \"Build \u00e9t\u00e9 \u2713 \ud83d\ude00 finished\" }", "application/json", "UTF-8");
+	}
+
+	@Test
+	public void testUnpairedSurrogatesAreReplacedAsStringEntityWouldReplaceThem() throws IOException {
+		assertSameAsStringEntity("broken \ud83d surrogate \ude00 here", "application/json", "UTF-8");
+	}
+
+	@Test
+	public void testUnmappableCharactersAreReplacedAsStringEntityWouldReplaceThem() throws IOException {
+		assertSameAsStringEntity("caf\u00e9 \u2713 \ud83d\ude00", "text/plain", "ISO-8859-1");
+	}
+
+	@Test
+	public void testPayloadLargerThanTheBufferIsSentInFull() throws IOException {
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < 20000; i++) {
+			sb.append("change-").append(i).append(" \u00e9\ud83d\ude00, ");
+		}
+		assertSameAsStringEntity(sb.toString(), "application/json", "UTF-8");
+		assertSameAsStringEntity(sb.toString(), "application/json", "UTF-16");
+	}
+
+	@Test
+	public void testEntityIsRepeatable() throws IOException {
+		WebHookPayloadEntity entity = new WebHookPayloadEntity("{ \"buildName\" : \"My Build\" }", "application/json", "UTF-8");
+		assertTrue(entity.isRepeatable());
+		assertEquals(EntityUtils.toString(entity), EntityUtils.toString(entity));
+	}
+
+	private static void assertSameAsStringEntity(String payload, String mimeType, String charset) throws IOException {
+		@SuppressWarnings("deprecation")
+		StringEntity expected = new StringEntity(payload, mimeType, charset);
+		WebHookPayloadEntity actual = new WebHookPayloadEntity(payload, mimeType, charset);
+
+		assertEquals(expected.getContentType().getValue(), actual.getContentType().getValue());
+		assertEquals(expected.getContentLength(), actual.getContentLength());
+
+		ByteArrayOutputStream written = new ByteArrayOutputStream();
+		actual.writeTo(written);
+		assertArrayEquals(EntityUtils.toByteArray(expected), written.toByteArray());
+		assertArrayEquals(EntityUtils.toByteArray(expected), EntityUtils.toByteArray(actual));
+	}
+
+}
@@ -5,11 +5,17 @@ import static org.junit.Assert.assertTrue;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.net.ConnectException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import javax.servlet.http.HttpServletResponse;
 
 import org.apache.http.HttpStatus;
+import org.apache.http.concurrent.FutureCallback;
 import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
+import org.apache.http.impl.nio.client.HttpAsyncClients;
 import org.junit.Test;
 
 import webhook.teamcity.BuildStateEnum;
@@ -203,6 +209,38 @@ public class WebHookTest{
 		assertTrue(w.getStatus() == HttpStatus.SC_OK);
 	}
 
+	@Test
+	public void test_200Async() throws Exception {
+		WebHookTestServer s = startWebServer();
+		CloseableHttpAsyncClient asyncClient = HttpAsyncClients.createDefault();
+		asyncClient.start();
+		final CountDownLatch latch = new CountDownLatch(1);
+		final AtomicBoolean completed = new AtomicBoolean(false);
+		WebHook w = factory.getWebHook(url + "/200");
+		w.setEnabled(true);
+		w.postAsync(asyncClient, new FutureCallback<WebHook>() {
+			@Override
+			public void completed(WebHook result) {
+				completed.set(true);
+				latch.countDown();
+			}
+			@Override
+			public void failed(Exception ex) {
+				latch.countDown();
+			}
+			@Override
+			public void cancelled() {
+				latch.countDown();
+			}
+		});
+		assertTrue(latch.await(10, TimeUnit.SECONDS));
+		asyncClient.close();
+		stopWebServer(s);
+		assertTrue(completed.get());
+		assertTrue(w.getStatus() == HttpStatus.SC_OK);
+		assertTrue(w.getExecutionStats().getTotalExecutionTime() >= 0);
+	}
+
 	@Test
 	public void test_200WithProxyFailAuth() throws FileNotFoundException, IOException, InterruptedException {
 		WebHookTestServer s = startWebServer();
@@ -7,12 +7,17 @@ import org.apache.http.client.HttpClient;
 import org.apache.http.client.methods.CloseableHttpResponse;
 import org.apache.http.client.methods.HttpUriRequest;
 import org.apache.http.impl.client.DefaultHttpClient;
+import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
+import org.apache.http.impl.nio.client.HttpAsyncClients;
+import org.apache.http.nio.client.HttpAsyncClient;
+import org.apache.http.pool.PoolStats;
 import org.apache.http.protocol.HttpContext;
 
 public class TestingWebHookHttpClientFactoryImpl implements WebHookHttpClientFactory {
 	
 	
 	TestableHttpClient httpClient;
+	CloseableHttpAsyncClient asyncHttpClient;
 	
 	public TestingWebHookHttpClientFactoryImpl(TestableHttpClient client) {
 		this.httpClient = client;
@@ -23,6 +28,20 @@ public class TestingWebHookHttpClientFactoryImpl implements WebHookHttpClientFac
 		return httpClient;
 	}
 	
+	@Override
+	public synchronized HttpAsyncClient getAsyncHttpClient() {
+		if (asyncHttpClient == null) {
+			asyncHttpClient = HttpAsyncClients.createDefault();
+			asyncHttpClient.start();
+		}
+		return asyncHttpClient;
+	}
+	
+	@Override
+	public PoolStats getPoolStats() {
+		return new PoolStats(0, 0, 0, 0);
+	}
+	
 	public interface InvocationCountable {
 		public abstract int getInvocationCount();
 	}
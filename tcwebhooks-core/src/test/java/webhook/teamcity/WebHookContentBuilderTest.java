@@ -1,12 +1,18 @@
 package webhook.teamcity;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNull;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.TreeMap;
 
 import org.junit.Before;
 import org.junit.Test;
@@ -18,10 +24,16 @@ import jetbrains.buildServer.serverSide.SBuildServer;
 import jetbrains.buildServer.serverSide.SFinishedBuild;
 import webhook.TestingWebHookFactory;
 import webhook.WebHook;
+import webhook.teamcity.payload.PayloadTemplateEngineType;
+import webhook.teamcity.payload.WebHookPayload;
+import webhook.teamcity.payload.WebHookPayloadDefaultTemplates;
+import webhook.teamcity.payload.WebHookTemplateResolver;
 import webhook.teamcity.payload.variableresolver.VariableResolverFactory;
 import webhook.teamcity.payload.variableresolver.WebHookVariableResolverManager;
 import webhook.teamcity.payload.variableresolver.WebHookVariableResolverManagerImpl;
 import webhook.teamcity.payload.variableresolver.standard.WebHooksBeanUtilsVariableResolverFactory;
+import webhook.teamcity.settings.WebHookConfig;
+import webhook.teamcity.settings.WebHookFilterConfig;
 import webhook.teamcity.settings.entity.WebHookTemplateJaxHelper;
 
 public class WebHookContentBuilderTest {
@@ -131,5 +143,58 @@ public class WebHookContentBuilderTest {
 		assertNull(wh.getPreviousNonPersonalBuild());
 		
 	}
+	
+	@Test
+	public void testPayloadIsNotRenderedWhenFiltersDoNotMatch() {
+		WebHookPayload payloadFormat = mockPayloadFormat();
+		WebHook wh = factory.getWebHook();
+		wh.setBuildStates(new BuildState().setAllEnabled());
+		wh.addFilter(WebHookFilterConfig.create("${buildNumber}", "^master-.+$", true));
+		
+		WebHookContentBuilder builder = new WebHookContentBuilder(server, mockTemplateResolver(payloadFormat), resolverManager);
+		builder.buildWebHookContent(wh, mockWebHookConfig(), sRunningBuild, BuildStateEnum.BUILD_STARTED, null, null, false);
+		
+		assertFalse(wh.isEnabled());
+		assertNull(wh.getPayload());
+		verify(payloadFormat, never()).buildStarted(any(), any(), any(), any(), any());
+	}
+	
+	@Test
+	public void testPayloadIsRenderedForRequestedWebHookWhenFiltersDoNotMatch() {
+		WebHookPayload payloadFormat = mockPayloadFormat();
+		WebHook wh = factory.getWebHook();
+		wh.setBuildStates(new BuildState().setAllEnabled());
+		wh.addFilter(WebHookFilterConfig.create("${buildNumber}", "^master-.+$", true));
+		
+		WebHookContentBuilder builder = new WebHookContentBuilder(server, mockTemplateResolver(payloadFormat), resolverManager);
+		builder.buildWebHookContent(wh, mockWebHookConfig(), sRunningBuild, BuildStateEnum.BUILD_STARTED, null, null, true);
+		
+		assertEquals("rendered", wh.getPayload());
+		verify(payloadFormat, times(1)).buildStarted(any(), any(), any(), any(), any());
+	}
+	
+	private WebHookPayload mockPayloadFormat() {
+		WebHookPayload payloadFormat = mock(WebHookPayload.class);
+		when(payloadFormat.getTemplateEngineType()).thenReturn(PayloadTemplateEngineType.STANDARD);
+		when(payloadFormat.buildStarted(any(), any(), any(), any(), any())).thenReturn("rendered");
+		when(server.getRootUrl()).thenReturn("http://test.server");
+		return payloadFormat;
+	}
+	
+	private WebHookTemplateResolver mockTemplateResolver(WebHookPayload payloadFormat) {
+		WebHookTemplateResolver templateResolver = mock(WebHookTemplateResolver.class);
+		when(templateResolver.getTemplatePayloadFormat("testTemplate")).thenReturn(payloadFormat);
+		return templateResolver;
+	}
+	
+	private WebHookConfig mockWebHookConfig() {
+		WebHookConfig whc = mock(WebHookConfig.class);
+		when(whc.getPayloadTemplate()).thenReturn("testTemplate");
+		when(whc.getUrl()).thenReturn("http://localhost/hook");
+		when(whc.getParams()).thenReturn(new TreeMap<>());
+		when(whc.getEnabledTemplates()).thenReturn(WebHookPayloadDefaultTemplates.getDefaultEnabledPayloadTemplates());
+		when(whc.isEnabledForBuildType(sBuildType)).thenReturn(true);
+		return whc;
+	}
 
 }
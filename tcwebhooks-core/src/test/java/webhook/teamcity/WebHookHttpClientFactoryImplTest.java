@@ -0,0 +1,134 @@
+package webhook.teamcity;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+
+import java.util.concurrent.Future;
+
+import org.apache.http.HttpResponse;
+import org.apache.http.client.HttpClient;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.conn.ConnectionPoolTimeoutException;
+import org.apache.http.nio.client.HttpAsyncClient;
+import org.apache.http.util.EntityUtils;
+import org.junit.After;
+import org.junit.Test;
+
+import jetbrains.buildServer.serverSide.SBuildServer;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import webhook.teamcity.settings.WebHookMainSettings;
+
+public class WebHookHttpClientFactoryImplTest {
+	
+	WebHookMainSettings mainSettings = new WebHookMainSettings(mock(SBuildServer.class));
+	WebHookHttpClientFactoryImpl factory = new WebHookHttpClientFactoryImpl(mainSettings);
+	
+	@After
+	public void tearDown() {
+		factory.shutdown();
+	}
+
+	@Test
+	public void testSameClientIsReturnedForEveryWebHook() {
+		HttpClient client1 = factory.getHttpClient();
+		HttpClient client2 = factory.getHttpClient();
+		assertSame(client1, client2);
+	}
+	
+	@Test
+	public void testPoolStatsReflectConfiguredLimits() {
+		assertEquals(100, factory.getPoolStats().getMax());
+		mainSettings.getWebHookMainConfig().setHttpConnectionPoolMaxTotal(25);
+		factory.getHttpClient();
+		assertEquals(25, factory.getPoolStats().getMax());
+		assertEquals(0, factory.getPoolStats().getLeased());
+	}
+	
+	@Test
+	public void testAsyncPoolLimitsAreReapplied() {
+		factory.getAsyncHttpClient();
+		assertEquals(100, factory.getAsyncPoolStats().getMax());
+		mainSettings.getWebHookMainConfig().setHttpConnectionPoolMaxTotal(25);
+		assertSame(factory.getAsyncHttpClient(), factory.getAsyncHttpClient());
+		assertEquals(25, factory.getAsyncPoolStats().getMax());
+	}
+	
+	@Test
+	public void testLeasingFromAnExhaustedRouteTimesOut() throws Exception {
+		mainSettings.getWebHookMainConfig().setHttpConnectionPoolMaxPerRoute(1);
+		mainSettings.getWebHookMainConfig().setHttpConnectionPoolLeaseTimeout(1);
+		MockWebServer server = new MockWebServer();
+		server.enqueue(new MockResponse().setBody("first"));
+		server.enqueue(new MockResponse().setBody("second"));
+		server.start();
+		try {
+			HttpClient client = factory.getHttpClient();
+			// Not consumed, so the route's only connection stays leased.
+			HttpResponse held = client.execute(new HttpGet(server.url("/webhook1").toString()));
+			long start = System.currentTimeMillis();
+			try {
+				client.execute(new HttpGet(server.url("/webhook2").toString()));
+				fail("Expected the connection lease to time out");
+			} catch (ConnectionPoolTimeoutException ex) {
+				assertTrue(System.currentTimeMillis() - start < 5000L);
+			}
+			EntityUtils.consume(held.getEntity());
+		} finally {
+			server.shutdown();
+		}
+	}
+	
+	@Test
+	public void testMockedSettingsFallBackToDefaults() {
+		WebHookHttpClientFactoryImpl mockedFactory = new WebHookHttpClientFactoryImpl(mock(WebHookMainSettings.class));
+		mockedFactory.getHttpClient();
+		assertEquals(100, mockedFactory.getPoolStats().getMax());
+		mockedFactory.shutdown();
+	}
+
+	@Test
+	public void testCookiesAreNotSharedBetweenWebHooksToTheSameHost() throws Exception {
+		MockWebServer server = new MockWebServer();
+		server.enqueue(new MockResponse().addHeader("Set-Cookie", "session=webhook1; Path=/").setBody("first"));
+		server.enqueue(new MockResponse().setBody("second"));
+		server.start();
+		try {
+			HttpClient client = factory.getHttpClient();
+			HttpResponse response = client.execute(new HttpGet(server.url("/webhook1").toString()));
+			EntityUtils.consume(response.getEntity());
+			response = client.execute(new HttpGet(server.url("/webhook2").toString()));
+			EntityUtils.consume(response.getEntity());
+			
+			server.takeRequest();
+			assertNull(server.takeRequest().getHeader("Cookie"));
+		} finally {
+			server.shutdown();
+		}
+	}
+	
+	@Test
+	public void testCookiesAreNotSharedBetweenAsyncWebHooksToTheSameHost() throws Exception {
+		MockWebServer server = new MockWebServer();
+		server.enqueue(new MockResponse().addHeader("Set-Cookie", "session=webhook1; Path=/").setBody("first"));
+		server.enqueue(new MockResponse().setBody("second"));
+		server.start();
+		try {
+			HttpAsyncClient client = factory.getAsyncHttpClient();
+			Future<HttpResponse> response = client.execute(new HttpGet(server.url("/webhook1").toString()), null);
+			EntityUtils.consume(response.get().getEntity());
+			response = client.execute(new HttpGet(server.url("/webhook2").toString()), null);
+			EntityUtils.consume(response.get().getEntity());
+			
+			server.takeRequest();
+			assertNull(server.takeRequest().getHeader("Cookie"));
+		} finally {
+			server.shutdown();
+		}
+	}
+
+}
@@ -0,0 +1,190 @@
+package webhook.teamcity.circuitbreaker;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import jetbrains.buildServer.serverSide.SBuildServer;
+import webhook.teamcity.WebHookCircuitOpenException;
+import webhook.teamcity.WebHookHttpExecutionException;
+import webhook.teamcity.WebHookHttpResponseException;
+import webhook.teamcity.history.WebAddressTransformerImpl;
+import webhook.teamcity.settings.WebHookMainSettings;
+
+public class WebHookCircuitBreakerRegistryImplTest {
+
+	private static final String URL = "http://hooks.example.com/build";
+	private static final String OTHER_URL = "http://other.example.org/build";
+
+	WebHookMainSettings mainSettings;
+	TestRegistry registry;
+
+	@Before
+	public void setup() {
+		mainSettings = new WebHookMainSettings(mock(SBuildServer.class));
+		mainSettings.getWebHookMainConfig().setCircuitBreakerWindowSize(4);
+		mainSettings.getWebHookMainConfig().setCircuitBreakerMinimumCalls(4);
+		mainSettings.getWebHookMainConfig().setCircuitBreakerFailureRate(50);
+		mainSettings.getWebHookMainConfig().setCircuitBreakerOpenDuration(60);
+		registry = new TestRegistry(mainSettings);
+	}
+
+	@Test
+	public void testBreakerOpensWhenFailureRateIsReached() {
+		send(URL, null);
+		send(URL, null);
+		send(URL, serverError());
+		assertEquals(WebHookCircuitState.CLOSED, getStatus(URL).getState());
+		send(URL, serverError());
+		assertEquals(WebHookCircuitState.OPEN, getStatus(URL).getState());
+		assertOpen(URL, 60000L);
+	}
+
+	@Test
+	public void testBreakerStaysClosedBelowMinimumCalls() {
+		send(URL, serverError());
+		send(URL, serverError());
+		send(URL, serverError());
+		assertEquals(WebHookCircuitState.CLOSED, getStatus(URL).getState());
+		assertEquals(100, getStatus(URL).getFailureRate());
+	}
+
+	@Test
+	public void testClientErrorsDoNotCountAsFailures() {
+		for (int i = 0; i < 4; i++) {
+			send(URL, new WebHookHttpResponseException("Not Found", 404));
+		}
+		assertEquals(WebHookCircuitState.CLOSED, getStatus(URL).getState());
+		assertEquals(0, getStatus(URL).getFailureRate());
+	}
+
+	@Test
+	public void testSlowCallsOpenBreaker() {
+		mainSettings.getWebHookMainConfig().setCircuitBreakerSlowCallDuration(1);
+		mainSettings.getWebHookMainConfig().setCircuitBreakerSlowCallRate(75);
+		for (int i = 0; i < 4; i++) {
+			long permit = registry.acquirePermission(URL);
+			registry.recordOutcome(URL, permit, null, 2000L);
+		}
+		assertEquals(WebHookCircuitState.OPEN, getStatus(URL).getState());
+	}
+
+	@Test
+	public void testBreakersAreKeptPerHost() {
+		openBreaker(URL);
+		registry.acquirePermission(OTHER_URL);
+		assertEquals(WebHookCircuitState.OPEN, getStatus(URL).getState());
+		assertEquals(2, registry.getStatuses().size());
+	}
+
+	@Test
+	public void testHalfOpenAllowsSingleTrialWhichClosesOnSuccess() {
+		openBreaker(URL);
+		registry.now += 60000L;
+		long trial = registry.acquirePermission(URL);
+		assertEquals(WebHookCircuitState.HALF_OPEN, getStatus(URL).getState());
+		assertOpen(URL, 60000L);
+		registry.recordOutcome(URL, trial, null, 10L);
+		assertEquals(WebHookCircuitState.CLOSED, getStatus(URL).getState());
+		registry.acquirePermission(URL);
+	}
+
+	@Test
+	public void testFailedTrialReopensBreaker() {
+		openBreaker(URL);
+		registry.now += 60000L;
+		long trial = registry.acquirePermission(URL);
+		registry.recordOutcome(URL, trial, new WebHookHttpExecutionException("Connection refused"), 10L);
+		assertEquals(WebHookCircuitState.OPEN, getStatus(URL).getState());
+		assertOpen(URL, 60000L);
+	}
+
+	@Test
+	public void testOnlyTheTrialDecidesHalfOpenBreaker() {
+		// Sent before the breaker opened, and still in flight.
+		long stale = registry.acquirePermission(URL);
+		openBreaker(URL);
+		registry.now += 60000L;
+		long trial = registry.acquirePermission(URL);
+		registry.recordOutcome(URL, stale, null, 10L);
+		assertEquals(WebHookCircuitState.HALF_OPEN, getStatus(URL).getState());
+		registry.recordOutcome(URL, trial, serverError(), 10L);
+		assertEquals(WebHookCircuitState.OPEN, getStatus(URL).getState());
+	}
+
+	@Test
+	public void testReplacedTrialDoesNotDecideHalfOpenBreaker() {
+		openBreaker(URL);
+		registry.now += 60000L;
+		long lostTrial = registry.acquirePermission(URL);
+		registry.now += 60000L;
+		long trial = registry.acquirePermission(URL);
+		registry.recordOutcome(URL, lostTrial, serverError(), 10L);
+		assertEquals(WebHookCircuitState.HALF_OPEN, getStatus(URL).getState());
+		registry.recordOutcome(URL, trial, null, 10L);
+		assertEquals(WebHookCircuitState.CLOSED, getStatus(URL).getState());
+	}
+
+	@Test
+	public void testResetClosesBreaker() {
+		openBreaker(URL);
+		String hash = getStatus(URL).getHash();
+		assertEquals(WebHookCircuitState.CLOSED, registry.reset(hash).getState());
+		registry.acquirePermission(URL);
+		assertNull(registry.reset("unknown"));
+	}
+
+	@Test
+	public void testDisabledBreakerNeverOpens() {
+		mainSettings.getWebHookMainConfig().setCircuitBreakerEnabled(false);
+		openBreaker(URL);
+		registry.acquirePermission(URL);
+		assertEquals(0, registry.getStatuses().size());
+	}
+
+	private void openBreaker(String url) {
+		for (int i = 0; i < 4; i++) {
+			send(url, serverError());
+		}
+	}
+
+	private void send(String url, Exception failure) {
+		long permit = registry.acquirePermission(url);
+		registry.recordOutcome(url, permit, failure, 10L);
+	}
+
+	private void assertOpen(String url, long expectedRetryAfter) {
+		try {
+			registry.acquirePermission(url);
+			fail("Expected the circuit breaker to be open");
+		} catch (WebHookCircuitOpenException ex) {
+			assertEquals(expectedRetryAfter, ex.getRetryAfterMillis());
+		}
+	}
+
+	private WebHookCircuitBreakerStatus getStatus(String url) {
+		return registry.getStatus(new WebAddressTransformerImpl().getGeneralisedHostName(url).getHashedGeneralisedAddress());
+	}
+
+	private static WebHookHttpResponseException serverError() {
+		return new WebHookHttpResponseException("Service Unavailable", 503);
+	}
+
+	private static class TestRegistry extends WebHookCircuitBreakerRegistryImpl {
+		long now = 1000000L;
+
+		TestRegistry(WebHookMainSettings mainSettings) {
+			super(mainSettings, new WebAddressTransformerImpl());
+		}
+
+		@Override
+		protected long currentTimeMillis() {
+			return now;
+		}
+	}
+
+}
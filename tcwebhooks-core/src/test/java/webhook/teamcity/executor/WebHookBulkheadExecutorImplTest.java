@@ -0,0 +1,275 @@
+package webhook.teamcity.executor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.http.nio.client.HttpAsyncClient;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import jetbrains.buildServer.serverSide.SBuildServer;
+import webhook.teamcity.history.WebHookHistoryItem;
+import webhook.teamcity.settings.WebHookMainSettings;
+
+public class WebHookBulkheadExecutorImplTest {
+	
+	WebHookMainSettings mainSettings;
+	WebHookBulkheadExecutorImpl executor;
+	
+	@Before
+	public void setup() {
+		mainSettings = new WebHookMainSettings(mock(SBuildServer.class));
+		mainSettings.getWebHookMainConfig().setExecutorThreadCount(4);
+		mainSettings.getWebHookMainConfig().setExecutorMaxPerHost(1);
+		mainSettings.getWebHookMainConfig().setExecutorQueueSize(2);
+		executor = new WebHookBulkheadExecutorImpl(mainSettings);
+	}
+	
+	@After
+	public void tearDown() {
+		executor.shutdown();
+	}
+
+	@Test
+	public void testRunnersForSameHostDoNotRunConcurrently() throws InterruptedException {
+		final AtomicInteger concurrent = new AtomicInteger();
+		final AtomicInteger maxConcurrent = new AtomicInteger();
+		final CountDownLatch finished = new CountDownLatch(2);
+		for (int i = 0; i < 2; i++) {
+			executor.execute("example.com", new TestRunner(() -> {
+				maxConcurrent.accumulateAndGet(concurrent.incrementAndGet(), Math::max);
+				sleep(100);
+				concurrent.decrementAndGet();
+				finished.countDown();
+			}));
+		}
+		assertTrue(finished.await(5, TimeUnit.SECONDS));
+		assertEquals(1, maxConcurrent.get());
+	}
+	
+	@Test
+	public void testBlockedHostDoesNotBlockOtherHosts() throws InterruptedException {
+		final CountDownLatch release = new CountDownLatch(1);
+		final CountDownLatch otherHostRan = new CountDownLatch(1);
+		executor.execute("dead.example.com", new TestRunner(() -> await(release)));
+		executor.execute("dead.example.com", new TestRunner(() -> await(release)));
+		executor.execute("alive.example.com", new TestRunner(otherHostRan::countDown));
+		assertTrue(otherHostRan.await(5, TimeUnit.SECONDS));
+		release.countDown();
+	}
+	
+	@Test
+	public void testFullHostQueueDoesNotOverflowOtherHosts() throws InterruptedException {
+		mainSettings.getWebHookMainConfig().setExecutorQueueSize(10);
+		mainSettings.getWebHookMainConfig().setExecutorMaxWaitingPerHost(2);
+		mainSettings.getWebHookMainConfig().setExecutorOverflowPolicy(WebHookOverflowPolicy.DROP_NEWEST);
+		final CountDownLatch release = new CountDownLatch(1);
+		executor.execute("dead.example.com", new TestRunner(() -> await(release)));
+		Thread.sleep(100);
+		WebHookRunner queued1 = mock(WebHookRunner.class);
+		WebHookRunner queued2 = mock(WebHookRunner.class);
+		WebHookRunner overflow = mock(WebHookRunner.class);
+		executor.execute("dead.example.com", queued1);
+		executor.execute("dead.example.com", queued2);
+		executor.execute("dead.example.com", overflow);
+		verify(overflow).recordRejection(anyString());
+		verify(queued1, never()).recordRejection(anyString());
+		assertEquals(2, executor.getPendingCount());
+		
+		final CountDownLatch otherHostRan = new CountDownLatch(3);
+		for (int i = 0; i < 3; i++) {
+			executor.execute("alive.example.com", new TestRunner(otherHostRan::countDown));
+		}
+		assertTrue(otherHostRan.await(5, TimeUnit.SECONDS));
+		release.countDown();
+	}
+	
+	@Test
+	public void testSpillingFullHostQueueDoesNotSpillOtherHosts() throws InterruptedException {
+		WebHookJournalRunnerFactory journalRunnerFactory = mock(WebHookJournalRunnerFactory.class);
+		JournalReplayWebHookRunner replayRunner = mock(JournalReplayWebHookRunner.class);
+		when(journalRunnerFactory.getRunner(42L, 1)).thenReturn(replayRunner);
+		mainSettings.getWebHookMainConfig().setExecutorQueueSize(10);
+		mainSettings.getWebHookMainConfig().setExecutorMaxWaitingPerHost(1);
+		mainSettings.getWebHookMainConfig().setExecutorOverflowPolicy(WebHookOverflowPolicy.SPILL_TO_DISK);
+		
+		final CountDownLatch release = new CountDownLatch(1);
+		executor.execute("dead.example.com", new TestRunner(() -> await(release)));
+		Thread.sleep(100);
+		executor.execute("dead.example.com", mock(WebHookRunner.class));
+		WebHookRunner overflow = mock(WebHookRunner.class);
+		when(overflow.spill()).thenReturn(new DeferredWebHookRunner(journalRunnerFactory, 42L, null, 1));
+		executor.execute("dead.example.com", overflow);
+		verify(overflow, timeout(5000)).spill();
+		
+		final CountDownLatch otherHostRan = new CountDownLatch(1);
+		WebHookRunner otherHost = new TestRunner(otherHostRan::countDown);
+		executor.execute("alive.example.com", otherHost);
+		assertTrue(otherHostRan.await(5, TimeUnit.SECONDS));
+		assertEquals(1, executor.getSpilledCount());
+		
+		release.countDown();
+		verify(replayRunner, timeout(5000)).run();
+		assertEquals(0, executor.getSpilledCount());
+	}
+	
+	@Test
+	public void testDropNewestRejectsIncomingRunnerWhenQueueIsFull() throws InterruptedException {
+		mainSettings.getWebHookMainConfig().setExecutorOverflowPolicy(WebHookOverflowPolicy.DROP_NEWEST);
+		final CountDownLatch release = new CountDownLatch(1);
+		executor.execute("example.com", new TestRunner(() -> await(release)));
+		Thread.sleep(100);
+		WebHookRunner queued1 = mock(WebHookRunner.class);
+		WebHookRunner queued2 = mock(WebHookRunner.class);
+		WebHookRunner overflow = mock(WebHookRunner.class);
+		executor.execute("example.com", queued1);
+		executor.execute("example.com", queued2);
+		executor.execute("example.com", overflow);
+		verify(overflow).recordRejection(anyString());
+		verify(queued1, never()).recordRejection(anyString());
+		assertEquals(2, executor.getPendingCount());
+		release.countDown();
+	}
+	
+	@Test
+	public void testDropOldestRejectsOldestQueuedRunnerWhenQueueIsFull() throws InterruptedException {
+		mainSettings.getWebHookMainConfig().setExecutorOverflowPolicy(WebHookOverflowPolicy.DROP_OLDEST);
+		final CountDownLatch release = new CountDownLatch(1);
+		executor.execute("example.com", new TestRunner(() -> await(release)));
+		Thread.sleep(100);
+		WebHookRunner queued1 = mock(WebHookRunner.class);
+		WebHookRunner queued2 = mock(WebHookRunner.class);
+		WebHookRunner newest = mock(WebHookRunner.class);
+		executor.execute("example.com", queued1);
+		executor.execute("example.com", queued2);
+		executor.execute("example.com", newest);
+		verify(queued1).recordRejection(anyString());
+		verify(newest, never()).recordRejection(anyString());
+		assertEquals(2, executor.getPendingCount());
+		release.countDown();
+	}
+	
+	@Test
+	public void testSpillToDiskJournalsOverflowAndReplaysItWhenQueueDrains() throws InterruptedException {
+		WebHookJournalRunnerFactory journalRunnerFactory = mock(WebHookJournalRunnerFactory.class);
+		JournalReplayWebHookRunner replayRunner = mock(JournalReplayWebHookRunner.class);
+		when(journalRunnerFactory.getRunner(42L, 1)).thenReturn(replayRunner);
+		mainSettings.getWebHookMainConfig().setExecutorOverflowPolicy(WebHookOverflowPolicy.SPILL_TO_DISK);
+		
+		final CountDownLatch release = new CountDownLatch(1);
+		final CountDownLatch finished = new CountDownLatch(2);
+		executor.execute("example.com", new TestRunner(() -> await(release)));
+		Thread.sleep(100);
+		executor.execute("example.com", new TestRunner(finished::countDown));
+		executor.execute("example.com", new TestRunner(finished::countDown));
+		WebHookRunner overflow = mock(WebHookRunner.class);
+		when(overflow.spill()).thenReturn(new DeferredWebHookRunner(journalRunnerFactory, 42L, null, 1));
+		executor.execute("example.com", overflow);
+		
+		verify(overflow, timeout(5000)).spill();
+		verify(overflow, never()).run();
+		verify(overflow, never()).recordRejection(anyString());
+		assertEquals(1, executor.getSpilledCount());
+		
+		release.countDown();
+		assertTrue(finished.await(5, TimeUnit.SECONDS));
+		verify(replayRunner, timeout(5000)).run();
+		assertEquals(0, executor.getSpilledCount());
+	}
+	
+	@Test
+	public void testSpillingHappensOffTheCallersThread() throws InterruptedException {
+		mainSettings.getWebHookMainConfig().setExecutorOverflowPolicy(WebHookOverflowPolicy.SPILL_TO_DISK);
+		final CountDownLatch release = new CountDownLatch(1);
+		final CountDownLatch spilled = new CountDownLatch(1);
+		final AtomicReference<Thread> spillThread = new AtomicReference<>();
+		executor.execute("example.com", new TestRunner(() -> await(release)));
+		Thread.sleep(100);
+		executor.execute("example.com", mock(WebHookRunner.class));
+		executor.execute("example.com", mock(WebHookRunner.class));
+		WebHookRunner overflow = mock(WebHookRunner.class);
+		when(overflow.spill()).thenAnswer(invocation -> {
+			spillThread.set(Thread.currentThread());
+			await(release);
+			spilled.countDown();
+			return null;
+		});
+		
+		// Returns while the runner is still being spilled.
+		executor.execute("example.com", overflow);
+		assertEquals(1, executor.getSpilledCount());
+		
+		release.countDown();
+		assertTrue(spilled.await(5, TimeUnit.SECONDS));
+		assertNotSame(Thread.currentThread(), spillThread.get());
+	}
+	
+	private static void sleep(long millis) {
+		try {
+			Thread.sleep(millis);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+	
+	private static void await(CountDownLatch latch) {
+		try {
+			latch.await(5, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+	
+	private static class TestRunner implements WebHookRunner {
+		private final Runnable work;
+		
+		TestRunner(Runnable work) {
+			this.work = work;
+		}
+
+		@Override
+		public void run() {
+			work.run();
+		}
+
+		@Override
+		public WebHookHistoryItem getWebHookHistoryItem() {
+			return null;
+		}
+
+		@Override
+		public void runAsync(HttpAsyncClient asyncClient, Executor completionExecutor) {
+			work.run();
+		}
+
+		@Override
+		public void recordRejection(String reason) {
+			// Not used by these tests.
+		}
+
+		@Override
+		public void journal() {
+			// Not used by these tests.
+		}
+
+		@Override
+		public WebHookRunner spill() {
+			return null;
+		}
+	}
+
+}
@@ -0,0 +1,92 @@
+package webhook.teamcity.executor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.concurrent.RejectedExecutionException;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import webhook.teamcity.DeferrableServiceManager;
+import webhook.teamcity.history.WebAddressTransformer;
+import webhook.teamcity.journal.WebHookDeliveryJournal;
+import webhook.teamcity.journal.WebHookJournalEntry;
+import webhook.teamcity.retry.WebHookDeadLetter;
+import webhook.teamcity.retry.WebHookDeadLetterStore;
+
+public class WebHookJournalReplayerTest {
+
+	private static final String DEAD_LETTER_ID = "dead-letter-01";
+
+	WebHookJournalRunnerFactory runnerFactory = mock(WebHookJournalRunnerFactory.class);
+	WebHookBulkheadExecutor bulkheadExecutor = mock(WebHookBulkheadExecutor.class);
+	WebHookDeadLetterStore deadLetterStore = mock(WebHookDeadLetterStore.class);
+	JournalReplayWebHookRunner runner = mock(JournalReplayWebHookRunner.class);
+	WebHookJournalEntry entry = WebHookJournalEntry.builder().trackingId("tracking-01").build();
+	WebHookDeadLetter deadLetter = WebHookDeadLetter.builder().id(DEAD_LETTER_ID).entry(entry).build();
+	WebHookJournalReplayer replayer;
+
+	@Before
+	public void setup() {
+		replayer = new WebHookJournalReplayer(
+				mock(WebHookDeliveryJournal.class),
+				runnerFactory,
+				bulkheadExecutor,
+				mock(WebAddressTransformer.class),
+				mock(DeferrableServiceManager.class),
+				deadLetterStore);
+		when(deadLetterStore.get(DEAD_LETTER_ID)).thenReturn(deadLetter);
+		when(deadLetterStore.remove(DEAD_LETTER_ID)).thenReturn(deadLetter);
+		when(runner.getUrl()).thenReturn("http://example.com/webhook");
+	}
+
+	@Test
+	public void testDeadLetterIsRemovedWhenItIsReplayed() {
+		when(runnerFactory.getRunner(entry, 1)).thenReturn(runner);
+
+		assertTrue(replayer.replayDeadLetter(DEAD_LETTER_ID));
+		verify(bulkheadExecutor).execute(anyString(), eq(runner));
+		verify(deadLetterStore).remove(DEAD_LETTER_ID);
+	}
+
+	@Test
+	public void testDeadLetterIsKeptWhenItsWebHookNoLongerExists() {
+		when(runnerFactory.getRunner(entry, 1)).thenReturn(null);
+
+		assertFalse(replayer.replayDeadLetter(DEAD_LETTER_ID));
+		verify(deadLetterStore, never()).remove(anyString());
+		verify(bulkheadExecutor, never()).execute(anyString(), any(WebHookRunner.class));
+	}
+
+	@Test
+	public void testDeadLetterIsPutBackWhenItCanNotBeExecuted() {
+		when(runnerFactory.getRunner(entry, 1)).thenReturn(runner);
+		doThrow(new RejectedExecutionException("shutting down")).when(bulkheadExecutor).execute(anyString(), eq(runner));
+
+		try {
+			replayer.replayDeadLetter(DEAD_LETTER_ID);
+			fail("Expected the rejection to be thrown");
+		} catch (RejectedExecutionException ex) {
+			assertEquals("shutting down", ex.getMessage());
+		}
+		verify(deadLetterStore).add(deadLetter);
+	}
+
+	@Test
+	public void testUnknownDeadLetterIsNotReplayed() {
+		assertFalse(replayer.replayDeadLetter("unknown"));
+		verify(bulkheadExecutor, never()).execute(anyString(), any(WebHookRunner.class));
+	}
+
+}
@@ -0,0 +1,57 @@
+package webhook.teamcity.executor;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import org.junit.Test;
+
+import jetbrains.buildServer.serverSide.SBuild;
+import webhook.WebHook;
+import webhook.WebHookExecutionStats;
+import webhook.teamcity.BuildStateEnum;
+import webhook.teamcity.history.WebAddressTransformerImpl;
+import webhook.teamcity.settings.WebHookConfig;
+
+public class WebHookThreadingExecutorImplTest {
+
+	WebHookRunnerFactory runnerFactory = mock(WebHookRunnerFactory.class);
+	WebHookBulkheadExecutor bulkheadExecutor = mock(WebHookBulkheadExecutor.class);
+	WebHookThreadingExecutorImpl executor = new WebHookThreadingExecutorImpl(runnerFactory, bulkheadExecutor, new WebAddressTransformerImpl());
+
+	@Test
+	public void testBulkheadIsKeyedOnGeneralisedHost() {
+		execute("http://hooks.example.com/build", "webhook01");
+		verify(bulkheadExecutor).execute(eq("example.com"), any(WebHookRunner.class));
+	}
+
+	@Test
+	public void testBulkheadIsKeyedOnWebHookWhenHostIsAVariable() {
+		execute("https://${hook.host}/build", "webhook01");
+		execute("${hook.url}", "webhook02");
+		verify(bulkheadExecutor).execute(eq("webhook:webhook01"), any(WebHookRunner.class));
+		verify(bulkheadExecutor).execute(eq("webhook:webhook02"), any(WebHookRunner.class));
+	}
+
+	@Test
+	public void testVariablesInThePathDoNotChangeTheHost() {
+		assertFalse(WebHookThreadingExecutorImpl.hasVariableHost("http://example.com/${buildId}"));
+		assertFalse(WebHookThreadingExecutorImpl.hasVariableHost("http://example.com"));
+		assertTrue(WebHookThreadingExecutorImpl.hasVariableHost("http://${host}:8111/hook"));
+		assertTrue(WebHookThreadingExecutorImpl.hasVariableHost("http://$host/hook"));
+	}
+
+	private void execute(String url, String uniqueKey) {
+		WebHook webhook = mock(WebHook.class);
+		when(webhook.getUrl()).thenReturn(url);
+		when(webhook.getExecutionStats()).thenReturn(new WebHookExecutionStats(url));
+		WebHookConfig whc = mock(WebHookConfig.class);
+		when(whc.getUniqueKey()).thenReturn(uniqueKey);
+		executor.execute(webhook, whc, mock(SBuild.class), BuildStateEnum.BUILD_FINISHED, null, null, false);
+	}
+
+}
@@ -9,6 +9,8 @@ import java.util.Map;
 import java.util.UUID;
 
 import org.apache.http.NameValuePair;
+import org.apache.http.concurrent.FutureCallback;
+import org.apache.http.nio.client.HttpAsyncClient;
 import org.joda.time.LocalDate;
 import org.joda.time.LocalDateTime;
 import org.joda.time.Period;
@@ -25,6 +27,7 @@ import webhook.teamcity.BuildState;
 import webhook.teamcity.BuildStateEnum;
 import webhook.teamcity.auth.WebHookAuthenticator;
 import webhook.teamcity.payload.variableresolver.VariableResolver;
+import webhook.teamcity.payload.WebHookRenderCache;
 import webhook.teamcity.payload.variableresolver.VariableResolverFactory;
 import webhook.teamcity.settings.WebHookConfig;
 import webhook.teamcity.settings.WebHookFilterConfig;
@@ -198,6 +201,11 @@ public class WebHookHistoryRepositoryImplTest {
 			
 		}
 
+		@Override
+		public void postAsync(HttpAsyncClient asyncClient, FutureCallback<WebHook> callback) {
+			notImplemented();
+		}
+
 		@Override
 		public Integer getStatus() {
 			return this.status;
@@ -343,11 +351,23 @@ public class WebHookHistoryRepositoryImplTest {
 			
 		}
 
+		@Override
+		public String getContentType() {
+			notImplemented();
+			return null;
+		}
+
 		@Override
 		public void setContentType(String contentType) {
 			notImplemented();
 		}
 
+		@Override
+		public String getCharset() {
+			notImplemented();
+			return null;
+		}
+
 		@Override
 		public void setCharset(String charset) {
 			notImplemented();
@@ -402,6 +422,11 @@ public class WebHookHistoryRepositoryImplTest {
 			notImplemented();
 		}
 		
+		@Override
+		public void setConnectionRequestTimeOut(int httpConnectionRequestTimeout) {
+			notImplemented();
+		}
+		
 		private void notImplemented() {
 			throw new RuntimeException("I'm a mock");
 		}
@@ -424,6 +449,17 @@ public class WebHookHistoryRepositoryImplTest {
 			notImplemented();
 		}
 
+		@Override
+		public Map<String, String> getResolvedHeaders() {
+			notImplemented();
+			return null;
+		}
+
+		@Override
+		public void setResolvedHeaders(Map<String, String> resolvedHeaders) {
+			notImplemented();
+		}
+
 		@Override
 		public VariableResolverFactory getVariableResolverFactory() {
 			notImplemented();
@@ -434,6 +470,17 @@ public class WebHookHistoryRepositoryImplTest {
 		public void setVariableResolverFactory(VariableResolverFactory variableResolverFactory) {
 			notImplemented();
 		}
+
+		@Override
+		public WebHookRenderCache getRenderCache() {
+			notImplemented();
+			return null;
+		}
+
+		@Override
+		public void setRenderCache(WebHookRenderCache renderCache) {
+			notImplemented();
+		}
 		
 	}
 }
@@ -0,0 +1,129 @@
+package webhook.teamcity.journal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.mockito.Mockito.mock;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import jetbrains.buildServer.serverSide.SBuildServer;
+import jetbrains.buildServer.serverSide.ServerPaths;
+import webhook.teamcity.settings.WebHookMainSettings;
+
+public class WebHookDeliveryJournalImplTest {
+
+	@Rule
+	public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	ServerPaths serverPaths;
+	WebHookMainSettings mainSettings;
+	WebHookDeliveryJournalImpl journal;
+
+	@Before
+	public void setup() {
+		serverPaths = new ServerPaths(temporaryFolder.getRoot());
+		mainSettings = new WebHookMainSettings(mock(SBuildServer.class));
+		mainSettings.getWebHookMainConfig().setDeliveryJournalMaxSize(1);
+		journal = new WebHookDeliveryJournalImpl(serverPaths, mainSettings);
+	}
+
+	@After
+	public void tearDown() {
+		journal.shutdown();
+	}
+
+	@Test
+	public void testUnacknowledgedEntriesSurviveReopen() {
+		long first = journal.append(buildEntry("first"));
+		long second = journal.append(buildEntry("second"));
+		long third = journal.append(buildEntry("third"));
+		journal.acknowledge(second);
+		journal.shutdown();
+
+		journal = new WebHookDeliveryJournalImpl(serverPaths, mainSettings);
+		assertEquals(Arrays.asList(first, third), journal.getUnacknowledgedSequences());
+		WebHookJournalEntry entry = journal.getEntry(third);
+		assertEquals("third", entry.getPayload());
+		assertEquals("http://example.com/hook", entry.getUrl());
+		assertEquals("Bearer token", entry.getHeaders().get("Authorization"));
+		assertNull(journal.getEntry(second));
+	}
+
+	@Test
+	public void testSequencesContinueAfterReopen() {
+		long first = journal.append(buildEntry("first"));
+		journal.shutdown();
+
+		journal = new WebHookDeliveryJournalImpl(serverPaths, mainSettings);
+		long second = journal.append(buildEntry("second"));
+		assertEquals(first + 1, second);
+	}
+
+	@Test
+	public void testCompactionKeepsUnacknowledgedEntriesWhenJournalFills() {
+		String payload = String.join("", Collections.nCopies(10 * 1024, "x"));
+		long keep = journal.append(buildEntry("keep"));
+		// Write well over the 1MB journal size, acknowledging as we go.
+		// Compaction happens on the committer thread, so run it here rather than wait for it.
+		for (int i = 0; i < 300; i++) {
+			journal.acknowledge(journal.append(buildEntry(payload)));
+			journal.maintain();
+		}
+		long last = journal.append(buildEntry("last"));
+		journal.shutdown();
+
+		journal = new WebHookDeliveryJournalImpl(serverPaths, mainSettings);
+		assertEquals(Arrays.asList(keep, last), journal.getUnacknowledgedSequences());
+		assertEquals("keep", journal.getEntry(keep).getPayload());
+		assertEquals("last", journal.getEntry(last).getPayload());
+	}
+
+	@Test
+	public void testAppendDoesNotCompactWhenJournalIsFull() {
+		// Keep the committer out of the way, so only the test compacts.
+		mainSettings.getWebHookMainConfig().setDeliveryJournalCommitInterval(60000);
+		String payload = String.join("", Collections.nCopies(100 * 1024, "x"));
+		long sequence;
+		while ((sequence = journal.append(buildEntry(payload))) != WebHookDeliveryJournal.NOT_JOURNALED) {
+			journal.acknowledge(sequence);
+		}
+		// Full, until the committer compacts away the acknowledged entries.
+		journal.maintain();
+		assertNotEquals(WebHookDeliveryJournal.NOT_JOURNALED, journal.append(buildEntry(payload)));
+	}
+
+	@Test
+	public void testNothingIsJournaledWhenDisabled() {
+		mainSettings.getWebHookMainConfig().setDeliveryJournalEnabled(false);
+		assertEquals(WebHookDeliveryJournal.NOT_JOURNALED, journal.append(buildEntry("first")));
+		assertEquals(0, journal.getUnacknowledgedSequences().size());
+	}
+
+	private WebHookJournalEntry buildEntry(String payload) {
+		Map<String, String> headers = new LinkedHashMap<>();
+		headers.put("Authorization", "Bearer token");
+		return WebHookJournalEntry.builder()
+				.timestamp(System.currentTimeMillis())
+				.webHookUniqueKey("id_123456")
+				.projectInternalId("project01")
+				.buildState("buildFinished")
+				.trackingId("4f2a1c3e-8c7b-4d0e-9a51-3b6f0c2d1e7a")
+				.url("http://example.com/hook")
+				.contentType("application/json")
+				.charset("UTF-8")
+				.payload(payload)
+				.headers(headers)
+				.build();
+	}
+
+}
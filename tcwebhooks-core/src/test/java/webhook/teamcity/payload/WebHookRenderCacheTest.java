@@ -0,0 +1,60 @@
+package webhook.teamcity.payload;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.util.Collections;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import webhook.teamcity.BuildStateEnum;
+
+public class WebHookRenderCacheTest {
+
+	@Test
+	public void testIdenticalInputsAreRenderedOnce() {
+		WebHookRenderCache cache = new WebHookRenderCache();
+		AtomicInteger renders = new AtomicInteger();
+		for (int i = 0; i < 20; i++) {
+			assertEquals("payload", cache.getPayload(buildKey("slack.com", "value"), () -> {
+				renders.incrementAndGet();
+				return "payload";
+			}));
+		}
+		assertEquals(1, renders.get());
+		assertEquals(1, cache.size());
+	}
+
+	@Test
+	public void testDifferentParametersAreRenderedSeparately() {
+		WebHookRenderCache cache = new WebHookRenderCache();
+		assertEquals("one", cache.getPayload(buildKey("slack.com", "one"), () -> "one"));
+		assertEquals("two", cache.getPayload(buildKey("slack.com", "two"), () -> "two"));
+		assertEquals("three", cache.getPayload(buildKey("flowdock", "one"), () -> "three"));
+		assertEquals(3, cache.size());
+	}
+
+	@Test
+	public void testFailedRenderIsNotCached() {
+		WebHookRenderCache cache = new WebHookRenderCache();
+		try {
+			cache.getPayload(buildKey("slack.com", "value"), () -> { throw new IllegalStateException("Template error"); });
+			fail("Expected the render to fail");
+		} catch (IllegalStateException ex) {
+			// expected
+		}
+		assertEquals("payload", cache.getPayload(buildKey("slack.com", "value"), () -> "payload"));
+	}
+
+	private static WebHookRenderKey buildKey(String templateId, String parameterValue) {
+		SortedMap<String,String> parameters = new TreeMap<>();
+		parameters.put("preferredDateFormat", "");
+		parameters.put("color", parameterValue);
+		return new WebHookRenderKey("1234", BuildStateEnum.BUILD_FINISHED, templateId, true, parameters,
+				Collections.singletonMap("buildStatusHtml", "Build finished"), null, null);
+	}
+
+}
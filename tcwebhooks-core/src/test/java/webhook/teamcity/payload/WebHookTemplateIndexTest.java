@@ -0,0 +1,67 @@
+package webhook.teamcity.payload;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import jetbrains.buildServer.serverSide.SProject;
+import webhook.teamcity.MockSBuildType;
+import webhook.teamcity.MockSProject;
+import webhook.teamcity.settings.entity.WebHookTemplateEntity;
+
+public class WebHookTemplateIndexTest {
+
+	SProject project01 = new MockSProject("Project 1", "first project", "project01", "Project01", new MockSBuildType("Build 1", "first build", "bt01"));
+	SProject project02 = new MockSProject("Project 2", "second project", "project02", "Project02", new MockSBuildType("Build 2", "second build", "bt02"));
+
+	WebHookPayloadTemplate rootTemplate = template("_Root", "rootTemplate");
+	WebHookPayloadTemplate project01Template = template("project01", "project01Template");
+	WebHookPayloadTemplate project02Template = template("project02", "project02Template");
+	WebHookPayloadTemplate secondRootTemplate = template("_Root", "secondRootTemplate");
+
+	WebHookTemplateIndex index = WebHookTemplateIndex.build(Arrays.asList(rootTemplate, project01Template, project02Template, secondRootTemplate));
+
+	@Test
+	public void testTemplateIsFoundInProjectOrParent() {
+		assertSame(project01Template, index.findTemplate(project01, "project01Template"));
+		assertSame(rootTemplate, index.findTemplate(project01, "rootTemplate"));
+		assertSame(rootTemplate, index.findTemplate(project02, "rootTemplate"));
+	}
+
+	@Test
+	public void testTemplateFromAnotherProjectIsNotFound() {
+		assertNull(index.findTemplate(project01, "project02Template"));
+		assertNull(index.findTemplate(project01, "unknownTemplate"));
+	}
+
+	@Test
+	public void testTemplatesForProjectAreInRankOrder() {
+		assertEquals(Arrays.asList(rootTemplate, project01Template, secondRootTemplate), index.findTemplates(project01));
+		assertEquals(Arrays.asList(rootTemplate, project02Template, secondRootTemplate), index.findTemplates(project02));
+	}
+
+	@Test
+	public void testFormatIsReadFromTemplateEntity() {
+		WebHookTemplateEntity entity = new WebHookTemplateEntity();
+		entity.setFormat("jsonTemplate");
+		when(rootTemplate.getAsEntity()).thenReturn(entity);
+		WebHookTemplateIndex formatIndex = WebHookTemplateIndex.build(Arrays.asList(rootTemplate, project01Template));
+		assertEquals("jsonTemplate", formatIndex.getFormat("rootTemplate"));
+		assertNull(formatIndex.getFormat("project01Template"));
+		assertNull(formatIndex.getFormat("unknownTemplate"));
+	}
+
+	private static WebHookPayloadTemplate template(String projectId, String templateId) {
+		WebHookPayloadTemplate template = mock(WebHookPayloadTemplate.class);
+		when(template.getProjectId()).thenReturn(projectId);
+		when(template.getTemplateId()).thenReturn(templateId);
+		return template;
+	}
+
+}
@@ -0,0 +1,121 @@
+package webhook.teamcity.payload.content;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import webhook.teamcity.payload.PayloadTemplateEngineType;
+import webhook.teamcity.payload.WebHookContentObjectSerialiser;
+import webhook.teamcity.payload.variableresolver.VariableMessageBuilder;
+import webhook.teamcity.payload.variableresolver.VariableResolver;
+import webhook.teamcity.payload.variableresolver.VariableResolverFactory;
+
+public class WebHookPayloadContentContextTest {
+
+	VariableResolverFactory variableResolverFactory = mock(VariableResolverFactory.class);
+	WebHookContentObjectSerialiser serialiser = mock(WebHookContentObjectSerialiser.class);
+	VariableResolver variableResolver = mock(VariableResolver.class);
+	VariableMessageBuilder messageBuilder = mock(VariableMessageBuilder.class);
+	VariableResolver filterVariableResolver = mock(VariableResolver.class);
+	WebHookPayloadContent content = mock(WebHookPayloadContent.class);
+	WebHookFilterContent filterContent = mock(WebHookFilterContent.class);
+	AtomicInteger contentBuilds = new AtomicInteger();
+	AtomicInteger filterContentBuilds = new AtomicInteger();
+	WebHookPayloadContentContext context;
+
+	@Before
+	public void setup() {
+		when(variableResolverFactory.getPayloadTemplateType()).thenReturn(PayloadTemplateEngineType.STANDARD);
+		when(variableResolverFactory.buildVariableResolver(any(), any(), any())).thenReturn(variableResolver);
+		when(variableResolverFactory.createVariableMessageBuilder(anyString(), any())).thenReturn(messageBuilder);
+		when(messageBuilder.build()).thenReturn("http://example.com/master");
+		context = new WebHookPayloadContentContext(variableResolverFactory, serialiser, () -> {
+			contentBuilds.incrementAndGet();
+			return content;
+		});
+	}
+
+	@Test
+	public void testContentAndResolverAreBuiltOnceForUrlFiltersHeadersAndPayload() {
+		assertEquals("http://example.com/master", context.resolve("http://example.com/${branchDisplayName}"));
+		assertSame(variableResolver, context.getVariableResolver());
+		assertSame(variableResolver, context.getVariableResolver());
+		assertSame(content, context.getContent());
+		assertEquals(1, contentBuilds.get());
+		verify(variableResolverFactory, times(1)).buildVariableResolver(any(), any(), any());
+	}
+
+	@Test
+	public void testContentIsNotBuiltForUntemplatedUrl() {
+		assertEquals("http://example.com/hook", context.resolve("http://example.com/hook"));
+		assertEquals("http://example.com/${hook", context.resolve("http://example.com/${hook"));
+		assertEquals(0, contentBuilds.get());
+	}
+
+	@Test
+	public void testFiltersOnBuildAndProjectPropertiesDoNotBuildTheContent() {
+		WebHookPayloadContentContext filteringContext = buildFilteringContext();
+		VariableResolver resolver = filteringContext.getVariableResolver(Arrays.asList("${branchDisplayName}", "${buildExternalTypeId}", "${teamcity.build.id}"));
+		assertSame(filterVariableResolver, resolver);
+		assertSame(filterVariableResolver, filteringContext.getVariableResolver(Arrays.asList("$projectExternalId")));
+		assertEquals("http://example.com/master", filteringContext.resolve("http://example.com/${branchDisplayName}"));
+		assertEquals(1, filterContentBuilds.get());
+		assertEquals(0, contentBuilds.get());
+	}
+
+	@Test
+	public void testFiltersOnContentOnlyPropertiesUseTheContent() {
+		WebHookPayloadContentContext filteringContext = buildFilteringContext();
+		assertSame(variableResolver, filteringContext.getVariableResolver(Arrays.asList("${branchDisplayName}", "${buildResult}")));
+		assertEquals(1, contentBuilds.get());
+		assertEquals(0, filterContentBuilds.get());
+	}
+
+	@Test
+	public void testFilterContentIsNotUsedOnceTheContentIsBuilt() {
+		WebHookPayloadContentContext filteringContext = buildFilteringContext();
+		assertSame(content, filteringContext.getContent());
+		assertSame(variableResolver, filteringContext.getVariableResolver(Arrays.asList("${branchDisplayName}")));
+		assertEquals(0, filterContentBuilds.get());
+	}
+
+	@Test
+	public void testCanResolveOnlyTemplatesWithoutContentOnlyProperties() {
+		assertTrue(WebHookFilterContent.canResolve("${branchDisplayName}"));
+		assertTrue(WebHookFilterContent.canResolve("${buildName}-${notifyType}-${webhook.myParam}"));
+		assertTrue(WebHookFilterContent.canResolve("${buildResultForMe}"));
+		assertTrue(WebHookFilterContent.canResolve("${teamcity.build.id}"));
+		assertFalse(WebHookFilterContent.canResolve("${buildResult}"));
+		assertFalse(WebHookFilterContent.canResolve("$changes.size()"));
+		assertFalse(WebHookFilterContent.canResolve("${build.number}"));
+		assertFalse(WebHookFilterContent.canResolve("${capitalise(buildStatus)}"));
+	}
+
+	private WebHookPayloadContentContext buildFilteringContext() {
+		when(variableResolverFactory.buildVariableResolver(any(), eq(filterContent), any())).thenReturn(filterVariableResolver);
+		return new WebHookPayloadContentContext(variableResolverFactory, serialiser, 
+				() -> {
+					contentBuilds.incrementAndGet();
+					return content;
+				},
+				() -> {
+					filterContentBuilds.incrementAndGet();
+					return filterContent;
+				});
+	}
+
+}
@@ -1,5 +1,6 @@
 package webhook.teamcity.payload.format.convertor;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNull;
 import static org.mockito.Mockito.mock;
 
@@ -9,6 +10,7 @@ import org.junit.Test;
 
 import webhook.teamcity.payload.convertor.ExtraParametersMapToJsonConvertor;
 import webhook.teamcity.payload.convertor.ExtraParametersMapToXmlConvertor;
+import webhook.teamcity.payload.convertor.JsonAttributeNameCoder;
 
 import com.thoughtworks.xstream.converters.UnmarshallingContext;
 import com.thoughtworks.xstream.io.HierarchicalStreamReader;
@@ -37,4 +39,13 @@ public class ConvertorTest {
 		ExtraParametersMapToXmlConvertor xmlconv = new ExtraParametersMapToXmlConvertor();
 		assertNull(xmlconv.unmarshal(hsr, umc));
 	}
+	
+	@Test
+	public void TestJsonAttributeNameCoderStripsPrefixFromParameterAttributes(){
+		JsonAttributeNameCoder nameCoder = new JsonAttributeNameCoder();
+		assertEquals("name", nameCoder.encodeAttribute("@name"));
+		assertEquals("value", nameCoder.encodeAttribute("@value"));
+		assertEquals("@other", nameCoder.encodeAttribute("@other"));
+		assertEquals("buildResult", nameCoder.encodeNode("buildResult"));
+	}
 }
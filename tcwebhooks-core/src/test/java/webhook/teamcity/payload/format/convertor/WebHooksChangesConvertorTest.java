@@ -0,0 +1,115 @@
+package webhook.teamcity.payload.format.convertor;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import jetbrains.buildServer.vcs.SVcsModification;
+import jetbrains.buildServer.vcs.VcsFileModification;
+import jetbrains.buildServer.vcs.VcsRootInstance;
+import webhook.teamcity.payload.content.WebHooksChangeBuilder;
+import webhook.teamcity.payload.content.WebHooksChanges;
+import webhook.teamcity.payload.convertor.JsonAttributeNameCoder;
+import webhook.teamcity.payload.convertor.WebHooksChangesConvertor;
+
+import com.thoughtworks.xstream.XStream;
+import com.thoughtworks.xstream.io.json.JsonHierarchicalStreamDriver;
+
+public class WebHooksChangesConvertorTest {
+
+	@Test
+	public void TestJsonMatchesReflectionConverterWithFiles(){
+		assertSameJson(WebHooksChangeBuilder.build(getMockedChanges(3, 5), true));
+	}
+
+	@Test
+	public void TestJsonMatchesReflectionConverterWithoutFiles(){
+		assertSameJson(WebHooksChangeBuilder.build(getMockedChanges(3, 5), false));
+	}
+
+	@Test
+	public void TestJsonMatchesReflectionConverterWithNullFields(){
+		SVcsModification mod = mock(SVcsModification.class);
+		when(mod.isPersonal()).thenReturn(true);
+		List<SVcsModification> mods = new ArrayList<>();
+		mods.add(mod);
+		assertSameJson(WebHooksChangeBuilder.build(mods, true));
+	}
+
+	@Test
+	public void TestXmlMatchesReflectionConverter(){
+		List<WebHooksChanges> changes = WebHooksChangeBuilder.build(getMockedChanges(2, 2), true);
+		XStream streaming = new XStream();
+		streaming.setMode(XStream.NO_REFERENCES);
+		streaming.registerConverter(new WebHooksChangesConvertor());
+		XStream reflection = new XStream();
+		reflection.setMode(XStream.NO_REFERENCES);
+		assertEquals(reflection.toXML(changes), streaming.toXML(changes));
+	}
+
+	/*
+	 * The golden files hold the changes as the json and xml payload formats write them
+	 * today. Any converter or writer change that alters a single byte fails here.
+	 */
+	@Test
+	public void TestJsonMatchesGoldenFile() throws IOException {
+		XStream xstream = new XStream(new JsonHierarchicalStreamDriver(new JsonAttributeNameCoder()));
+		xstream.setMode(XStream.NO_REFERENCES);
+		xstream.registerConverter(new WebHooksChangesConvertor());
+		List<WebHooksChanges> changes = WebHooksChangeBuilder.build(getMockedChanges(2, 2), true);
+		assertEquals(readGoldenFile("changes.json"), xstream.toXML(changes));
+	}
+
+	@Test
+	public void TestXmlMatchesGoldenFile() throws IOException {
+		XStream xstream = new XStream();
+		xstream.setMode(XStream.NO_REFERENCES);
+		List<WebHooksChanges> changes = WebHooksChangeBuilder.build(getMockedChanges(2, 2), true);
+		assertEquals(readGoldenFile("changes.xml"), xstream.toXML(changes));
+	}
+
+	private String readGoldenFile(String name) throws IOException {
+		return new String(Files.readAllBytes(Paths.get("src/test/resources/payload-golden", name)), StandardCharsets.UTF_8);
+	}
+
+	private void assertSameJson(List<WebHooksChanges> changes) {
+		XStream streaming = new XStream(new JsonHierarchicalStreamDriver());
+		streaming.setMode(XStream.NO_REFERENCES);
+		streaming.registerConverter(new WebHooksChangesConvertor());
+		XStream reflection = new XStream(new JsonHierarchicalStreamDriver());
+		reflection.setMode(XStream.NO_REFERENCES);
+		assertEquals(reflection.toXML(changes), streaming.toXML(changes));
+	}
+
+	private List<SVcsModification> getMockedChanges(int vcsNumber, int fileNumber) {
+		List<SVcsModification> mods = new ArrayList<>();
+		for (int i = 0; i < vcsNumber; i++) {
+			SVcsModification mod = mock(SVcsModification.class);
+			VcsRootInstance vcs = mock(VcsRootInstance.class);
+			when(vcs.getName()).thenReturn("myVcsRoot" + i);
+			when(mod.getVcsRoot()).thenReturn(vcs);
+			when(mod.getDisplayVersion()).thenReturn("abc" + i);
+			when(mod.getDescription()).thenReturn("A \"quoted\" comment\nover two lines " + i);
+			when(mod.getUserName()).thenReturn("user" + i);
+			List<VcsFileModification> files = new ArrayList<>();
+			for (int j = 0; j < fileNumber; j++) {
+				VcsFileModification fileMod = mock(VcsFileModification.class);
+				when(fileMod.getRelativeFileName()).thenReturn("myFile" + j + ".txt");
+				files.add(fileMod);
+			}
+			when(mod.getChanges()).thenReturn(files);
+			mods.add(mod);
+		}
+		return mods;
+	}
+
+}
@@ -1,7 +1,10 @@
 package webhook.teamcity.payload.template;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 import static org.mockito.Matchers.any;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.verify;
@@ -78,6 +81,47 @@ public class WebHookTemplateManagerTest {
 		assertEquals("testXMLtemplate", wtm.getTemplate("testXMLtemplate").getTemplateId());
 	}
 	
+	@Test
+	public void TestUnchangedXmlTemplatesAreKeptWhenFileIsReloaded(){
+		when(mockServer.getRootUrl()).thenReturn("http://test.url");
+		wpm = new WebHookPayloadManager(mockServer);
+		wtm = new WebHookTemplateManager(wpm, new WebHookTemplateJaxHelperImpl(), projectIdResolver);
+		
+		ServerPaths serverPaths = new ServerPaths(new File("src/test/resources/testXmlTemplate"));
+		WebHookTemplateFileChangeHandler changeListener = new WebHookTemplateFileChangeHandler(serverPaths, wtm, wpm, webHookTemplateJaxHelper, null);
+		changeListener.register();
+		changeListener.handleConfigFileChange();
+		WebHookPayloadTemplate template = wtm.getTemplate("testXMLtemplate");
+		
+		changeListener.handleConfigFileChange();
+		assertSame(template, wtm.getTemplate("testXMLtemplate"));
+		assertEquals(4, wtm.getRegisteredTemplates().size());
+	}
+	
+	@Test
+	public void TestRegisteredTemplatesAreNotChangedByLaterRegistrations(){
+		when(mockServer.getRootUrl()).thenReturn("http://test.url");
+		wpm = new WebHookPayloadManager(mockServer);
+		wtm = new WebHookTemplateManager(wpm, new WebHookTemplateJaxHelperImpl(), projectIdResolver);
+		
+		ServerPaths serverPaths = new ServerPaths(new File("src/test/resources/testXmlTemplate"));
+		WebHookTemplateFileChangeHandler changeListener = new WebHookTemplateFileChangeHandler(serverPaths, wtm, wpm, webHookTemplateJaxHelper, null);
+		changeListener.register();
+		changeListener.handleConfigFileChange();
+		List<WebHookPayloadTemplate> regsiteredTemplates = wtm.getRegisteredTemplates();
+		
+		assertTrue(wtm.removeXmlConfigTemplateFormat("testXMLtemplate"));
+		assertEquals(4, regsiteredTemplates.size());
+		assertEquals(3, wtm.getRegisteredTemplates().size());
+		assertNull(wtm.getTemplate("testXMLtemplate"));
+		try {
+			wtm.getRegisteredTemplates().clear();
+			fail("Registered templates should not be modifiable");
+		} catch (UnsupportedOperationException ex) {
+			assertEquals(3, wtm.getRegisteredTemplates().size());
+		}
+	}
+	
 	@Test
 	public void TestXmlTemplatesWithTemplateIdsViaChangeListener(){
 		when(mockServer.getRootUrl()).thenReturn("http://test.url");
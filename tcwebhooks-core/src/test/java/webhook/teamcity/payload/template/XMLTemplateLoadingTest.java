@@ -18,6 +18,7 @@ import webhook.teamcity.payload.WebHookPayloadManager;
 import webhook.teamcity.payload.WebHookPayloadTemplate;
 import webhook.teamcity.payload.WebHookTemplateFileChangeHandler;
 import webhook.teamcity.payload.WebHookTemplateManager;
+import webhook.teamcity.payload.WebHookTemplateManager.TemplateState;
 import webhook.teamcity.settings.entity.WebHookTemplateJaxHelperImpl;
 
 public class XMLTemplateLoadingTest {
@@ -49,5 +50,23 @@ public class XMLTemplateLoadingTest {
 		assertEquals("{ \"mergedBuildStatus\" : \"${buildStatus}\" }", template.getBranchTemplateForState(BuildStateEnum.BUILD_BROKEN).getTemplateText());
 		assertEquals(4, regsiteredTemplates.size());
 	}
+	
+	@Test
+	public void TestXmlTemplateContentIsSharedBetweenLookups(){
+		when(mockServer.getRootUrl()).thenReturn("http://test.url");
+		wpm = new WebHookPayloadManager(mockServer);
+		wtm = new WebHookTemplateManager(wpm, new WebHookTemplateJaxHelperImpl(), projectIdResolver);
+		
+		ServerPaths serverPaths = new ServerPaths(new File("src/test/resources/testXmlTemplate"));
+		WebHookTemplateFileChangeHandler changeListener = new WebHookTemplateFileChangeHandler(serverPaths, wtm, wpm, new WebHookTemplateJaxHelperImpl(), null);
+		changeListener.register();
+		changeListener.handleConfigFileChange();
+		
+		WebHookPayloadTemplate template = wtm.getTemplate("testXMLtemplate");
+		assertSame(template.getTemplateForState(BuildStateEnum.BUILD_STARTED), template.getTemplateForState(BuildStateEnum.BUILD_STARTED));
+		assertSame(template.getBranchTemplateForState(BuildStateEnum.BUILD_STARTED), template.getBranchTemplateForState(BuildStateEnum.BUILD_STARTED));
+		assertEquals(wtm.getTemplateConfig("testXMLtemplate", TemplateState.BEST).getFormat(), wtm.getTemplateFormat("testXMLtemplate"));
+		assertNull(wtm.getTemplateFormat("unknownTemplate"));
+	}
 
 }
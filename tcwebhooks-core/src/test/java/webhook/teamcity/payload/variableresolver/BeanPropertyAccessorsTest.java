@@ -0,0 +1,73 @@
+package webhook.teamcity.payload.variableresolver;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.reflect.InvocationTargetException;
+
+import org.junit.Test;
+
+public class BeanPropertyAccessorsTest {
+
+	@Test
+	public void testAccessorTableIsBuiltOncePerClass() {
+		assertSame(BeanPropertyAccessors.forClass(TestBean.class), BeanPropertyAccessors.forClass(TestBean.class));
+		assertTrue(BeanPropertyAccessors.forClass(TestBean.class).hasProperty("buildName"));
+		assertTrue(BeanPropertyAccessors.forClass(TestBean.class).hasProperty("branchIsDefault"));
+		assertFalse(BeanPropertyAccessors.forClass(TestBean.class).hasProperty("notAProperty"));
+	}
+
+	@Test
+	public void testSimplePropertiesAreRead() throws Exception {
+		TestBean bean = new TestBean();
+		assertEquals("My Build", BeanPropertyAccessors.getProperty(bean, "buildName"));
+		assertEquals(Boolean.TRUE, BeanPropertyAccessors.getProperty(bean, "branchIsDefault"));
+		assertEquals(Integer.valueOf(42), BeanPropertyAccessors.getProperty(bean, "buildCount"));
+		assertNull(BeanPropertyAccessors.getProperty(bean, "comment"));
+	}
+
+	@Test
+	public void testNestedPropertiesAreRead() throws Exception {
+		assertEquals("My Build", BeanPropertyAccessors.getProperty(new TestBean(), "self.buildName"));
+	}
+
+	@Test(expected=NoSuchMethodException.class)
+	public void testUnknownPropertyThrowsNoSuchMethodException() throws Exception {
+		BeanPropertyAccessors.getProperty(new TestBean(), "notAProperty");
+	}
+
+	@Test(expected=NoSuchMethodException.class)
+	public void testUnknownNestedPropertyThrowsNoSuchMethodException() throws Exception {
+		BeanPropertyAccessors.getProperty(new TestBean(), "build.vcs.number");
+	}
+
+	@Test(expected=InvocationTargetException.class)
+	public void testExceptionFromGetterIsWrapped() throws Exception {
+		BeanPropertyAccessors.getProperty(new TestBean(), "broken");
+	}
+
+	public static class TestBean {
+		public String getBuildName() {
+			return "My Build";
+		}
+		public Boolean getBranchIsDefault() {
+			return Boolean.TRUE;
+		}
+		public int getBuildCount() {
+			return 42;
+		}
+		public String getComment() {
+			return null;
+		}
+		public TestBean getSelf() {
+			return this;
+		}
+		public String getBroken() {
+			throw new IllegalStateException("Broken getter");
+		}
+	}
+
+}
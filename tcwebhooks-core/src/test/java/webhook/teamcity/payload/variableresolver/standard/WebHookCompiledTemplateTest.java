@@ -0,0 +1,151 @@
+package webhook.teamcity.payload.variableresolver.standard;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import webhook.teamcity.payload.WebHookTemplateContent;
+import webhook.teamcity.payload.variableresolver.VariableResolver;
+
+public class WebHookCompiledTemplateTest {
+
+	TemplateFunctionValues values = new TemplateFunctionValues() {
+		@Override
+		public String getValue(String variableName) {
+			switch (variableName) {
+				case "build.vcs.number": return "0123456789abcdef0123456789abcdef01234567";
+				case "shortValue": return "short";
+				case "buildName": return "my build";
+				case "slashed": return "My/build";
+				case "quoted": return "\"quoted\"";
+				default: return null;
+			}
+		}
+
+		@Override
+		public String getValueAsString(String variableName) {
+			return getValue(variableName);
+		}
+	};
+
+	VariableResolver resolver = new VariableResolver() {
+		@Override
+		public String resolve(String variable) {
+			if (variable.equals("unknown")) {
+				return null;
+			}
+			return variable.toUpperCase();
+		}
+	};
+
+	@Test
+	public void testRendersTheSameAsTemplateMatcher() {
+		String[] templates = {
+				"this is ${santhosh}ghgjh\n ${kumar} sdf ${tekuri}abc",
+				"${unknown} and ${known}",
+				"no variables at all",
+				"",
+				"${}",
+				"${broken\nacross lines} and ${fine}",
+				"${unclosed and ${closed}",
+				"$${nested ${inner}}",
+				"${trailing",
+				"{ \"buildName\": \"${buildName}\", \"text\": \"${escapejson(buildName)}\" }"
+		};
+		TemplateMatcher matcher = new TemplateMatcher("${", "}");
+		for (String template : templates) {
+			assertEquals(template, matcher.replace(template, resolver), WebHookCompiledTemplate.compile(template).render(resolver));
+		}
+	}
+
+	@Test
+	public void testTemplateIsSplitIntoLiteralsAndVariables() {
+		assertEquals(5, WebHookCompiledTemplate.compile("a ${b} c ${d} e").getSegmentCount());
+		assertEquals(2, WebHookCompiledTemplate.compile("${b}${d}").getSegmentCount());
+	}
+
+	@Test
+	public void testFunctionsAreParsedOnce() {
+		TemplateVariable variable = TemplateVariable.parse("substr(build.vcs.number,0,7,32)");
+		assertEquals("substr", variable.getFunction().getName());
+		assertEquals("0123456", variable.getFunctionCall().apply(values));
+		assertEquals("short", TemplateVariable.parse("substr(shortValue,0,3,10)").getFunctionCall().apply(values));
+
+		assertEquals("capitalize", TemplateVariable.parse("capitalize(buildName)").getFunction().getName());
+		assertEquals("My build", TemplateVariable.parse("capitaliseFirst(buildName)").getFunctionCall().apply(values));
+		assertEquals("My Build", TemplateVariable.parse("capitalise(buildName)").getFunctionCall().apply(values));
+		assertEquals("My_build", TemplateVariable.parse("sanitize(slashed)").getFunctionCall().apply(values));
+		assertEquals("\\\"quoted\\\"", TemplateVariable.parse("escapejson(quoted)").getFunctionCall().apply(values));
+		assertEquals(9, TemplateVariable.parse("now(\"yyyy-MM\")").getFunctionCall().apply(values).length());
+	}
+
+	@Test
+	public void testNowUsesSimpleDateFormatPatterns() {
+		// u is the day of the week, not the year
+		String dayOfWeek = TemplateVariable.parse("now(u)").getFunctionCall().apply(values);
+		assertTrue(dayOfWeek, dayOfWeek.matches("[1-7]"));
+		// Brackets are literals, not an optional section
+		String bracketed = TemplateVariable.parse("now([yyyy])").getFunctionCall().apply(values);
+		assertTrue(bracketed, bracketed.matches("\\[\\d{4}\\]"));
+		String hashed = TemplateVariable.parse("now(#yyyy)").getFunctionCall().apply(values);
+		assertTrue(hashed, hashed.matches("#\\d{4}"));
+	}
+
+	@Test
+	public void testFunctionOfMissingValueResolvesToNull() {
+		assertNull(TemplateVariable.parse("escapejson(missing)").getFunctionCall().apply(values));
+		assertNull(TemplateVariable.parse("substr(missing,0,7,32)").getFunctionCall().apply(values));
+	}
+
+	@Test
+	public void testFunctionsCanBeRegistered() {
+		TemplateFunctionRegistry registry = new TemplateFunctionRegistry();
+		registry.register(new StandardTemplateFunctions.ValueFunction("reverse") {
+			@Override
+			protected String apply(String value) {
+				return new StringBuilder(value).reverse().toString();
+			}
+		});
+		assertEquals("dliub ym", TemplateVariable.parse("reverse(buildName)", registry).getFunctionCall().apply(values));
+		assertNull(TemplateVariable.parse("reverse(buildName)").getFunction());
+	}
+
+	@Test
+	public void testVariablesAreParsedOncePerRegistry() {
+		TemplateFunctionRegistry registry = new TemplateFunctionRegistry();
+		TemplateVariable now = registry.getVariable("now(yyyy-MM-dd)");
+		assertSame(now, registry.getVariable("now(yyyy-MM-dd)"));
+		assertSame(TemplateVariable.parse("now(yyyy-MM-dd)"), TemplateVariable.parse("now(yyyy-MM-dd)"));
+
+		TemplateVariable plain = registry.getVariable("reverse(buildName)");
+		assertNull(plain.getFunction());
+		registry.register(new StandardTemplateFunctions.ValueFunction("reverse") {
+			@Override
+			protected String apply(String value) {
+				return new StringBuilder(value).reverse().toString();
+			}
+		});
+		assertEquals("dliub ym", registry.getVariable("reverse(buildName)").getFunctionCall().apply(values));
+	}
+
+	@Test
+	public void testInvalidFunctionsAreTreatedAsPlainVariables() {
+		assertNull(TemplateVariable.parse("substr(build.vcs.number,0,7)").getFunction());
+		assertNull(TemplateVariable.parse("substr(build.vcs.number,a,b,c)").getFunction());
+		assertNull(TemplateVariable.parse("now(bbbb)").getFunction());
+		assertNull(TemplateVariable.parse("escapejson(buildName").getFunction());
+		assertEquals("escapejson(buildName", TemplateVariable.parse("escapejson(buildName").getName());
+	}
+
+	@Test
+	public void testCompiledTemplateIsSharedWithCopiesOfTheTemplateContent() {
+		WebHookTemplateContent content = WebHookTemplateContent.create("buildStarted", "Started ${buildName}", true, "");
+		WebHookCompiledTemplate compiled = content.getCompiledTemplate();
+		assertSame(compiled, content.getCompiledTemplate());
+		assertSame(compiled, content.copy().getCompiledTemplate());
+	}
+
+}
@@ -0,0 +1,67 @@
+package webhook.teamcity.payload.variableresolver.standard;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import webhook.teamcity.payload.WebHookContentObjectSerialiser;
+import webhook.teamcity.payload.content.ExtraParametersMap;
+
+public class WebHooksBeanUtilsVariableResolverTest {
+
+	WebHookContentObjectSerialiser serialiser = mock(WebHookContentObjectSerialiser.class);
+	Map<String, ExtraParametersMap> parameters = new LinkedHashMap<>();
+	WebHooksBeanUtilsVariableResolver resolver;
+
+	public static class Bean {
+		public List<String> getChanges() {
+			return Arrays.asList("one", "two");
+		}
+		public String getEmpty() {
+			return null;
+		}
+	}
+
+	@Before
+	public void setup() {
+		when(serialiser.serialiseObject(any())).thenAnswer(invocation -> "[serialised " + invocation.getArgument(0) + "]");
+		resolver = new WebHooksBeanUtilsVariableResolver(serialiser, new Bean(), parameters);
+	}
+
+	@Test
+	public void testPropertyIsSerialisedOnceForRepeatedReferences() {
+		String template = "${changes} ${escapejson(changes)} ${changes} ${sanitise(changes)}";
+		String rendered = WebHookCompiledTemplate.compile(template).render(resolver);
+		assertEquals("[serialised [one, two]] [serialised [one, two]] [serialised [one, two]] [serialised [one, two]]", rendered);
+		verify(serialiser, times(1)).serialiseObject(any());
+	}
+
+	@Test
+	public void testNullPropertyIsNotSerialised() {
+		assertNull(resolver.resolve("empty"));
+		assertNull(resolver.resolve("empty"));
+		verify(serialiser, times(0)).serialiseObject(any());
+	}
+
+	@Test
+	public void testUnknownPropertyFallsBackToParameters() {
+		ExtraParametersMap extraParameters = new ExtraParametersMap(new LinkedHashMap<>());
+		extraParameters.put("colour", "blue");
+		parameters.put("webhook", extraParameters);
+		assertEquals("blue", resolver.resolve("colour"));
+		assertEquals("blue", resolver.resolve("colour"));
+	}
+
+}
@@ -0,0 +1,88 @@
+package webhook.teamcity.payload.variableresolver.velocity;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.util.Arrays;
+
+import org.apache.velocity.Template;
+import org.apache.velocity.VelocityContext;
+import org.junit.Test;
+
+public class WebHookVelocityEngineTest {
+
+	WebHookVelocityEngine engine = new WebHookVelocityEngine();
+
+	@Test
+	public void testTemplateIsParsedOnceAndRenderedWithEachContext() {
+		VelocityContext first = new VelocityContext();
+		first.put("buildNumber", "1");
+		VelocityContext second = new VelocityContext();
+		second.put("buildNumber", "2");
+
+		assertEquals("Build 1 Done", engine.render("Build ${buildNumber} #capitalise(\"done\")", first));
+		assertEquals("Build 2 Done", engine.render("Build ${buildNumber} #capitalise(\"done\")", second));
+		assertEquals(1, engine.getCachedTemplateCount());
+	}
+
+	@Test
+	public void testToJsonWritesIntoTheTemplate() {
+		VelocityContext context = new VelocityContext();
+		context.put("files", Arrays.asList("a.txt", "b \"quoted\".txt"));
+		assertEquals("{ \"files\" : [\"a.txt\",\"b \\\"quoted\\\".txt\"] }", engine.render("{ #tojson($files, \"files\") }", context));
+		assertEquals("[\"a.txt\",\"b \\\"quoted\\\".txt\"]", engine.render("#tojson($files)", context));
+		assertEquals("null", engine.render("#tojson($missing)", context));
+	}
+
+	@Test
+	public void testParsedTemplatesAreDiscardedWhenTemplatesChange() {
+		engine.render("Build ${buildNumber}", new VelocityContext());
+		engine.render("Project ${projectName}", new VelocityContext());
+		assertEquals(2, engine.getCachedTemplateCount());
+
+		engine.templatesChanged();
+		assertEquals(0, engine.getCachedTemplateCount());
+	}
+
+	@Test
+	public void testTemplatesStillInUseAreNotParsedAgainAfterTemplatesChange() {
+		Template kept = engine.getTemplate("Build ${buildNumber}");
+		Template dropped = engine.getTemplate("Project ${projectName}");
+
+		engine.templatesChanged();
+		assertSame(kept, engine.getTemplate("Build ${buildNumber}"));
+
+		engine.templatesChanged();
+		assertSame(kept, engine.getTemplate("Build ${buildNumber}"));
+		assertNotSame(dropped, engine.getTemplate("Project ${projectName}"));
+	}
+
+	@Test
+	public void testCacheIsEmptiedWhenFull() {
+		for (int i = 0; i < WebHookVelocityEngine.MAX_CACHED_TEMPLATES; i++) {
+			engine.render("Template " + i, new VelocityContext());
+		}
+		assertEquals(WebHookVelocityEngine.MAX_CACHED_TEMPLATES, engine.getCachedTemplateCount());
+		engine.render("One more template", new VelocityContext());
+		assertEquals(1, engine.getCachedTemplateCount());
+	}
+
+	@Test
+	public void testTemplatesCanDefineTheSameMacroDifferently() {
+		VelocityContext context = new VelocityContext();
+		assertEquals("Hello", engine.render("#macro(greet)Hello#end#greet()", context));
+		assertEquals("Goodbye", engine.render("#macro(greet)Goodbye#end#greet()", context));
+		assertEquals("Hello", engine.render("#macro(greet)Hello#end#greet()", context));
+	}
+
+	@Test
+	public void testMacrosAreDefinedAgainWhenDiscardedTemplatesAreParsedAgain() {
+		VelocityContext context = new VelocityContext();
+		assertEquals("Hello", engine.render("#macro(greet)Hello#end#greet()", context));
+		engine.templatesChanged();
+		engine.templatesChanged();
+		assertEquals("Hello", engine.render("#macro(greet)Hello#end#greet()", context));
+	}
+
+}
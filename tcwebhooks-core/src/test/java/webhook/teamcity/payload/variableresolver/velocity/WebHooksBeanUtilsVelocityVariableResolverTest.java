@@ -0,0 +1,81 @@
+package webhook.teamcity.payload.variableresolver.velocity;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import webhook.teamcity.payload.content.ExtraParametersMap;
+
+public class WebHooksBeanUtilsVelocityVariableResolverTest {
+
+	Map<String, ExtraParametersMap> allParameters = new LinkedHashMap<>();
+	WebHooksBeanUtilsVelocityVariableResolver resolver;
+
+	@Before
+	public void setup() {
+		Map<String, String> teamcity = new TreeMap<>();
+		teamcity.put("build.vcs.number", "3b0a11e");
+		teamcity.put("buildName", "Parameter Build Name");
+		teamcity.put("env.isInATest", "true");
+		Map<String, String> webhook = new TreeMap<>();
+		webhook.put("env.isInATest", "overridden");
+		webhook.put("color", "red");
+		allParameters.put("teamcity", new ExtraParametersMap(teamcity));
+		allParameters.put("webhook", new ExtraParametersMap(webhook));
+		resolver = new WebHooksBeanUtilsVelocityVariableResolver(new TestBean(), allParameters);
+	}
+
+	@Test
+	public void testParametersAreFoundByTheirUnderscoredNames() {
+		assertEquals("3b0a11e", resolver.get("build_vcs_number"));
+		assertEquals("red", resolver.get("color"));
+		assertNull(resolver.get("build.vcs.number"));
+		assertNull(resolver.get("notAParameter"));
+	}
+
+	@Test
+	public void testLaterParametersOverrideEarlierOnes() {
+		assertEquals("overridden", resolver.get("env_isInATest"));
+	}
+
+	@Test
+	public void testBeanPropertiesOverrideParameters() {
+		assertEquals("Bean Build Name", resolver.get("buildName"));
+	}
+
+	@Test
+	public void testValuesSetByTheTemplateOverrideEverything() {
+		resolver.put("buildName", "Set Build Name");
+		resolver.put("color", "blue");
+		assertEquals("Set Build Name", resolver.get("buildName"));
+		assertEquals("blue", resolver.get("color"));
+		resolver.remove("color");
+		assertNull(resolver.get("color"));
+		assertFalse(resolver.containsKey("color"));
+	}
+
+	@Test
+	public void testContextContainsToolsParametersAndBeanProperties() {
+		assertTrue(resolver.containsKey("jsonTool"));
+		assertTrue(resolver.containsKey("nullUtils"));
+		assertTrue(resolver.containsKey("build_vcs_number"));
+		assertTrue(resolver.containsKey("buildName"));
+		assertTrue(Arrays.asList(resolver.getKeys()).containsAll(Arrays.asList("jsonTool", "build_vcs_number", "env_isInATest", "color", "buildName")));
+	}
+
+	public static class TestBean {
+		public String getBuildName() {
+			return "Bean Build Name";
+		}
+	}
+
+}
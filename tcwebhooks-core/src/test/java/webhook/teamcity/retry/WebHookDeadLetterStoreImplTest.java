@@ -0,0 +1,97 @@
+package webhook.teamcity.retry;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.mockito.Mockito.mock;
+
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import jetbrains.buildServer.serverSide.SBuildServer;
+import jetbrains.buildServer.serverSide.ServerPaths;
+import webhook.teamcity.journal.WebHookJournalEntry;
+import webhook.teamcity.settings.WebHookMainSettings;
+
+public class WebHookDeadLetterStoreImplTest {
+
+	@Rule
+	public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	ServerPaths serverPaths;
+	WebHookMainSettings mainSettings;
+
+	@Before
+	public void setup() {
+		serverPaths = new ServerPaths(temporaryFolder.getRoot());
+		mainSettings = new WebHookMainSettings(mock(SBuildServer.class));
+	}
+
+	@Test
+	public void testDeadLettersSurviveRestart() {
+		WebHookDeadLetterStoreImpl store = new WebHookDeadLetterStoreImpl(serverPaths, mainSettings);
+		String first = store.add(buildDeadLetter("first", 1000L));
+		String second = store.add(buildDeadLetter("second", 2000L));
+
+		store = new WebHookDeadLetterStoreImpl(serverPaths, mainSettings);
+		List<WebHookDeadLetter> deadLetters = store.getAll();
+		assertEquals(2, deadLetters.size());
+		assertEquals(first, deadLetters.get(0).getId());
+		assertEquals(second, deadLetters.get(1).getId());
+		WebHookDeadLetter deadLetter = store.get(second);
+		assertEquals("second", deadLetter.getEntry().getPayload());
+		assertEquals(Integer.valueOf(503), deadLetter.getLastStatusCode());
+		assertEquals(5, deadLetter.getAttempts());
+	}
+
+	@Test
+	public void testRemovedDeadLettersAreNotReloaded() {
+		WebHookDeadLetterStoreImpl store = new WebHookDeadLetterStoreImpl(serverPaths, mainSettings);
+		String id = store.add(buildDeadLetter("first", 1000L));
+		assertNotNull(store.remove(id));
+		assertNull(store.remove(id));
+
+		store = new WebHookDeadLetterStoreImpl(serverPaths, mainSettings);
+		assertNull(store.get(id));
+		assertEquals(0, store.getAll().size());
+	}
+
+	@Test
+	public void testOldestDeadLetterIsDiscardedWhenFull() {
+		mainSettings.getWebHookMainConfig().setRetryMaxDeadLetters(2);
+		WebHookDeadLetterStoreImpl store = new WebHookDeadLetterStoreImpl(serverPaths, mainSettings);
+		String first = store.add(buildDeadLetter("first", 1000L));
+		store.add(buildDeadLetter("second", 2000L));
+		store.add(buildDeadLetter("third", 3000L));
+
+		store = new WebHookDeadLetterStoreImpl(serverPaths, mainSettings);
+		assertEquals(2, store.getAll().size());
+		assertNull(store.get(first));
+		assertEquals("second", store.getAll().get(0).getEntry().getPayload());
+	}
+
+	private WebHookDeadLetter buildDeadLetter(String payload, long deadLetteredAt) {
+		return WebHookDeadLetter.builder()
+				.deadLetteredAt(deadLetteredAt)
+				.attempts(5)
+				.lastStatusCode(503)
+				.lastError("WebHook endpoint returned non-2xx response (Service Unavailable)")
+				.entry(WebHookJournalEntry.builder()
+						.timestamp(deadLetteredAt)
+						.webHookUniqueKey("id_123456")
+						.projectInternalId("project01")
+						.buildState("buildFinished")
+						.trackingId("4f2a1c3e-8c7b-4d0e-9a51-3b6f0c2d1e7a")
+						.url("http://example.com/hook")
+						.contentType("application/json")
+						.charset("UTF-8")
+						.payload(payload)
+						.build())
+				.build();
+	}
+
+}
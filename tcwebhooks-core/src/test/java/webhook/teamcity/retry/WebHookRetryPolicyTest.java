@@ -0,0 +1,143 @@
+package webhook.teamcity.retry;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.net.ConnectException;
+import java.util.Date;
+import java.util.Random;
+import java.util.concurrent.CancellationException;
+
+import org.apache.http.Header;
+import org.apache.http.client.utils.DateUtils;
+import org.apache.http.message.BasicHeader;
+import org.junit.Before;
+import org.junit.Test;
+
+import webhook.WebHookExecutionStats;
+import webhook.teamcity.WebHookCircuitOpenException;
+import webhook.teamcity.WebHookExecutionException;
+import webhook.teamcity.WebHookHttpExecutionException;
+import webhook.teamcity.WebHookHttpResponseException;
+import webhook.teamcity.circuitbreaker.WebHookCircuitOpenPolicy;
+import webhook.teamcity.settings.WebHookMainConfig;
+
+public class WebHookRetryPolicyTest {
+
+	WebHookMainConfig config;
+	WebHookRetryPolicy policy;
+
+	@Before
+	public void setup() {
+		config = new WebHookMainConfig();
+		config.setRetryJitter(0.0);
+		policy = new WebHookRetryPolicy(config, new Random(1));
+	}
+
+	@Test
+	public void testDefaultStatusCodesAreRetryable() {
+		assertTrue(policy.isRetryable(new WebHookHttpResponseException("Too Many Requests", 429)));
+		assertTrue(policy.isRetryable(new WebHookHttpResponseException("Service Unavailable", 503)));
+		assertFalse(policy.isRetryable(new WebHookHttpResponseException("Not Found", 404)));
+	}
+
+	@Test
+	public void testConfiguredStatusCodes() {
+		config.setRetryStatusCodes("408, 502-504");
+		assertTrue(policy.isRetryableStatusCode(408));
+		assertTrue(policy.isRetryableStatusCode(504));
+		assertFalse(policy.isRetryableStatusCode(500));
+		assertFalse(policy.isRetryableStatusCode(429));
+	}
+
+	@Test
+	public void testConnectionFailuresAreRetryableUnlessDisabled() {
+		WebHookHttpExecutionException connectFailure = new WebHookHttpExecutionException("Connection refused", new ConnectException("Connection refused"));
+		assertTrue(policy.isRetryable(connectFailure));
+		config.setRetryConnectionFailures(false);
+		assertFalse(policy.isRetryable(connectFailure));
+	}
+
+	@Test
+	public void testCancelledRequestsAreRetryable() {
+		WebHookHttpExecutionException cancelled = new WebHookHttpExecutionException("WebHook request was cancelled before completing", 
+				new CancellationException("WebHook request was cancelled"));
+		assertTrue(policy.isRetryable(cancelled));
+	}
+
+	@Test
+	public void testContentFailuresAreNotRetryable() {
+		assertFalse(policy.isRetryable(new WebHookExecutionException("Template not found", WebHookExecutionException.TEMPLATE_NOT_FOUND_ERROR_CODE)));
+	}
+
+	@Test
+	public void testAttemptsAreCapped() {
+		config.setRetryMaxAttempts(3);
+		assertTrue(policy.hasAttemptsRemaining(2));
+		assertFalse(policy.hasAttemptsRemaining(3));
+	}
+
+	@Test
+	public void testDelayGrowsExponentiallyUpToMaximum() {
+		config.setRetryInitialDelay(10);
+		config.setRetryMultiplier(2.0);
+		config.setRetryMaxDelay(60);
+		assertEquals(10000L, policy.getDelay(1, null));
+		assertEquals(20000L, policy.getDelay(2, null));
+		assertEquals(40000L, policy.getDelay(3, null));
+		assertEquals(60000L, policy.getDelay(4, null));
+	}
+
+	@Test
+	public void testJitterOnlyShortensTheDelay() {
+		config.setRetryJitter(0.5);
+		for (int i = 0; i < 100; i++) {
+			long delay = policy.getDelay(1, null);
+			assertTrue(delay >= 5000L && delay <= 10000L);
+		}
+	}
+
+	@Test
+	public void testRetryAfterSecondsIsHonoured() {
+		assertEquals(30000L, policy.getDelay(1, statsWithRetryAfter("30")));
+	}
+
+	@Test
+	public void testRetryAfterDateIsHonoured() {
+		String inTwoMinutes = DateUtils.formatDate(new Date(System.currentTimeMillis() + 120000L));
+		long delay = policy.getDelay(1, statsWithRetryAfter(inTwoMinutes));
+		assertTrue(delay > 100000L && delay <= 120000L);
+	}
+
+	@Test
+	public void testRetryAfterLongerThanMaximumDelayIsNotShortened() {
+		config.setRetryMaxDelay(60);
+		assertEquals(3600000L, policy.getDelay(1, statsWithRetryAfter("3600")));
+		assertTrue(policy.isRetryAfterBeyondMaxDelay(statsWithRetryAfter("3600")));
+		assertFalse(policy.isRetryAfterBeyondMaxDelay(statsWithRetryAfter("60")));
+		assertFalse(policy.isRetryAfterBeyondMaxDelay(null));
+	}
+
+	@Test
+	public void testCircuitOpenIsOnlyRetryableWhenDeferred() {
+		WebHookCircuitOpenException circuitOpen = new WebHookCircuitOpenException("Circuit breaker is open", 30000L);
+		assertTrue(policy.isRetryable(circuitOpen));
+		config.setCircuitBreakerWhenOpen(WebHookCircuitOpenPolicy.FAIL);
+		assertFalse(policy.isRetryable(circuitOpen));
+	}
+
+	@Test
+	public void testCircuitOpenDelaysUntilBreakerAllowsATrial() {
+		config.setRetryInitialDelay(10);
+		assertEquals(45000L, policy.getDelay(1, null, new WebHookCircuitOpenException("Circuit breaker is open", 45000L)));
+		assertEquals(10000L, policy.getDelay(1, null, new WebHookCircuitOpenException("Circuit breaker is open", 5000L)));
+	}
+
+	private WebHookExecutionStats statsWithRetryAfter(String value) {
+		WebHookExecutionStats stats = new WebHookExecutionStats("http://example.com/hook");
+		stats.setResponseHeaders(new Header[] { new BasicHeader("Retry-After", value) });
+		return stats;
+	}
+
+}
@@ -0,0 +1,117 @@
+package webhook.teamcity.retry;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import org.apache.http.Header;
+import org.apache.http.message.BasicHeader;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import jetbrains.buildServer.serverSide.SBuildServer;
+import webhook.WebHookExecutionStats;
+import webhook.teamcity.WebHookHttpResponseException;
+import webhook.teamcity.executor.WebHookBulkheadExecutor;
+import webhook.teamcity.executor.WebHookRunner;
+import webhook.teamcity.history.WebAddressTransformer;
+import webhook.teamcity.journal.WebHookDeliveryJournal;
+import webhook.teamcity.journal.WebHookJournalEntry;
+import webhook.teamcity.settings.WebHookMainSettings;
+
+public class WebHookRetrySchedulerImplTest {
+
+	WebHookMainSettings mainSettings;
+	WebHookBulkheadExecutor bulkheadExecutor;
+	WebHookDeadLetterStore deadLetterStore;
+	WebHookDeliveryJournal journal;
+	WebHookRetrySchedulerImpl scheduler;
+	WebHookRunner nextAttempt;
+
+	@Before
+	public void setup() {
+		mainSettings = new WebHookMainSettings(mock(SBuildServer.class));
+		mainSettings.getWebHookMainConfig().setRetryInitialDelay(0);
+		mainSettings.getWebHookMainConfig().setRetryMaxAttempts(3);
+		bulkheadExecutor = mock(WebHookBulkheadExecutor.class);
+		deadLetterStore = mock(WebHookDeadLetterStore.class);
+		when(deadLetterStore.add(any(WebHookDeadLetter.class))).thenReturn("dead-letter-id");
+		journal = mock(WebHookDeliveryJournal.class);
+		scheduler = new WebHookRetrySchedulerImpl(mainSettings, bulkheadExecutor, mock(WebAddressTransformer.class), deadLetterStore, journal);
+		nextAttempt = mock(WebHookRunner.class);
+	}
+
+	@After
+	public void tearDown() {
+		scheduler.shutdown();
+	}
+
+	@Test
+	public void testRetryableFailureIsScheduledOnBulkhead() {
+		assertTrue(scheduler.handleFailure(buildFailure(503, 1)));
+		verify(bulkheadExecutor, timeout(5000)).execute(anyString(), any(WebHookRunner.class));
+		verify(deadLetterStore, never()).add(any(WebHookDeadLetter.class));
+		verify(journal, never()).acknowledge(42L);
+	}
+
+	@Test
+	public void testNonRetryableFailureIsLeftToTheCaller() {
+		assertFalse(scheduler.handleFailure(buildFailure(404, 1)));
+		verify(deadLetterStore, never()).add(any(WebHookDeadLetter.class));
+	}
+
+	@Test
+	public void testExhaustedFailureIsDeadLetteredAndAcknowledged() {
+		assertTrue(scheduler.handleFailure(buildFailure(503, 3)));
+		verify(deadLetterStore).add(any(WebHookDeadLetter.class));
+		verify(journal).acknowledge(42L);
+		assertEquals(0, scheduler.getPendingCount());
+	}
+
+	@Test
+	public void testFailureIsDeadLetteredWhenRetryAfterIsBeyondMaximumDelay() {
+		mainSettings.getWebHookMainConfig().setRetryMaxDelay(60);
+		WebHookExecutionStats stats = new WebHookExecutionStats("http://example.com/hook");
+		stats.setResponseHeaders(new Header[] { new BasicHeader("Retry-After", "3600") });
+
+		assertTrue(scheduler.handleFailure(buildFailure(503, 1, stats)));
+		verify(deadLetterStore).add(any(WebHookDeadLetter.class));
+		verify(journal).acknowledge(42L);
+		assertEquals(0, scheduler.getPendingCount());
+		verify(bulkheadExecutor, never()).execute(anyString(), any(WebHookRunner.class));
+	}
+
+	@Test
+	public void testNothingIsDeadLetteredWhenRetriesAreDisabled() {
+		mainSettings.getWebHookMainConfig().setRetryMaxAttempts(1);
+		assertFalse(scheduler.handleFailure(buildFailure(503, 1)));
+		verify(deadLetterStore, never()).add(any(WebHookDeadLetter.class));
+	}
+
+	private WebHookFailedDelivery buildFailure(int statusCode, int attempt) {
+		return buildFailure(statusCode, attempt, null);
+	}
+
+	private WebHookFailedDelivery buildFailure(int statusCode, int attempt, WebHookExecutionStats executionStats) {
+		return WebHookFailedDelivery.builder()
+				.entry(WebHookJournalEntry.builder()
+						.trackingId("4f2a1c3e-8c7b-4d0e-9a51-3b6f0c2d1e7a")
+						.url("http://example.com/hook")
+						.build())
+				.journalSequence(42L)
+				.attempt(attempt)
+				.failure(new WebHookHttpResponseException("WebHook endpoint returned non-2xx response", statusCode))
+				.nextAttempt(nextAttempt)
+				.executionStats(executionStats)
+				.build();
+	}
+
+}
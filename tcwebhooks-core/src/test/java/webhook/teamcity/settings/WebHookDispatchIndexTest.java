@@ -0,0 +1,101 @@
+package webhook.teamcity.settings;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.HashSet;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import webhook.teamcity.BuildState;
+import webhook.teamcity.MockSBuildType;
+import webhook.teamcity.MockSProject;
+
+public class WebHookDispatchIndexTest {
+
+	WebHookSettingsManager settingsManager = mock(WebHookSettingsManager.class);
+	WebHookProjectSettings rootSettings = new WebHookProjectSettings();
+	WebHookProjectSettings project01Settings = new WebHookProjectSettings();
+	MockSProject project01 = new MockSProject("Project 1", "first project", "project01", "Project01", new MockSBuildType("Build 1", "first build", "bt01"));
+	WebHookDispatchIndex dispatchIndex = new WebHookDispatchIndex(settingsManager);
+
+	@Before
+	public void setup() {
+		when(settingsManager.getSettings("_Root")).thenReturn(rootSettings);
+		when(settingsManager.getSettings("project01")).thenReturn(project01Settings);
+	}
+
+	@Test
+	public void testEnabledWebHooksFromProjectPathAreFound() {
+		rootSettings.addNewWebHook("_Root", "_Root", "http://root/subprojects", true, new BuildState().setAllEnabled(), "json", true, true, new HashSet<String>());
+		rootSettings.addNewWebHook("_Root", "_Root", "http://root/only", true, new BuildState().setAllEnabled(), "json", true, false, new HashSet<String>());
+		project01Settings.addNewWebHook("project01", "Project01", "http://project01/enabled", true, new BuildState().setAllEnabled(), "json", true, false, new HashSet<String>());
+		project01Settings.addNewWebHook("project01", "Project01", "http://project01/disabled", false, new BuildState().setAllEnabled(), "json", true, false, new HashSet<String>());
+
+		List<WebHookConfig> webHooks = dispatchIndex.getEnabledWebHooks(project01);
+		assertEquals(2, webHooks.size());
+		assertEquals("http://root/subprojects", webHooks.get(0).getUrl());
+		assertEquals("_Root", webHooks.get(0).getProjectInternalId());
+		assertEquals("http://project01/enabled", webHooks.get(1).getUrl());
+		assertEquals("Project01", webHooks.get(1).getProjectExternalId());
+		assertSame(webHooks, dispatchIndex.getEnabledWebHooks(project01));
+	}
+
+	@Test
+	public void testWebHooksAreFoundAgainWhenSettingsChange() {
+		project01Settings.addNewWebHook("project01", "Project01", "http://project01/first", true, new BuildState().setAllEnabled(), "json", true, false, new HashSet<String>());
+		assertEquals(1, dispatchIndex.getEnabledWebHooks(project01).size());
+
+		WebHookConfig second = project01Settings.addNewWebHook("project01", "Project01", "http://project01/second", true, new BuildState().setAllEnabled(), "json", true, false, new HashSet<String>()).getWebHookConfig();
+		assertEquals(2, dispatchIndex.getEnabledWebHooks(project01).size());
+
+		project01Settings.updateWebHook("project01", second.getUniqueKey(), second.getUrl(), false, new BuildState().setAllEnabled(), "json", true, false, new HashSet<String>(), null);
+		assertEquals(1, dispatchIndex.getEnabledWebHooks(project01).size());
+
+		rootSettings = new WebHookProjectSettings();
+		rootSettings.addNewWebHook("_Root", "_Root", "http://root/subprojects", true, new BuildState().setAllEnabled(), "json", true, true, new HashSet<String>());
+		when(settingsManager.getSettings("_Root")).thenReturn(rootSettings);
+		assertEquals(2, dispatchIndex.getEnabledWebHooks(project01).size());
+	}
+
+	@Test
+	public void testWebHooksAreFoundAgainWhenProjectIsMoved() {
+		MockSProject parent = new MockSProject("Parent", "parent project", "parent01", "Parent01", new MockSBuildType("Build 2", "second build", "bt02"));
+		WebHookProjectSettings parentSettings = new WebHookProjectSettings();
+		parentSettings.addNewWebHook("parent01", "Parent01", "http://parent01/subprojects", true, new BuildState().setAllEnabled(), "json", true, true, new HashSet<String>());
+		when(settingsManager.getSettings("parent01")).thenReturn(parentSettings);
+		assertEquals(0, dispatchIndex.getEnabledWebHooks(project01).size());
+
+		project01.setParentProject(parent);
+		assertEquals(1, dispatchIndex.getEnabledWebHooks(project01).size());
+	}
+
+	@Test
+	public void testOnlyProjectsWithEnabledWebHooksAreKept() {
+		assertEquals(0, dispatchIndex.getEnabledWebHooks(project01).size());
+		assertEquals(0, dispatchIndex.getIndexedProjectCount());
+
+		WebHookConfig webHook = project01Settings.addNewWebHook("project01", "Project01", "http://project01/enabled", true, new BuildState().setAllEnabled(), "json", true, false, new HashSet<String>()).getWebHookConfig();
+		assertEquals(1, dispatchIndex.getEnabledWebHooks(project01).size());
+		assertEquals(1, dispatchIndex.getIndexedProjectCount());
+
+		project01Settings.deleteWebHook(webHook.getUniqueKey(), "project01");
+		assertEquals(0, dispatchIndex.getEnabledWebHooks(project01).size());
+		assertEquals(0, dispatchIndex.getIndexedProjectCount());
+	}
+
+	@Test
+	public void testRemovedProjectIsDroppedFromTheIndex() {
+		project01Settings.addNewWebHook("project01", "Project01", "http://project01/enabled", true, new BuildState().setAllEnabled(), "json", true, false, new HashSet<String>());
+		assertEquals(1, dispatchIndex.getEnabledWebHooks(project01).size());
+		assertEquals(1, dispatchIndex.getIndexedProjectCount());
+
+		dispatchIndex.remove("project01");
+		assertEquals(0, dispatchIndex.getIndexedProjectCount());
+	}
+
+}
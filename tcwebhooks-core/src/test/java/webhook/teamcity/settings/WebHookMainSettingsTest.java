@@ -1,5 +1,6 @@
 package webhook.teamcity.settings;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.mock;
 
@@ -14,6 +15,8 @@ import org.jdom.input.SAXBuilder;
 import org.junit.Test;
 
 import webhook.WebHookProxyConfig;
+import webhook.teamcity.circuitbreaker.WebHookCircuitOpenPolicy;
+import webhook.teamcity.executor.WebHookOverflowPolicy;
 
 public class WebHookMainSettingsTest {
 	SBuildServer server = mock(SBuildServer.class);
@@ -32,6 +35,108 @@ public class WebHookMainSettingsTest {
 		assertTrue(whpc.getProxyPort().equals(this.proxyPort));
 	}
 	
+	@Test
+	public void TestConnectionPoolConfig(){
+		WebHookMainSettings whms = new WebHookMainSettings(server);
+		whms.register();
+		whms.readFrom(getFullConfigElement());
+		assertEquals(50, whms.getHttpConnectionPoolMaxTotal());
+		assertEquals(10, whms.getHttpConnectionPoolMaxPerRoute());
+		assertEquals(Integer.valueOf(30), whms.getWebHookMainConfig().getHttpConnectionPoolIdleTimeout());
+		assertEquals(Integer.valueOf(15), whms.getWebHookMainConfig().getHttpConnectionPoolKeepAlive());
+		assertEquals(5, whms.getHttpConnectionPoolLeaseTimeout());
+	}
+	
+	@Test
+	public void TestExecutorConfig(){
+		WebHookMainSettings whms = new WebHookMainSettings(server);
+		whms.register();
+		whms.readFrom(getFullConfigElement());
+		assertEquals(Integer.valueOf(4), whms.getWebHookMainConfig().getExecutorThreadCount());
+		assertEquals(Integer.valueOf(200), whms.getWebHookMainConfig().getExecutorQueueSize());
+		assertEquals(Integer.valueOf(2), whms.getWebHookMainConfig().getExecutorMaxPerHost());
+		assertEquals(Integer.valueOf(50), whms.getWebHookMainConfig().getExecutorMaxWaitingPerHost());
+		assertEquals(WebHookOverflowPolicy.DROP_NEWEST, whms.getWebHookMainConfig().getExecutorOverflowPolicy());
+	}
+	
+	@Test
+	public void TestDeliveryJournalConfig(){
+		WebHookMainSettings whms = new WebHookMainSettings(server);
+		whms.register();
+		whms.readFrom(getFullConfigElement());
+		assertEquals(false, whms.getWebHookMainConfig().isDeliveryJournalEnabled());
+		assertEquals(Integer.valueOf(8), whms.getWebHookMainConfig().getDeliveryJournalMaxSize());
+		assertEquals(Integer.valueOf(250), whms.getWebHookMainConfig().getDeliveryJournalCommitInterval());
+	}
+	
+	@Test
+	public void TestDeliveryJournalMaxSizeIsLimitedToWhatCanBeMapped(){
+		WebHookMainConfig config = new WebHookMainConfig();
+		config.setDeliveryJournalMaxSize(4096);
+		assertEquals(Integer.valueOf(WebHookMainConfig.DELIVERY_JOURNAL_MAX_SIZE_LIMIT), config.getDeliveryJournalMaxSize());
+		config.setDeliveryJournalMaxSize(2047);
+		assertEquals(Integer.valueOf(2047), config.getDeliveryJournalMaxSize());
+		config.setDeliveryJournalMaxSize(-1);
+		assertEquals(Integer.valueOf(32), config.getDeliveryJournalMaxSize());
+	}
+	
+	@Test
+	public void TestRetryConfig(){
+		WebHookMainSettings whms = new WebHookMainSettings(server);
+		whms.register();
+		whms.readFrom(getFullConfigElement());
+		assertEquals(Integer.valueOf(3), whms.getWebHookMainConfig().getRetryMaxAttempts());
+		assertEquals(Integer.valueOf(5), whms.getWebHookMainConfig().getRetryInitialDelay());
+		assertEquals(Integer.valueOf(120), whms.getWebHookMainConfig().getRetryMaxDelay());
+		assertEquals(Double.valueOf(3.0), whms.getWebHookMainConfig().getRetryMultiplier());
+		assertEquals(Double.valueOf(0.5), whms.getWebHookMainConfig().getRetryJitter());
+		assertEquals("429,502-504", whms.getWebHookMainConfig().getRetryStatusCodes());
+		assertEquals(false, whms.getWebHookMainConfig().isRetryConnectionFailures());
+		assertEquals(Integer.valueOf(50), whms.getWebHookMainConfig().getRetryMaxDeadLetters());
+	}
+	
+	@Test
+	public void TestRetryConfigDefaults(){
+		WebHookMainSettings whms = new WebHookMainSettings(server);
+		assertEquals(Integer.valueOf(5), whms.getWebHookMainConfig().getRetryMaxAttempts());
+		assertEquals("429,500-599", whms.getWebHookMainConfig().getRetryStatusCodes());
+		assertEquals(true, whms.getWebHookMainConfig().isRetryConnectionFailures());
+		assertEquals(null, whms.getWebHookMainConfig().getRetryAsElement());
+	}
+	
+	@Test
+	public void TestCircuitBreakerConfig(){
+		WebHookMainSettings whms = new WebHookMainSettings(server);
+		whms.register();
+		whms.readFrom(getFullConfigElement());
+		assertEquals(false, whms.getWebHookMainConfig().isCircuitBreakerEnabled());
+		assertEquals(Integer.valueOf(40), whms.getWebHookMainConfig().getCircuitBreakerWindowSize());
+		assertEquals(Integer.valueOf(5), whms.getWebHookMainConfig().getCircuitBreakerMinimumCalls());
+		assertEquals(Integer.valueOf(25), whms.getWebHookMainConfig().getCircuitBreakerFailureRate());
+		assertEquals(Integer.valueOf(10), whms.getWebHookMainConfig().getCircuitBreakerSlowCallDuration());
+		assertEquals(Integer.valueOf(90), whms.getWebHookMainConfig().getCircuitBreakerSlowCallRate());
+		assertEquals(Integer.valueOf(300), whms.getWebHookMainConfig().getCircuitBreakerOpenDuration());
+		assertEquals(WebHookCircuitOpenPolicy.FAIL, whms.getWebHookMainConfig().getCircuitBreakerWhenOpen());
+	}
+	
+	@Test
+	public void TestCircuitBreakerConfigDefaults(){
+		WebHookMainSettings whms = new WebHookMainSettings(server);
+		assertEquals(true, whms.getWebHookMainConfig().isCircuitBreakerEnabled());
+		assertEquals(Integer.valueOf(20), whms.getWebHookMainConfig().getCircuitBreakerWindowSize());
+		assertEquals(Integer.valueOf(60), whms.getWebHookMainConfig().getCircuitBreakerOpenDuration());
+		assertEquals(WebHookCircuitOpenPolicy.DEFER, whms.getWebHookMainConfig().getCircuitBreakerWhenOpen());
+		assertEquals(null, whms.getWebHookMainConfig().getCircuitBreakerAsElement());
+	}
+	
+	@Test
+	public void TestConnectionPoolConfigDefaults(){
+		WebHookMainSettings whms = new WebHookMainSettings(server);
+		assertEquals(100, whms.getHttpConnectionPoolMaxTotal());
+		assertEquals(20, whms.getHttpConnectionPoolMaxPerRoute());
+		assertEquals(null, whms.getWebHookMainConfig().getConnectionPoolAsElement());
+	}
+	
 	private Element getFullConfigElement(){
 		SAXBuilder builder = new SAXBuilder();
 		builder.setIgnoringElementContentWhitespace(true);
@@ -1,6 +1,17 @@
 package webhook.teamcity.settings.entity;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+
+import java.io.File;
 import java.io.FileNotFoundException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import javax.xml.bind.JAXBContext;
 import javax.xml.bind.JAXBException;
@@ -14,11 +25,16 @@ import javax.xml.transform.TransformerFactory;
 import javax.xml.transform.dom.DOMSource;
 import javax.xml.transform.stream.StreamResult;
 
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import org.w3c.dom.Document;
 
 public class WebHookTemplateJaxHelperTest {
 
+	@Rule
+	public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
 	@Test
 	public void testReadString() throws FileNotFoundException, JAXBException {
 		WebHookTemplates templatesList =  new WebHookTemplateJaxHelperImpl().readTemplates("src/test/resources/webhook-templates.xml");
@@ -68,4 +84,46 @@ public class WebHookTemplateJaxHelperTest {
 		
 	}
 
+	@Test
+	public void testTemplatesAreOnlyWrittenWhenChanged() throws Exception {
+		WebHookTemplateJaxHelperImpl jaxHelper = new WebHookTemplateJaxHelperImpl();
+		WebHookTemplates templatesList = jaxHelper.readTemplates("src/test/resources/webhook-templates.xml");
+		File configFile = new File(temporaryFolder.getRoot(), "webhook-templates.xml");
+		
+		jaxHelper.writeTemplates(templatesList, configFile.getPath());
+		assertEquals(3, jaxHelper.readTemplates(configFile.getPath()).getWebHookTemplateList().size());
+		assertFalse(new File(temporaryFolder.getRoot(), "webhook-templates.xml.tmp").exists());
+		
+		configFile.setLastModified(1000L);
+		jaxHelper.writeTemplates(jaxHelper.readTemplates(configFile.getPath()), configFile.getPath());
+		assertEquals(1000L, configFile.lastModified());
+		
+		templatesList.getWebHookTemplateList().remove(0);
+		jaxHelper.writeTemplates(templatesList, configFile.getPath());
+		assertNotEquals(1000L, configFile.lastModified());
+		assertEquals(2, jaxHelper.readTemplates(configFile.getPath()).getWebHookTemplateList().size());
+	}
+
+	@Test
+	public void testPooledMarshallersAreSharedBetweenThreadsAndReleasedOnShutdown() throws Exception {
+		WebHookTemplateJaxHelperImpl jaxHelper = new WebHookTemplateJaxHelperImpl();
+		ExecutorService executor = Executors.newFixedThreadPool(8);
+		try {
+			List<Callable<Integer>> reads = new ArrayList<>();
+			for (int i = 0; i < 32; i++) {
+				reads.add(() -> jaxHelper.readTemplates("src/test/resources/webhook-templates.xml").getWebHookTemplateList().size());
+			}
+			for (Future<Integer> read : executor.invokeAll(reads)) {
+				assertEquals(Integer.valueOf(3), read.get());
+			}
+		} finally {
+			executor.shutdown();
+		}
+		
+		jaxHelper.shutdown();
+		File configFile = new File(temporaryFolder.getRoot(), "webhook-templates.xml");
+		jaxHelper.writeTemplates(jaxHelper.readTemplates("src/test/resources/webhook-templates.xml"), configFile.getPath());
+		assertEquals(3, jaxHelper.readTemplates(configFile.getPath()).getWebHookTemplateList().size());
+	}
+
 }
@@ -0,0 +1,45 @@
+package webhook.teamcity.server.rest.jersey;
+
+import java.lang.reflect.Type;
+
+import javax.ws.rs.core.Context;
+import javax.ws.rs.ext.Provider;
+
+import org.jetbrains.annotations.NotNull;
+
+import com.sun.jersey.core.spi.component.ComponentContext;
+import com.sun.jersey.core.spi.component.ComponentScope;
+import com.sun.jersey.spi.inject.Injectable;
+import com.sun.jersey.spi.inject.InjectableProvider;
+
+import webhook.teamcity.server.rest.util.circuitbreaker.CircuitBreakerManager;
+
+@Provider
+@SuppressWarnings("squid:S1191")
+public class CircuitBreakerManagerProvider implements InjectableProvider<Context, Type>, Injectable<CircuitBreakerManager> {
+  private final CircuitBreakerManager circuitBreakerManager;
+
+  /**
+   * Injected by Spring
+   * @param circuitBreakerManager
+   */
+  public CircuitBreakerManagerProvider(@NotNull final CircuitBreakerManager circuitBreakerManager) {
+	  this.circuitBreakerManager = circuitBreakerManager;
+  }
+
+  public ComponentScope getScope() {
+    return ComponentScope.Singleton;
+  }
+
+  public Injectable<CircuitBreakerManager> getInjectable(final ComponentContext ic, final Context context, final Type type) {
+    if (type.equals(CircuitBreakerManager.class)) {
+      return this;
+    }
+    return null;
+  }
+
+  public CircuitBreakerManager getValue() {
+    return circuitBreakerManager;
+  }
+
+}
@@ -0,0 +1,45 @@
+package webhook.teamcity.server.rest.jersey;
+
+import java.lang.reflect.Type;
+
+import javax.ws.rs.core.Context;
+import javax.ws.rs.ext.Provider;
+
+import org.jetbrains.annotations.NotNull;
+
+import com.sun.jersey.core.spi.component.ComponentContext;
+import com.sun.jersey.core.spi.component.ComponentScope;
+import com.sun.jersey.spi.inject.Injectable;
+import com.sun.jersey.spi.inject.InjectableProvider;
+
+import webhook.teamcity.server.rest.util.deadletter.DeadLetterManager;
+
+@Provider
+@SuppressWarnings("squid:S1191")
+public class DeadLetterManagerProvider implements InjectableProvider<Context, Type>, Injectable<DeadLetterManager> {
+  private final DeadLetterManager deadLetterManager;
+
+  /**
+   * Injected by Spring
+   * @param deadLetterManager
+   */
+  public DeadLetterManagerProvider(@NotNull final DeadLetterManager deadLetterManager) {
+	  this.deadLetterManager = deadLetterManager;
+  }
+
+  public ComponentScope getScope() {
+    return ComponentScope.Singleton;
+  }
+
+  public Injectable<DeadLetterManager> getInjectable(final ComponentContext ic, final Context context, final Type type) {
+    if (type.equals(DeadLetterManager.class)) {
+      return this;
+    }
+    return null;
+  }
+
+  public DeadLetterManager getValue() {
+    return deadLetterManager;
+  }
+
+}
@@ -0,0 +1,74 @@
+package webhook.teamcity.server.rest.model.circuitbreaker;
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+
+import javax.xml.bind.annotation.XmlAccessType;
+import javax.xml.bind.annotation.XmlAccessorType;
+import javax.xml.bind.annotation.XmlAttribute;
+import javax.xml.bind.annotation.XmlRootElement;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import webhook.teamcity.circuitbreaker.WebHookCircuitBreakerStatus;
+
+/*
+ * <circuitBreaker id="3f1d..." address="example.com" state="OPEN" calls="0" failureRate="0" ... />
+ */
+
+/* Use the XmlAttributes on the fields rather than the getters
+ * and setters provided by Lombok */
+@XmlAccessorType(XmlAccessType.FIELD)
+
+@Data  // Let Lombok generate the getters and setters.
+@NoArgsConstructor
+@XmlRootElement(name = "circuitBreaker")
+public class CircuitBreaker {
+
+	@XmlAttribute
+	String id;
+
+	@XmlAttribute
+	String href;
+
+	@XmlAttribute
+	String address;
+
+	@XmlAttribute
+	String state;
+
+	@XmlAttribute
+	Integer calls;
+
+	@XmlAttribute
+	Integer failureRate;
+
+	@XmlAttribute
+	Integer slowCallRate;
+
+	@XmlAttribute
+	String openedAt;
+
+	@XmlAttribute
+	String retryAt;
+
+	public CircuitBreaker(WebHookCircuitBreakerStatus status, String href) {
+		this.id = status.getHash();
+		this.href = href;
+		this.address = status.getAddress();
+		this.state = status.getState().name();
+		this.calls = status.getCalls();
+		this.failureRate = status.getFailureRate();
+		this.slowCallRate = status.getSlowCallRate();
+		this.openedAt = formatTime(status.getOpenedAt());
+		this.retryAt = formatTime(status.getRetryAt());
+	}
+
+	private static String formatTime(Long millis) {
+		if (millis == null) {
+			return null;
+		}
+		return new SimpleDateFormat("yyyyMMdd'T'HHmmssZ").format(new Date(millis));
+	}
+
+}
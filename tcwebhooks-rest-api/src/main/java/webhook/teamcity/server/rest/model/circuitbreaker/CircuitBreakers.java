@@ -0,0 +1,31 @@
+package webhook.teamcity.server.rest.model.circuitbreaker;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.xml.bind.annotation.XmlAccessType;
+import javax.xml.bind.annotation.XmlAccessorType;
+import javax.xml.bind.annotation.XmlAttribute;
+import javax.xml.bind.annotation.XmlElement;
+import javax.xml.bind.annotation.XmlRootElement;
+
+import lombok.Data;
+
+/* Use the XmlAttributes on the fields rather than the getters
+ * and setters provided by Lombok */
+@XmlAccessorType(XmlAccessType.FIELD)
+
+@Data  // Let Lombok generate the getters and setters.
+@XmlRootElement(name = "circuitBreakers")
+public class CircuitBreakers {
+
+	@XmlAttribute
+	Integer count;
+
+	@XmlAttribute
+	String href;
+
+	@XmlElement(name = "circuitBreaker")
+	List<CircuitBreaker> circuitBreakerList = new ArrayList<>();
+
+}
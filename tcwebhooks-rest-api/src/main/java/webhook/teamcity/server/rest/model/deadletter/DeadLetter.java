@@ -0,0 +1,86 @@
+package webhook.teamcity.server.rest.model.deadletter;
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+
+import javax.xml.bind.annotation.XmlAccessType;
+import javax.xml.bind.annotation.XmlAccessorType;
+import javax.xml.bind.annotation.XmlAttribute;
+import javax.xml.bind.annotation.XmlElement;
+import javax.xml.bind.annotation.XmlRootElement;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import webhook.teamcity.journal.WebHookJournalEntry;
+import webhook.teamcity.retry.WebHookDeadLetter;
+
+/*
+ * <deadLetter id="..." url="http://example.com/hook" attempts="5" lastStatusCode="503" ... >
+ *   <payload>{ ... }</payload>
+ * </deadLetter>
+ */
+
+/* Use the XmlAttributes on the fields rather than the getters
+ * and setters provided by Lombok */
+@XmlAccessorType(XmlAccessType.FIELD)
+
+@Data  // Let Lombok generate the getters and setters.
+@NoArgsConstructor
+@XmlRootElement(name = "deadLetter")
+public class DeadLetter {
+
+	@XmlAttribute
+	String id;
+
+	@XmlAttribute
+	String href;
+
+	@XmlAttribute
+	String url;
+
+	@XmlAttribute
+	String trackingId;
+
+	@XmlAttribute
+	String webHookId;
+
+	@XmlAttribute
+	String projectId;
+
+	@XmlAttribute
+	String buildState;
+
+	@XmlAttribute
+	Integer attempts;
+
+	@XmlAttribute
+	Integer lastStatusCode;
+
+	@XmlAttribute
+	String lastError;
+
+	@XmlAttribute
+	String deadLetteredAt;
+
+	@XmlElement
+	String payload;
+
+	public DeadLetter(WebHookDeadLetter deadLetter, String href, boolean includePayload) {
+		WebHookJournalEntry entry = deadLetter.getEntry();
+		this.id = deadLetter.getId();
+		this.href = href;
+		this.url = entry.getUrl();
+		this.trackingId = entry.getTrackingId();
+		this.webHookId = entry.getWebHookUniqueKey();
+		this.projectId = entry.getProjectInternalId();
+		this.buildState = entry.getBuildState();
+		this.attempts = deadLetter.getAttempts();
+		this.lastStatusCode = deadLetter.getLastStatusCode();
+		this.lastError = deadLetter.getLastError();
+		this.deadLetteredAt = new SimpleDateFormat("yyyyMMdd'T'HHmmssZ").format(new Date(deadLetter.getDeadLetteredAt()));
+		if (includePayload) {
+			this.payload = entry.getPayload();
+		}
+	}
+
+}
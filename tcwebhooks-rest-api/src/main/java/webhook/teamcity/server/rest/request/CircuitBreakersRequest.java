@@ -0,0 +1,80 @@
+package webhook.teamcity.server.rest.request;
+
+import javax.ws.rs.GET;
+import javax.ws.rs.POST;
+import javax.ws.rs.Path;
+import javax.ws.rs.PathParam;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.MediaType;
+
+import org.jetbrains.annotations.NotNull;
+
+import com.sun.jersey.spi.resource.Singleton;
+
+import jetbrains.buildServer.server.rest.data.PermissionChecker;
+import jetbrains.buildServer.server.rest.errors.AuthorizationFailedException;
+import jetbrains.buildServer.server.rest.errors.NotFoundException;
+import jetbrains.buildServer.serverSide.auth.Permission;
+import webhook.teamcity.server.rest.errors.WebHookPermissionException;
+import webhook.teamcity.server.rest.model.circuitbreaker.CircuitBreaker;
+import webhook.teamcity.server.rest.model.circuitbreaker.CircuitBreakers;
+import webhook.teamcity.server.rest.util.circuitbreaker.CircuitBreakerManager;
+
+/**
+ * Shows the state of the circuit breaker for each endpoint webhooks are sent to,
+ * and allows an open breaker to be closed once the endpoint is known to be working.
+ */
+@Path(CircuitBreakersRequest.BASE_URI)
+@Singleton
+public class CircuitBreakersRequest implements ApiRequest {
+	static final String BASE_URI = Constants.API_URL + "/circuitbreakers";
+	private static final String NO_CIRCUIT_BREAKER_FOUND_BY_THAT_ID = "No circuit breaker found by that id";
+	private static final Permission circuitBreakerPermission = Permission.CHANGE_SERVER_SETTINGS;
+	@Context @NotNull private CircuitBreakerManager circuitBreakerManager;
+	@Context @NotNull public PermissionChecker myPermissionChecker;
+
+	@GET
+	@Produces({ MediaType.APPLICATION_XML, MediaType.APPLICATION_JSON })
+	public CircuitBreakers listCircuitBreakers() {
+		checkCircuitBreakerPermission();
+		return circuitBreakerManager.getCircuitBreakers(BASE_URI);
+	}
+
+	@GET
+	@Path("/{id}")
+	@Produces({ MediaType.APPLICATION_XML, MediaType.APPLICATION_JSON })
+	public CircuitBreaker showCircuitBreaker(@PathParam("id") String id) {
+		checkCircuitBreakerPermission();
+		CircuitBreaker circuitBreaker = circuitBreakerManager.getCircuitBreaker(BASE_URI, id);
+		if (circuitBreaker == null) {
+			throw new NotFoundException(NO_CIRCUIT_BREAKER_FOUND_BY_THAT_ID);
+		}
+		return circuitBreaker;
+	}
+
+	@POST
+	@Path("/{id}/reset")
+	@Produces({ MediaType.APPLICATION_XML, MediaType.APPLICATION_JSON })
+	public CircuitBreaker resetCircuitBreaker(@PathParam("id") String id) {
+		checkCircuitBreakerPermission();
+		CircuitBreaker circuitBreaker = circuitBreakerManager.reset(BASE_URI, id);
+		if (circuitBreaker == null) {
+			throw new NotFoundException(NO_CIRCUIT_BREAKER_FOUND_BY_THAT_ID);
+		}
+		return circuitBreaker;
+	}
+
+	public static String getUri() {
+		return BASE_URI;
+	}
+
+	private void checkCircuitBreakerPermission() {
+		try {
+			myPermissionChecker.checkGlobalPermission(circuitBreakerPermission);
+		} catch (AuthorizationFailedException e) {
+			throw new WebHookPermissionException("Managing circuit breakers requires permission 'CHANGE_SERVER_SETTINGS'");
+		}
+	}
+
+}
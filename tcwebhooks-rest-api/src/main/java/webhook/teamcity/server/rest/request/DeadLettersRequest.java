@@ -0,0 +1,89 @@
+package webhook.teamcity.server.rest.request;
+
+import javax.ws.rs.DELETE;
+import javax.ws.rs.GET;
+import javax.ws.rs.POST;
+import javax.ws.rs.Path;
+import javax.ws.rs.PathParam;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+
+import org.jetbrains.annotations.NotNull;
+
+import com.sun.jersey.spi.resource.Singleton;
+
+import jetbrains.buildServer.server.rest.data.PermissionChecker;
+import jetbrains.buildServer.server.rest.errors.AuthorizationFailedException;
+import jetbrains.buildServer.server.rest.errors.NotFoundException;
+import jetbrains.buildServer.serverSide.auth.Permission;
+import webhook.teamcity.server.rest.errors.WebHookPermissionException;
+import webhook.teamcity.server.rest.model.deadletter.DeadLetter;
+import webhook.teamcity.server.rest.model.deadletter.DeadLetters;
+import webhook.teamcity.server.rest.util.deadletter.DeadLetterManager;
+
+/**
+ * Lists, replays and discards webhook deliveries which failed after all of their retries.
+ */
+@Path(DeadLettersRequest.BASE_URI)
+@Singleton
+public class DeadLettersRequest implements ApiRequest {
+	static final String BASE_URI = Constants.API_URL + "/deadletters";
+	private static final String NO_DEAD_LETTER_FOUND_BY_THAT_ID = "No dead letter found by that id";
+	private static final Permission deadLetterPermission = Permission.CHANGE_SERVER_SETTINGS;
+	@Context @NotNull private DeadLetterManager deadLetterManager;
+	@Context @NotNull public PermissionChecker myPermissionChecker;
+
+	@GET
+	@Produces({ MediaType.APPLICATION_XML, MediaType.APPLICATION_JSON })
+	public DeadLetters listDeadLetters() {
+		checkDeadLetterPermission();
+		return deadLetterManager.getDeadLetters(BASE_URI);
+	}
+
+	@GET
+	@Path("/{id}")
+	@Produces({ MediaType.APPLICATION_XML, MediaType.APPLICATION_JSON })
+	public DeadLetter showDeadLetter(@PathParam("id") String id) {
+		checkDeadLetterPermission();
+		DeadLetter deadLetter = deadLetterManager.getDeadLetter(BASE_URI, id);
+		if (deadLetter == null) {
+			throw new NotFoundException(NO_DEAD_LETTER_FOUND_BY_THAT_ID);
+		}
+		return deadLetter;
+	}
+
+	@POST
+	@Path("/{id}/replay")
+	public Response replayDeadLetter(@PathParam("id") String id) {
+		checkDeadLetterPermission();
+		if (!deadLetterManager.replay(id)) {
+			throw new NotFoundException(NO_DEAD_LETTER_FOUND_BY_THAT_ID);
+		}
+		return Response.accepted().build();
+	}
+
+	@DELETE
+	@Path("/{id}")
+	public Response deleteDeadLetter(@PathParam("id") String id) {
+		checkDeadLetterPermission();
+		if (!deadLetterManager.delete(id)) {
+			throw new NotFoundException(NO_DEAD_LETTER_FOUND_BY_THAT_ID);
+		}
+		return Response.noContent().build();
+	}
+
+	public static String getUri() {
+		return BASE_URI;
+	}
+
+	private void checkDeadLetterPermission() {
+		try {
+			myPermissionChecker.checkGlobalPermission(deadLetterPermission);
+		} catch (AuthorizationFailedException e) {
+			throw new WebHookPermissionException("Managing dead letters requires permission 'CHANGE_SERVER_SETTINGS'");
+		}
+	}
+
+}
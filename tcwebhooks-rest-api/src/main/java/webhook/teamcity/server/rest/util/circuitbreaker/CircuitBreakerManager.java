@@ -0,0 +1,50 @@
+package webhook.teamcity.server.rest.util.circuitbreaker;
+
+import org.jetbrains.annotations.NotNull;
+
+import webhook.teamcity.circuitbreaker.WebHookCircuitBreakerRegistry;
+import webhook.teamcity.circuitbreaker.WebHookCircuitBreakerStatus;
+import webhook.teamcity.server.rest.model.circuitbreaker.CircuitBreaker;
+import webhook.teamcity.server.rest.model.circuitbreaker.CircuitBreakers;
+
+public class CircuitBreakerManager {
+
+	private final WebHookCircuitBreakerRegistry circuitBreakerRegistry;
+
+	public CircuitBreakerManager(@NotNull final WebHookCircuitBreakerRegistry circuitBreakerRegistry) {
+		this.circuitBreakerRegistry = circuitBreakerRegistry;
+	}
+
+	public CircuitBreakers getCircuitBreakers(String baseHref) {
+		CircuitBreakers circuitBreakers = new CircuitBreakers();
+		circuitBreakers.setHref(baseHref);
+		for (WebHookCircuitBreakerStatus status : circuitBreakerRegistry.getStatuses()) {
+			circuitBreakers.getCircuitBreakerList().add(new CircuitBreaker(status, baseHref + "/" + status.getHash()));
+		}
+		circuitBreakers.setCount(circuitBreakers.getCircuitBreakerList().size());
+		return circuitBreakers;
+	}
+
+	/**
+	 * @return The endpoint's circuit breaker, or null if no webhooks have been sent to it.
+	 */
+	public CircuitBreaker getCircuitBreaker(String baseHref, String id) {
+		return toCircuitBreaker(baseHref, circuitBreakerRegistry.getStatus(id));
+	}
+
+	/**
+	 * Closes the endpoint's circuit breaker, so that webhooks are sent to it again straight away.
+	 * @return The reset circuit breaker, or null if no webhooks have been sent to the endpoint.
+	 */
+	public CircuitBreaker reset(String baseHref, String id) {
+		return toCircuitBreaker(baseHref, circuitBreakerRegistry.reset(id));
+	}
+
+	private CircuitBreaker toCircuitBreaker(String baseHref, WebHookCircuitBreakerStatus status) {
+		if (status == null) {
+			return null;
+		}
+		return new CircuitBreaker(status, baseHref + "/" + status.getHash());
+	}
+
+}
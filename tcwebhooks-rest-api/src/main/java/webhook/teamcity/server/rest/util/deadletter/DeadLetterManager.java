@@ -0,0 +1,59 @@
+package webhook.teamcity.server.rest.util.deadletter;
+
+import org.jetbrains.annotations.NotNull;
+
+import webhook.teamcity.executor.WebHookJournalReplayer;
+import webhook.teamcity.retry.WebHookDeadLetter;
+import webhook.teamcity.retry.WebHookDeadLetterStore;
+import webhook.teamcity.server.rest.model.deadletter.DeadLetter;
+import webhook.teamcity.server.rest.model.deadletter.DeadLetters;
+
+public class DeadLetterManager {
+
+	private final WebHookDeadLetterStore deadLetterStore;
+	private final WebHookJournalReplayer journalReplayer;
+
+	public DeadLetterManager(
+			@NotNull final WebHookDeadLetterStore deadLetterStore,
+			@NotNull final WebHookJournalReplayer journalReplayer)
+	{
+		this.deadLetterStore = deadLetterStore;
+		this.journalReplayer = journalReplayer;
+	}
+
+	public DeadLetters getDeadLetters(String baseHref) {
+		DeadLetters deadLetters = new DeadLetters();
+		deadLetters.setHref(baseHref);
+		for (WebHookDeadLetter deadLetter : deadLetterStore.getAll()) {
+			deadLetters.getDeadLetterList().add(new DeadLetter(deadLetter, baseHref + "/" + deadLetter.getId(), false));
+		}
+		deadLetters.setCount(deadLetters.getDeadLetterList().size());
+		return deadLetters;
+	}
+
+	/**
+	 * @return The dead letter, including its payload, or null if there is none with that id.
+	 */
+	public DeadLetter getDeadLetter(String baseHref, String id) {
+		WebHookDeadLetter deadLetter = deadLetterStore.get(id);
+		if (deadLetter == null) {
+			return null;
+		}
+		return new DeadLetter(deadLetter, baseHref + "/" + deadLetter.getId(), true);
+	}
+
+	/**
+	 * @return false if there is no dead letter with that id, or its webhook no longer exists.
+	 */
+	public boolean replay(String id) {
+		return journalReplayer.replayDeadLetter(id);
+	}
+
+	/**
+	 * @return false if there is no dead letter with that id.
+	 */
+	public boolean delete(String id) {
+		return deadLetterStore.remove(id) != null;
+	}
+
+}
@@ -0,0 +1,51 @@
+package webhook.teamcity.server.rest.request;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static webhook.teamcity.test.jerseyprovider.MockingCircuitBreakerManagerProvider.CIRCUIT_BREAKER_ID;
+
+import javax.ws.rs.core.MediaType;
+
+import org.junit.Test;
+
+import com.sun.jersey.api.client.ClientResponse;
+import com.sun.jersey.api.client.WebResource;
+
+import webhook.teamcity.server.rest.model.circuitbreaker.CircuitBreaker;
+import webhook.teamcity.server.rest.model.circuitbreaker.CircuitBreakers;
+
+public class CircuitBreakersRequestTest extends WebHookAbstractSpringAwareJerseyTest {
+
+	@Test
+	public void testJsonCircuitBreakersRequest() {
+		WebResource webResource = resource();
+		CircuitBreakers responseMsg = webResource.path(CircuitBreakersRequest.getUri()).accept(MediaType.APPLICATION_JSON_TYPE).get(CircuitBreakers.class);
+		prettyPrint(responseMsg);
+		assertEquals(1, (int)responseMsg.getCount());
+		assertEquals("OPEN", responseMsg.getCircuitBreakerList().get(0).getState());
+		assertNotNull(responseMsg.getCircuitBreakerList().get(0).getRetryAt());
+	}
+
+	@Test
+	public void testXmlCircuitBreakerRequest() {
+		WebResource webResource = resource();
+		CircuitBreaker responseMsg = webResource.path(CircuitBreakersRequest.getUri() + "/" + CIRCUIT_BREAKER_ID).accept(MediaType.APPLICATION_XML_TYPE).get(CircuitBreaker.class);
+		assertEquals("example.com", responseMsg.getAddress());
+		assertEquals("OPEN", responseMsg.getState());
+	}
+
+	@Test
+	public void testResetCircuitBreaker() {
+		WebResource webResource = resource();
+		CircuitBreaker responseMsg = webResource.path(CircuitBreakersRequest.getUri() + "/" + CIRCUIT_BREAKER_ID + "/reset").accept(MediaType.APPLICATION_XML_TYPE).post(CircuitBreaker.class);
+		assertEquals("CLOSED", responseMsg.getState());
+	}
+
+	@Test
+	public void testUnknownCircuitBreakerIsNotFound() {
+		WebResource webResource = resource();
+		ClientResponse response = webResource.path(CircuitBreakersRequest.getUri() + "/unknown").accept(MediaType.APPLICATION_XML_TYPE).get(ClientResponse.class);
+		assertEquals(404, response.getStatus());
+	}
+
+}
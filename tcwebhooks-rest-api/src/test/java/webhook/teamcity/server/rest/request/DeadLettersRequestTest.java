@@ -0,0 +1,53 @@
+package webhook.teamcity.server.rest.request;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static webhook.teamcity.test.jerseyprovider.MockingDeadLetterManagerProvider.DEAD_LETTER_ID;
+
+import javax.ws.rs.core.MediaType;
+
+import org.junit.Test;
+
+import com.sun.jersey.api.client.ClientResponse;
+import com.sun.jersey.api.client.WebResource;
+
+import webhook.teamcity.server.rest.model.deadletter.DeadLetter;
+import webhook.teamcity.server.rest.model.deadletter.DeadLetters;
+
+public class DeadLettersRequestTest extends WebHookAbstractSpringAwareJerseyTest {
+
+	@Test
+	public void testJsonDeadLettersRequest() {
+		WebResource webResource = resource();
+		DeadLetters responseMsg = webResource.path(DeadLettersRequest.getUri()).accept(MediaType.APPLICATION_JSON_TYPE).get(DeadLetters.class);
+		prettyPrint(responseMsg);
+		assertEquals(1, (int)responseMsg.getCount());
+		assertEquals(DEAD_LETTER_ID, responseMsg.getDeadLetterList().get(0).getId());
+		assertNull(responseMsg.getDeadLetterList().get(0).getPayload());
+	}
+
+	@Test
+	public void testXmlDeadLetterRequestIncludesPayload() {
+		WebResource webResource = resource();
+		DeadLetter responseMsg = webResource.path(DeadLettersRequest.getUri() + "/" + DEAD_LETTER_ID).accept(MediaType.APPLICATION_XML_TYPE).get(DeadLetter.class);
+		assertEquals("http://example.com/hook", responseMsg.getUrl());
+		assertEquals(Integer.valueOf(503), responseMsg.getLastStatusCode());
+		assertNotNull(responseMsg.getPayload());
+	}
+
+	@Test
+	public void testReplayDeadLetterIsAccepted() {
+		WebResource webResource = resource();
+		ClientResponse response = webResource.path(DeadLettersRequest.getUri() + "/" + DEAD_LETTER_ID + "/replay").post(ClientResponse.class);
+		assertEquals(202, response.getStatus());
+	}
+
+	@Test
+	public void testDeleteDeadLetter() {
+		WebResource webResource = resource();
+		ClientResponse response = webResource.path(DeadLettersRequest.getUri() + "/" + DEAD_LETTER_ID).delete(ClientResponse.class);
+		assertEquals(204, response.getStatus());
+	}
+
+}
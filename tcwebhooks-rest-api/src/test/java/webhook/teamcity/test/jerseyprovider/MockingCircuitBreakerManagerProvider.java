@@ -0,0 +1,64 @@
+package webhook.teamcity.test.jerseyprovider;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.lang.reflect.Type;
+import java.util.Collections;
+
+import javax.ws.rs.core.Context;
+import javax.ws.rs.ext.Provider;
+
+import com.sun.jersey.core.spi.component.ComponentContext;
+import com.sun.jersey.core.spi.component.ComponentScope;
+import com.sun.jersey.spi.inject.Injectable;
+import com.sun.jersey.spi.inject.InjectableProvider;
+
+import webhook.teamcity.circuitbreaker.WebHookCircuitBreakerRegistry;
+import webhook.teamcity.circuitbreaker.WebHookCircuitBreakerStatus;
+import webhook.teamcity.circuitbreaker.WebHookCircuitState;
+import webhook.teamcity.server.rest.util.circuitbreaker.CircuitBreakerManager;
+
+@Provider
+public class MockingCircuitBreakerManagerProvider implements InjectableProvider<Context, Type>, Injectable<CircuitBreakerManager> {
+	public static final String CIRCUIT_BREAKER_ID = "a379a6f6eeafb9a55e378c118034e2751e682fab9f2d30ab13d2125586ce1947";
+	private final CircuitBreakerManager circuitBreakerManager;
+
+	public MockingCircuitBreakerManagerProvider() {
+		long openedAt = System.currentTimeMillis();
+		WebHookCircuitBreakerStatus open = WebHookCircuitBreakerStatus.builder()
+				.hash(CIRCUIT_BREAKER_ID)
+				.address("example.com")
+				.state(WebHookCircuitState.OPEN)
+				.openedAt(openedAt)
+				.retryAt(openedAt + 60000L)
+				.build();
+		WebHookCircuitBreakerStatus closed = WebHookCircuitBreakerStatus.builder()
+				.hash(CIRCUIT_BREAKER_ID)
+				.address("example.com")
+				.state(WebHookCircuitState.CLOSED)
+				.build();
+		WebHookCircuitBreakerRegistry registry = mock(WebHookCircuitBreakerRegistry.class);
+		when(registry.getStatuses()).thenReturn(Collections.singletonList(open));
+		when(registry.getStatus(CIRCUIT_BREAKER_ID)).thenReturn(open);
+		when(registry.reset(CIRCUIT_BREAKER_ID)).thenReturn(closed);
+		circuitBreakerManager = new CircuitBreakerManager(registry);
+	}
+
+	public ComponentScope getScope() {
+		return ComponentScope.Singleton;
+	}
+
+	public Injectable<CircuitBreakerManager> getInjectable(final ComponentContext ic, final Context context,
+			final Type type) {
+		if (type.equals(CircuitBreakerManager.class)) {
+			return this;
+		}
+		return null;
+	}
+
+	public CircuitBreakerManager getValue() {
+		return circuitBreakerManager;
+	}
+
+}
@@ -0,0 +1,71 @@
+package webhook.teamcity.test.jerseyprovider;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.lang.reflect.Type;
+import java.util.Collections;
+
+import javax.ws.rs.core.Context;
+import javax.ws.rs.ext.Provider;
+
+import com.sun.jersey.core.spi.component.ComponentContext;
+import com.sun.jersey.core.spi.component.ComponentScope;
+import com.sun.jersey.spi.inject.Injectable;
+import com.sun.jersey.spi.inject.InjectableProvider;
+
+import webhook.teamcity.executor.WebHookJournalReplayer;
+import webhook.teamcity.journal.WebHookJournalEntry;
+import webhook.teamcity.retry.WebHookDeadLetter;
+import webhook.teamcity.retry.WebHookDeadLetterStore;
+import webhook.teamcity.server.rest.util.deadletter.DeadLetterManager;
+
+@Provider
+public class MockingDeadLetterManagerProvider implements InjectableProvider<Context, Type>, Injectable<DeadLetterManager> {
+	public static final String DEAD_LETTER_ID = "0b5e8a3c-2d47-4f1e-9c6a-7d2f3e4a5b61";
+	private final DeadLetterManager deadLetterManager;
+
+	public MockingDeadLetterManagerProvider() {
+		WebHookDeadLetter deadLetter = WebHookDeadLetter.builder()
+				.id(DEAD_LETTER_ID)
+				.deadLetteredAt(System.currentTimeMillis())
+				.attempts(5)
+				.lastStatusCode(503)
+				.lastError("WebHook endpoint returned non-2xx response (Service Unavailable)")
+				.entry(WebHookJournalEntry.builder()
+						.webHookUniqueKey("id_123456")
+						.projectInternalId("project01")
+						.buildState("buildFinished")
+						.trackingId("4f2a1c3e-8c7b-4d0e-9a51-3b6f0c2d1e7a")
+						.url("http://example.com/hook")
+						.contentType("application/json")
+						.charset("UTF-8")
+						.payload("{ \"buildStatus\" : \"Success\" }")
+						.build())
+				.build();
+		WebHookDeadLetterStore store = mock(WebHookDeadLetterStore.class);
+		when(store.getAll()).thenReturn(Collections.singletonList(deadLetter));
+		when(store.get(DEAD_LETTER_ID)).thenReturn(deadLetter);
+		when(store.remove(DEAD_LETTER_ID)).thenReturn(deadLetter);
+		WebHookJournalReplayer replayer = mock(WebHookJournalReplayer.class);
+		when(replayer.replayDeadLetter(DEAD_LETTER_ID)).thenReturn(true);
+		deadLetterManager = new DeadLetterManager(store, replayer);
+	}
+
+	public ComponentScope getScope() {
+		return ComponentScope.Singleton;
+	}
+
+	public Injectable<DeadLetterManager> getInjectable(final ComponentContext ic, final Context context,
+			final Type type) {
+		if (type.equals(DeadLetterManager.class)) {
+			return this;
+		}
+		return null;
+	}
+
+	public DeadLetterManager getValue() {
+		return deadLetterManager;
+	}
+
+}
@@ -51,7 +51,7 @@
 					<td>${historyItem.webHookExecutionStats.initTimeStamp}</td>
 					<td><c:out value="${historyItem.webHookExecutionStats.url}"/></td>
 					<td><c:out value="${historyItem.webHookExecutionStats.buildState.shortDescription}">undefined</c:out></td>
-					<td title="x-tcwebhooks-request-id: ${historyItem.webHookExecutionStats.trackingId}">${historyItem.webHookExecutionStats.statusCode} :: <c:out value="${historyItem.webHookExecutionStats.statusReason}"/></td>
+					<td title="x-tcwebhooks-request-id: ${historyItem.webHookExecutionStats.trackingId}">${historyItem.webHookExecutionStats.statusCode} :: <c:if test="${historyItem.webhookErrorStatus.circuitOpen}"><strong>Circuit open</strong> :: </c:if><c:out value="${historyItem.webHookExecutionStats.statusReason}"/></td>
 	   				</tr>
 	        	
 	        </c:forEach>
@@ -109,7 +109,7 @@
 					</c:if>
 
 					<td><c:out value="${historyItem.webHookExecutionStats.buildState.shortDescription}${historyItem.test}">undefined</c:out></td>
-					<td title="x-tcwebhooks-request-id: ${historyItem.webHookExecutionStats.trackingId}">${historyItem.webHookExecutionStats.statusCode} :: <c:out value="${historyItem.webHookExecutionStats.statusReason}"/></td>
+					<td title="x-tcwebhooks-request-id: ${historyItem.webHookExecutionStats.trackingId}">${historyItem.webHookExecutionStats.statusCode} :: <c:if test="${historyItem.webhookErrorStatus.circuitOpen}"><strong>Circuit open</strong> :: </c:if><c:out value="${historyItem.webHookExecutionStats.statusReason}"/></td>
 	   				</tr>
 
 	        </c:forEach>